@@ -0,0 +1,80 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.bench;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * OverheadBudget runs {@link PassthroughBenchmark} and exits with a non-zero
+ * status if any <code>logged*</code> benchmark costs more than
+ * <code>bench.budget.ns</code> nanoseconds (default 25) over its
+ * <code>raw*</code> twin.
+ * @version $Rev$
+ */
+public final class OverheadBudget {
+
+    private OverheadBudget() {
+    }
+
+    /**
+     * Runs the check.
+     * @param args ignored.
+     * @throws Exception if JMH fails.
+     */
+    public static void main(String[] args) throws Exception {
+        long budget = Long.getLong("bench.budget.ns", 25);
+        Options opts = new OptionsBuilder()
+            .include(PassthroughBenchmark.class.getName())
+            .build();
+        Collection<RunResult> results = new Runner(opts).run();
+
+        Map<String, Double> scores = new TreeMap<String, Double>();
+        for (RunResult r : results) {
+            String name = r.getParams().getBenchmark();
+            scores.put(name.substring(name.lastIndexOf('.') + 1),
+                       r.getPrimaryResult().getScore());
+        }
+
+        boolean ok = true;
+        System.out.println();
+        System.out.println("Passthrough overhead, budget " + budget + " ns/op:");
+        for (Map.Entry<String, Double> e : scores.entrySet()) {
+            if (!e.getKey().startsWith("logged")) {
+                continue;
+            }
+            String op = e.getKey().substring("logged".length());
+            Double raw = scores.get("raw" + op);
+            if (raw == null) {
+                continue;
+            }
+            double overhead = e.getValue() - raw;
+            boolean over = overhead > budget;
+            System.out.printf("  %-20s raw %8.1f  logged %8.1f  overhead %6.1f%s%n",
+                              op, raw, e.getValue(), overhead,
+                              over ? "  OVER BUDGET" : "");
+            ok &= !over;
+        }
+        if (!ok) {
+            System.exit(1);
+        }
+    }
+}
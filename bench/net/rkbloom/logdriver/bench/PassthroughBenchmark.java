@@ -0,0 +1,154 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.bench;
+
+import net.rkbloom.logdriver.stub.StubDriver;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.varia.NullAppender;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PassthroughBenchmark measures what the wrappers cost when logging is off.
+ * Every operation is run once against {@link StubDriver} directly
+ * (<code>raw*</code>) and once through LogDriver (<code>logged*</code>);
+ * {@link OverheadBudget} fails the build if the difference is too large.
+ * @version $Rev$
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PassthroughBenchmark {
+
+    static final String INSERT = "insert into t (id, name) values (?, ?)";
+    static final String CALL = "{call p(?, ?)}";
+    static final String SELECT = "select name from t where id = 42";
+
+    private Connection raw;
+    private Connection logged;
+    private PreparedStatement rawPs;
+    private PreparedStatement loggedPs;
+    private CallableStatement rawCs;
+    private CallableStatement loggedCs;
+    private Statement rawSt;
+    private Statement loggedSt;
+    private long id;
+
+    /**
+     * Opens a raw and a logged connection with logging switched off.
+     * @throws Exception if the drivers can't be loaded.
+     */
+    @Setup
+    public void setUp() throws Exception {
+        Logger.getRootLogger().removeAllAppenders();
+        Logger.getRootLogger().addAppender(new NullAppender());
+        Logger.getRootLogger().setLevel(Level.WARN);
+        Class.forName(StubDriver.class.getName());
+        Class.forName("net.rkbloom.logdriver.LogDriver");
+
+        raw = DriverManager.getConnection(StubDriver.URL);
+        logged = DriverManager.getConnection(StubDriver.LOG_URL);
+        rawPs = raw.prepareStatement(INSERT);
+        loggedPs = logged.prepareStatement(INSERT);
+        rawCs = raw.prepareCall(CALL);
+        loggedCs = logged.prepareCall(CALL);
+        rawSt = raw.createStatement();
+        loggedSt = logged.createStatement();
+    }
+
+    /**
+     * Closes the connections.
+     * @throws SQLException never.
+     */
+    @TearDown
+    public void tearDown() throws SQLException {
+        raw.close();
+        logged.close();
+    }
+
+    @Benchmark
+    public PreparedStatement rawPrepare() throws SQLException {
+        return raw.prepareStatement(INSERT);
+    }
+
+    @Benchmark
+    public PreparedStatement loggedPrepare() throws SQLException {
+        return logged.prepareStatement(INSERT);
+    }
+
+    @Benchmark
+    public int rawBindAndExecute() throws SQLException {
+        return bindAndExecute(rawPs);
+    }
+
+    @Benchmark
+    public int loggedBindAndExecute() throws SQLException {
+        return bindAndExecute(loggedPs);
+    }
+
+    @Benchmark
+    public boolean rawCall() throws SQLException {
+        return call(rawCs);
+    }
+
+    @Benchmark
+    public boolean loggedCall() throws SQLException {
+        return call(loggedCs);
+    }
+
+    @Benchmark
+    public boolean rawStatement() throws SQLException {
+        return rawSt.execute(SELECT);
+    }
+
+    @Benchmark
+    public boolean loggedStatement() throws SQLException {
+        return loggedSt.execute(SELECT);
+    }
+
+    private int bindAndExecute(PreparedStatement ps) throws SQLException {
+        ps.setLong(1, id++);
+        ps.setString(2, INSERT);
+        return ps.executeUpdate();
+    }
+
+    private boolean call(CallableStatement cs) throws SQLException {
+        cs.setLong(1, id++);
+        cs.registerOutParameter(2, java.sql.Types.VARCHAR);
+        return cs.execute();
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.bench;
+
+import net.rkbloom.logdriver.stub.StubDriver;
+import net.rkbloom.logdriver.stub.StubSettings;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.varia.NullAppender;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WrapperBenchmark measures what the driver costs at each level of logging.
+ * The same calls are made against {@link StubDriver} directly
+ * (<code>logging=raw</code>) and through LogDriver with the statement log
+ * off, sampled (one execution in a hundred) and fully on in each render
+ * mode.  The cases cover preparing, binding and executing, with
+ * <code>binds</code> parameters, and reading every row of a result set.
+ * Run it with <code>ant bench</code>, which writes the results as JSON so
+ * that two releases can be compared.
+ * @version $Rev$
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WrapperBenchmark {
+
+    static final String SELECT = "select id, name from t where id = 42";
+    static final int ROWS = 10;
+
+    /** raw, off, sampled, params or inline. */
+    @Param({"raw", "off", "sampled", "params", "inline"})
+    public String logging;
+
+    private Connection conn;
+    private Statement st;
+    private long id;
+
+    /**
+     * Opens a connection logging as the parameter says.  Each combination
+     * of parameters runs in a JVM of its own, so the log4j level can be
+     * set for the whole JVM.
+     * @throws Exception if the drivers can't be loaded.
+     */
+    @Setup
+    public void setUp() throws Exception {
+        Logger.getRootLogger().removeAllAppenders();
+        Logger.getRootLogger().addAppender(new NullAppender());
+        Logger.getRootLogger().setLevel(
+            logging.equals("raw") || logging.equals("off")
+            ? Level.WARN : Level.DEBUG);
+        Class.forName(StubDriver.class.getName());
+        Class.forName("net.rkbloom.logdriver.LogDriver");
+
+        conn = DriverManager.getConnection(url(logging));
+        st = conn.createStatement();
+    }
+
+    private static String url(String logging) {
+        String stub = "stub:" + StubSettings.ROWS + "=" + ROWS;
+        if (logging.equals("raw")) {
+            return "jdbc:" + stub;
+        }
+        String options = "";
+        if (logging.equals("sampled")) {
+            options = ";sample.rate=100";
+        }
+        else if (logging.equals("params") || logging.equals("inline")) {
+            options = ";renderMode=" + logging;
+        }
+        return "jdbc:log" + options + ":" + StubDriver.class.getName() + ":"
+            + stub;
+    }
+
+    /**
+     * Closes the connection.
+     * @throws SQLException never.
+     */
+    @TearDown
+    public void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    /**
+     * Statements prepared with <code>binds</code> parameters.
+     */
+    @State(Scope.Thread)
+    public static class Bound {
+
+        /** How many parameters to bind per execution. */
+        @Param({"1", "10"})
+        public int binds;
+
+        private PreparedStatement update;
+        private PreparedStatement query;
+        private CallableStatement call;
+
+        /**
+         * Prepares the statements on the benchmark's connection.
+         * @param b the benchmark.
+         * @throws SQLException never.
+         */
+        @Setup
+        public void setUp(WrapperBenchmark b) throws SQLException {
+            StringBuilder cols = new StringBuilder();
+            StringBuilder marks = new StringBuilder();
+            StringBuilder where = new StringBuilder();
+            for (int i = 1; i <= binds; i++) {
+                String sep = (i > 1 ? ", " : "");
+                cols.append(sep).append("c").append(i);
+                marks.append(sep).append("?");
+                where.append(i > 1 ? " and " : "").append("c").append(i)
+                    .append(" = ?");
+            }
+            update = b.conn.prepareStatement(
+                "insert into t (" + cols + ") values (" + marks + ")");
+            query = b.conn.prepareStatement(
+                "select id, name from t where " + where);
+            call = b.conn.prepareCall("{call p(" + marks + ")}");
+        }
+    }
+
+    @Benchmark
+    public PreparedStatement prepare() throws SQLException {
+        return conn.prepareStatement(SELECT);
+    }
+
+    @Benchmark
+    public boolean statement() throws SQLException {
+        return st.execute(SELECT);
+    }
+
+    @Benchmark
+    public int bindAndExecute(Bound b) throws SQLException {
+        bind(b.update, b.binds);
+        return b.update.executeUpdate();
+    }
+
+    @Benchmark
+    public long queryAndIterate(Bound b) throws SQLException {
+        bind(b.query, b.binds);
+        ResultSet rs = b.query.executeQuery();
+        long sum = 0;
+        while (rs.next()) {
+            sum += rs.getLong(1) + rs.getString(2).length();
+        }
+        rs.close();
+        return sum;
+    }
+
+    @Benchmark
+    public boolean call(Bound b) throws SQLException {
+        bind(b.call, b.binds);
+        return b.call.execute();
+    }
+
+    // odd parameters are numbers, even ones strings, as in most tables
+    private void bind(PreparedStatement ps, int binds) throws SQLException {
+        for (int i = 1; i <= binds; i++) {
+            if ((i & 1) == 1) {
+                ps.setLong(i, id++);
+            }
+            else {
+                ps.setString(i, SELECT);
+            }
+        }
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.gen;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * WrapperGenerator writes the delegating base classes of the JDBC wrappers
+ * at build time:
+ * <pre>
+ * java net.rkbloom.logdriver.gen.WrapperGenerator wrappers.properties dir
+ * </pre>
+ * For each wrapper named in the spec it writes an abstract class that
+ * implements the wrapper's JDBC interface, holds the wrapped object in a
+ * final field, <code>embedded</code>, and hands every call straight to it
+ * from a final method, so that the JIT can inline the call.  The methods
+ * the spec lists as hooks are left out, and the Log class that extends
+ * the base has to implement every overload of them; since the rest are
+ * final, a hook missing from the spec doesn't compile either.  Default
+ * methods are delegated like the others, since the defaults of the JDBC
+ * interfaces mostly throw; a hook that is a default method is declared
+ * abstract again, so that the Log class can't forget it.
+ * <p>
+ * The spec has the package of the classes, the names of the wrappers and,
+ * for each one, its interface and hooks:
+ * <pre>
+ * package=net.rkbloom.logdriver
+ * wrappers=StatementWrapper
+ * StatementWrapper.interface=java.sql.Statement
+ * StatementWrapper.hooks=close, execute, executeQuery
+ * </pre>
+ * @version $Rev$
+ */
+public final class WrapperGenerator {
+
+    private WrapperGenerator() {
+    }
+
+    /**
+     * @param args the spec file and the directory to write the sources
+     * under.
+     * @throws Exception if the spec is wrong or the sources can't be
+     * written.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.err.println("usage: WrapperGenerator spec dir");
+            System.exit(2);
+        }
+        Properties spec = new Properties();
+        InputStream in = new FileInputStream(args[0]);
+        try {
+            spec.load(in);
+        }
+        finally {
+            in.close();
+        }
+        String pkg = spec.getProperty("package");
+        File dir = new File(args[1], pkg.replace('.', File.separatorChar));
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Can't create " + dir);
+        }
+        for (String name : list(spec.getProperty("wrappers"))) {
+            Class<?> iface = Class.forName(spec.getProperty(
+                    name + ".interface"));
+            Set<String> hooks = new LinkedHashSet<String>(
+                list(spec.getProperty(name + ".hooks")));
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(
+                    new FileOutputStream(
+                        new File(dir, name + ".java")), "UTF-8"));
+            try {
+                write(out, pkg, name, iface, hooks);
+            }
+            finally {
+                out.close();
+            }
+        }
+    }
+
+    private static List<String> list(String value) {
+        List<String> l = new ArrayList<String>();
+        if (value != null) {
+            for (String s : value.split(",")) {
+                if (s.trim().length() > 0) {
+                    l.add(s.trim());
+                }
+            }
+        }
+        return l;
+    }
+
+    // The instance methods of the interface, one per signature, sorted.
+    static List<Method> methodsOf(Class<?> iface) {
+        Map<String, Method> byKey = new TreeMap<String, Method>();
+        for (Method m : iface.getMethods()) {
+            if (Modifier.isStatic(m.getModifiers())) {
+                continue;
+            }
+            String key = m.getName() + Arrays.toString(m.getParameterTypes());
+            if (!byKey.containsKey(key)) {
+                byKey.put(key, m);
+            }
+        }
+        List<Method> l = new ArrayList<Method>(byKey.values());
+        Collections.sort(l, new Comparator<Method>() {
+            public int compare(Method a, Method b) {
+                int c = a.getName().compareTo(b.getName());
+                return (c != 0 ? c : a.getParameterTypes().length
+                        - b.getParameterTypes().length);
+            }
+        });
+        return l;
+    }
+
+    static void write(PrintWriter out, String pkg, String name,
+                      Class<?> iface, Set<String> hooks) {
+        List<Method> methods = methodsOf(iface);
+        Set<String> names = new LinkedHashSet<String>();
+        for (Method m : methods) {
+            names.add(m.getName());
+        }
+        for (String h : hooks) {
+            if (!names.contains(h)) {
+                throw new IllegalArgumentException(
+                    name + ": " + iface.getName() + " has no method " + h);
+            }
+        }
+        String type = typeName(iface);
+        out.println("/*");
+        out.println(" * Generated by " + WrapperGenerator.class.getName()
+                    + " from");
+        out.println(" * " + type + "; do not edit.");
+        out.println(" */");
+        out.println("package " + pkg + ";");
+        out.println();
+        StringBuilder doc = new StringBuilder(name).append(
+            " hands every call of ").append(type).append(
+            " straight to the wrapped object, except those its subclass"
+            + " intercepts:");
+        int i = 0;
+        for (String h : hooks) {
+            doc.append(' ').append(h).append(++i < hooks.size() ? "," : ".");
+        }
+        if (hooks.isEmpty()) {
+            doc.append(" none.");
+        }
+        out.println("/**");
+        comment(out, doc.toString());
+        out.println(" */");
+        out.println("public abstract class " + name);
+        out.println("    implements " + type + " {");
+        out.println();
+        out.println("    /** The wrapped object. */");
+        out.println("    final " + type + " embedded;");
+        out.println();
+        out.println("    " + name + "(" + type + " wrapped) {");
+        out.println("        embedded = wrapped;");
+        out.println("    }");
+        for (Method m : methods) {
+            if (!hooks.contains(m.getName())) {
+                out.println();
+                declare(out, m, true);
+            }
+            else if (m.isDefault()) {
+                out.println();
+                declare(out, m, false);
+            }
+        }
+        out.println("}");
+    }
+
+    // A final method that calls the wrapped object, or an abstract one
+    // for a hook.
+    private static void declare(PrintWriter out, Method m,
+                                boolean delegating) {
+        StringBuilder decl = new StringBuilder();
+        if (m.isAnnotationPresent(Deprecated.class)) {
+            out.println("    @Deprecated");
+        }
+        decl.append(delegating ? "    public final " : "    public abstract ");
+        TypeVariable<Method>[] vars = m.getTypeParameters();
+        if (vars.length > 0) {
+            decl.append('<');
+            for (int i = 0; i < vars.length; i++) {
+                decl.append(i > 0 ? ", " : "").append(vars[i].getName());
+            }
+            decl.append("> ");
+        }
+        decl.append(typeName(m.getGenericReturnType())).append(' ')
+            .append(m.getName()).append('(');
+        StringBuilder call = new StringBuilder();
+        Type[] params = m.getGenericParameterTypes();
+        int lineStart = 0;
+        for (int i = 0; i < params.length; i++) {
+            String param = typeName(params[i]) + " p" + (i + 1);
+            if (i > 0) {
+                decl.append(',');
+                // leave room for the closing parenthesis and a comma
+                if (decl.length() - lineStart + param.length() + 3 > 80) {
+                    lineStart = decl.length() + 1;
+                    decl.append("\n           ");
+                }
+                decl.append(' ');
+            }
+            decl.append(param);
+            call.append(i > 0 ? ", " : "").append('p').append(i + 1);
+        }
+        decl.append(')');
+        StringBuilder throwsClause = new StringBuilder();
+        Class<?>[] thrown = m.getExceptionTypes();
+        for (int i = 0; i < thrown.length; i++) {
+            throwsClause.append(i > 0 ? ", " : "throws ")
+                .append(typeName(thrown[i]));
+        }
+        if (throwsClause.length() > 0) {
+            if (decl.length() - lineStart + throwsClause.length() + 3 > 80) {
+                decl.append("\n       ");
+            }
+            decl.append(' ').append(throwsClause);
+        }
+        if (!delegating) {
+            out.println(decl.append(';'));
+            return;
+        }
+        out.println(decl.append(" {"));
+        out.println("        " + (m.getReturnType() == void.class
+                                  ? "" : "return ")
+                    + "embedded." + m.getName() + "(" + call + ");");
+        out.println("    }");
+    }
+
+    private static void comment(PrintWriter out, String text) {
+        StringBuilder line = new StringBuilder(" *");
+        for (String word : text.split(" ")) {
+            if (line.length() + word.length() + 1 > 78) {
+                out.println(line);
+                line = new StringBuilder(" *");
+            }
+            line.append(' ').append(word);
+        }
+        out.println(line);
+    }
+
+    // java.lang needs no package; everything else is written in full so
+    // that the generated classes need no imports.
+    private static String typeName(Type t) {
+        String s = (t instanceof Class
+                    ? ((Class<?>) t).getCanonicalName() : t.getTypeName());
+        return s.replaceAll("\\bjava\\.lang\\.(?=[A-Z])", "");
+    }
+}
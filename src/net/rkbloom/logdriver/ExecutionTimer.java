@@ -0,0 +1,342 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver;
+
+import net.rkbloom.logdriver.async.AsyncLog;
+import net.rkbloom.logdriver.capture.CaptureWriter;
+import net.rkbloom.logdriver.config.DriverConfig;
+import net.rkbloom.logdriver.config.SlowQueryConfig;
+import net.rkbloom.logdriver.event.SlowQueryEvent;
+import net.rkbloom.logdriver.event.StatementEvent.Type;
+import net.rkbloom.logdriver.stats.DriverStats;
+import net.rkbloom.logdriver.stats.FingerprintRegistry;
+import net.rkbloom.logdriver.util.BindParams;
+import net.rkbloom.logdriver.util.SqlFingerprint;
+import net.rkbloom.logdriver.util.SqlTemplateCache;
+
+import org.apache.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ExecutionTimer handles what happens after a statement has executed: the
+ * execution is counted, its elapsed time goes into the latency histogram
+ * and the statistics of its SQL fingerprint and, if it is over its
+ * threshold, it goes to the slow-query log.  With a capture file set it
+ * is also appended to the file, and so are the other calls of the
+ * statement that a replay needs: see {@link #prepared()}.  Each statement
+ * creates one the first time it is timed or captured.  When nothing needs
+ * timing, {@link #start(Connection)} returns {@link #NOT_TIMED} and the
+ * statement skips the timer altogether.
+ * @version $Rev$
+ */
+final class ExecutionTimer {
+
+    /** Returned by {@link #start(Connection)} when timing is off. */
+    static final long NOT_TIMED = Long.MIN_VALUE;
+
+    /** The update count of an execution that threw. */
+    static final int FAILED = Statement.EXECUTE_FAILED;
+
+    /** The result of an execution that threw. */
+    static final Object FAILED_RESULT = new Object();
+
+    /** Name of the logger that slow executions are written to. */
+    static final String SLOW_LOGGER = "net.rkbloom.logdriver.slow";
+
+    private static final String PACKAGE = "net.rkbloom.logdriver.";
+
+    private static Logger slowLog = Logger.getLogger(SLOW_LOGGER);
+    private static final AtomicLong statementIds = new AtomicLong();
+
+    private final Connection conn;
+    private final Type type;
+    private final String sql;
+    private String fingerprint;
+    // the SQL a Statement executed last and its fingerprint, which the
+    // statistics, the N+1 detector and the result set all ask for
+    private String lastExecuted;
+    private String lastFingerprint;
+    // the number of the statement in the capture file, 0 until captured
+    private long captureId;
+
+    /**
+     * @param c the connection the statement belongs to.
+     * @param t the kind of statement.
+     * @param s the SQL it was prepared with, null for a Statement.
+     */
+    ExecutionTimer(Connection c, Type t, String s) {
+        conn = c;
+        type = t;
+        sql = s;
+    }
+
+    /**
+     * @param c the connection the statement belongs to.
+     * @return the start time of an execution, or {@link #NOT_TIMED}.
+     */
+    static long start(Connection c) {
+        LogConnection.executionStarted(c);
+        if (!LogConnection.configOf(c).isTimingEnabled()) {
+            return NOT_TIMED;
+        }
+        DriverStats.executionStarted();
+        return System.nanoTime();
+    }
+
+    /**
+     * The result of executeLargeUpdate is recorded as the update count of
+     * an executeUpdate would be.
+     * @param count the rows affected.
+     * @return the count, capped at Integer.MAX_VALUE.
+     */
+    static Integer updateCount(long count) {
+        return Integer.valueOf((int) Math.min(count, Integer.MAX_VALUE));
+    }
+
+    /**
+     * The result of executeLargeBatch is recorded as the counts of an
+     * executeBatch would be.
+     * @param counts the rows each statement of the batch affected, may be
+     * null.
+     * @return the counts, each capped at Integer.MAX_VALUE.
+     */
+    static int[] updateCounts(long[] counts) {
+        if (counts == null) {
+            return null;
+        }
+        int[] c = new int[counts.length];
+        for (int i = 0; i < c.length; i++) {
+            c[i] = (int) Math.min(counts[i], Integer.MAX_VALUE);
+        }
+        return c;
+    }
+
+    /**
+     * @param c the connection a statement belongs to.
+     * @return true if the workload is being captured.
+     */
+    static boolean isCapturing(Connection c) {
+        return LogConnection.configOf(c).getCaptureFile() != null;
+    }
+
+    /**
+     * @param c the connection a statement belongs to.
+     * @return the writer of the capture file, or null if the workload
+     * isn't being captured.
+     */
+    static CaptureWriter captureOf(Connection c) {
+        String file = LogConnection.configOf(c).getCaptureFile();
+        return (file != null ? CaptureWriter.forFile(file) : null);
+    }
+
+    /**
+     * Captures the preparing of the statement.
+     */
+    void prepared() {
+        CaptureWriter w = captureOf(conn);
+        if (w != null) {
+            w.prepared(LogConnection.idOf(conn), captureId(), type, sql);
+        }
+    }
+
+    /**
+     * Captures a row added to the batch of a prepared statement.
+     * @param binds the bind parameters of the row, may be null.
+     */
+    void batchAdded(BindParams binds) {
+        CaptureWriter w = captureOf(conn);
+        if (w != null) {
+            w.batchAdded(LogConnection.idOf(conn), captureId(), binds);
+        }
+    }
+
+    /**
+     * Captures SQL added to the batch of the statement.
+     * @param added the SQL.
+     */
+    void batchAdded(String added) {
+        CaptureWriter w = captureOf(conn);
+        if (w != null) {
+            w.batchAdded(LogConnection.idOf(conn), captureId(), added);
+        }
+    }
+
+    /**
+     * Captures the clearing of the batch, if the statement has been
+     * captured.
+     */
+    void batchCleared() {
+        CaptureWriter w = (captureId != 0 ? captureOf(conn) : null);
+        if (w != null) {
+            w.batchCleared(LogConnection.idOf(conn), captureId);
+        }
+    }
+
+    /**
+     * Captures the closing of the statement, if it has been captured.
+     */
+    void closed() {
+        CaptureWriter w = (captureId != 0 ? captureOf(conn) : null);
+        if (w != null) {
+            w.statementClosed(LogConnection.idOf(conn), captureId);
+        }
+    }
+
+    /**
+     * Records an execution.
+     * @param start what {@link #start(Connection)} returned.
+     * @param executed the SQL, or null for the prepared SQL.
+     * @param binds the bind parameters, copied only if the execution is
+     * logged; may be null.
+     * @param result what the execution returned, see {@link SlowQueryEvent},
+     * or {@link #FAILED_RESULT} if it threw.
+     */
+    void stop(long start, String executed, BindParams binds, Object result) {
+        long end = System.nanoTime();
+        long elapsed = end - start;
+        boolean failed = (result == FAILED_RESULT);
+        DriverStats.executionFinished(end, failed);
+        LogConnection.executionTimed(conn, start, elapsed);
+        if (result instanceof int[]) {
+            DriverStats.batchExecuted(((int[]) result).length);
+        }
+        DriverConfig cfg = LogConnection.configOf(conn);
+        String key = (executed != null ? executed : sql);
+        if (cfg.isStatsEnabled()) {
+            String fp = fingerprint(executed);
+            FingerprintRegistry.get(fp)
+                .record(elapsed, failed, rowsAffected(result));
+        }
+        int repeats = cfg.getNPlusOneThreshold();
+        NPlusOneDetector d =
+            (repeats > 0 ? LogConnection.nPlusOneOf(conn) : null);
+        if (d != null) {
+            if (result instanceof int[]) {
+                d.boundary();
+            }
+            else {
+                d.executed(fingerprint(executed), key, elapsed, repeats);
+            }
+        }
+        SlowQueryConfig slow = cfg.getSlowQueries();
+        if (slow != null && slow.isSlow(key, elapsed)) {
+            AsyncLog.warn(slowLog, new SlowQueryEvent(
+                    LogConnection.idOf(conn), type, key,
+                    (binds != null ? binds.copy() : null), elapsed,
+                    slow.getThresholdNanos(key), failed,
+                    (failed ? null : result),
+                    caller(slow.getStackDepth())));
+        }
+        String capture = cfg.getCaptureFile();
+        CaptureWriter w = (capture != null
+                           ? CaptureWriter.forFile(capture) : null);
+        if (w != null) {
+            // the rows of a batch were captured as they were added
+            w.execution(LogConnection.idOf(conn), captureId(), type, key,
+                        (result instanceof int[] ? null : binds), start,
+                        elapsed, result, failed);
+        }
+    }
+
+    /**
+     * Records what was read from a result set of the statement.
+     * @param executed the SQL, or null for the prepared SQL.
+     * @param rows the rows read.
+     * @param bytes an estimate of the bytes read.
+     */
+    void fetched(String executed, long rows, long bytes) {
+        if (LogConnection.configOf(conn).isStatsEnabled()) {
+            FingerprintRegistry.get(fingerprint(executed))
+                .recordFetched(rows, bytes);
+        }
+    }
+
+    /**
+     * @param executed the SQL, or null for the prepared SQL.
+     * @return the SQL that was executed.
+     */
+    String sqlOf(String executed) {
+        return (executed != null ? executed : sql);
+    }
+
+    /**
+     * @return the connection the statement belongs to.
+     */
+    Connection getConnection() {
+        return conn;
+    }
+
+    private long captureId() {
+        if (captureId == 0) {
+            captureId = statementIds.incrementAndGet();
+        }
+        return captureId;
+    }
+
+    private String fingerprint(String executed) {
+        if (executed != null) {
+            if (!executed.equals(lastExecuted)) {
+                lastFingerprint = SqlFingerprint.of(executed);
+                lastExecuted = executed;
+            }
+            return lastFingerprint;
+        }
+        if (fingerprint == null) {
+            fingerprint = SqlTemplateCache.get(sql).getFingerprint();
+        }
+        return fingerprint;
+    }
+
+    private static long rowsAffected(Object result) {
+        if (result instanceof Integer) {
+            return ((Integer) result).intValue();
+        }
+        if (result instanceof int[]) {
+            long rows = 0;
+            for (int c : (int[]) result) {
+                if (c > 0) {
+                    rows += c;
+                }
+            }
+            return rows;
+        }
+        return 0;
+    }
+
+    // The frames of the application, without the driver's own frames on
+    // top.  Classes in sub-packages, such as the benchmarks, are callers.
+    static StackTraceElement[] caller(int depth) {
+        if (depth <= 0) {
+            return null;
+        }
+        StackTraceElement[] stack = new Throwable().getStackTrace();
+        int from = 0;
+        while (from < stack.length && isDriverFrame(stack[from])) {
+            from++;
+        }
+        return Arrays.copyOfRange(stack, from,
+                                  Math.min(stack.length, from + depth));
+    }
+
+    private static boolean isDriverFrame(StackTraceElement e) {
+        String cls = e.getClassName();
+        return cls.startsWith(PACKAGE)
+            && cls.indexOf('.', PACKAGE.length()) < 0;
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver;
+
+import net.rkbloom.logdriver.async.AsyncLog;
+import net.rkbloom.logdriver.config.DriverConfig;
+import net.rkbloom.logdriver.sink.Severity;
+
+import org.apache.log4j.Logger;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LeakDetector reports connections that are never closed.  Each tracked
+ * connection gets a phantom reference; a daemon thread waits for the
+ * references of connections that were garbage collected without being
+ * closed, and once a second looks for connections that have been open
+ * longer than <code>logdriver.leak.threshold</code>.  Both are written as
+ * WARN records to the <code>net.rkbloom.logdriver.leak</code> logger with
+ * the stack that opened the connection, if one was sampled.  Like every
+ * record of the driver they go through the configured sinks.
+ * <p>
+ * Taking a stack costs a few microseconds, which matters to applications
+ * that open a connection per request, so only every
+ * <code>logdriver.leak.stackSampling</code>th connection gets one.
+ * Tracking is off, and costs nothing, unless
+ * <code>logdriver.leak.enabled</code> is true or a threshold is set.
+ * @version $Rev$
+ */
+final class LeakDetector extends Thread {
+
+    /** Name of the logger that leaks are written to. */
+    static final String LEAK_LOGGER = "net.rkbloom.logdriver.leak";
+
+    private static final int STACK_DEPTH = 20;
+    private static final long SCAN_MILLIS = 1000L;
+
+    private static Logger log = Logger.getLogger(LEAK_LOGGER);
+
+    private static final ReferenceQueue<LogConnection> queue =
+        new ReferenceQueue<LogConnection>();
+    // the references must stay reachable until they are enqueued
+    private static final Set<Tracker> live =
+        Collections.newSetFromMap(new ConcurrentHashMap<Tracker, Boolean>());
+    private static final AtomicLong opened = new AtomicLong();
+    private static LeakDetector thread;
+
+    private LeakDetector() {
+        super("logdriver-leak-detector");
+        setDaemon(true);
+    }
+
+    /**
+     * Starts tracking a newly opened connection.
+     * @param c the connection.
+     * @param cfg its configuration.
+     * @return the tracker to hand to {@link #closed(Tracker)}, or null if
+     * leak detection is off.
+     */
+    static Tracker track(LogConnection c, DriverConfig cfg) {
+        if (!cfg.isLeakDetectionEnabled()) {
+            return null;
+        }
+        int sampling = cfg.getLeakStackSampling();
+        StackTraceElement[] stack = null;
+        if (sampling > 0 && opened.getAndIncrement() % sampling == 0) {
+            stack = ExecutionTimer.caller(STACK_DEPTH);
+        }
+        Tracker t = new Tracker(c, cfg.getLeakThreshold(), stack);
+        live.add(t);
+        startThread();
+        return t;
+    }
+
+    /**
+     * Stops tracking a connection that has been closed.
+     * @param t the tracker from {@link #track}, may be null.
+     */
+    static void closed(Tracker t) {
+        if (t == null) {
+            return;
+        }
+        t.clear();
+        live.remove(t);
+        if (t.reported) {
+            AsyncLog.log(log, Severity.INFO, "Connection #" + t.id
+                         + ", reported as held too long, was closed after "
+                         + t.ageMillis() + " ms");
+        }
+    }
+
+    private static synchronized void startThread() {
+        if (thread == null) {
+            thread = new LeakDetector();
+            thread.start();
+        }
+    }
+
+    public void run() {
+        long nextScan = System.currentTimeMillis() + SCAN_MILLIS;
+        while (true) {
+            try {
+                Reference<? extends LogConnection> r =
+                    queue.remove(SCAN_MILLIS);
+                while (r != null) {
+                    collected((Tracker) r);
+                    r = queue.poll();
+                }
+            }
+            catch (InterruptedException e) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            if (now >= nextScan) {
+                nextScan = now + SCAN_MILLIS;
+                scan();
+            }
+        }
+    }
+
+    private static void collected(Tracker t) {
+        // a connection that was closed has already left the set
+        if (live.remove(t)) {
+            AsyncLog.warn(log,
+                t.describe("was garbage collected without being closed"));
+        }
+    }
+
+    private static void scan() {
+        for (Tracker t : live) {
+            if (!t.reported && t.threshold >= 0
+                && t.ageMillis() > t.threshold) {
+                t.reported = true;
+                AsyncLog.warn(log, t.describe("has been open longer than "
+                                              + t.threshold + " ms"));
+            }
+        }
+    }
+
+    /**
+     * Tracker is what is known about a connection that is still open.  It
+     * must not refer to the connection, or the connection could never be
+     * collected.
+     */
+    static final class Tracker extends PhantomReference<LogConnection> {
+        private final long id;
+        private final long openedAt;
+        private final long openedNanos;
+        private final long threshold;
+        private final String threadName;
+        private final StackTraceElement[] stack;
+        private volatile boolean reported;
+
+        Tracker(LogConnection c, long thresholdMillis,
+                StackTraceElement[] s) {
+            super(c, queue);
+            id = c.getId();
+            openedAt = System.currentTimeMillis();
+            openedNanos = System.nanoTime();
+            threshold = thresholdMillis;
+            threadName = Thread.currentThread().getName();
+            stack = s;
+        }
+
+        long ageMillis() {
+            return (System.nanoTime() - openedNanos) / 1000000L;
+        }
+
+        String describe(String what) {
+            StringBuilder buf = new StringBuilder();
+            buf.append("Connection #").append(id).append(' ').append(what)
+               .append("; opened ").append(ageMillis())
+               .append(" ms ago at ").append(new Date(openedAt))
+               .append(" by thread ").append(threadName);
+            if (stack == null) {
+                buf.append(" (no stack sampled)");
+            }
+            else {
+                for (StackTraceElement e : stack) {
+                    buf.append("\n    at ").append(e);
+                }
+            }
+            return buf.toString();
+        }
+    }
+}
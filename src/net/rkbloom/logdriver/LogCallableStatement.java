@@ -14,6 +14,20 @@
  */
 package net.rkbloom.logdriver;
 
+import net.rkbloom.logdriver.async.AsyncLog;
+import net.rkbloom.logdriver.config.DriverConfig;
+import net.rkbloom.logdriver.config.DriverConfig.RenderMode;
+import net.rkbloom.logdriver.event.BatchEvent;
+import net.rkbloom.logdriver.event.StatementEvent;
+import net.rkbloom.logdriver.event.StatementEvent.Operation;
+import net.rkbloom.logdriver.event.StatementEvent.Type;
+import net.rkbloom.logdriver.util.BatchBuffer;
+import net.rkbloom.logdriver.util.BindParams;
+import net.rkbloom.logdriver.util.CountingInputStream;
+import net.rkbloom.logdriver.util.CountingReader;
+import net.rkbloom.logdriver.util.SqlTemplate;
+import net.rkbloom.logdriver.util.SqlTemplateCache;
+import net.rkbloom.logdriver.util.StreamStats;
 import net.rkbloom.logdriver.util.TypeConverter;
 
 import org.apache.log4j.Logger;
@@ -23,368 +37,761 @@ import java.io.Reader;
 import java.math.BigDecimal;
 import java.net.URL;
 import java.sql.Array;
+import java.sql.BatchUpdateException;
 import java.sql.Blob;
 import java.sql.CallableStatement;
 import java.sql.Clob;
 import java.sql.Connection;
 import java.sql.Date;
 import java.sql.NClob;
-import java.sql.ParameterMetaData;
 import java.sql.Ref;
 import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
-import java.sql.RowId;
 import java.sql.SQLException;
-import java.sql.SQLWarning;
-import java.sql.SQLXML;
+import java.sql.SQLType;
 import java.sql.Time;
 import java.sql.Timestamp;
+import java.sql.Types;
 import java.util.Calendar;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.TreeMap;
 
-
 /**
  * LogCallableStatement
  * @version $Rev$
  */
-public class LogCallableStatement implements CallableStatement {
+public class LogCallableStatement extends CallableStatementWrapper {
 
-    private CallableStatement embedded;
     private Connection conn;
     private String sql;
-    private Map<Object, Object> bindParams;
+    private SqlTemplate template;
+    private BindParams bindParams;
+    private boolean capture;
+    // whether the next execution of the prepared SQL is logged, see sample()
+    private boolean sampled;
+    private String fingerprint;
+    // an execution that sampling left out, logged after all if it fails
+    private Operation unsampled;
+    private BatchBuffer batch;
+    private Map<Object, StreamStats> streams;
+    private ExecutionTimer timer;
+    // the result set of the last query, until it is reported
+    private LogResultSet results;
+    // the SQL of the last execute(String), for getResultSet()
+    private String lastSql;
     private Map<Object, Object> outParams;
     private static Logger log = Logger.getLogger(LogCallableStatement.class);
     
     public LogCallableStatement(CallableStatement cs, Connection c, String s) {
-        embedded = cs;
+        super(cs);
         conn = c;
         sql = s;
-        // we want to have the bind parameters print out in order
-        // otherwise it is difficult to match the parameters with
-        // the question marks (?) in the query.
-        bindParams = new TreeMap<Object, Object>();
-        outParams = new TreeMap<Object, Object>();
+        sampled = sample();
+        // If nobody is going to see this statement we don't parse the SQL
+        // or record the parameters at all.  See checkCapture().
+        checkCapture();
+        if (ExecutionTimer.isCapturing(conn)) {
+            timer().prepared();
+        }
+    }
+
+    private void startCapture() {
+        if (bindParams == null) {
+            // we want to have the bind parameters print out in order
+            // otherwise it is difficult to match the parameters with
+            // the question marks (?) in the query.  Indexed parameters are
+            // kept in typed slots so that setting them doesn't box the values.
+            template = SqlTemplateCache.get(sql);
+            bindParams = new BindParams(template.getParameterCount());
+            outParams = new TreeMap<Object, Object>();
+        }
+        capture = true;
+    }
+
+    /**
+     * Switches parameter capture on or off if the log level, the sampler,
+     * the slow-query log or the capture file has changed since the last
+     * execution.
+     * Parameters set while capture was off are missing from the first
+     * record after it is switched on.
+     * @return true if the execution of the prepared SQL should be logged.
+     */
+    private boolean checkCapture() {
+        boolean logged = sampled && AsyncLog.isDebugEnabled(log);
+        boolean enabled = logged
+            || LogConnection.configOf(conn).isBindCaptureNeeded();
+        if (enabled != capture) {
+            if (enabled) {
+                startCapture();
+            }
+            else {
+                capture = false;
+                batch = null;
+                streams = null;
+                bindParams.clear();
+                outParams.clear();
+            }
+        }
+        return logged;
     }
     
     // This looks useless, but it isn't.  I have centralized the logging in
     // this class so that I can easily replace all of the '?'s with the actual
     // values.
-    private void logStatement() {
-        logStatement(sql);
+    private void logStatement(Operation op) {
+        boolean logged = checkCapture();
+        unsampled = (!logged && AsyncLog.isDebugEnabled(log) ? op : null);
+        if (logged) {
+            logStatement(op, template);
+        }
     }
 
-    private void logStatement(String sql) {
-        String replaceBind = System.getProperty("replace.bindParams", "0");
-        
-        if (replaceBind.equals("1") || replaceBind.equals("true")) {
-            String logStr = sql;
-            int i = 1;
-            while (logStr.indexOf('?') >= 0) {
-                logStr = logStr.replaceFirst("\\?", 
-                                    bindParams.get(new Integer(i++)).toString());
+    private void logStatement(Operation op, String sql) {
+        checkCapture();
+        unsampled = null;
+        if (AsyncLog.isDebugEnabled(log)) {
+            if (LogSampler.isSampled(LogConnection.configOf(conn), sql)) {
+                logStatement(op, SqlTemplateCache.get(sql));
+            }
+            else {
+                unsampled = op;
             }
-            log.debug("executing CallableStatement: " + logStr);
+        }
+    }
+
+    private void logStatement(Operation op, SqlTemplate tmpl) {
+        // an execution that was sampled out may have no parameters
+        BindParams binds = (capture ? bindParams.copy() : null);
+        if (LogConnection.configOf(conn).getRenderMode() == RenderMode.INLINE) {
+            AsyncLog.debug(log, new StatementEvent(Type.CALLABLE, op, tmpl,
+                                                   binds, null, true));
             return;
         }
-        
-        log.debug("executing CallableStatement: '" + sql + "' with bind " +
-                  "parameters: " + bindParams + " out parameters: " + outParams);    
+        AsyncLog.debug(log, new StatementEvent(Type.CALLABLE, op, tmpl, binds,
+                (capture ? new TreeMap<Object, Object>(outParams) : null),
+                false));
     }
     
-    /**
-     * {@inheritDoc}
-     */
-    public void addBatch() throws SQLException {
-        logStatement();
-        embedded.addBatch();
+    // One record for the whole batch.  The event takes the rows with it,
+    // the next batch starts a new buffer.
+    private void logBatch(long elapsed, int[] counts) {
+        BatchBuffer rows = (batch != null ? batch : new BatchBuffer(0, 0));
+        batch = null;
+        AsyncLog.debug(log, new BatchEvent(Type.CALLABLE, sql, rows, elapsed,
+                                           counts));
+    }
+
+    // Stream parameters are logged as the statistics of their transfer,
+    // never as the stream itself.
+    private InputStream tee(int i, InputStream x, String label, int mode,
+                            long length) {
+        if (!capture || x == null) {
+            return x;
+        }
+        StreamStats st = newStats(label, mode, length);
+        bindParams.setObject(i, st);
+        streamBound(Integer.valueOf(i), st);
+        return new CountingInputStream(x, st);
     }
 
-    /**
-     * {@inheritDoc}
-     */
-    public void addBatch(String sql) throws SQLException {
-        logStatement(sql);
-        embedded.addBatch(sql);
+    private Reader tee(int i, Reader x, String label, long length) {
+        if (!capture || x == null) {
+            return x;
+        }
+        StreamStats st = newStats(label, StreamStats.CHARACTER, length);
+        bindParams.setObject(i, st);
+        streamBound(Integer.valueOf(i), st);
+        return new CountingReader(x, st);
     }
 
-    /**
-     * {@inheritDoc}
-     */
-    public void cancel() throws SQLException {
-        embedded.cancel();
+    private InputStream tee(String name, InputStream x, String label,
+                            int mode, long length) {
+        if (!capture || x == null) {
+            return x;
+        }
+        StreamStats st = newStats(label, mode, length);
+        bindParams.setObject(name, st);
+        streamBound(name, st);
+        return new CountingInputStream(x, st);
     }
 
-    /**
-     * {@inheritDoc}
-     */
-    public void clearBatch() throws SQLException {
-        embedded.clearBatch();
+    private Reader tee(String name, Reader x, String label, long length) {
+        if (!capture || x == null) {
+            return x;
+        }
+        StreamStats st = newStats(label, StreamStats.CHARACTER, length);
+        bindParams.setObject(name, st);
+        streamBound(name, st);
+        return new CountingReader(x, st);
     }
 
-    /**
-     * {@inheritDoc}
-     */
-    public void clearParameters() throws SQLException {
-        embedded.clearParameters();
-        bindParams.clear();
+    private void stopTimer(long start, String executed, Object result) {
+        if (start != ExecutionTimer.NOT_TIMED) {
+            // bind parameters only belong to the prepared SQL
+            timer().stop(start, executed,
+                         (executed == null ? bindParams : null), result);
+        }
+        finishExecution(executed, result == ExecutionTimer.FAILED_RESULT);
     }
 
-    /**
-     * {@inheritDoc}
-     */
-    public void clearWarnings() throws SQLException {
-        embedded.clearWarnings();
+    private void stopTimer(long start, String executed, int count) {
+        if (start != ExecutionTimer.NOT_TIMED) {
+            timer().stop(start, executed,
+                         (executed == null ? bindParams : null),
+                         (count == ExecutionTimer.FAILED)
+                         ? ExecutionTimer.FAILED_RESULT
+                         : Integer.valueOf(count));
+        }
+        finishExecution(executed, count == ExecutionTimer.FAILED);
+    }
+
+    // An execution that sampling left out is logged after all if it
+    // failed.  Then the next execution of the prepared SQL is sampled,
+    // before any of its parameters are set, so that they are only
+    // captured if it is going to be logged.
+    private void finishExecution(String executed, boolean failed) {
+        if (unsampled != null) {
+            if (failed) {
+                logStatement(unsampled, SqlTemplateCache.get(
+                        executed != null ? executed : sql));
+            }
+            unsampled = null;
+        }
+        if (executed == null) {
+            boolean next = sample();
+            if (next != sampled) {
+                sampled = next;
+                checkCapture();
+            }
+        }
     }
 
+    // Whether the next execution of the prepared SQL is logged, as far as
+    // sampling goes.
+    private boolean sample() {
+        DriverConfig cfg = LogConnection.configOf(conn);
+        if (!cfg.isSamplingEnabled() || !AsyncLog.isDebugEnabled(log)) {
+            return true;
+        }
+        String fp = null;
+        if (LogSampler.isPerStatement(cfg)) {
+            if (fingerprint == null) {
+                // shared by every statement that prepares the same SQL
+                fingerprint = SqlTemplateCache.get(sql).getFingerprint();
+            }
+            fp = fingerprint;
+        }
+        return LogSampler.get(cfg, fp).sample(cfg);
+    }
 
-    /**
-     * {@inheritDoc}
-     */
-    public void close() throws SQLException {
-        embedded.close();
+    private ExecutionTimer timer() {
+        if (timer == null) {
+            timer = new ExecutionTimer(conn, Type.CALLABLE, sql);
+        }
+        return timer;
     }
 
+    // Wraps a result set so that its rows are counted, unless nothing
+    // wants them counted.  A result set the application never closed is
+    // reported now, since the driver has closed it.
+    private ResultSet wrap(ResultSet rs, String executed) {
+        if (results != null && rs != null && results.wraps(rs)) {
+            return results;
+        }
+        finishResults();
+        if (rs == null || !LogResultSet.isWanted(conn)) {
+            return rs;
+        }
+        results = new LogResultSet(rs, this, timer(), executed);
+        return results;
+    }
 
-    /**
-     * {@inheritDoc}
-     */
-    public boolean execute() throws SQLException {
-        logStatement();
-        return embedded.execute();
+    private void finishResults() {
+        if (results != null) {
+            results.finish();
+            results = null;
+        }
     }
 
+    private void streamBound(Object key, StreamStats st) {
+        if (streams == null) {
+            streams = new LinkedHashMap<Object, StreamStats>();
+        }
+        streams.put(key, st);
+    }
 
-    /**
-     * {@inheritDoc}
-     */
-    public boolean execute(String sql, int autoGeneratedKeys) throws SQLException {
-        logStatement(sql);
-        return embedded.execute(sql, autoGeneratedKeys);
+    // Most drivers only read stream parameters while executing, so the
+    // statement record shows them unread.  This one follows the
+    // execution with what was actually transferred.
+    private void logStreams() {
+        if (streams != null && !streams.isEmpty()) {
+            if (AsyncLog.isDebugEnabled(log)) {
+                AsyncLog.debug(log, "transferred stream parameters: "
+                               + streams);
+            }
+            streams.clear();
+        }
     }
 
+    private StreamStats newStats(String label, int mode, long length) {
+        return new StreamStats(label, mode, length,
+                LogConnection.configOf(conn).getStreamPrefix());
+    }
 
     /**
      * {@inheritDoc}
      */
-    public boolean execute(String sql, int[] columnIndexes) throws SQLException {
-        logStatement(sql);
-        return embedded.execute(sql, columnIndexes);
+    public void addBatch() throws SQLException {
+        embedded.addBatch();
+        // the capture file may have been switched on since the last
+        // execution, and it needs the parameters of every row
+        boolean logged = checkCapture();
+        if (ExecutionTimer.isCapturing(conn)) {
+            timer().batchAdded(bindParams);
+        }
+        if (logged) {
+            if (batch == null) {
+                batch = new BatchBuffer(template.getParameterCount(),
+                        LogConnection.configOf(conn).getBatchMaxRows());
+            }
+            batch.addRow(bindParams);
+            if (streams != null) {
+                // the row owns its streams now, they show up in its sample
+                streams.clear();
+            }
+        }
     }
 
     /**
      * {@inheritDoc}
      */
-    public boolean execute(String sql, String[] columnNames) throws SQLException {
-        logStatement(sql);
-        return embedded.execute(sql, columnNames);
+    public void addBatch(String sql) throws SQLException {
+        logStatement(Operation.ADD_BATCH, sql);
+        embedded.addBatch(sql);
+        if (ExecutionTimer.isCapturing(conn)) {
+            timer().batchAdded(sql);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
-    public boolean execute(String sql) throws SQLException {
-        logStatement(sql);
-        return embedded.execute(sql);
+    public void clearBatch() throws SQLException {
+        embedded.clearBatch();
+        if (batch != null) {
+            batch.clear();
+        }
+        if (timer != null) {
+            timer.batchCleared();
+        }
     }
 
     /**
      * {@inheritDoc}
      */
-    public int[] executeBatch() throws SQLException {
-        logStatement();
-        return embedded.executeBatch();
+    public void clearParameters() throws SQLException {
+        embedded.clearParameters();
+        if (bindParams != null) {
+            bindParams.clear();
+        }
+        if (streams != null) {
+            streams.clear();
+        }
     }
 
     /**
      * {@inheritDoc}
      */
-    public ResultSet executeQuery() throws SQLException {
-        logStatement();
-        return embedded.executeQuery();
+    public void close() throws SQLException {
+        finishResults();
+        embedded.close();
+        if (timer != null) {
+            timer.closed();
+        }
     }
 
     /**
      * {@inheritDoc}
      */
-    public ResultSet executeQuery(String sql) throws SQLException {
-        logStatement(sql);
-        return embedded.executeQuery(sql);
+    public boolean execute() throws SQLException {
+        lastSql = null;
+        logStatement(Operation.EXECUTE);
+        long start = ExecutionTimer.start(conn);
+        Object result = ExecutionTimer.FAILED_RESULT;
+        try {
+            boolean b = embedded.execute();
+            result = Boolean.valueOf(b);
+            return b;
+        }
+        finally {
+            logStreams();
+            stopTimer(start, null, result);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
-    public int executeUpdate() throws SQLException {
-        logStatement();
-        return embedded.executeUpdate();
+    public boolean execute(String sql, int autoGeneratedKeys) throws SQLException {
+        lastSql = sql;
+        logStatement(Operation.EXECUTE, sql);
+        long start = ExecutionTimer.start(conn);
+        Object result = ExecutionTimer.FAILED_RESULT;
+        try {
+            boolean b = embedded.execute(sql, autoGeneratedKeys);
+            result = Boolean.valueOf(b);
+            return b;
+        }
+        finally {
+            stopTimer(start, sql, result);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
-    public int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
-        logStatement(sql);
-        return embedded.executeUpdate(sql, autoGeneratedKeys);
+    public boolean execute(String sql, int[] columnIndexes) throws SQLException {
+        lastSql = sql;
+        logStatement(Operation.EXECUTE, sql);
+        long start = ExecutionTimer.start(conn);
+        Object result = ExecutionTimer.FAILED_RESULT;
+        try {
+            boolean b = embedded.execute(sql, columnIndexes);
+            result = Boolean.valueOf(b);
+            return b;
+        }
+        finally {
+            stopTimer(start, sql, result);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
-    public int executeUpdate(String sql, int[] columnIndexes) throws SQLException {
-        logStatement(sql);
-        return embedded.executeUpdate(sql, columnIndexes);
+    public boolean execute(String sql, String[] columnNames) throws SQLException {
+        lastSql = sql;
+        logStatement(Operation.EXECUTE, sql);
+        long start = ExecutionTimer.start(conn);
+        Object result = ExecutionTimer.FAILED_RESULT;
+        try {
+            boolean b = embedded.execute(sql, columnNames);
+            result = Boolean.valueOf(b);
+            return b;
+        }
+        finally {
+            stopTimer(start, sql, result);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
-    public int executeUpdate(String sql, String[] columnNames) throws SQLException {
-        logStatement(sql);
-        return embedded.executeUpdate(sql, columnNames);
+    public boolean execute(String sql) throws SQLException {
+        lastSql = sql;
+        logStatement(Operation.EXECUTE, sql);
+        long start = ExecutionTimer.start(conn);
+        Object result = ExecutionTimer.FAILED_RESULT;
+        try {
+            boolean b = embedded.execute(sql);
+            result = Boolean.valueOf(b);
+            return b;
+        }
+        finally {
+            stopTimer(start, sql, result);
+        }
     }
 
-
     /**
      * {@inheritDoc}
      */
-    public int executeUpdate(String sql) throws SQLException {
-        logStatement(sql);
-        return embedded.executeUpdate(sql);
+    public int[] executeBatch() throws SQLException {
+        return (int[]) runBatch(false);
     }
 
-
     /**
      * {@inheritDoc}
      */
-    public Connection getConnection() throws SQLException {
-        return conn;
+    public long[] executeLargeBatch() throws SQLException {
+        return (long[]) runBatch(true);
+    }
+
+    private Object embeddedBatch(boolean large) throws SQLException {
+        if (large) {
+            return embedded.executeLargeBatch();
+        }
+        return embedded.executeBatch();
     }
 
+    // Runs either kind of batch.  Large counts are logged and timed as
+    // ints, the way executeBatch's are.
+    private Object runBatch(boolean large) throws SQLException {
+        boolean logged = checkCapture();
+        // a batch that was sampled out is still logged if it fails
+        boolean unlogged = !logged && AsyncLog.isDebugEnabled(log);
+        unsampled = null;
+        long start = ExecutionTimer.start(conn);
+        if (!logged && !unlogged && start == ExecutionTimer.NOT_TIMED) {
+            return embeddedBatch(large);
+        }
+        long began = (start != ExecutionTimer.NOT_TIMED)
+            ? start : System.nanoTime();
+        int[] counts = null;
+        Object result = ExecutionTimer.FAILED_RESULT;
+        try {
+            Object r = embeddedBatch(large);
+            counts = (large ? ExecutionTimer.updateCounts((long[]) r)
+                      : (int[]) r);
+            result = counts;
+            return r;
+        }
+        catch (BatchUpdateException e) {
+            counts = e.getUpdateCounts();
+            throw e;
+        }
+        finally {
+            if (logged
+                || (unlogged && result == ExecutionTimer.FAILED_RESULT)) {
+                logBatch(System.nanoTime() - began, counts);
+            }
+            stopTimer(start, null, result);
+        }
+    }
 
     /**
      * {@inheritDoc}
      */
-    public int getFetchDirection() throws SQLException {
-        return embedded.getFetchDirection();
+    public ResultSet executeQuery() throws SQLException {
+        logStatement(Operation.QUERY);
+        long start = ExecutionTimer.start(conn);
+        Object result = ExecutionTimer.FAILED_RESULT;
+        try {
+            ResultSet rs = wrap(embedded.executeQuery(), null);
+            result = rs;
+            return rs;
+        }
+        finally {
+            logStreams();
+            stopTimer(start, null, result);
+        }
     }
 
-
     /**
      * {@inheritDoc}
      */
-    public int getFetchSize() throws SQLException {
-        return embedded.getFetchSize();
+    public ResultSet executeQuery(String sql) throws SQLException {
+        logStatement(Operation.QUERY, sql);
+        long start = ExecutionTimer.start(conn);
+        Object result = ExecutionTimer.FAILED_RESULT;
+        try {
+            ResultSet rs = wrap(embedded.executeQuery(sql), sql);
+            result = rs;
+            return rs;
+        }
+        finally {
+            stopTimer(start, sql, result);
+        }
     }
 
-
     /**
      * {@inheritDoc}
      */
-    public ResultSet getGeneratedKeys() throws SQLException {
-        return embedded.getGeneratedKeys();
+    public int executeUpdate() throws SQLException {
+        logStatement(Operation.UPDATE);
+        long start = ExecutionTimer.start(conn);
+        int count = ExecutionTimer.FAILED;
+        try {
+            count = embedded.executeUpdate();
+            return count;
+        }
+        finally {
+            logStreams();
+            stopTimer(start, null, count);
+        }
     }
 
-
     /**
      * {@inheritDoc}
      */
-    public int getMaxFieldSize() throws SQLException {
-
-        return embedded.getMaxFieldSize();
+    public long executeLargeUpdate() throws SQLException {
+        logStatement(Operation.UPDATE);
+        long start = ExecutionTimer.start(conn);
+        Object result = ExecutionTimer.FAILED_RESULT;
+        try {
+            long count = embedded.executeLargeUpdate();
+            result = ExecutionTimer.updateCount(count);
+            return count;
+        }
+        finally {
+            logStreams();
+            stopTimer(start, null, result);
+        }
     }
 
-
     /**
      * {@inheritDoc}
      */
-    public int getMaxRows() throws SQLException {
-        return embedded.getMaxRows();
+    public int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+        logStatement(Operation.UPDATE, sql);
+        long start = ExecutionTimer.start(conn);
+        int count = ExecutionTimer.FAILED;
+        try {
+            count = embedded.executeUpdate(sql, autoGeneratedKeys);
+            return count;
+        }
+        finally {
+            stopTimer(start, sql, count);
+        }
     }
 
-
     /**
      * {@inheritDoc}
      */
-    public ResultSetMetaData getMetaData() throws SQLException {
-        return embedded.getMetaData();
+    public long executeLargeUpdate(String sql, int autoGeneratedKeys)
+        throws SQLException {
+        logStatement(Operation.UPDATE, sql);
+        long start = ExecutionTimer.start(conn);
+        Object result = ExecutionTimer.FAILED_RESULT;
+        try {
+            long count = embedded.executeLargeUpdate(sql, autoGeneratedKeys);
+            result = ExecutionTimer.updateCount(count);
+            return count;
+        }
+        finally {
+            stopTimer(start, sql, result);
+        }
     }
 
-
     /**
      * {@inheritDoc}
      */
-    public boolean getMoreResults() throws SQLException {
-        return embedded.getMoreResults();
+    public int executeUpdate(String sql, int[] columnIndexes) throws SQLException {
+        logStatement(Operation.UPDATE, sql);
+        long start = ExecutionTimer.start(conn);
+        int count = ExecutionTimer.FAILED;
+        try {
+            count = embedded.executeUpdate(sql, columnIndexes);
+            return count;
+        }
+        finally {
+            stopTimer(start, sql, count);
+        }
     }
 
-
     /**
      * {@inheritDoc}
      */
-    public boolean getMoreResults(int current) throws SQLException {
-        return embedded.getMoreResults(current);
+    public long executeLargeUpdate(String sql, int[] columnIndexes)
+        throws SQLException {
+        logStatement(Operation.UPDATE, sql);
+        long start = ExecutionTimer.start(conn);
+        Object result = ExecutionTimer.FAILED_RESULT;
+        try {
+            long count = embedded.executeLargeUpdate(sql, columnIndexes);
+            result = ExecutionTimer.updateCount(count);
+            return count;
+        }
+        finally {
+            stopTimer(start, sql, result);
+        }
     }
 
-
     /**
      * {@inheritDoc}
      */
-    public ParameterMetaData getParameterMetaData() throws SQLException {
-        return embedded.getParameterMetaData();
+    public int executeUpdate(String sql, String[] columnNames) throws SQLException {
+        logStatement(Operation.UPDATE, sql);
+        long start = ExecutionTimer.start(conn);
+        int count = ExecutionTimer.FAILED;
+        try {
+            count = embedded.executeUpdate(sql, columnNames);
+            return count;
+        }
+        finally {
+            stopTimer(start, sql, count);
+        }
     }
 
-
     /**
      * {@inheritDoc}
      */
-    public int getQueryTimeout() throws SQLException {
-        return embedded.getQueryTimeout();
+    public long executeLargeUpdate(String sql, String[] columnNames)
+        throws SQLException {
+        logStatement(Operation.UPDATE, sql);
+        long start = ExecutionTimer.start(conn);
+        Object result = ExecutionTimer.FAILED_RESULT;
+        try {
+            long count = embedded.executeLargeUpdate(sql, columnNames);
+            result = ExecutionTimer.updateCount(count);
+            return count;
+        }
+        finally {
+            stopTimer(start, sql, result);
+        }
     }
 
-
     /**
      * {@inheritDoc}
      */
-    public ResultSet getResultSet() throws SQLException {
-        return embedded.getResultSet();
+    public int executeUpdate(String sql) throws SQLException {
+        logStatement(Operation.UPDATE, sql);
+        long start = ExecutionTimer.start(conn);
+        int count = ExecutionTimer.FAILED;
+        try {
+            count = embedded.executeUpdate(sql);
+            return count;
+        }
+        finally {
+            stopTimer(start, sql, count);
+        }
     }
 
-
     /**
      * {@inheritDoc}
      */
-    public int getResultSetConcurrency() throws SQLException {
-        return embedded.getResultSetConcurrency();
+    public long executeLargeUpdate(String sql) throws SQLException {
+        logStatement(Operation.UPDATE, sql);
+        long start = ExecutionTimer.start(conn);
+        Object result = ExecutionTimer.FAILED_RESULT;
+        try {
+            long count = embedded.executeLargeUpdate(sql);
+            result = ExecutionTimer.updateCount(count);
+            return count;
+        }
+        finally {
+            stopTimer(start, sql, result);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
-    public int getResultSetHoldability() throws SQLException {
-        return embedded.getResultSetHoldability();
+    public Connection getConnection() throws SQLException {
+        return conn;
     }
 
     /**
      * {@inheritDoc}
      */
-    public int getResultSetType() throws SQLException {
-        return embedded.getResultSetType();
+    public boolean getMoreResults() throws SQLException {
+        finishResults();
+        return embedded.getMoreResults();
     }
 
     /**
      * {@inheritDoc}
      */
-    public int getUpdateCount() throws SQLException {
-        return embedded.getUpdateCount();
+    public boolean getMoreResults(int current) throws SQLException {
+        if (current != KEEP_CURRENT_RESULT) {
+            finishResults();
+        }
+        return embedded.getMoreResults(current);
     }
 
     /**
      * {@inheritDoc}
      */
-    public SQLWarning getWarnings() throws SQLException {
-        return embedded.getWarnings();
+    public ResultSet getResultSet() throws SQLException {
+        return wrap(embedded.getResultSet(), lastSql);
     }
 
     /**
@@ -392,15 +799,17 @@ public class LogCallableStatement implements CallableStatement {
      */
     public void setArray(int i, Array x) throws SQLException {
         embedded.setArray(i, x);
-        bindParams.put(new Integer(i), x);
+        if (capture) {
+            bindParams.setObject(i, x);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
     public void setAsciiStream(int i, InputStream x, int length) throws SQLException {
-        embedded.setAsciiStream(i, x, length);
-        bindParams.put(new Integer(i), x);
+        embedded.setAsciiStream(i,
+                tee(i, x, "ascii stream", StreamStats.ASCII, length), length);
     }
 
     /**
@@ -408,15 +817,17 @@ public class LogCallableStatement implements CallableStatement {
      */
     public void setBigDecimal(int i, BigDecimal x) throws SQLException {
         embedded.setBigDecimal(i, x);
-        bindParams.put(new Integer(i), x);
+        if (capture) {
+            bindParams.setObject(i, x);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
     public void setBinaryStream(int i, InputStream x, int length) throws SQLException {
-        embedded.setBinaryStream(i, x, length);
-        bindParams.put(new Integer(i), x);
+        embedded.setBinaryStream(i,
+                tee(i, x, "binary stream", StreamStats.BINARY, length), length);
     }
 
     /**
@@ -424,7 +835,9 @@ public class LogCallableStatement implements CallableStatement {
      */
     public void setBlob(int i, Blob x) throws SQLException {
         embedded.setBlob(i, x);
-        bindParams.put(new Integer(i), x);
+        if (capture) {
+            bindParams.setObject(i, x);
+        }
     }
 
     /**
@@ -432,7 +845,9 @@ public class LogCallableStatement implements CallableStatement {
      */
     public void setBoolean(int i, boolean x) throws SQLException {
         embedded.setBoolean(i, x);
-        bindParams.put(new Integer(i), new Boolean(x));
+        if (capture) {
+            bindParams.setBoolean(i, x);
+        }
     }
 
     /**
@@ -440,7 +855,9 @@ public class LogCallableStatement implements CallableStatement {
      */
     public void setByte(int i, byte x) throws SQLException {
         embedded.setByte(i, x);
-        bindParams.put(new Integer(i), new Byte(x));
+        if (capture) {
+            bindParams.setByte(i, x);
+        }
     }
 
     /**
@@ -448,15 +865,17 @@ public class LogCallableStatement implements CallableStatement {
      */
     public void setBytes(int i, byte[] x) throws SQLException {
         embedded.setBytes(i, x);
-        bindParams.put(new Integer(i), x);
+        if (capture) {
+            bindParams.setObject(i, x);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
     public void setCharacterStream(int i, Reader reader, int length) throws SQLException {
-        embedded.setCharacterStream(i, reader, length);
-        bindParams.put(new Integer(i), reader);
+        embedded.setCharacterStream(i,
+                tee(i, reader, "character stream", length), length);
     }
 
     /**
@@ -464,14 +883,9 @@ public class LogCallableStatement implements CallableStatement {
      */
     public void setClob(int i, Clob x) throws SQLException {
         embedded.setClob(i, x);
-        bindParams.put(new Integer(i), x);
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public void setCursorName(String name) throws SQLException {
-        embedded.setCursorName(name);
+        if (capture) {
+            bindParams.setObject(i, x);
+        }
     }
 
     /**
@@ -479,7 +893,9 @@ public class LogCallableStatement implements CallableStatement {
      */
     public void setDate(int i, Date x, Calendar cal) throws SQLException {
         embedded.setDate(i, x, cal);
-        bindParams.put(new Integer(i), x);
+        if (capture) {
+            bindParams.setObject(i, x);
+        }
     }
 
     /**
@@ -487,7 +903,9 @@ public class LogCallableStatement implements CallableStatement {
      */
     public void setDate(int i, Date x) throws SQLException {
         embedded.setDate(i, x);
-        bindParams.put(new Integer(i), x);
+        if (capture) {
+            bindParams.setObject(i, x);
+        }
     }
 
     /**
@@ -495,28 +913,9 @@ public class LogCallableStatement implements CallableStatement {
      */
     public void setDouble(int i, double x) throws SQLException {
         embedded.setDouble(i, x);
-        bindParams.put(new Integer(i), new Double(x));
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public void setEscapeProcessing(boolean enable) throws SQLException {
-        embedded.setEscapeProcessing(enable);
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public void setFetchDirection(int direction) throws SQLException {
-        embedded.setFetchDirection(direction);
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public void setFetchSize(int rows) throws SQLException {
-        embedded.setFetchSize(rows);
+        if (capture) {
+            bindParams.setDouble(i, x);
+        }
     }
 
     /**
@@ -524,7 +923,9 @@ public class LogCallableStatement implements CallableStatement {
      */
     public void setFloat(int i, float x) throws SQLException {
         embedded.setFloat(i, x);
-        bindParams.put(new Integer(i), new Float(x));
+        if (capture) {
+            bindParams.setFloat(i, x);
+        }
     }
 
     /**
@@ -532,7 +933,9 @@ public class LogCallableStatement implements CallableStatement {
      */
     public void setInt(int i, int x) throws SQLException {
         embedded.setInt(i, x);
-        bindParams.put(new Integer(i), new Integer(x));
+        if (capture) {
+            bindParams.setInt(i, x);
+        }
     }
 
     /**
@@ -540,28 +943,20 @@ public class LogCallableStatement implements CallableStatement {
      */
     public void setLong(int i, long x) throws SQLException {
         embedded.setLong(i, x);
-        bindParams.put(new Integer(i), new Long(x));
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public void setMaxFieldSize(int max) throws SQLException {
-        embedded.setMaxFieldSize(max);
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public void setMaxRows(int max) throws SQLException {
-        embedded.setMaxRows(max);
+        if (capture) {
+            bindParams.setLong(i, x);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
-    public void setNull(int paramIndex, int sqlType, String typeName) throws SQLException {
+    public void setNull(int paramIndex, int sqlType, String typeName)
+        throws SQLException {
         embedded.setNull(paramIndex, sqlType, typeName);
+        if (capture) {
+            bindParams.setNull(paramIndex);
+        }
     }
 
     /**
@@ -569,6 +964,9 @@ public class LogCallableStatement implements CallableStatement {
      */
     public void setNull(int i, int sqlType) throws SQLException {
         embedded.setNull(i, sqlType);
+        if (capture) {
+            bindParams.setNull(i);
+        }
     }
 
     /**
@@ -576,7 +974,9 @@ public class LogCallableStatement implements CallableStatement {
      */
     public void setObject(int i, Object x, int targetSqlType, int scale) throws SQLException {
         embedded.setObject(i, x, targetSqlType, scale);
-        bindParams.put(new Integer(i), x);
+        if (capture) {
+            bindParams.setObject(i, x);
+        }
     }
 
     /**
@@ -584,7 +984,9 @@ public class LogCallableStatement implements CallableStatement {
      */
     public void setObject(int i, Object x, int targetSqlType) throws SQLException {
         embedded.setObject(i, x, targetSqlType);
-        bindParams.put(new Integer(i), x);
+        if (capture) {
+            bindParams.setObject(i, x);
+        }
     }
 
     /**
@@ -592,14 +994,31 @@ public class LogCallableStatement implements CallableStatement {
      */
     public void setObject(int i, Object x) throws SQLException {
         embedded.setObject(i, x);
-        bindParams.put(new Integer(i), x);
+        if (capture) {
+            bindParams.setObject(i, x);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setObject(int i, Object x, SQLType targetSqlType)
+        throws SQLException {
+        embedded.setObject(i, x, targetSqlType);
+        if (capture) {
+            bindParams.setObject(i, x);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
-    public void setQueryTimeout(int seconds) throws SQLException {
-        embedded.setQueryTimeout(seconds);
+    public void setObject(int i, Object x, SQLType targetSqlType,
+            int scaleOrLength) throws SQLException {
+        embedded.setObject(i, x, targetSqlType, scaleOrLength);
+        if (capture) {
+            bindParams.setObject(i, x);
+        }
     }
 
     /**
@@ -607,7 +1026,9 @@ public class LogCallableStatement implements CallableStatement {
      */
     public void setRef(int i, Ref x) throws SQLException {
         embedded.setRef(i, x);
-        bindParams.put(new Integer(i), x);
+        if (capture) {
+            bindParams.setObject(i, x);
+        }
     }
 
     /**
@@ -615,7 +1036,9 @@ public class LogCallableStatement implements CallableStatement {
      */
     public void setShort(int i, short x) throws SQLException {
         embedded.setShort(i, x);
-        bindParams.put(new Integer(i), new Short(x));
+        if (capture) {
+            bindParams.setShort(i, x);
+        }
     }
 
     /**
@@ -623,7 +1046,9 @@ public class LogCallableStatement implements CallableStatement {
      */
     public void setString(int i, String x) throws SQLException {
         embedded.setString(i, x);
-        bindParams.put(new Integer(i), x);
+        if (capture) {
+            bindParams.setObject(i, x);
+        }
     }
 
     /**
@@ -631,7 +1056,9 @@ public class LogCallableStatement implements CallableStatement {
      */
     public void setTime(int i, Time x, Calendar cal) throws SQLException {
         embedded.setTime(i, x, cal);
-        bindParams.put(new Integer(i), x);
+        if (capture) {
+            bindParams.setObject(i, x);
+        }
     }
 
     /**
@@ -639,7 +1066,9 @@ public class LogCallableStatement implements CallableStatement {
      */
     public void setTime(int i, Time x) throws SQLException {
         embedded.setTime(i, x);
-        bindParams.put(new Integer(i), x);
+        if (capture) {
+            bindParams.setObject(i, x);
+        }
     }
 
     /**
@@ -647,7 +1076,9 @@ public class LogCallableStatement implements CallableStatement {
      */
     public void setTimestamp(int i, Timestamp x, Calendar cal) throws SQLException {
         embedded.setTimestamp(i, x, cal);
-        bindParams.put(new Integer(i), x);
+        if (capture) {
+            bindParams.setObject(i, x);
+        }
     }
 
     /**
@@ -655,16 +1086,19 @@ public class LogCallableStatement implements CallableStatement {
      */
     public void setTimestamp(int i, Timestamp x) throws SQLException {
         embedded.setTimestamp(i, x);
-        bindParams.put(new Integer(i), x);
+        if (capture) {
+            bindParams.setObject(i, x);
+        }
     }
 
     /**
      * {@inheritDoc}
      * @deprecated
      */
+    @Deprecated
     public void setUnicodeStream(int i, InputStream x, int length) throws SQLException {
-        embedded.setUnicodeStream(i, x, length);
-        bindParams.put(new Integer(i), x);
+        embedded.setUnicodeStream(i,
+                tee(i, x, "unicode stream", StreamStats.BINARY, length), length);
     }
 
     /**
@@ -672,7 +1106,9 @@ public class LogCallableStatement implements CallableStatement {
      */
     public void setURL(int i, URL x) throws SQLException {
         embedded.setURL(i, x);
-        bindParams.put(new Integer(i), x);
+        if (capture) {
+            bindParams.setObject(i, x);
+        }
     }
 
     // Prepared Statement methods
@@ -683,227 +1119,155 @@ public class LogCallableStatement implements CallableStatement {
         throws SQLException {
         embedded.registerOutParameter(i, sqlType);
 
-        outParams.put(new Integer(i),
-                new OutParamMetadata(sqlType));
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public void registerOutParameter(int i, int sqlType,
-            int scale) throws SQLException {
-        embedded.registerOutParameter(i, sqlType, scale);
-        outParams.put(new Integer(i),
-                new OutParamMetadata(sqlType, scale));
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public boolean wasNull() throws SQLException {
-        return embedded.wasNull();
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public String getString(int i) throws SQLException {
-        return embedded.getString(i);
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public boolean getBoolean(int i) throws SQLException {
-        return embedded.getBoolean(i);
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public byte getByte(int i) throws SQLException {
-        return embedded.getByte(i);
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public short getShort(int i) throws SQLException {
-        return embedded.getShort(i);
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public int getInt(int i) throws SQLException {
-        return embedded.getInt(i);
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public long getLong(int i) throws SQLException {
-        return embedded.getLong(i);
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public float getFloat(int i) throws SQLException {
-        return embedded.getFloat(i);
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public double getDouble(int i) throws SQLException {
-        return embedded.getDouble(i);
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public BigDecimal getBigDecimal(int i, int scale)
-        throws SQLException {
-        return embedded.getBigDecimal(i);
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public byte[] getBytes(int i) throws SQLException {
-        return embedded.getBytes(i);
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public Date getDate(int i) throws SQLException {
-        return embedded.getDate(i);
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public Time getTime(int i) throws SQLException {
-        return embedded.getTime(i);
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public Timestamp getTimestamp(int i) throws SQLException {
-        return embedded.getTimestamp(i);
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public Object getObject(int i) throws SQLException {
-        return embedded.getObject(i);
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public BigDecimal getBigDecimal(int i) throws SQLException {
-        return embedded.getBigDecimal(i);
+        if (capture) {
+            outParams.put(Integer.valueOf(i),
+                    new OutParamMetadata(sqlType));
+        }
     }
 
     /**
      * {@inheritDoc}
      */
-    public Ref getRef(int i) throws SQLException {
-        return embedded.getRef(i);
+    public void registerOutParameter(int i, int sqlType,
+            int scale) throws SQLException {
+        embedded.registerOutParameter(i, sqlType, scale);
+        if (capture) {
+            outParams.put(Integer.valueOf(i),
+                    new OutParamMetadata(sqlType, scale));
+        }
     }
 
     /**
      * {@inheritDoc}
      */
-    public Blob getBlob(int i) throws SQLException {
-        return embedded.getBlob(i);
+    public void registerOutParameter(int paramIndex, int sqlType,
+            String typeName) throws SQLException {
+        embedded.registerOutParameter(paramIndex, sqlType, typeName);
+        if (capture) {
+            outParams.put(Integer.valueOf(paramIndex),
+                    new OutParamMetadata(sqlType, typeName));
+        }
     }
 
     /**
      * {@inheritDoc}
      */
-    public Clob getClob(int i) throws SQLException {
-        return embedded.getClob(i);
+    public void registerOutParameter(String name, int sqlType)
+        throws SQLException {
+        embedded.registerOutParameter(name, sqlType);
+        if (capture) {
+            outParams.put(name, new OutParamMetadata(sqlType));
+        }
     }
 
     /**
      * {@inheritDoc}
      */
-    public Array getArray(int i) throws SQLException {
-        return embedded.getArray(i);
+    public void registerOutParameter(String name, int sqlType,
+            int scale) throws SQLException {
+        embedded.registerOutParameter(name, sqlType, scale);
+        if (capture) {
+            outParams.put(name, new OutParamMetadata(sqlType, scale));
+        }
     }
 
     /**
      * {@inheritDoc}
      */
-    public Date getDate(int i, Calendar cal)
-        throws SQLException {
-        return embedded.getDate(i, cal);
+    public void registerOutParameter(String name, int sqlType,
+            String typeName) throws SQLException {
+        embedded.registerOutParameter(name, sqlType, typeName);
+        if (capture) {
+            outParams.put(name, new OutParamMetadata(sqlType, typeName));
+        }
     }
 
     /**
      * {@inheritDoc}
      */
-    public Time getTime(int i, Calendar cal)
+    public void registerOutParameter(int i, SQLType sqlType)
         throws SQLException {
-        return embedded.getTime(i, cal);
+        embedded.registerOutParameter(i, sqlType);
+        if (capture) {
+            outParams.put(Integer.valueOf(i),
+                    outParam(sqlType, OutParamMetadata.NO_SCALE,
+                             OutParamMetadata.NONE));
+        }
     }
 
     /**
      * {@inheritDoc}
      */
-    public Timestamp getTimestamp(int i, Calendar cal)
-        throws SQLException {
-        return embedded.getTimestamp(i, cal);
+    public void registerOutParameter(int i, SQLType sqlType,
+            int scale) throws SQLException {
+        embedded.registerOutParameter(i, sqlType, scale);
+        if (capture) {
+            outParams.put(Integer.valueOf(i),
+                    outParam(sqlType, scale,
+                             OutParamMetadata.NONE));
+        }
     }
 
     /**
      * {@inheritDoc}
      */
-    public void registerOutParameter(int paramIndex, int sqlType,
+    public void registerOutParameter(int i, SQLType sqlType,
             String typeName) throws SQLException {
-        embedded.registerOutParameter(paramIndex, sqlType, typeName);
-        outParams.put(new Integer(paramIndex),
-                new OutParamMetadata(sqlType, typeName));
+        embedded.registerOutParameter(i, sqlType, typeName);
+        if (capture) {
+            outParams.put(Integer.valueOf(i),
+                    outParam(sqlType, OutParamMetadata.NO_SCALE,
+                             typeName));
+        }
     }
 
     /**
      * {@inheritDoc}
      */
-    public void registerOutParameter(String name, int sqlType)
+    public void registerOutParameter(String name, SQLType sqlType)
         throws SQLException {
         embedded.registerOutParameter(name, sqlType);
-        outParams.put(name, new OutParamMetadata(sqlType));
+        if (capture) {
+            outParams.put(name,
+                    outParam(sqlType, OutParamMetadata.NO_SCALE,
+                             OutParamMetadata.NONE));
+        }
     }
 
     /**
      * {@inheritDoc}
      */
-    public void registerOutParameter(String name, int sqlType,
+    public void registerOutParameter(String name, SQLType sqlType,
             int scale) throws SQLException {
         embedded.registerOutParameter(name, sqlType, scale);
-        outParams.put(name, new OutParamMetadata(sqlType, scale));
+        if (capture) {
+            outParams.put(name,
+                    outParam(sqlType, scale,
+                             OutParamMetadata.NONE));
+        }
     }
 
     /**
      * {@inheritDoc}
      */
-    public void registerOutParameter(String name, int sqlType,
+    public void registerOutParameter(String name, SQLType sqlType,
             String typeName) throws SQLException {
         embedded.registerOutParameter(name, sqlType, typeName);
-        outParams.put(name, new OutParamMetadata(sqlType, typeName));
+        if (capture) {
+            outParams.put(name,
+                    outParam(sqlType, OutParamMetadata.NO_SCALE,
+                             typeName));
+        }
     }
 
-    /**
-     * {@inheritDoc}
-     */
-    public URL getURL(int i) throws SQLException {
-        return embedded.getURL(i);
+    // A SQLType is recorded by its java.sql.Types code, or by its name if
+    // it is a vendor type without one.
+    private OutParamMetadata outParam(SQLType t, int scale, String typeName) {
+        Integer code = t.getVendorTypeNumber();
+        if (code == null) {
+            return new OutParamMetadata(Types.OTHER, scale, t.getName());
+        }
+        return new OutParamMetadata(code.intValue(), scale, typeName);
     }
 
     /**
@@ -911,7 +1275,9 @@ public class LogCallableStatement implements CallableStatement {
      */
     public void setURL(String name, URL val) throws SQLException {
         embedded.setURL(name, val);
-        bindParams.put(name, val);
+        if (capture) {
+            bindParams.setObject(name, val);
+        }
     }
 
     /**
@@ -920,7 +1286,9 @@ public class LogCallableStatement implements CallableStatement {
     public void setNull(String name, int sqlType)
         throws SQLException {
         embedded.setNull(name, sqlType);
-        bindParams.put(name, null);
+        if (capture) {
+            bindParams.setObject(name, null);
+        }
     }
 
     /**
@@ -929,7 +1297,9 @@ public class LogCallableStatement implements CallableStatement {
     public void setBoolean(String name, boolean x)
         throws SQLException {
         embedded.setBoolean(name, x);
-        bindParams.put(name, new Boolean(x));
+        if (capture) {
+            bindParams.setObject(name, x);
+        }
     }
 
     /**
@@ -937,7 +1307,9 @@ public class LogCallableStatement implements CallableStatement {
      */
     public void setByte(String name, byte x) throws SQLException {
         embedded.setByte(name, x);
-        bindParams.put(name, new Byte(x));
+        if (capture) {
+            bindParams.setObject(name, x);
+        }
     }
 
     /**
@@ -945,7 +1317,9 @@ public class LogCallableStatement implements CallableStatement {
      */
     public void setShort(String name, short x) throws SQLException {
         embedded.setShort(name, x);
-        bindParams.put(name, new Short(x));
+        if (capture) {
+            bindParams.setObject(name, x);
+        }
     }
 
     /**
@@ -953,7 +1327,9 @@ public class LogCallableStatement implements CallableStatement {
      */
     public void setInt(String name, int x) throws SQLException {
         embedded.setInt(name, x);
-        bindParams.put(name, new Integer(x));
+        if (capture) {
+            bindParams.setObject(name, x);
+        }
     }
 
     /**
@@ -961,7 +1337,9 @@ public class LogCallableStatement implements CallableStatement {
      */
     public void setLong(String name, long x) throws SQLException {
         embedded.setLong(name, x);
-        bindParams.put(name, new Long(x));
+        if (capture) {
+            bindParams.setObject(name, x);
+        }
     }
 
     /**
@@ -969,7 +1347,9 @@ public class LogCallableStatement implements CallableStatement {
      */
     public void setFloat(String name, float x) throws SQLException {
         embedded.setFloat(name, x);
-        bindParams.put(name, new Float(x));
+        if (capture) {
+            bindParams.setObject(name, x);
+        }
     }
 
     /**
@@ -978,7 +1358,9 @@ public class LogCallableStatement implements CallableStatement {
     public void setDouble(String name, double x)
         throws SQLException {
         embedded.setDouble(name, x);
-        bindParams.put(name, new Double(x));
+        if (capture) {
+            bindParams.setObject(name, x);
+        }
     }
 
     /**
@@ -987,7 +1369,9 @@ public class LogCallableStatement implements CallableStatement {
     public void setBigDecimal(String name, BigDecimal x)
         throws SQLException {
         embedded.setBigDecimal(name, x);
-        bindParams.put(name, x);
+        if (capture) {
+            bindParams.setObject(name, x);
+        }
     }
 
     /**
@@ -996,7 +1380,9 @@ public class LogCallableStatement implements CallableStatement {
     public void setString(String name, String x)
         throws SQLException {
         embedded.setString(name, x);
-        bindParams.put(name, x);
+        if (capture) {
+            bindParams.setObject(name, x);
+        }
     }
 
     /**
@@ -1005,7 +1391,9 @@ public class LogCallableStatement implements CallableStatement {
     public void setBytes(String name, byte[] x)
         throws SQLException {
         embedded.setBytes(name, x);
-        bindParams.put(name, x);
+        if (capture) {
+            bindParams.setObject(name, x);
+        }
     }
 
     /**
@@ -1013,7 +1401,9 @@ public class LogCallableStatement implements CallableStatement {
      */
     public void setDate(String name, Date x) throws SQLException {
         embedded.setDate(name, x);
-        bindParams.put(name, x);
+        if (capture) {
+            bindParams.setObject(name, x);
+        }
     }
 
     /**
@@ -1021,7 +1411,9 @@ public class LogCallableStatement implements CallableStatement {
      */
     public void setTime(String name, Time x) throws SQLException {
         embedded.setTime(name, x);
-        bindParams.put(name, x);
+        if (capture) {
+            bindParams.setObject(name, x);
+        }
     }
 
     /**
@@ -1030,7 +1422,9 @@ public class LogCallableStatement implements CallableStatement {
     public void setTimestamp(String name, Timestamp x)
         throws SQLException {
         embedded.setTimestamp(name, x);
-        bindParams.put(name, x);
+        if (capture) {
+            bindParams.setObject(name, x);
+        }
     }
 
     /**
@@ -1038,8 +1432,8 @@ public class LogCallableStatement implements CallableStatement {
      */
     public void setAsciiStream(String name, InputStream x,
             int length) throws SQLException {
-        embedded.setAsciiStream(name, x, length);
-        bindParams.put(name, x);
+        embedded.setAsciiStream(name,
+                tee(name, x, "ascii stream", StreamStats.ASCII, length), length);
     }
 
     /**
@@ -1047,8 +1441,8 @@ public class LogCallableStatement implements CallableStatement {
      */
     public void setBinaryStream(String name, InputStream x,
             int length) throws SQLException {
-        embedded.setBinaryStream(name, x, length);
-        bindParams.put(name, x);
+        embedded.setBinaryStream(name,
+                tee(name, x, "binary stream", StreamStats.BINARY, length), length);
     }
 
     /**
@@ -1056,8 +1450,10 @@ public class LogCallableStatement implements CallableStatement {
      */
     public void setObject(String name, Object x,
             int targetSqlType, int scale) throws SQLException {
-        embedded.setObject(name, x, targetSqlType);
-        bindParams.put(name, x);
+        embedded.setObject(name, x, targetSqlType, scale);
+        if (capture) {
+            bindParams.setObject(name, x);
+        }
     }
 
     /**
@@ -1066,7 +1462,9 @@ public class LogCallableStatement implements CallableStatement {
     public void setObject(String name, Object x,
             int targetSqlType) throws SQLException {
         embedded.setObject(name, x, targetSqlType);
-        bindParams.put(name, x);
+        if (capture) {
+            bindParams.setObject(name, x);
+        }
     }
 
     /**
@@ -1075,211 +1473,86 @@ public class LogCallableStatement implements CallableStatement {
     public void setObject(String name, Object x)
         throws SQLException {
         embedded.setObject(name, x);
-        bindParams.put(name, x);
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public void setCharacterStream(String name, Reader reader,
-            int length) throws SQLException {
-        embedded.setCharacterStream(name, reader, length);
-        bindParams.put(name, reader);
+        if (capture) {
+            bindParams.setObject(name, x);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
-    public void setDate(String name, Date x, Calendar cal)
+    public void setObject(String name, Object x, SQLType targetSqlType)
         throws SQLException {
-        embedded.setDate(name, x, cal);
-        bindParams.put(name, x);
+        embedded.setObject(name, x, targetSqlType);
+        if (capture) {
+            bindParams.setObject(name, x);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
-    public void setTime(String name, Time x, Calendar cal)
-        throws SQLException {
-        embedded.setTime(name, x, cal);
-        bindParams.put(name, x);
+    public void setObject(String name, Object x, SQLType targetSqlType,
+            int scaleOrLength) throws SQLException {
+        embedded.setObject(name, x, targetSqlType, scaleOrLength);
+        if (capture) {
+            bindParams.setObject(name, x);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
-    public void setTimestamp(String name, Timestamp x,
-            Calendar cal) throws SQLException {
-        embedded.setTimestamp(name, x, cal);
-        bindParams.put(name, x);
+    public void setCharacterStream(String name, Reader reader,
+            int length) throws SQLException {
+        embedded.setCharacterStream(name,
+                tee(name, reader, "character stream", length), length);
     }
 
     /**
      * {@inheritDoc}
      */
-    public void setNull(String name, int sqlType, String typeName)
+    public void setDate(String name, Date x, Calendar cal)
         throws SQLException {
-        embedded.setNull(name, sqlType, typeName);
-        bindParams.put(name, null);
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public String getString(String name) throws SQLException {
-        return embedded.getString(name);        
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public boolean getBoolean(String name) throws SQLException {
-        return embedded.getBoolean(name);
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public byte getByte(String name) throws SQLException {
-        return embedded.getByte(name);
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public short getShort(String name) throws SQLException {
-        return embedded.getShort(name);
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public int getInt(String name) throws SQLException {
-        return embedded.getInt(name);
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public long getLong(String name) throws SQLException {
-        return embedded.getLong(name);
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public float getFloat(String name) throws SQLException {
-        return embedded.getFloat(name);
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public double getDouble(String name) throws SQLException {
-        return embedded.getDouble(name);
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public byte[] getBytes(String name) throws SQLException {
-        return embedded.getBytes(name);
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public Date getDate(String name) throws SQLException {
-        return embedded.getDate(name);
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public Time getTime(String name) throws SQLException {
-        return embedded.getTime(name);
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public Timestamp getTimestamp(String name) throws SQLException {
-        return embedded.getTimestamp(name);
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public Object getObject(String name) throws SQLException {
-        return embedded.getObject(name);
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public BigDecimal getBigDecimal(String name) throws SQLException {
-        return embedded.getBigDecimal(name);
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public Ref getRef(String name) throws SQLException {
-        return embedded.getRef(name);
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public Blob getBlob(String name) throws SQLException {
-        return embedded.getBlob(name);
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public Clob getClob(String name) throws SQLException {
-        return embedded.getClob(name);
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public Array getArray(String name) throws SQLException {
-        return embedded.getArray(name);
+        embedded.setDate(name, x, cal);
+        if (capture) {
+            bindParams.setObject(name, x);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
-    public Date getDate(String name, Calendar cal)
+    public void setTime(String name, Time x, Calendar cal)
         throws SQLException {
-        return embedded.getDate(name, cal);
+        embedded.setTime(name, x, cal);
+        if (capture) {
+            bindParams.setObject(name, x);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
-    public Time getTime(String name, Calendar cal)
-        throws SQLException {
-        return embedded.getTime(name, cal);
+    public void setTimestamp(String name, Timestamp x,
+            Calendar cal) throws SQLException {
+        embedded.setTimestamp(name, x, cal);
+        if (capture) {
+            bindParams.setObject(name, x);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
-    public Timestamp getTimestamp(String name, Calendar cal)
+    public void setNull(String name, int sqlType, String typeName)
         throws SQLException {
-        return embedded.getTimestamp(name, cal);
+        embedded.setNull(name, sqlType, typeName);
+        if (capture) {
+            bindParams.setObject(name, null);
+        }
     }
 
-    /**
-     * {@inheritDoc}
-     */
-    public URL getURL(String name) throws SQLException {
-        return embedded.getURL(name);
-    }
-    
     /**
      * Represents the meta information about a Out parameter.
      * OutParamMetadata
@@ -1359,273 +1632,195 @@ public class LogCallableStatement implements CallableStatement {
         }
     }
 
-    public Object getObject(int i, Map<String, Class<?>> map)
-        throws SQLException {
-        return embedded.getObject(i, map);
-    }
-
-    public Object getObject(String name, Map<String, Class<?>> map)
-        throws SQLException {
-        return embedded.getObject(name, map);
-    }
-
-    public RowId getRowId(int i) throws SQLException {
-        return embedded.getRowId(i);
-    }
-
-    public RowId getRowId(String name) throws SQLException {
-        return embedded.getRowId(name);
-    }
-
-    public void setRowId(String name, RowId x) throws SQLException {
-        embedded.setRowId(name, x);
-    }
-
     public void setNString(String name, String value) throws SQLException {
         embedded.setNString(name, value);
+        if (capture) {
+            bindParams.setObject(name, value);
+        }
     }
 
     public void setNCharacterStream(String name, Reader reader,
             long length) throws SQLException {
-        embedded.setNCharacterStream(name,  reader, length);
+        embedded.setNCharacterStream(name,
+                tee(name, reader, "ncharacter stream", length), length);
     }
 
     public void setNClob(String name, NClob value) throws SQLException {
         embedded.setNClob(name, value);
+        if (capture) {
+            bindParams.setObject(name, value);
+        }
     }
 
     public void setClob(String name, Reader reader, long length)
         throws SQLException {
-        embedded.setClob(name,  reader, length);
+        embedded.setClob(name, tee(name, reader, "clob", length), length);
     }
 
     public void setBlob(String name, InputStream input, long length)
         throws SQLException {
-        embedded.setBlob(name, input, length);
+        embedded.setBlob(name,
+                tee(name, input, "blob", StreamStats.BINARY, length), length);
     }
 
     public void setNClob(String name, Reader reader, long length)
         throws SQLException {
-        embedded.setNClob(name, reader, length);
-    }
-
-    public NClob getNClob(int i) throws SQLException {
-        return embedded.getNClob(i);
-    }
-
-    public NClob getNClob(String name) throws SQLException {
-        return embedded.getNClob(name);
-    }
-
-    public void setSQLXML(String name, SQLXML xmlObject)
-        throws SQLException {
-        embedded.setSQLXML(name, xmlObject);
-    }
-
-    public SQLXML getSQLXML(int i) throws SQLException {
-        return embedded.getSQLXML(i);
-    }
-
-    public SQLXML getSQLXML(String name) throws SQLException {
-        return embedded.getSQLXML(name);
-    }
-
-    public String getNString(int i) throws SQLException {
-        return embedded.getNString(i);
-    }
-
-    public String getNString(String name) throws SQLException {
-        return embedded.getNString(name);
-    }
-
-    public Reader getNCharacterStream(int i) throws SQLException {
-        return embedded.getNCharacterStream(i);
-    }
-
-    public Reader getNCharacterStream(String name) throws SQLException {
-        return embedded.getNCharacterStream(name);
-    }
-
-    public Reader getCharacterStream(int i) throws SQLException {
-        return embedded.getCharacterStream(i);
-    }
-
-    public Reader getCharacterStream(String name) throws SQLException {
-        return embedded.getCharacterStream(name);
+        embedded.setNClob(name, tee(name, reader, "nclob", length), length);
     }
 
     public void setBlob(String name, Blob x) throws SQLException {
         embedded.setBlob(name,  x);
+        if (capture) {
+            bindParams.setObject(name, x);
+        }
     }
 
     public void setClob(String name, Clob x) throws SQLException {
         embedded.setClob(name, x);
+        if (capture) {
+            bindParams.setObject(name, x);
+        }
     }
 
     public void setAsciiStream(String name, InputStream input, long length)
         throws SQLException {
-        embedded.setAsciiStream(name, input, length);
+        embedded.setAsciiStream(name,
+                tee(name, input, "ascii stream", StreamStats.ASCII, length), length);
     }
 
     public void setBinaryStream(String name, InputStream input, long length)
         throws SQLException {
-        embedded.setBinaryStream(name, input, length);
+        embedded.setBinaryStream(name,
+                tee(name, input, "binary stream", StreamStats.BINARY, length), length);
     }
 
     public void setCharacterStream(String name, Reader reader,
             long length) throws SQLException {
-        embedded.setCharacterStream(name, reader);
+        embedded.setCharacterStream(name,
+                tee(name, reader, "character stream", length), length);
     }
 
     public void setAsciiStream(String name, InputStream input)
         throws SQLException {
-        embedded.setAsciiStream(name, input);
+        embedded.setAsciiStream(name,
+                tee(name, input, "ascii stream", StreamStats.ASCII, -1));
     }
 
     public void setBinaryStream(String name, InputStream input)
         throws SQLException {
-        embedded.setBinaryStream(name, input);
+        embedded.setBinaryStream(name,
+                tee(name, input, "binary stream", StreamStats.BINARY, -1));
     }
 
     public void setCharacterStream(String name, Reader reader)
         throws SQLException {
-        embedded.setCharacterStream(name, reader);
+        embedded.setCharacterStream(name,
+                tee(name, reader, "character stream", -1));
     }
 
     public void setNCharacterStream(String name, Reader reader)
         throws SQLException {
-        embedded.setNCharacterStream(name, reader);
+        embedded.setNCharacterStream(name,
+                tee(name, reader, "ncharacter stream", -1));
     }
 
     public void setClob(String name, Reader reader) throws SQLException {
-        embedded.setClob(name,  reader);
+        embedded.setClob(name, tee(name, reader, "clob", -1));
     }
 
     public void setBlob(String name, InputStream input) throws SQLException {
-        embedded.setBlob(name, input);
+        embedded.setBlob(name,
+                tee(name, input, "blob", StreamStats.BINARY, -1));
     }
 
     public void setNClob(String name, Reader reader)
         throws SQLException {
-        embedded.setNClob(name, reader);
-    }
-
-    public <T> T getObject(int i, Class<T> type)
-        throws SQLException {
-        return embedded.getObject(i, type);
-    }
-
-    public <T> T getObject(String name, Class<T> type)
-        throws SQLException {
-        return embedded.getObject(name, type);
-    }
-
-    public void setRowId(int i, RowId x) throws SQLException {
-        embedded.setRowId(i, x);
+        embedded.setNClob(name, tee(name, reader, "nclob", -1));
     }
 
     public void setNString(int i, String value)
         throws SQLException {
-        embedded.setNString(i,  value);
+        embedded.setNString(i, value);
+        if (capture) {
+            bindParams.setObject(i, value);
+        }
     }
 
     public void setNCharacterStream(int i, Reader reader, long length)
         throws SQLException {
-        embedded.setNCharacterStream(i, reader, length);
+        embedded.setNCharacterStream(i,
+                tee(i, reader, "ncharacter stream", length), length);
     }
 
     public void setNClob(int i, NClob value) throws SQLException {
         embedded.setNClob(i, value);
+        if (capture) {
+            bindParams.setObject(i, value);
+        }
     }
 
     public void setClob(int i, Reader reader, long length)
         throws SQLException {
-        embedded.setClob(i, reader, length);
+        embedded.setClob(i, tee(i, reader, "clob", length), length);
     }
 
     public void setBlob(int i, InputStream input, long length)
         throws SQLException {
-        embedded.setBlob(i, input, length);
+        embedded.setBlob(i,
+                tee(i, input, "blob", StreamStats.BINARY, length), length);
     }
 
     public void setNClob(int i, Reader reader, long length)
         throws SQLException {
-        embedded.setNClob(i, reader, length);
-    }
-
-    public void setSQLXML(int i, SQLXML xmlObject)
-        throws SQLException {
-        embedded.setSQLXML(i, xmlObject);
+        embedded.setNClob(i, tee(i, reader, "nclob", length), length);
     }
 
     public void setAsciiStream(int i, InputStream input, long length)
         throws SQLException {
-        embedded.setAsciiStream(i,  input, length);
+        embedded.setAsciiStream(i,
+                tee(i, input, "ascii stream", StreamStats.ASCII, length), length);
     }
 
     public void setBinaryStream(int i, InputStream input, long length)
         throws SQLException {
-        embedded.setBinaryStream(i,  input, length);
+        embedded.setBinaryStream(i,
+                tee(i, input, "binary stream", StreamStats.BINARY, length), length);
     }
 
     public void setCharacterStream(int i, Reader reader, long length)
         throws SQLException {
-        embedded.setCharacterStream(i, reader, length);
+        embedded.setCharacterStream(i,
+                tee(i, reader, "character stream", length), length);
     }
 
     public void setAsciiStream(int i, InputStream input) throws SQLException {
-        embedded.setAsciiStream(i, input);
+        embedded.setAsciiStream(i,
+                tee(i, input, "ascii stream", StreamStats.ASCII, -1));
     }
 
     public void setBinaryStream(int i, InputStream input) throws SQLException {
-        embedded.setBinaryStream(i, input);
+        embedded.setBinaryStream(i,
+                tee(i, input, "binary stream", StreamStats.BINARY, -1));
     }
 
     public void setCharacterStream(int i, Reader reader) throws SQLException {
-        embedded.setCharacterStream(i, reader);
+        embedded.setCharacterStream(i, tee(i, reader, "character stream", -1));
     }
 
     public void setNCharacterStream(int i, Reader reader) throws SQLException {
-        embedded.setNCharacterStream(i, reader);
+        embedded.setNCharacterStream(i,
+                tee(i, reader, "ncharacter stream", -1));
     }
 
     public void setClob(int i, Reader reader) throws SQLException {
-        embedded.setClob(i,  reader);
+        embedded.setClob(i, tee(i, reader, "clob", -1));
     }
 
     public void setBlob(int i, InputStream input) throws SQLException {
-        embedded.setBlob(i, input);
+        embedded.setBlob(i, tee(i, input, "blob", StreamStats.BINARY, -1));
     }
 
     public void setNClob(int i, Reader reader) throws SQLException {
-        embedded.setNClob(i,  reader);
-    }
-
-    public boolean isClosed() throws SQLException {
-        return embedded.isClosed();
-    }
-
-    public void setPoolable(boolean poolable) throws SQLException {
-        embedded.setPoolable(poolable);
-    }
-
-    public boolean isPoolable() throws SQLException {
-        return embedded.isPoolable();
-    }
-
-    public void closeOnCompletion() throws SQLException {
-        embedded.closeOnCompletion();
-    }
-
-    public boolean isCloseOnCompletion() throws SQLException {
-        return embedded.isCloseOnCompletion();
-    }
-
-    public <T> T unwrap(Class<T> iface) throws SQLException {
-        return embedded.unwrap(iface);
-    }
-
-    public boolean isWrapperFor(Class<?> iface) throws SQLException {
-        return embedded.isWrapperFor(iface);
+        embedded.setNClob(i, tee(i, reader, "nclob", -1));
     }
 }
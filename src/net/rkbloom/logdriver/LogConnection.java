@@ -14,26 +14,27 @@
  */
 package net.rkbloom.logdriver;
 
+import net.rkbloom.logdriver.async.AsyncLog;
+import net.rkbloom.logdriver.capture.CaptureWriter;
+import net.rkbloom.logdriver.config.Configuration;
+import net.rkbloom.logdriver.config.DriverConfig;
+import net.rkbloom.logdriver.event.ConnectionEvent;
+import net.rkbloom.logdriver.event.ConnectionEvent.Action;
+import net.rkbloom.logdriver.event.TransactionEvent;
+import net.rkbloom.logdriver.event.TransactionEvent.Outcome;
+import net.rkbloom.logdriver.sink.Severity;
+import net.rkbloom.logdriver.stats.DriverStats;
+
 import org.apache.log4j.Logger;
 
-import java.sql.Array;
-import java.sql.Blob;
 import java.sql.CallableStatement;
-import java.sql.Clob;
 import java.sql.Connection;
-import java.sql.DatabaseMetaData;
-import java.sql.NClob;
 import java.sql.PreparedStatement;
-import java.sql.SQLClientInfoException;
 import java.sql.SQLException;
-import java.sql.SQLWarning;
-import java.sql.SQLXML;
 import java.sql.Savepoint;
 import java.sql.Statement;
-import java.sql.Struct;
-import java.util.Map;
 import java.util.Properties;
-import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * LogConnection is a wrapper class around the JDBC Connection. It will log the
@@ -42,87 +43,295 @@ import java.util.concurrent.Executor;
  * versions, for example, returns LogStatement for Statement.
  * @version $Rev$
  */
-public class LogConnection implements Connection {
-
-    private Connection embedded;
+public class LogConnection extends ConnectionWrapper {
+
+    private Properties overrides;
+    private DriverConfig config;
+    private static final AtomicLong ids = new AtomicLong();
+    private final long id = ids.incrementAndGet();
+    private boolean closed;
+    private final long openedNanos = System.nanoTime();
+    // updated by the thread using the connection, without synchronization;
+    // a connection shared between threads may undercount
+    private long executions;
+    private long timedExecutions;
+    private long timedNanos;
+    private LeakDetector.Tracker tracker;
+    private NPlusOneDetector nPlusOne;
+    // the transaction in progress, tracked while executions are timed
+    private Boolean autoCommit;
+    private boolean inTransaction;
+    private long txStart;
+    private long txStatements;
+    private long txDatabaseNanos;
+    private int txSavepoints;
+    private int txSavepointRollbacks;
     private static Logger log = Logger.getLogger(LogConnection.class);
+    private static Logger slowLog =
+        Logger.getLogger(ExecutionTimer.SLOW_LOGGER);
     
     LogConnection(Connection conn) {
-        embedded = conn;
-        log.debug("Opening connection: " + embedded);
-    }
-    
-    /**
-     * {@inheritDoc}
-     */
-    public int getHoldability() throws SQLException {
-        return embedded.getHoldability();
+        this(conn, null);
     }
 
-    /**
-     * {@inheritDoc}
-     */
-    public int getTransactionIsolation() throws SQLException {
-        return embedded.getTransactionIsolation();
+    LogConnection(Connection conn, Properties configOverrides) {
+        super(conn);
+        overrides = configOverrides;
+        DriverStats.connectionOpened();
+        logEvent(Action.OPEN);
+        CaptureWriter w = ExecutionTimer.captureOf(this);
+        if (w != null) {
+            w.opened(id);
+        }
+        tracker = LeakDetector.track(this, getConfig());
     }
 
     /**
-     * {@inheritDoc}
+     * Returns the configuration for this connection: the current driver
+     * configuration with any settings from the connection URL on top.  The
+     * layered snapshot is only rebuilt when the driver configuration changes.
+     * @return the configuration snapshot.
      */
-    public void clearWarnings() throws SQLException {
-        embedded.clearWarnings();
+    DriverConfig getConfig() {
+        DriverConfig global = Configuration.get();
+        if (overrides == null) {
+            return global;
+        }
+        DriverConfig c = config;
+        if (c == null || c.getBase() != global) {
+            c = global.withOverrides(overrides);
+            config = c;
+        }
+        return c;
     }
 
     /**
-     * {@inheritDoc}
+     * Returns the configuration that applies to a statement created by the
+     * given connection.
+     * @param c the connection, normally a LogConnection.
+     * @return the configuration snapshot.
      */
-    public void close() throws SQLException {
-        log.debug("Closing connection: " + embedded);
-        embedded.close();
+    static DriverConfig configOf(Connection c) {
+        if (c instanceof LogConnection) {
+            return ((LogConnection) c).getConfig();
+        }
+        return Configuration.get();
     }
 
     /**
-     * {@inheritDoc}
+     * @return the number of this connection, unique within the JVM, so that
+     * records from the same connection can be tied together.
      */
-    public void commit() throws SQLException {
-        log.debug("Committing connection: " + embedded);
-        embedded.commit();
+    public long getId() {
+        return id;
     }
 
     /**
-     * {@inheritDoc}
+     * @param c the connection, normally a LogConnection.
+     * @return the number of the connection, or -1 if it isn't one of ours.
      */
-    public void rollback() throws SQLException {
-        log.debug("Rolling back connection: " + embedded);
-        embedded.rollback();
+    static long idOf(Connection c) {
+        return (c instanceof LogConnection) ? ((LogConnection) c).id : -1;
     }
 
     /**
-     * {@inheritDoc}
+     * Counts an execution of a statement on the given connection.
+     * @param c the connection, normally a LogConnection.
      */
-    public boolean getAutoCommit() throws SQLException {
-        return embedded.getAutoCommit();
+    static void executionStarted(Connection c) {
+        if (c instanceof LogConnection) {
+            ((LogConnection) c).executions++;
+        }
+    }
+
+    /**
+     * Adds the time of a timed execution to the given connection and to its
+     * transaction.
+     * @param c the connection, normally a LogConnection.
+     * @param start when the execution started.
+     * @param nanos the elapsed time.
+     */
+    static void executionTimed(Connection c, long start, long nanos) {
+        if (c instanceof LogConnection) {
+            LogConnection lc = (LogConnection) c;
+            lc.timedExecutions++;
+            lc.timedNanos += nanos;
+            if (lc.transactionWork(start, nanos)) {
+                lc.txStatements++;
+            }
+        }
+    }
+
+    /**
+     * @param c the connection, normally a LogConnection.
+     * @return the N+1 detector of the connection, or null if it isn't one
+     * of ours.
+     */
+    static NPlusOneDetector nPlusOneOf(Connection c) {
+        if (!(c instanceof LogConnection)) {
+            return null;
+        }
+        LogConnection lc = (LogConnection) c;
+        if (lc.nPlusOne == null) {
+            lc.nPlusOne = new NPlusOneDetector(lc.id);
+        }
+        return lc.nPlusOne;
+    }
+
+    // the start time of a transaction boundary call, or NOT_TIMED
+    private long clock() {
+        return getConfig().isTimingEnabled()
+            ? System.nanoTime() : ExecutionTimer.NOT_TIMED;
+    }
+
+    /**
+     * Adds database time to the transaction in progress, starting one if
+     * auto-commit is off and there is none.
+     * @return true if there is a transaction in progress.
+     */
+    private boolean transactionWork(long start, long nanos) {
+        if (!inTransaction) {
+            if (isAutoCommit()) {
+                return false;
+            }
+            inTransaction = true;
+            txStart = start;
+            txStatements = 0;
+            txDatabaseNanos = 0;
+            txSavepoints = 0;
+            txSavepointRollbacks = 0;
+        }
+        txDatabaseNanos += nanos;
+        return true;
+    }
+
+    private boolean isAutoCommit() {
+        if (autoCommit == null) {
+            try {
+                autoCommit = Boolean.valueOf(embedded.getAutoCommit());
+            }
+            catch (SQLException e) {
+                return true;
+            }
+        }
+        return autoCommit.booleanValue();
+    }
+
+    /**
+     * Ends the transaction in progress, if there is one, and records it.
+     * @param outcome how it ended.
+     * @param start when the commit or rollback started.
+     */
+    private void endTransaction(Outcome outcome, long start) {
+        if (nPlusOne != null) {
+            nPlusOne.boundary();
+        }
+        if (!inTransaction) {
+            return;
+        }
+        inTransaction = false;
+        long end = System.nanoTime();
+        long ending = end - start;
+        long span = end - txStart;
+        long database = txDatabaseNanos + ending;
+        DriverStats.transactionEnded(span, database,
+                                     outcome == Outcome.COMMIT ? ending : -1);
+        long threshold = getConfig().getTransactionThreshold();
+        boolean slow = threshold >= 0 && span >= threshold * 1000000L;
+        if (slow || AsyncLog.isDebugEnabled(log)) {
+            TransactionEvent e = new TransactionEvent(id, outcome, span,
+                    database, ending, txStatements, txSavepoints,
+                    txSavepointRollbacks);
+            if (slow) {
+                AsyncLog.warn(slowLog, e);
+            }
+            else {
+                AsyncLog.debug(log, e);
+            }
+        }
+    }
+
+    // a savepoint call, which is database time in the transaction
+    private void savepointWork(long start, boolean rolledBack) {
+        if (start == ExecutionTimer.NOT_TIMED) {
+            return;
+        }
+        if (transactionWork(start, System.nanoTime() - start)) {
+            if (rolledBack) {
+                txSavepointRollbacks++;
+            }
+            else {
+                txSavepoints++;
+            }
+        }
+    }
+
+    private void logEvent(Action action) {
+        if (AsyncLog.isDebugEnabled(log)) {
+            AsyncLog.debug(log, new ConnectionEvent(action, embedded));
+        }
     }
-
+    
     /**
      * {@inheritDoc}
      */
-    public boolean isClosed() throws SQLException {
-        return embedded.isClosed();
+    public void close() throws SQLException {
+        if (!closed) {
+            closed = true;
+            DriverStats.connectionClosed();
+            LeakDetector.closed(tracker);
+            tracker = null;
+            endTransaction(Outcome.CLOSE, System.nanoTime());
+            // the summary of the connection's life is worth keeping
+            // when the statements themselves are not logged
+            if (AsyncLog.isEnabled(log, Severity.INFO)) {
+                AsyncLog.log(log, Severity.INFO, new ConnectionEvent(embedded,
+                        id, System.nanoTime() - openedNanos, executions,
+                        timedExecutions, timedNanos));
+            }
+            CaptureWriter w = ExecutionTimer.captureOf(this);
+            if (w != null) {
+                w.closed(id);
+            }
+        }
+        else {
+            logEvent(Action.CLOSE);
+        }
+        embedded.close();
     }
 
     /**
      * {@inheritDoc}
      */
-    public boolean isReadOnly() throws SQLException {
-        return embedded.isReadOnly();
+    public void commit() throws SQLException {
+        logEvent(Action.COMMIT);
+        long start = clock();
+        embedded.commit();
+        DriverStats.committed();
+        CaptureWriter w = ExecutionTimer.captureOf(this);
+        if (w != null) {
+            w.committed(id);
+        }
+        if (start != ExecutionTimer.NOT_TIMED) {
+            endTransaction(Outcome.COMMIT, start);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
-    public void setHoldability(int holdability) throws SQLException {
-        embedded.setHoldability(holdability);
+    public void rollback() throws SQLException {
+        logEvent(Action.ROLLBACK);
+        long start = clock();
+        embedded.rollback();
+        DriverStats.rolledBack();
+        CaptureWriter w = ExecutionTimer.captureOf(this);
+        if (w != null) {
+            w.rolledBack(id);
+        }
+        if (start != ExecutionTimer.NOT_TIMED) {
+            endTransaction(Outcome.ROLLBACK, start);
+        }
     }
 
     /**
@@ -130,13 +339,27 @@ public class LogConnection implements Connection {
      */
     public void setTransactionIsolation(int level) throws SQLException {
         embedded.setTransactionIsolation(level);
+        CaptureWriter w = ExecutionTimer.captureOf(this);
+        if (w != null) {
+            w.isolationSet(id, level);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
     public void setAutoCommit(boolean autoCommit) throws SQLException {
+        long start = clock();
         embedded.setAutoCommit(autoCommit);
+        this.autoCommit = Boolean.valueOf(autoCommit);
+        CaptureWriter w = ExecutionTimer.captureOf(this);
+        if (w != null) {
+            w.autoCommitSet(id, autoCommit);
+        }
+        if (autoCommit && start != ExecutionTimer.NOT_TIMED) {
+            // turning auto-commit on commits the transaction in progress
+            endTransaction(Outcome.COMMIT, start);
+        }
     }
 
     /**
@@ -144,62 +367,47 @@ public class LogConnection implements Connection {
      */
     public void setReadOnly(boolean readOnly) throws SQLException {
         embedded.setReadOnly(readOnly);
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public String getCatalog() throws SQLException {
-        return embedded.getCatalog();
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public void setCatalog(String catalog) throws SQLException {
-        embedded.setCatalog(catalog);
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public DatabaseMetaData getMetaData() throws SQLException {
-        return embedded.getMetaData();
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public SQLWarning getWarnings() throws SQLException {
-        return embedded.getWarnings();
+        CaptureWriter w = ExecutionTimer.captureOf(this);
+        if (w != null) {
+            w.readOnlySet(id, readOnly);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
     public Savepoint setSavepoint() throws SQLException {
-        return embedded.setSavepoint();
+        long start = clock();
+        Savepoint sp = embedded.setSavepoint();
+        savepointWork(start, false);
+        return sp;
     }
 
     /**
      * {@inheritDoc}
      */
     public void releaseSavepoint(Savepoint savepoint) throws SQLException {
+        long start = clock();
         embedded.releaseSavepoint(savepoint);
+        if (start != ExecutionTimer.NOT_TIMED && inTransaction) {
+            txDatabaseNanos += System.nanoTime() - start;
+        }
     }
 
     /**
      * {@inheritDoc}
      */
     public void rollback(Savepoint savepoint) throws SQLException {
+        long start = clock();
         embedded.rollback(savepoint);
+        savepointWork(start, true);
     }
 
     /**
      * {@inheritDoc}
      */
     public Statement createStatement() throws SQLException {
-        log.debug("Creating a new statement");
+        AsyncLog.debug(log, "Creating a new statement");
         return new LogStatement(embedded.createStatement(), this);
     }
 
@@ -208,7 +416,7 @@ public class LogConnection implements Connection {
      */
     public Statement createStatement(int resultSetType, int resultSetConcurrency)
         throws SQLException {
-        log.debug("Creating a new statement");
+        AsyncLog.debug(log, "Creating a new statement");
         return new LogStatement(embedded.createStatement(resultSetType, 
                                                          resultSetConcurrency),
                                 this);
@@ -220,27 +428,13 @@ public class LogConnection implements Connection {
     public Statement createStatement(int resultSetType,
             int resultSetConcurrency, int resultSetHoldability)
         throws SQLException {
-        log.debug("Creating a new statement");
+        AsyncLog.debug(log, "Creating a new statement");
         return new LogStatement(embedded.createStatement(resultSetType, 
                                         resultSetConcurrency,
                                         resultSetHoldability),
                                 this);
     }
 
-    /**
-     * {@inheritDoc}
-     */
-    public Map<String,Class<?>> getTypeMap() throws SQLException {
-        return embedded.getTypeMap();
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public String nativeSQL(String sql) throws SQLException {
-        return embedded.nativeSQL(sql);
-    }
-
     /**
      * {@inheritDoc}
      */
@@ -320,7 +514,10 @@ public class LogConnection implements Connection {
      * {@inheritDoc}
      */
     public Savepoint setSavepoint(String name) throws SQLException {
-        return embedded.setSavepoint(name);
+        long start = clock();
+        Savepoint sp = embedded.setSavepoint(name);
+        savepointWork(start, false);
+        return sp;
     }
 
     /**
@@ -331,85 +528,4 @@ public class LogConnection implements Connection {
         return new LogPreparedStatement(embedded.prepareStatement(sql, 
                                         columnNames), this, sql);
     }
-
-    public <T> T unwrap(Class<T> iface) throws SQLException {
-        return embedded.unwrap(iface);
-    }
-
-    public boolean isWrapperFor(Class<?> iface) throws SQLException {
-        return embedded.isWrapperFor(iface);
-    }
-
-    public void setTypeMap(Map<String, Class<?>> map) throws SQLException {
-        embedded.setTypeMap(map);
-    }
-
-    public Clob createClob() throws SQLException {
-        return embedded.createClob();
-    }
-
-    public Blob createBlob() throws SQLException {
-        return embedded.createBlob();
-    }
-
-    public NClob createNClob() throws SQLException {
-        return embedded.createNClob();
-    }
-
-    public SQLXML createSQLXML() throws SQLException {
-        return embedded.createSQLXML();
-    }
-
-    public boolean isValid(int timeout) throws SQLException {
-        return embedded.isValid(timeout);
-    }
-
-    public void setClientInfo(String name, String value)
-        throws SQLClientInfoException {
-        embedded.setClientInfo(name, value);
-    }
-
-    public void setClientInfo(Properties properties)
-        throws SQLClientInfoException {
-        embedded.setClientInfo(properties);
-    }
-
-    public String getClientInfo(String name) throws SQLException {
-        return embedded.getClientInfo(name);
-    }
-
-    public Properties getClientInfo() throws SQLException {
-        return embedded.getClientInfo();
-    }
-
-    public Array createArrayOf(String typeName, Object[] elements)
-        throws SQLException {
-        return embedded.createArrayOf(typeName, elements);
-    }
-
-    public Struct createStruct(String typeName, Object[] attributes)
-        throws SQLException {
-        return embedded.createStruct(typeName, attributes);
-    }
-
-    public void setSchema(String schema) throws SQLException {
-        embedded.setSchema(schema);
-    }
-
-    public String getSchema() throws SQLException {
-        return embedded.getSchema();
-    }
-
-    public void abort(Executor executor) throws SQLException {
-        embedded.abort(executor);
-    }
-
-    public void setNetworkTimeout(Executor executor, int milliseconds)
-        throws SQLException {
-        embedded.setNetworkTimeout(executor, milliseconds);
-    }
-
-    public int getNetworkTimeout() throws SQLException {
-        return embedded.getNetworkTimeout();
-    }
 }
@@ -15,6 +15,8 @@
 
 package net.rkbloom.logdriver;
 
+import net.rkbloom.logdriver.jmx.DriverMonitor;
+
 import org.apache.log4j.Logger;
 
 import java.io.PrintWriter;
@@ -44,6 +46,7 @@ public class LogDataSource implements DataSource {
 	 */
 	public LogDataSource(DataSource ds) {
 		dataSource = ds;
+		DriverMonitor.register();
 	}
 
 	/**
@@ -14,6 +14,9 @@
  */
 package net.rkbloom.logdriver;
 
+import net.rkbloom.logdriver.config.DriverConfig;
+import net.rkbloom.logdriver.jmx.DriverMonitor;
+
 import org.apache.log4j.Logger;
 
 import java.sql.Connection;
@@ -22,15 +25,26 @@ import java.sql.DriverManager;
 import java.sql.DriverPropertyInfo;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
+import java.util.Iterator;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * LogDriver
+ * <p>
+ * The first connect for a URL loads the real driver and looks it up in
+ * DriverManager; the result is kept per URL, so later connects go straight
+ * to that driver.  A driver that turns a cached URL down is looked up again.
  * @version $Rev$
  */
 public class LogDriver implements Driver {
 
+    private static final String URL_PREFIX = "jdbc:log";
+    private static final int MAX_TARGETS = 64;
     private static Logger log = Logger.getLogger(LogDriver.class);
+    private static final ConcurrentMap<String, Target> targets =
+        new ConcurrentHashMap<String, Target>();
     
     /**
      * {@inheritDoc}
@@ -57,7 +71,7 @@ public class LogDriver implements Driver {
      * {@inheritDoc}
      */
     public boolean acceptsURL(String url) throws SQLException {
-        return url.startsWith("jdbc:log");
+        return url.startsWith(URL_PREFIX);
     }
 
     /**
@@ -67,15 +81,30 @@ public class LogDriver implements Driver {
         if (!acceptsURL(url)) {
             return null;
         }
-        try {
-            String realUrl = parseUrl(url);
-            log.debug("Trying to find: " + realUrl);
-            return new LogConnection(DriverManager.getConnection(realUrl, info));
+        Target t = targets.get(url);
+        if (t != null) {
+            Connection c = t.driver.connect(t.url, info);
+            if (c != null) {
+                return new LogConnection(c, t.overrides);
+            }
+            // the driver was deregistered or replaced since
+            targets.remove(url, t);
         }
-        catch (ClassNotFoundException e) {
-            throw new SQLException("Couldn't load class for embedded driver: " +
-                                   e.getMessage());
+        t = resolve(url);
+        Connection c = t.driver.connect(t.url, info);
+        if (c == null) {
+            throw new SQLException("No suitable driver found for " + t.url,
+                                   "08001");
+        }
+        if (targets.size() >= MAX_TARGETS) {
+            Iterator<String> it = targets.keySet().iterator();
+            if (it.hasNext()) {
+                it.next();
+                it.remove();
+            }
         }
+        targets.put(url, t);
+        return new LogConnection(c, t.overrides);
     }
 
     /**
@@ -86,19 +115,54 @@ public class LogDriver implements Driver {
         return new DriverPropertyInfo[0];
     }
 
-    private String parseUrl(String url) throws ClassNotFoundException {
+    private Target resolve(String url) throws SQLException {
+        // jdbc:log;key=value;key=value:real_driver_class:...
+        Properties overrides = null;
+        if (url.startsWith(URL_PREFIX + ";")) {
+            int end = url.indexOf(':', URL_PREFIX.length());
+            if (end < 0) {
+                throw new SQLException("Malformed URL: " + url);
+            }
+            overrides = DriverConfig.parseUrlOptions(
+                    url.substring(URL_PREFIX.length() + 1, end));
+            url = URL_PREFIX + url.substring(end);
+        }
+
         // Get the class for the real JDBC driver.
-        int start = url.indexOf(":log:") + ":log:".length();
-        int end = url.indexOf(":", start);
+        int start = URL_PREFIX.length() + 1;
+        int end = url.indexOf(':', start);
+        if (end < 0) {
+            throw new SQLException("Malformed URL: " + url);
+        }
         String realClass = url.substring(start, end);
         log.debug("Real JDBC driver Class: " + realClass);
-        Class.forName(realClass);
-        
-        String newUrl = url.replaceFirst(":log:" + realClass, "");
-        log.debug("Real JDBC connection string: " + newUrl);
-        return newUrl;
+        try {
+            Class.forName(realClass);
+        }
+        catch (ClassNotFoundException e) {
+            throw new SQLException("Couldn't load class for embedded driver: " +
+                                   e.getMessage());
+        }
+
+        String realUrl = "jdbc" + url.substring(end);
+        log.debug("Trying to find: " + realUrl);
+        return new Target(DriverManager.getDriver(realUrl), realUrl,
+                          overrides);
     }
-    
+
+    /** The real driver and URL a logging URL resolved to. */
+    private static final class Target {
+        final Driver driver;
+        final String url;
+        final Properties overrides;
+
+        Target(Driver driver, String url, Properties overrides) {
+            this.driver = driver;
+            this.url = url;
+            this.overrides = overrides;
+        }
+    }
+
     static {
         try {
             DriverManager.registerDriver(new LogDriver());
@@ -106,11 +170,14 @@ public class LogDriver implements Driver {
         catch (SQLException e) {
             log.error("Couldn't register LogDriver.", e);
         }
+        DriverMonitor.register();
     }
 
+    /**
+     * {@inheritDoc}
+     */
     public java.util.logging.Logger getParentLogger()
         throws SQLFeatureNotSupportedException {
-        // TODO Auto-generated method stub
-        return null;
+        throw new SQLFeatureNotSupportedException();
     }
 }
@@ -14,6 +14,21 @@
  */
 package net.rkbloom.logdriver;
 
+import net.rkbloom.logdriver.async.AsyncLog;
+import net.rkbloom.logdriver.config.DriverConfig;
+import net.rkbloom.logdriver.config.DriverConfig.RenderMode;
+import net.rkbloom.logdriver.event.BatchEvent;
+import net.rkbloom.logdriver.event.StatementEvent;
+import net.rkbloom.logdriver.event.StatementEvent.Operation;
+import net.rkbloom.logdriver.event.StatementEvent.Type;
+import net.rkbloom.logdriver.util.BatchBuffer;
+import net.rkbloom.logdriver.util.BindParams;
+import net.rkbloom.logdriver.util.CountingInputStream;
+import net.rkbloom.logdriver.util.CountingReader;
+import net.rkbloom.logdriver.util.SqlTemplate;
+import net.rkbloom.logdriver.util.SqlTemplateCache;
+import net.rkbloom.logdriver.util.StreamStats;
+
 import org.apache.log4j.Logger;
 
 import java.io.InputStream;
@@ -21,24 +36,21 @@ import java.io.Reader;
 import java.math.BigDecimal;
 import java.net.URL;
 import java.sql.Array;
+import java.sql.BatchUpdateException;
 import java.sql.Blob;
 import java.sql.Clob;
 import java.sql.Connection;
 import java.sql.Date;
 import java.sql.NClob;
-import java.sql.ParameterMetaData;
 import java.sql.PreparedStatement;
 import java.sql.Ref;
 import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
-import java.sql.RowId;
 import java.sql.SQLException;
-import java.sql.SQLWarning;
-import java.sql.SQLXML;
+import java.sql.SQLType;
 import java.sql.Time;
 import java.sql.Timestamp;
 import java.util.Calendar;
-import java.util.TreeMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
@@ -47,93 +59,313 @@ import java.util.Map;
  * embedded JDBC PreparedStatement.
  * @version $Rev$
  */
-public class LogPreparedStatement implements PreparedStatement {
+public class LogPreparedStatement extends PreparedStatementWrapper {
 
-    private PreparedStatement embedded;
     private Connection conn;
     private String sql;
-    private Map<Integer, Object> bindParams;
+    private SqlTemplate template;
+    private BindParams bindParams;
+    private boolean capture;
+    // whether the next execution of the prepared SQL is logged, see sample()
+    private boolean sampled;
+    private String fingerprint;
+    // an execution that sampling left out, logged after all if it fails
+    private Operation unsampled;
+    private BatchBuffer batch;
+    private Map<Object, StreamStats> streams;
+    private ExecutionTimer timer;
+    // the result set of the last query, until it is reported
+    private LogResultSet results;
+    // the SQL of the last execute(String), for getResultSet()
+    private String lastSql;
     private static Logger log = Logger.getLogger(LogPreparedStatement.class);
     
     LogPreparedStatement(PreparedStatement ps, Connection c, String s) {
-        embedded = ps;
+        super(ps);
         conn = c;
         sql = s;
-        // we want to have the bind parameters print out in order
-        // otherwise it is difficult to match the parameters with
-        // the question marks (?) in the query.
-        bindParams = new TreeMap<Integer, Object>();
+        sampled = sample();
+        // If nobody is going to see this statement we don't parse the SQL
+        // or record the bind parameters at all.  See checkCapture().
+        checkCapture();
+        if (ExecutionTimer.isCapturing(conn)) {
+            timer().prepared();
+        }
+    }
+
+    private void startCapture() {
+        if (bindParams == null) {
+            // one typed slot per question mark (?) in the query, so that the
+            // bind parameters print out in order without boxing every value.
+            template = SqlTemplateCache.get(sql);
+            bindParams = new BindParams(template.getParameterCount());
+        }
+        capture = true;
+    }
+
+    /**
+     * Switches bind capture on or off if the log level, the sampler, the
+     * slow-query log or the capture file has changed since the last
+     * execution.  Binds set
+     * while capture was off are missing from the first record after it is
+     * switched on.
+     * @return true if the execution of the prepared SQL should be logged.
+     */
+    private boolean checkCapture() {
+        boolean logged = sampled && AsyncLog.isDebugEnabled(log);
+        boolean enabled = logged
+            || LogConnection.configOf(conn).isBindCaptureNeeded();
+        if (enabled != capture) {
+            if (enabled) {
+                startCapture();
+            }
+            else {
+                capture = false;
+                batch = null;
+                streams = null;
+                bindParams.clear();
+            }
+        }
+        return logged;
     }
     
     // This looks useless, but it isn't.  I have centralized the logging in
     // this class so that I can easily replace all of the '?'s with the actual
     // values.
-    private void logStatement() {
-        logStatement(sql);
-    }
-
-    private void logStatement(String sql) {
-        String replaceBind = System.getProperty("replace.bindParams", "0");
-        
-        if (replaceBind.equals("1") || replaceBind.equals("true")) {
-        	String logStr = this.bindParamsToSql(sql, this.bindParams);
-        	log.debug("executing PreparedStatement: " + logStr);
-            return;
-        }
-        log.debug("executing PreparedStatement: '" + sql + "' with bind " +
-                  "parameters: " + bindParams);    
-    }
-
-    /**
-     * Replaces bind parameters of an SQL query
-     *  
-     * @param strSQL SQL query containing ?'s wherever a bind param should be
-     * @param mapBindParams one-based index of bind parameters
-     * @return SQL statement containing bind parameters 
-     */
-	private String bindParamsToSql(String strSQL, Map<Integer,Object> mapBindParams)
-	{
-		String[] astrSQL;
-		StringBuilder oLogLineBuilder = new StringBuilder();
-		
-		// sanity check
-		if ( strSQL == null || mapBindParams == null )
-			return strSQL;
-	
-		// split the sql around the ?'s
-		astrSQL = strSQL.split("\\?");
-		
-		// add the split chunks of SQL to oLogLineBuilder, separated by data from mapBindParams
-		int i = 1;
-		for ( String strChunk : astrSQL )
-		{
-			oLogLineBuilder.append(strChunk);
-			if ( mapBindParams.containsKey(i) )
-				oLogLineBuilder.append(
-					mapBindParams.get(i) != null ?
-						mapBindParams.get(i).toString() :
-						"NULL"
-					);
-			i++;
-		}
-		
-		return oLogLineBuilder.toString();
-	}
+    private void logStatement(Operation op) {
+        boolean logged = checkCapture();
+        unsampled = (!logged && AsyncLog.isDebugEnabled(log) ? op : null);
+        if (logged) {
+            logStatement(op, template);
+        }
+    }
+
+    private void logStatement(Operation op, String sql) {
+        checkCapture();
+        unsampled = null;
+        if (AsyncLog.isDebugEnabled(log)) {
+            if (LogSampler.isSampled(LogConnection.configOf(conn), sql)) {
+                logStatement(op, SqlTemplateCache.get(sql));
+            }
+            else {
+                unsampled = op;
+            }
+        }
+    }
+
+    private void logStatement(Operation op, SqlTemplate tmpl) {
+        boolean inline = LogConnection.configOf(conn).getRenderMode() ==
+                         RenderMode.INLINE;
+
+        // the event is rendered by the appender, if it gets that far, so
+        // all we pay for here is a copy of the bind parameters.  An
+        // execution that was sampled out may have none.
+        AsyncLog.debug(log, new StatementEvent(Type.PREPARED, op, tmpl,
+                (capture ? bindParams.copy() : null), null, inline));
+    }
     
+    // One record for the whole batch.  The event takes the rows with it,
+    // the next batch starts a new buffer.
+    private void logBatch(long elapsed, int[] counts) {
+        BatchBuffer rows = (batch != null ? batch : new BatchBuffer(0, 0));
+        batch = null;
+        AsyncLog.debug(log, new BatchEvent(Type.PREPARED, sql, rows, elapsed,
+                                           counts));
+    }
+
+    // Stream parameters are logged as the statistics of their transfer,
+    // never as the stream itself.
+    private InputStream tee(int i, InputStream x, String label, int mode,
+                            long length) {
+        if (!capture || x == null) {
+            return x;
+        }
+        StreamStats st = newStats(label, mode, length);
+        bindParams.setObject(i, st);
+        streamBound(Integer.valueOf(i), st);
+        return new CountingInputStream(x, st);
+    }
+
+    private Reader tee(int i, Reader x, String label, long length) {
+        if (!capture || x == null) {
+            return x;
+        }
+        StreamStats st = newStats(label, StreamStats.CHARACTER, length);
+        bindParams.setObject(i, st);
+        streamBound(Integer.valueOf(i), st);
+        return new CountingReader(x, st);
+    }
+
+    private void stopTimer(long start, String executed, Object result) {
+        if (start != ExecutionTimer.NOT_TIMED) {
+            // bind parameters only belong to the prepared SQL
+            timer().stop(start, executed,
+                         (executed == null ? bindParams : null), result);
+        }
+        finishExecution(executed, result == ExecutionTimer.FAILED_RESULT);
+    }
+
+    private void stopTimer(long start, String executed, int count) {
+        if (start != ExecutionTimer.NOT_TIMED) {
+            timer().stop(start, executed,
+                         (executed == null ? bindParams : null),
+                         (count == ExecutionTimer.FAILED)
+                         ? ExecutionTimer.FAILED_RESULT
+                         : Integer.valueOf(count));
+        }
+        finishExecution(executed, count == ExecutionTimer.FAILED);
+    }
+
+    // An execution that sampling left out is logged after all if it
+    // failed.  Then the next execution of the prepared SQL is sampled,
+    // before any of its parameters are set, so that they are only
+    // captured if it is going to be logged.
+    private void finishExecution(String executed, boolean failed) {
+        if (unsampled != null) {
+            if (failed) {
+                logStatement(unsampled, SqlTemplateCache.get(
+                        executed != null ? executed : sql));
+            }
+            unsampled = null;
+        }
+        if (executed == null) {
+            boolean next = sample();
+            if (next != sampled) {
+                sampled = next;
+                checkCapture();
+            }
+        }
+    }
+
+    // Whether the next execution of the prepared SQL is logged, as far as
+    // sampling goes.
+    private boolean sample() {
+        DriverConfig cfg = LogConnection.configOf(conn);
+        if (!cfg.isSamplingEnabled() || !AsyncLog.isDebugEnabled(log)) {
+            return true;
+        }
+        String fp = null;
+        if (LogSampler.isPerStatement(cfg)) {
+            if (fingerprint == null) {
+                // shared by every statement that prepares the same SQL
+                fingerprint = SqlTemplateCache.get(sql).getFingerprint();
+            }
+            fp = fingerprint;
+        }
+        return LogSampler.get(cfg, fp).sample(cfg);
+    }
+
+    private ExecutionTimer timer() {
+        if (timer == null) {
+            timer = new ExecutionTimer(conn, Type.PREPARED, sql);
+        }
+        return timer;
+    }
+
+    // Wraps a result set so that its rows are counted, unless nothing
+    // wants them counted.  A result set the application never closed is
+    // reported now, since the driver has closed it.
+    private ResultSet wrap(ResultSet rs, String executed) {
+        if (results != null && rs != null && results.wraps(rs)) {
+            return results;
+        }
+        finishResults();
+        if (rs == null || !LogResultSet.isWanted(conn)) {
+            return rs;
+        }
+        results = new LogResultSet(rs, this, timer(), executed);
+        return results;
+    }
+
+    private void finishResults() {
+        if (results != null) {
+            results.finish();
+            results = null;
+        }
+    }
+
+    private void streamBound(Object key, StreamStats st) {
+        if (streams == null) {
+            streams = new LinkedHashMap<Object, StreamStats>();
+        }
+        streams.put(key, st);
+    }
+
+    // Most drivers only read stream parameters while executing, so the
+    // statement record shows them unread.  This one follows the
+    // execution with what was actually transferred.
+    private void logStreams() {
+        if (streams != null && !streams.isEmpty()) {
+            if (AsyncLog.isDebugEnabled(log)) {
+                AsyncLog.debug(log, "transferred stream parameters: "
+                               + streams);
+            }
+            streams.clear();
+        }
+    }
+
+    private StreamStats newStats(String label, int mode, long length) {
+        return new StreamStats(label, mode, length,
+                LogConnection.configOf(conn).getStreamPrefix());
+    }
+
     /**
      * {@inheritDoc}
      */
     public int executeUpdate() throws SQLException {
-        logStatement();
-        return embedded.executeUpdate();
+        logStatement(Operation.UPDATE);
+        long start = ExecutionTimer.start(conn);
+        int count = ExecutionTimer.FAILED;
+        try {
+            count = embedded.executeUpdate();
+            return count;
+        }
+        finally {
+            logStreams();
+            stopTimer(start, null, count);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long executeLargeUpdate() throws SQLException {
+        logStatement(Operation.UPDATE);
+        long start = ExecutionTimer.start(conn);
+        Object result = ExecutionTimer.FAILED_RESULT;
+        try {
+            long count = embedded.executeLargeUpdate();
+            result = ExecutionTimer.updateCount(count);
+            return count;
+        }
+        finally {
+            logStreams();
+            stopTimer(start, null, result);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
     public void addBatch() throws SQLException {
-        logStatement();
         embedded.addBatch();
+        // the capture file may have been switched on since the last
+        // execution, and it needs the parameters of every row
+        boolean logged = checkCapture();
+        if (ExecutionTimer.isCapturing(conn)) {
+            timer().batchAdded(bindParams);
+        }
+        if (logged) {
+            if (batch == null) {
+                batch = new BatchBuffer(template.getParameterCount(),
+                        LogConnection.configOf(conn).getBatchMaxRows());
+            }
+            batch.addRow(bindParams);
+            if (streams != null) {
+                // the row owns its streams now, they show up in its sample
+                streams.clear();
+            }
+        }
     }
 
     /**
@@ -141,15 +373,31 @@ public class LogPreparedStatement implements PreparedStatement {
      */
     public void clearParameters() throws SQLException {
         embedded.clearParameters();
-        bindParams.clear();
+        if (bindParams != null) {
+            bindParams.clear();
+        }
+        if (streams != null) {
+            streams.clear();
+        }
     }
 
     /**
      * {@inheritDoc}
      */
     public boolean execute() throws SQLException {
-        logStatement();
-        return embedded.execute();
+        lastSql = null;
+        logStatement(Operation.EXECUTE);
+        long start = ExecutionTimer.start(conn);
+        Object result = ExecutionTimer.FAILED_RESULT;
+        try {
+            boolean b = embedded.execute();
+            result = Boolean.valueOf(b);
+            return b;
+        }
+        finally {
+            logStreams();
+            stopTimer(start, null, result);
+        }
     }
 
     /**
@@ -157,7 +405,9 @@ public class LogPreparedStatement implements PreparedStatement {
      */
     public void setByte(int i, byte x) throws SQLException {
         embedded.setByte(i, x);
-        bindParams.put(new Integer(i), new Byte(x));
+        if (capture) {
+            bindParams.setByte(i, x);
+        }
     }
 
     /**
@@ -165,7 +415,9 @@ public class LogPreparedStatement implements PreparedStatement {
      */
     public void setDouble(int i, double x) throws SQLException {
         embedded.setDouble(i, x);
-        bindParams.put(new Integer(i), new Double(x));
+        if (capture) {
+            bindParams.setDouble(i, x);
+        }
     }
 
     /**
@@ -173,7 +425,9 @@ public class LogPreparedStatement implements PreparedStatement {
      */
     public void setFloat(int i, float x) throws SQLException {
         embedded.setFloat(i, x);
-        bindParams.put(new Integer(i), new Float(x));
+        if (capture) {
+            bindParams.setFloat(i, x);
+        }
     }
 
     /**
@@ -181,7 +435,9 @@ public class LogPreparedStatement implements PreparedStatement {
      */
     public void setInt(int i, int x) throws SQLException {
         embedded.setInt(i, x);
-        bindParams.put(new Integer(i), new Integer(x));
+        if (capture) {
+            bindParams.setInt(i, x);
+        }
     }
 
     /**
@@ -189,7 +445,9 @@ public class LogPreparedStatement implements PreparedStatement {
      */
     public void setNull(int i, int sqlType) throws SQLException {
         embedded.setNull(i, sqlType);
-        bindParams.put(new Integer(i), null);
+        if (capture) {
+            bindParams.setNull(i);
+        }
     }
 
     /**
@@ -197,7 +455,9 @@ public class LogPreparedStatement implements PreparedStatement {
      */
     public void setLong(int i, long x) throws SQLException {
         embedded.setLong(i, x);
-        bindParams.put(new Integer(i), new Long(x));
+        if (capture) {
+            bindParams.setLong(i, x);
+        }
     }
 
     /**
@@ -205,7 +465,9 @@ public class LogPreparedStatement implements PreparedStatement {
      */
     public void setShort(int i, short x) throws SQLException {
         embedded.setShort(i, x);
-        bindParams.put(new Integer(i), new Short(x));
+        if (capture) {
+            bindParams.setShort(i, x);
+        }
     }
 
     /**
@@ -213,7 +475,9 @@ public class LogPreparedStatement implements PreparedStatement {
      */
     public void setBoolean(int i, boolean x) throws SQLException {
         embedded.setBoolean(i, x);
-        bindParams.put(new Integer(i), new Boolean(x));
+        if (capture) {
+            bindParams.setBoolean(i, x);
+        }
     }
 
     /**
@@ -223,7 +487,9 @@ public class LogPreparedStatement implements PreparedStatement {
         embedded.setBytes(i, x);
         // Should this be:
         // bindParams.put(new Integer(i), Arrays.asList(x));
-        bindParams.put(new Integer(i), x);
+        if (capture) {
+            bindParams.setObject(i, x);
+        }
     }
 
     /**
@@ -231,8 +497,8 @@ public class LogPreparedStatement implements PreparedStatement {
      */
     public void setAsciiStream(int i, InputStream x, int length)
         throws SQLException {
-        embedded.setAsciiStream(i, x, length);
-        bindParams.put(new Integer(i), x);
+        embedded.setAsciiStream(i,
+                tee(i, x, "ascii stream", StreamStats.ASCII, length), length);
     }
 
     /**
@@ -240,18 +506,19 @@ public class LogPreparedStatement implements PreparedStatement {
      */
     public void setBinaryStream(int i, InputStream x, int length)
         throws SQLException {
-        embedded.setBinaryStream(i, x, length);
-        bindParams.put(new Integer(i), x);
+        embedded.setBinaryStream(i,
+                tee(i, x, "binary stream", StreamStats.BINARY, length), length);
     }
 
     /**
      * {@inheritDoc}
      * @deprecated
      */
+    @Deprecated
     public void setUnicodeStream(int i, InputStream x, int length)
         throws SQLException {
-        embedded.setUnicodeStream(i, x, length);
-        bindParams.put(new Integer(i), x);
+        embedded.setUnicodeStream(i,
+                tee(i, x, "unicode stream", StreamStats.BINARY, length), length);
     }
 
     /**
@@ -259,8 +526,8 @@ public class LogPreparedStatement implements PreparedStatement {
      */
     public void setCharacterStream(int i, Reader reader, int length)
         throws SQLException {
-        embedded.setCharacterStream(i, reader, length);
-        bindParams.put(new Integer(i), reader);
+        embedded.setCharacterStream(i,
+                tee(i, reader, "character stream", length), length);
     }
 
     /**
@@ -268,7 +535,9 @@ public class LogPreparedStatement implements PreparedStatement {
      */
     public void setObject(int i, Object x) throws SQLException {
         embedded.setObject(i, x);
-        bindParams.put(new Integer(i), x);
+        if (capture) {
+            bindParams.setObject(i, x);
+        }
     }
 
     /**
@@ -277,7 +546,9 @@ public class LogPreparedStatement implements PreparedStatement {
     public void setObject(int i, Object x, int targetSqlType)
         throws SQLException {
         embedded.setObject(i, x, targetSqlType);
-        bindParams.put(new Integer(i), x);
+        if (capture) {
+            bindParams.setObject(i, x);
+        }
     }
 
     /**
@@ -286,7 +557,31 @@ public class LogPreparedStatement implements PreparedStatement {
     public void setObject(int i, Object x, int targetSqlType,
             int scale) throws SQLException {
         embedded.setObject(i, x, targetSqlType, scale);
-        bindParams.put(new Integer(i), x);
+        if (capture) {
+            bindParams.setObject(i, x);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setObject(int i, Object x, SQLType targetSqlType)
+        throws SQLException {
+        embedded.setObject(i, x, targetSqlType);
+        if (capture) {
+            bindParams.setObject(i, x);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setObject(int i, Object x, SQLType targetSqlType,
+            int scaleOrLength) throws SQLException {
+        embedded.setObject(i, x, targetSqlType, scaleOrLength);
+        if (capture) {
+            bindParams.setObject(i, x);
+        }
     }
 
     /**
@@ -295,7 +590,9 @@ public class LogPreparedStatement implements PreparedStatement {
     public void setNull(int paramIndex, int sqlType, String typeName)
         throws SQLException {
         embedded.setNull(paramIndex, sqlType, typeName);
-        bindParams.put(new Integer(paramIndex), null);
+        if (capture) {
+            bindParams.setNull(paramIndex);
+        }
     }
 
     /**
@@ -303,7 +600,9 @@ public class LogPreparedStatement implements PreparedStatement {
      */
     public void setString(int i, String x) throws SQLException {
         embedded.setString(i, x);
-        bindParams.put(new Integer(i), x);
+        if (capture) {
+            bindParams.setObject(i, x);
+        }
     }
 
     /**
@@ -312,7 +611,9 @@ public class LogPreparedStatement implements PreparedStatement {
     public void setBigDecimal(int i, BigDecimal x)
         throws SQLException {
         embedded.setBigDecimal(i, x);
-        bindParams.put(new Integer(i), x);
+        if (capture) {
+            bindParams.setObject(i, x);
+        }
     }
 
     /**
@@ -320,7 +621,9 @@ public class LogPreparedStatement implements PreparedStatement {
      */
     public void setURL(int i, URL x) throws SQLException {
         embedded.setURL(i, x);
-        bindParams.put(new Integer(i), x);
+        if (capture) {
+            bindParams.setObject(i, x);
+        }
     }
 
     /**
@@ -328,7 +631,9 @@ public class LogPreparedStatement implements PreparedStatement {
      */
     public void setArray(int i, Array x) throws SQLException {
         embedded.setArray(i, x);
-        bindParams.put(new Integer(i), x);
+        if (capture) {
+            bindParams.setObject(i, x);
+        }
     }
 
     /**
@@ -336,7 +641,9 @@ public class LogPreparedStatement implements PreparedStatement {
      */
     public void setBlob(int i, Blob x) throws SQLException {
         embedded.setBlob(i, x);
-        bindParams.put(new Integer(i), x);
+        if (capture) {
+            bindParams.setObject(i, x);
+        }
     }
 
     /**
@@ -344,7 +651,9 @@ public class LogPreparedStatement implements PreparedStatement {
      */
     public void setClob(int i, Clob x) throws SQLException {
         embedded.setClob(i, x);
-        bindParams.put(new Integer(i), x);
+        if (capture) {
+            bindParams.setObject(i, x);
+        }
     }
 
     /**
@@ -352,14 +661,9 @@ public class LogPreparedStatement implements PreparedStatement {
      */
     public void setDate(int i, Date x) throws SQLException {
         embedded.setDate(i, x);
-        bindParams.put(new Integer(i), x);
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public ParameterMetaData getParameterMetaData() throws SQLException {
-        return embedded.getParameterMetaData();
+        if (capture) {
+            bindParams.setObject(i, x);
+        }
     }
 
     /**
@@ -367,22 +671,27 @@ public class LogPreparedStatement implements PreparedStatement {
      */
     public void setRef(int i, Ref x) throws SQLException {
         embedded.setRef(i, x);
-        bindParams.put(new Integer(i), x);
+        if (capture) {
+            bindParams.setObject(i, x);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
     public ResultSet executeQuery() throws SQLException {
-        logStatement();
-        return embedded.executeQuery();
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public ResultSetMetaData getMetaData() throws SQLException {
-        return embedded.getMetaData();
+        logStatement(Operation.QUERY);
+        long start = ExecutionTimer.start(conn);
+        Object result = ExecutionTimer.FAILED_RESULT;
+        try {
+            ResultSet rs = wrap(embedded.executeQuery(), null);
+            result = rs;
+            return rs;
+        }
+        finally {
+            logStreams();
+            stopTimer(start, null, result);
+        }
     }
 
     /**
@@ -390,7 +699,9 @@ public class LogPreparedStatement implements PreparedStatement {
      */
     public void setTime(int i, Time x) throws SQLException {
         embedded.setTime(i, x);
-        bindParams.put(new Integer(i), x);
+        if (capture) {
+            bindParams.setObject(i, x);
+        }
     }
 
     /**
@@ -399,7 +710,9 @@ public class LogPreparedStatement implements PreparedStatement {
     public void setTimestamp(int i, Timestamp x)
         throws SQLException {
         embedded.setTimestamp(i, x);
-        bindParams.put(new Integer(i), x);
+        if (capture) {
+            bindParams.setObject(i, x);
+        }
     }
 
     /**
@@ -408,7 +721,9 @@ public class LogPreparedStatement implements PreparedStatement {
     public void setDate(int i, Date x, Calendar cal)
         throws SQLException {
         embedded.setDate(i, x, cal);
-        bindParams.put(new Integer(i), x);
+        if (capture) {
+            bindParams.setObject(i, x);
+        }
     }
 
     /**
@@ -417,7 +732,9 @@ public class LogPreparedStatement implements PreparedStatement {
     public void setTime(int i, Time x, Calendar cal)
         throws SQLException {
         embedded.setTime(i, x, cal);
-        bindParams.put(new Integer(i), x);
+        if (capture) {
+            bindParams.setObject(i, x);
+        }
     }
 
     /**
@@ -426,77 +743,9 @@ public class LogPreparedStatement implements PreparedStatement {
     public void setTimestamp(int i, Timestamp x, Calendar cal)
         throws SQLException {
         embedded.setTimestamp(i, x, cal);
-        bindParams.put(new Integer(i), x);
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public int getFetchDirection() throws SQLException {
-        return embedded.getFetchDirection();
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public int getFetchSize() throws SQLException {
-        return embedded.getFetchSize();
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public int getMaxFieldSize() throws SQLException {
-        return embedded.getMaxFieldSize();
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public int getMaxRows() throws SQLException {
-        return embedded.getMaxRows();
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public int getQueryTimeout() throws SQLException {
-        return embedded.getQueryTimeout();
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public int getResultSetConcurrency() throws SQLException {
-        return embedded.getResultSetConcurrency();
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public int getResultSetHoldability() throws SQLException {
-        return embedded.getResultSetHoldability();
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public int getResultSetType() throws SQLException {
-        return embedded.getResultSetType();
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public int getUpdateCount() throws SQLException {
-        return embedded.getUpdateCount();
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public void cancel() throws SQLException {
-        embedded.cancel();
+        if (capture) {
+            bindParams.setObject(i, x);
+        }
     }
 
     /**
@@ -504,26 +753,30 @@ public class LogPreparedStatement implements PreparedStatement {
      */
     public void clearBatch() throws SQLException {
         embedded.clearBatch();
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public void clearWarnings() throws SQLException {
-        embedded.clearWarnings();
+        if (batch != null) {
+            batch.clear();
+        }
+        if (timer != null) {
+            timer.batchCleared();
+        }
     }
 
     /**
      * {@inheritDoc}
      */
     public void close() throws SQLException {
+        finishResults();
         embedded.close();
+        if (timer != null) {
+            timer.closed();
+        }
     }
 
     /**
      * {@inheritDoc}
      */
     public boolean getMoreResults() throws SQLException {
+        finishResults();
         return embedded.getMoreResults();
     }
 
@@ -531,64 +784,99 @@ public class LogPreparedStatement implements PreparedStatement {
      * {@inheritDoc}
      */
     public int[] executeBatch() throws SQLException {
-        return embedded.executeBatch();
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public void setFetchDirection(int direction) throws SQLException {
-        embedded.setFetchDirection(direction);
+        return (int[]) runBatch(false);
     }
 
     /**
      * {@inheritDoc}
      */
-    public void setFetchSize(int rows) throws SQLException {
-        embedded.setFetchSize(rows);
+    public long[] executeLargeBatch() throws SQLException {
+        return (long[]) runBatch(true);
     }
 
-    /**
-     * {@inheritDoc}
-     */
-    public void setMaxFieldSize(int max) throws SQLException {
-        embedded.setMaxFieldSize(max);
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public void setMaxRows(int max) throws SQLException {
-        embedded.setMaxRows(max);
+    private Object embeddedBatch(boolean large) throws SQLException {
+        if (large) {
+            return embedded.executeLargeBatch();
+        }
+        return embedded.executeBatch();
     }
 
-    /**
-     * {@inheritDoc}
-     */
-    public void setQueryTimeout(int seconds) throws SQLException {
-        embedded.setQueryTimeout(seconds);
+    // Runs either kind of batch.  Large counts are logged and timed as
+    // ints, the way executeBatch's are.
+    private Object runBatch(boolean large) throws SQLException {
+        boolean logged = checkCapture();
+        // a batch that was sampled out is still logged if it fails
+        boolean unlogged = !logged && AsyncLog.isDebugEnabled(log);
+        unsampled = null;
+        long start = ExecutionTimer.start(conn);
+        if (!logged && !unlogged && start == ExecutionTimer.NOT_TIMED) {
+            return embeddedBatch(large);
+        }
+        long began = (start != ExecutionTimer.NOT_TIMED)
+            ? start : System.nanoTime();
+        int[] counts = null;
+        Object result = ExecutionTimer.FAILED_RESULT;
+        try {
+            Object r = embeddedBatch(large);
+            counts = (large ? ExecutionTimer.updateCounts((long[]) r)
+                      : (int[]) r);
+            result = counts;
+            return r;
+        }
+        catch (BatchUpdateException e) {
+            counts = e.getUpdateCounts();
+            throw e;
+        }
+        finally {
+            if (logged
+                || (unlogged && result == ExecutionTimer.FAILED_RESULT)) {
+                logBatch(System.nanoTime() - began, counts);
+            }
+            stopTimer(start, null, result);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
     public boolean getMoreResults(int current) throws SQLException {
+        if (current != KEEP_CURRENT_RESULT) {
+            finishResults();
+        }
         return embedded.getMoreResults(current);
     }
 
     /**
      * {@inheritDoc}
      */
-    public void setEscapeProcessing(boolean enable) throws SQLException {
-        embedded.setEscapeProcessing(enable);
+    public int executeUpdate(String sql) throws SQLException {
+        logStatement(Operation.UPDATE, sql);
+        long start = ExecutionTimer.start(conn);
+        int count = ExecutionTimer.FAILED;
+        try {
+            count = embedded.executeUpdate(sql);
+            return count;
+        }
+        finally {
+            stopTimer(start, sql, count);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
-    public int executeUpdate(String sql) throws SQLException {
-        logStatement(sql);
-        return embedded.executeUpdate(sql);
+    public long executeLargeUpdate(String sql) throws SQLException {
+        logStatement(Operation.UPDATE, sql);
+        long start = ExecutionTimer.start(conn);
+        Object result = ExecutionTimer.FAILED_RESULT;
+        try {
+            long count = embedded.executeLargeUpdate(sql);
+            result = ExecutionTimer.updateCount(count);
+            return count;
+        }
+        finally {
+            stopTimer(start, sql, result);
+        }
     }
 
     /**
@@ -596,30 +884,62 @@ public class LogPreparedStatement implements PreparedStatement {
      */
     public void addBatch(String sql) throws SQLException {
         embedded.addBatch(sql);
+        if (ExecutionTimer.isCapturing(conn)) {
+            timer().batchAdded(sql);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
-    public void setCursorName(String name) throws SQLException {
-        embedded.setCursorName(name);
+    public boolean execute(String sql) throws SQLException {
+        lastSql = sql;
+        logStatement(Operation.EXECUTE, sql);
+        long start = ExecutionTimer.start(conn);
+        Object result = ExecutionTimer.FAILED_RESULT;
+        try {
+            boolean b = embedded.execute(sql);
+            result = Boolean.valueOf(b);
+            return b;
+        }
+        finally {
+            stopTimer(start, sql, result);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
-    public boolean execute(String sql) throws SQLException {
-        logStatement(sql);
-        return embedded.execute(sql);
+    public int executeUpdate(String sql, int autoGeneratedKeys)
+        throws SQLException {
+        logStatement(Operation.UPDATE, sql);
+        long start = ExecutionTimer.start(conn);
+        int count = ExecutionTimer.FAILED;
+        try {
+            count = embedded.executeUpdate(sql, autoGeneratedKeys);
+            return count;
+        }
+        finally {
+            stopTimer(start, sql, count);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
-    public int executeUpdate(String sql, int autoGeneratedKeys)
+    public long executeLargeUpdate(String sql, int autoGeneratedKeys)
         throws SQLException {
-        logStatement(sql);
-        return embedded.executeUpdate(sql, autoGeneratedKeys);
+        logStatement(Operation.UPDATE, sql);
+        long start = ExecutionTimer.start(conn);
+        Object result = ExecutionTimer.FAILED_RESULT;
+        try {
+            long count = embedded.executeLargeUpdate(sql, autoGeneratedKeys);
+            result = ExecutionTimer.updateCount(count);
+            return count;
+        }
+        finally {
+            stopTimer(start, sql, result);
+        }
     }
 
     /**
@@ -627,8 +947,18 @@ public class LogPreparedStatement implements PreparedStatement {
      */
     public boolean execute(String sql, int autoGeneratedKeys)
         throws SQLException {
-        logStatement(sql);
-        return embedded.execute(sql, autoGeneratedKeys);
+        lastSql = sql;
+        logStatement(Operation.EXECUTE, sql);
+        long start = ExecutionTimer.start(conn);
+        Object result = ExecutionTimer.FAILED_RESULT;
+        try {
+            boolean b = embedded.execute(sql, autoGeneratedKeys);
+            result = Boolean.valueOf(b);
+            return b;
+        }
+        finally {
+            stopTimer(start, sql, result);
+        }
     }
 
     /**
@@ -636,53 +966,101 @@ public class LogPreparedStatement implements PreparedStatement {
      */
     public int executeUpdate(String sql, int[] columnIndexes)
         throws SQLException {
-        logStatement(sql);
-        return embedded.executeUpdate(sql, columnIndexes);
+        logStatement(Operation.UPDATE, sql);
+        long start = ExecutionTimer.start(conn);
+        int count = ExecutionTimer.FAILED;
+        try {
+            count = embedded.executeUpdate(sql, columnIndexes);
+            return count;
+        }
+        finally {
+            stopTimer(start, sql, count);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
-    public boolean execute(String sql, int[] columnIndexes) throws SQLException {
-        logStatement(sql);
-        return embedded.execute(sql, columnIndexes);
+    public long executeLargeUpdate(String sql, int[] columnIndexes)
+        throws SQLException {
+        logStatement(Operation.UPDATE, sql);
+        long start = ExecutionTimer.start(conn);
+        Object result = ExecutionTimer.FAILED_RESULT;
+        try {
+            long count = embedded.executeLargeUpdate(sql, columnIndexes);
+            result = ExecutionTimer.updateCount(count);
+            return count;
+        }
+        finally {
+            stopTimer(start, sql, result);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
-    public Connection getConnection() throws SQLException {
-        return conn;
+    public boolean execute(String sql, int[] columnIndexes) throws SQLException {
+        lastSql = sql;
+        logStatement(Operation.EXECUTE, sql);
+        long start = ExecutionTimer.start(conn);
+        Object result = ExecutionTimer.FAILED_RESULT;
+        try {
+            boolean b = embedded.execute(sql, columnIndexes);
+            result = Boolean.valueOf(b);
+            return b;
+        }
+        finally {
+            stopTimer(start, sql, result);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
-    public ResultSet getGeneratedKeys() throws SQLException {
-        return embedded.getGeneratedKeys();
+    public Connection getConnection() throws SQLException {
+        return conn;
     }
 
     /**
      * {@inheritDoc}
      */
     public ResultSet getResultSet() throws SQLException {
-        return embedded.getResultSet();
+        return wrap(embedded.getResultSet(), lastSql);
     }
 
     /**
      * {@inheritDoc}
      */
-    public SQLWarning getWarnings() throws SQLException {
-        return embedded.getWarnings();
+    public int executeUpdate(String sql, String[] columnNames)
+        throws SQLException {
+        logStatement(Operation.UPDATE, sql);
+        long start = ExecutionTimer.start(conn);
+        int count = ExecutionTimer.FAILED;
+        try {
+            count = embedded.executeUpdate(sql, columnNames);
+            return count;
+        }
+        finally {
+            stopTimer(start, sql, count);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
-    public int executeUpdate(String sql, String[] columnNames)
+    public long executeLargeUpdate(String sql, String[] columnNames)
         throws SQLException {
-        logStatement(sql);
-        return embedded.executeUpdate(sql, columnNames);
+        logStatement(Operation.UPDATE, sql);
+        long start = ExecutionTimer.start(conn);
+        Object result = ExecutionTimer.FAILED_RESULT;
+        try {
+            long count = embedded.executeLargeUpdate(sql, columnNames);
+            result = ExecutionTimer.updateCount(count);
+            return count;
+        }
+        finally {
+            stopTimer(start, sql, result);
+        }
     }
 
     /**
@@ -690,124 +1068,120 @@ public class LogPreparedStatement implements PreparedStatement {
      */
     public boolean execute(String sql, String[] columnNames)
         throws SQLException {
-        logStatement(sql);        
-        return embedded.execute(sql, columnNames);
+        lastSql = sql;
+        logStatement(Operation.EXECUTE, sql);
+        long start = ExecutionTimer.start(conn);
+        Object result = ExecutionTimer.FAILED_RESULT;
+        try {
+            boolean b = embedded.execute(sql, columnNames);
+            result = Boolean.valueOf(b);
+            return b;
+        }
+        finally {
+            stopTimer(start, sql, result);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
     public ResultSet executeQuery(String sql) throws SQLException {
-        logStatement(sql);
-        return embedded.executeQuery(sql);
-    }
-
-    public boolean isClosed() throws SQLException {
-        return embedded.isClosed();
-    }
-
-    public void setPoolable(boolean poolable) throws SQLException {
-        embedded.setPoolable(poolable);
-    }
-
-    public boolean isPoolable() throws SQLException {
-        return embedded.isPoolable();
-    }
-
-    public void closeOnCompletion() throws SQLException {
-        embedded.closeOnCompletion();
-    }
-
-    public boolean isCloseOnCompletion() throws SQLException {
-        return embedded.isCloseOnCompletion();
-    }
-
-    public <T> T unwrap(Class<T> iface) throws SQLException {
-        return embedded.unwrap(iface);
-    }
-
-    public boolean isWrapperFor(Class<?> iface) throws SQLException {
-        return embedded.isWrapperFor(iface);
-    }
-
-    public void setRowId(int i, RowId x) throws SQLException {
-        embedded.setRowId(i, x);
+        logStatement(Operation.QUERY, sql);
+        long start = ExecutionTimer.start(conn);
+        Object result = ExecutionTimer.FAILED_RESULT;
+        try {
+            ResultSet rs = wrap(embedded.executeQuery(sql), sql);
+            result = rs;
+            return rs;
+        }
+        finally {
+            stopTimer(start, sql, result);
+        }
     }
 
     public void setNString(int i, String value)
         throws SQLException {
         embedded.setNString(i, value);
+        if (capture) {
+            bindParams.setObject(i, value);
+        }
     }
 
     public void setNCharacterStream(int i, Reader reader, long length)
         throws SQLException {
-        embedded.setNCharacterStream(i, reader, length);
+        embedded.setNCharacterStream(i,
+                tee(i, reader, "ncharacter stream", length), length);
     }
 
     public void setNClob(int i, NClob value) throws SQLException {
         embedded.setNClob(i, value);
+        if (capture) {
+            bindParams.setObject(i, value);
+        }
     }
 
     public void setClob(int i, Reader reader, long length)
         throws SQLException {
-        embedded.setClob(i, reader, length);
+        embedded.setClob(i, tee(i, reader, "clob", length), length);
     }
 
     public void setBlob(int i, InputStream input, long length)
         throws SQLException {
-        embedded.setBlob(i,  input, length);
+        embedded.setBlob(i,
+                tee(i, input, "blob", StreamStats.BINARY, length), length);
     }
 
     public void setNClob(int i, Reader reader, long length)
         throws SQLException {
-        embedded.setNClob(i, reader, length);
-    }
-
-    public void setSQLXML(int i, SQLXML xmlObject)
-        throws SQLException {
-        embedded.setSQLXML(i, xmlObject);
+        embedded.setNClob(i, tee(i, reader, "nclob", length), length);
     }
 
     public void setAsciiStream(int i, InputStream input, long length)
         throws SQLException {
-        embedded.setAsciiStream(i, input, length);
+        embedded.setAsciiStream(i,
+                tee(i, input, "ascii stream", StreamStats.ASCII, length), length);
     }
 
     public void setBinaryStream(int i, InputStream input, long length)
         throws SQLException {
-        embedded.setBinaryStream(i, input, length);
+        embedded.setBinaryStream(i,
+                tee(i, input, "binary stream", StreamStats.BINARY, length), length);
     }
 
     public void setCharacterStream(int i, Reader reader,
             long length) throws SQLException {
-        embedded.setCharacterStream(i, reader, length);
+        embedded.setCharacterStream(i,
+                tee(i, reader, "character stream", length), length);
     }
 
     public void setAsciiStream(int i, InputStream input) throws SQLException {
-        embedded.setAsciiStream(i,  input);
+        embedded.setAsciiStream(i,
+                tee(i, input, "ascii stream", StreamStats.ASCII, -1));
     }
 
     public void setBinaryStream(int i, InputStream input) throws SQLException {
-        embedded.setBinaryStream(i, input);
+        embedded.setBinaryStream(i,
+                tee(i, input, "binary stream", StreamStats.BINARY, -1));
     }
 
     public void setCharacterStream(int i, Reader reader) throws SQLException {
-        embedded.setCharacterStream(i, reader);
+        embedded.setCharacterStream(i, tee(i, reader, "character stream", -1));
     }
 
     public void setNCharacterStream(int i, Reader reader) throws SQLException {
-        embedded.setNCharacterStream(i, reader);
+        embedded.setNCharacterStream(i,
+                tee(i, reader, "ncharacter stream", -1));
     }
 
     public void setClob(int i, Reader reader) throws SQLException {
-        embedded.setClob(i,  reader);
+        embedded.setClob(i, tee(i, reader, "clob", -1));
     }
 
     public void setBlob(int i, InputStream input) throws SQLException {
-        embedded.setBlob(i, input);
+        embedded.setBlob(i, tee(i, input, "blob", StreamStats.BINARY, -1));
     }
 
     public void setNClob(int i, Reader reader) throws SQLException {
-        embedded.setNClob(i, reader);
+        embedded.setNClob(i, tee(i, reader, "nclob", -1));
     }
 }
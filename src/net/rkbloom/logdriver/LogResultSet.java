@@ -0,0 +1,555 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver;
+
+import net.rkbloom.logdriver.async.AsyncLog;
+import net.rkbloom.logdriver.event.ResultSetEvent;
+
+import org.apache.log4j.Logger;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Calendar;
+import java.util.Map;
+
+/**
+ * LogResultSet is a wrapper class around the JDBC ResultSet.  It counts the
+ * rows read with next() and estimates the bytes in the columns read through
+ * the typed getters, then reports both when it is closed: they are added to
+ * the statistics of the query's SQL fingerprint and, if DEBUG is enabled,
+ * logged.  Counting is two fields and no allocation per row, so wrapping a
+ * million-row export costs next to nothing.
+ * <p>
+ * The byte counts are estimates: a String counts its length, byte arrays
+ * theirs, numbers and dates their usual binary size.  Streams and LOBs are
+ * not counted, since sizing them can take a round trip to the database.
+ * Rows reached by scrolling (absolute(), previous() and so on) are not
+ * counted either.
+ * <p>
+ * A result set that is never closed is reported when its statement is
+ * closed or executes again, or when getMoreResults() moves past it.
+ * @version $Rev$
+ */
+public class LogResultSet extends ResultSetWrapper {
+
+    private Statement statement;
+    private ExecutionTimer timer;
+    private String executed;
+    private final long opened = System.nanoTime();
+    private long rows;
+    private long bytes;
+    private boolean finished;
+    private static Logger log = Logger.getLogger(LogResultSet.class);
+
+    /**
+     * @param rs the result set to wrap.
+     * @param stmt the statement that returned it.
+     * @param t the timer of the statement, which knows its fingerprint.
+     * @param sql the SQL that was executed, or null for the prepared SQL.
+     */
+    LogResultSet(ResultSet rs, Statement stmt, ExecutionTimer t, String sql) {
+        super(rs);
+        statement = stmt;
+        timer = t;
+        executed = sql;
+    }
+
+    /**
+     * @param c the connection the statement belongs to.
+     * @return true if result sets should be wrapped to be counted.
+     */
+    static boolean isWanted(Connection c) {
+        return AsyncLog.isDebugEnabled(log)
+            || LogConnection.configOf(c).isStatsEnabled();
+    }
+
+    /**
+     * @param rs a result set returned by the embedded statement.
+     * @return true if this is the wrapper of that result set.
+     */
+    boolean wraps(ResultSet rs) {
+        return embedded == rs;
+    }
+
+    /**
+     * Reports the counts, once.  Called when the result set or its
+     * statement is closed.
+     */
+    void finish() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        timer.fetched(executed, rows, bytes);
+        if (AsyncLog.isDebugEnabled(log)) {
+            AsyncLog.debug(log, new ResultSetEvent(
+                    LogConnection.idOf(timer.getConnection()),
+                    timer.sqlOf(executed), rows, bytes,
+                    System.nanoTime() - opened));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean next() throws SQLException {
+        boolean more = embedded.next();
+        if (more) {
+            rows++;
+        }
+        return more;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void close() throws SQLException {
+        try {
+            embedded.close();
+        }
+        finally {
+            finish();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Statement getStatement() throws SQLException {
+        return statement;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public BigDecimal getBigDecimal(String columnLabel) throws SQLException {
+        return read(embedded.getBigDecimal(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public BigDecimal getBigDecimal(int columnIndex) throws SQLException {
+        return read(embedded.getBigDecimal(columnIndex));
+    }
+
+    /**
+     * {@inheritDoc}
+     * @deprecated
+     */
+    @Deprecated
+    public BigDecimal getBigDecimal(String columnLabel, int scale)
+        throws SQLException {
+        return read(embedded.getBigDecimal(columnLabel, scale));
+    }
+
+    /**
+     * {@inheritDoc}
+     * @deprecated
+     */
+    @Deprecated
+    public BigDecimal getBigDecimal(int columnIndex, int scale)
+        throws SQLException {
+        return read(embedded.getBigDecimal(columnIndex, scale));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean getBoolean(String columnLabel) throws SQLException {
+        return read(embedded.getBoolean(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean getBoolean(int columnIndex) throws SQLException {
+        return read(embedded.getBoolean(columnIndex));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public byte getByte(String columnLabel) throws SQLException {
+        return read(embedded.getByte(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public byte getByte(int columnIndex) throws SQLException {
+        return read(embedded.getByte(columnIndex));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public byte[] getBytes(String columnLabel) throws SQLException {
+        return read(embedded.getBytes(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public byte[] getBytes(int columnIndex) throws SQLException {
+        return read(embedded.getBytes(columnIndex));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Date getDate(String columnLabel) throws SQLException {
+        return read(embedded.getDate(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Date getDate(int columnIndex) throws SQLException {
+        return read(embedded.getDate(columnIndex));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Date getDate(String columnLabel, Calendar cal) throws SQLException {
+        return read(embedded.getDate(columnLabel, cal));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Date getDate(int columnIndex, Calendar cal) throws SQLException {
+        return read(embedded.getDate(columnIndex, cal));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double getDouble(String columnLabel) throws SQLException {
+        return read(embedded.getDouble(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double getDouble(int columnIndex) throws SQLException {
+        return read(embedded.getDouble(columnIndex));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public float getFloat(String columnLabel) throws SQLException {
+        return read(embedded.getFloat(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public float getFloat(int columnIndex) throws SQLException {
+        return read(embedded.getFloat(columnIndex));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getInt(String columnLabel) throws SQLException {
+        return read(embedded.getInt(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getInt(int columnIndex) throws SQLException {
+        return read(embedded.getInt(columnIndex));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getLong(String columnLabel) throws SQLException {
+        return read(embedded.getLong(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getLong(int columnIndex) throws SQLException {
+        return read(embedded.getLong(columnIndex));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getNString(String columnLabel) throws SQLException {
+        return read(embedded.getNString(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getNString(int columnIndex) throws SQLException {
+        return read(embedded.getNString(columnIndex));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Object getObject(String columnLabel) throws SQLException {
+        return read(embedded.getObject(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Object getObject(int columnIndex) throws SQLException {
+        return read(embedded.getObject(columnIndex));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public <T> T getObject(String columnLabel, Class<T> type)
+        throws SQLException {
+        T value = embedded.getObject(columnLabel, type);
+        read(value);
+        return value;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Object getObject(String columnLabel, Map<String, Class<?>> map)
+        throws SQLException {
+        return read(embedded.getObject(columnLabel, map));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public <T> T getObject(int columnIndex, Class<T> type) throws SQLException {
+        T value = embedded.getObject(columnIndex, type);
+        read(value);
+        return value;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Object getObject(int columnIndex, Map<String, Class<?>> map)
+        throws SQLException {
+        return read(embedded.getObject(columnIndex, map));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public short getShort(String columnLabel) throws SQLException {
+        return read(embedded.getShort(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public short getShort(int columnIndex) throws SQLException {
+        return read(embedded.getShort(columnIndex));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getString(String columnLabel) throws SQLException {
+        return read(embedded.getString(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getString(int columnIndex) throws SQLException {
+        return read(embedded.getString(columnIndex));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Time getTime(String columnLabel) throws SQLException {
+        return read(embedded.getTime(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Time getTime(int columnIndex) throws SQLException {
+        return read(embedded.getTime(columnIndex));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Time getTime(String columnLabel, Calendar cal) throws SQLException {
+        return read(embedded.getTime(columnLabel, cal));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Time getTime(int columnIndex, Calendar cal) throws SQLException {
+        return read(embedded.getTime(columnIndex, cal));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Timestamp getTimestamp(String columnLabel) throws SQLException {
+        return read(embedded.getTimestamp(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Timestamp getTimestamp(int columnIndex) throws SQLException {
+        return read(embedded.getTimestamp(columnIndex));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Timestamp getTimestamp(String columnLabel, Calendar cal)
+        throws SQLException {
+        return read(embedded.getTimestamp(columnLabel, cal));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Timestamp getTimestamp(int columnIndex, Calendar cal)
+        throws SQLException {
+        return read(embedded.getTimestamp(columnIndex, cal));
+    }
+
+    // The estimates.  Each returns its argument so that a getter can
+    // count and return in one expression.
+
+    private boolean read(boolean v) {
+        bytes += 1;
+        return v;
+    }
+
+    private byte read(byte v) {
+        bytes += 1;
+        return v;
+    }
+
+    private short read(short v) {
+        bytes += 2;
+        return v;
+    }
+
+    private int read(int v) {
+        bytes += 4;
+        return v;
+    }
+
+    private long read(long v) {
+        bytes += 8;
+        return v;
+    }
+
+    private float read(float v) {
+        bytes += 4;
+        return v;
+    }
+
+    private double read(double v) {
+        bytes += 8;
+        return v;
+    }
+
+    private String read(String v) {
+        if (v != null) {
+            bytes += v.length();
+        }
+        return v;
+    }
+
+    private byte[] read(byte[] v) {
+        if (v != null) {
+            bytes += v.length;
+        }
+        return v;
+    }
+
+    private BigDecimal read(BigDecimal v) {
+        if (v != null) {
+            // about two digits a byte, plus the scale
+            bytes += v.precision() / 2 + 2;
+        }
+        return v;
+    }
+
+    private Date read(Date v) {
+        if (v != null) {
+            bytes += 4;
+        }
+        return v;
+    }
+
+    private Time read(Time v) {
+        if (v != null) {
+            bytes += 4;
+        }
+        return v;
+    }
+
+    private Timestamp read(Timestamp v) {
+        if (v != null) {
+            bytes += 12;
+        }
+        return v;
+    }
+
+    private Object read(Object v) {
+        if (v instanceof String) {
+            read((String) v);
+        }
+        else if (v instanceof byte[]) {
+            read((byte[]) v);
+        }
+        else if (v instanceof BigDecimal) {
+            read((BigDecimal) v);
+        }
+        else if (v instanceof Timestamp) {
+            read((Timestamp) v);
+        }
+        else if (v instanceof Long || v instanceof Double
+                 || v instanceof java.util.Date) {
+            bytes += 8;
+        }
+        else if (v instanceof Number) {
+            bytes += 4;
+        }
+        else if (v instanceof Boolean) {
+            bytes += 1;
+        }
+        return v;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver;
+
+import net.rkbloom.logdriver.config.DriverConfig;
+import net.rkbloom.logdriver.util.SqlFingerprint;
+import net.rkbloom.logdriver.util.TokenBucket;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LogSampler decides which executions get a statement record when
+ * sampling is on: one in every <code>logdriver.sample.rate</code>
+ * executions of each SQL fingerprint, and no more records a second than
+ * <code>logdriver.sample.maxPerSecondPerStatement</code> for the
+ * fingerprint and <code>logdriver.sample.maxPerSecond</code> for the whole
+ * driver.  Prepared statements ask for their next execution as soon as the
+ * last one is done, before any of its bind parameters are set, so an
+ * execution that is sampled out costs about what it would with DEBUG off.
+ * <p>
+ * Executions that throw are logged whatever the sampler said, after they
+ * have failed, and the slow-query log is never sampled.  There is one
+ * sampler per fingerprint up to <code>logdriver.stats.maxFingerprints</code>;
+ * the fingerprints over the cap share one.
+ * @version $Rev$
+ */
+final class LogSampler {
+
+    private static final ConcurrentMap<String, LogSampler> samplers =
+        new ConcurrentHashMap<String, LogSampler>();
+    // shared by the fingerprints over the cap, and used on its own when
+    // only the driver-wide limit is set
+    private static final LogSampler other = new LogSampler();
+    private static final TokenBucket total = new TokenBucket();
+
+    private final AtomicLong executions = new AtomicLong();
+    private final TokenBucket bucket = new TokenBucket();
+
+    private LogSampler() {
+    }
+
+    /**
+     * @param cfg the configuration of the connection.
+     * @return true if executions are sampled by SQL fingerprint.  The
+     * driver-wide limit on its own doesn't need the SQL fingerprinted.
+     */
+    static boolean isPerStatement(DriverConfig cfg) {
+        return cfg.getSampleRate() > 1 || cfg.getSampleMaxPerStatement() >= 0;
+    }
+
+    /**
+     * @param cfg the configuration of the connection.
+     * @param fp the SQL fingerprint, or null if sampling is not per
+     * statement.
+     * @return the sampler for the fingerprint.
+     */
+    static LogSampler get(DriverConfig cfg, String fp) {
+        if (fp == null) {
+            return other;
+        }
+        LogSampler s = samplers.get(fp);
+        if (s != null) {
+            return s;
+        }
+        if (samplers.size() >= cfg.getStatsMaxFingerprints()) {
+            return other;
+        }
+        s = new LogSampler();
+        LogSampler prev = samplers.putIfAbsent(fp, s);
+        return (prev == null ? s : prev);
+    }
+
+    /**
+     * Decides whether an execution of SQL that is not prepared is logged.
+     * @param cfg the configuration of the connection.
+     * @param sql the SQL being executed.
+     * @return true if it is logged.
+     */
+    static boolean isSampled(DriverConfig cfg, String sql) {
+        if (!cfg.isSamplingEnabled()) {
+            return true;
+        }
+        String fp = (isPerStatement(cfg) ? SqlFingerprint.of(sql) : null);
+        return get(cfg, fp).sample(cfg);
+    }
+
+    /**
+     * Decides whether an execution is logged.  Every call counts as one
+     * execution of the fingerprint.
+     * @param cfg the configuration of the connection.
+     * @return true if it is logged.
+     */
+    boolean sample(DriverConfig cfg) {
+        int rate = cfg.getSampleRate();
+        if (rate > 1 && executions.getAndIncrement() % rate != 0) {
+            return false;
+        }
+        long now = System.nanoTime();
+        long perStatement = cfg.getSampleMaxPerStatement();
+        if (perStatement >= 0 && !bucket.tryAcquire(perStatement, now)) {
+            return false;
+        }
+        long perSecond = cfg.getSampleMaxPerSecond();
+        return perSecond < 0 || total.tryAcquire(perSecond, now);
+    }
+}
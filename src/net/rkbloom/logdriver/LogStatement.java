@@ -14,12 +14,19 @@
  */
 package net.rkbloom.logdriver;
 
+import net.rkbloom.logdriver.async.AsyncLog;
+import net.rkbloom.logdriver.event.BatchEvent;
+import net.rkbloom.logdriver.event.StatementEvent;
+import net.rkbloom.logdriver.event.StatementEvent.Operation;
+import net.rkbloom.logdriver.event.StatementEvent.Type;
+import net.rkbloom.logdriver.util.BatchBuffer;
+
 import org.apache.log4j.Logger;
 
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.SQLWarning;
 import java.sql.Statement;
 
 /**
@@ -28,112 +35,130 @@ import java.sql.Statement;
  * JDBC Statement.
  * @version $Rev$
  */
-public class LogStatement implements Statement {
+public class LogStatement extends StatementWrapper {
 
-    private Statement embedded;
     private Connection conn;
+    private BatchBuffer batch;
+    private ExecutionTimer timer;
+    // the result set of the last query, until it is reported
+    private LogResultSet results;
+    // the SQL of the last execute(String), for getResultSet()
+    private String lastSql;
+    // an execution that sampling left out, logged after all if it fails
+    private Operation unsampled;
+    // the first SQL of the current batch, which the batch is timed,
+    // counted and matched against the slow-query patterns as
+    private String batchSql;
     private static Logger log = Logger.getLogger(LogStatement.class);
+
+    // the key of a Statement batch that was executed without any SQL
+    private static final String BATCH = "<Statement batch>";
     
     LogStatement(Statement stmt, Connection c) {
-        embedded = stmt;
+        super(stmt);
         conn = c;
     }
-    
-    /**
-     * {@inheritDoc}
-     */
-    public int getFetchDirection() throws SQLException {
-        return embedded.getFetchDirection();
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public int getFetchSize() throws SQLException {
-        return embedded.getFetchSize();
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public int getMaxFieldSize() throws SQLException {
-        return embedded.getMaxFieldSize();
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public int getMaxRows() throws SQLException {
-        return embedded.getMaxRows();
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public int getQueryTimeout() throws SQLException {
-        return embedded.getQueryTimeout();
-    }
 
-    /**
-     * {@inheritDoc}
-     */
-    public int getResultSetConcurrency() throws SQLException {
-        return embedded.getResultSetConcurrency();
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public int getResultSetHoldability() throws SQLException {
-        return embedded.getResultSetHoldability();
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public int getResultSetType() throws SQLException {
-        return embedded.getResultSetType();
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public int getUpdateCount() throws SQLException {
-        return embedded.getUpdateCount();
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public void cancel() throws SQLException {
-        embedded.cancel();
+    // The event is only rendered if an appender writes it, and is only
+    // created at all if DEBUG is enabled and the sampler lets it through.
+    private void logStatement(Operation op, String sql) {
+        unsampled = null;
+        if (AsyncLog.isDebugEnabled(log)) {
+            if (LogSampler.isSampled(LogConnection.configOf(conn), sql)) {
+                AsyncLog.debug(log, new StatementEvent(op, sql));
+            }
+            else {
+                unsampled = op;
+            }
+        }
+    }
+
+    private void stopTimer(long start, String sql, Object result) {
+        if (start != ExecutionTimer.NOT_TIMED) {
+            timer().stop(start, sql, null, result);
+        }
+        finishExecution(sql, result == ExecutionTimer.FAILED_RESULT);
+    }
+
+    private void stopTimer(long start, String sql, int count) {
+        if (start != ExecutionTimer.NOT_TIMED) {
+            timer().stop(start, sql, null, (count == ExecutionTimer.FAILED)
+                         ? ExecutionTimer.FAILED_RESULT
+                         : Integer.valueOf(count));
+        }
+        finishExecution(sql, count == ExecutionTimer.FAILED);
+    }
+
+    // An execution that sampling left out is logged after all if it failed.
+    private void finishExecution(String sql, boolean failed) {
+        if (unsampled != null) {
+            if (failed) {
+                AsyncLog.debug(log, new StatementEvent(unsampled, sql));
+            }
+            unsampled = null;
+        }
+    }
+
+    private ExecutionTimer timer() {
+        if (timer == null) {
+            timer = new ExecutionTimer(conn, Type.STATEMENT, null);
+        }
+        return timer;
+    }
+
+    // Wraps a result set so that its rows are counted, unless nothing
+    // wants them counted.  A result set the application never closed is
+    // reported now, since the driver has closed it.
+    private ResultSet wrap(ResultSet rs, String executed) {
+        if (results != null && rs != null && results.wraps(rs)) {
+            return results;
+        }
+        finishResults();
+        if (rs == null || !LogResultSet.isWanted(conn)) {
+            return rs;
+        }
+        results = new LogResultSet(rs, this, timer(), executed);
+        return results;
+    }
+
+    private void finishResults() {
+        if (results != null) {
+            results.finish();
+            results = null;
+        }
     }
 
+    
     /**
      * {@inheritDoc}
      */
     public void clearBatch() throws SQLException {
         embedded.clearBatch();
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public void clearWarnings() throws SQLException {
-        embedded.clearWarnings();
+        if (batch != null) {
+            batch.clear();
+        }
+        batchSql = null;
+        if (timer != null) {
+            timer.batchCleared();
+        }
     }
 
     /**
      * {@inheritDoc}
      */
     public void close() throws SQLException {
+        finishResults();
         embedded.close();
+        if (timer != null) {
+            timer.closed();
+        }
     }
 
     /**
      * {@inheritDoc}
      */
     public boolean getMoreResults() throws SQLException {
+        finishResults();
         return embedded.getMoreResults();
     }
 
@@ -141,97 +166,183 @@ public class LogStatement implements Statement {
      * {@inheritDoc}
      */
     public int[] executeBatch() throws SQLException {
-        log.debug("Executing the entire batch");
-        return embedded.executeBatch();
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public void setFetchDirection(int direction) throws SQLException {
-        embedded.setFetchDirection(direction);
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public void setFetchSize(int rows) throws SQLException {
-        embedded.setFetchSize(rows);
+        return (int[]) runBatch(false);
     }
 
     /**
      * {@inheritDoc}
      */
-    public void setMaxFieldSize(int max) throws SQLException {
-        embedded.setMaxFieldSize(max);
+    public long[] executeLargeBatch() throws SQLException {
+        return (long[]) runBatch(true);
     }
 
-    /**
-     * {@inheritDoc}
-     */
-    public void setMaxRows(int max) throws SQLException {
-        embedded.setMaxRows(max);
+    private Object embeddedBatch(boolean large) throws SQLException {
+        if (large) {
+            return embedded.executeLargeBatch();
+        }
+        return embedded.executeBatch();
     }
 
-    /**
-     * {@inheritDoc}
-     */
-    public void setQueryTimeout(int seconds) throws SQLException {
-        embedded.setQueryTimeout(seconds);
+    // Runs either kind of batch.  Large counts are logged and timed as
+    // ints, the way executeBatch's are.
+    private Object runBatch(boolean large) throws SQLException {
+        boolean debug = AsyncLog.isDebugEnabled(log);
+        unsampled = null;
+        String key = (batchSql != null ? batchSql : BATCH);
+        batchSql = null;
+        boolean logged = debug
+            && LogSampler.isSampled(LogConnection.configOf(conn), key);
+        // a batch that was sampled out is still logged if it fails
+        boolean unlogged = debug && !logged;
+        long start = ExecutionTimer.start(conn);
+        if (!logged && !unlogged) {
+            batch = null;
+            if (start == ExecutionTimer.NOT_TIMED) {
+                return embeddedBatch(large);
+            }
+        }
+        long began = (start != ExecutionTimer.NOT_TIMED)
+            ? start : System.nanoTime();
+        int[] counts = null;
+        Object result = ExecutionTimer.FAILED_RESULT;
+        try {
+            Object r = embeddedBatch(large);
+            counts = (large ? ExecutionTimer.updateCounts((long[]) r)
+                      : (int[]) r);
+            result = counts;
+            return r;
+        }
+        catch (BatchUpdateException e) {
+            counts = e.getUpdateCounts();
+            throw e;
+        }
+        finally {
+            stopTimer(start, key, result);
+            if (logged
+                || (unlogged && result == ExecutionTimer.FAILED_RESULT)) {
+                // one record for the whole batch, which takes the rows
+                BatchBuffer rows = (batch != null ? batch : new BatchBuffer(0));
+                AsyncLog.debug(log, new BatchEvent(Type.STATEMENT, null,
+                        rows, System.nanoTime() - began, counts));
+            }
+            batch = null;
+        }
     }
 
     /**
      * {@inheritDoc}
      */
     public boolean getMoreResults(int current) throws SQLException {
+        if (current != KEEP_CURRENT_RESULT) {
+            finishResults();
+        }
         return embedded.getMoreResults(current);
     }
 
     /**
      * {@inheritDoc}
      */
-    public void setEscapeProcessing(boolean enable) throws SQLException {
-        embedded.setEscapeProcessing(enable);
+    public int executeUpdate(String sql) throws SQLException {
+        logStatement(Operation.UPDATE, sql);
+        long start = ExecutionTimer.start(conn);
+        int count = ExecutionTimer.FAILED;
+        try {
+            count = embedded.executeUpdate(sql);
+            return count;
+        }
+        finally {
+            stopTimer(start, sql, count);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
-    public int executeUpdate(String sql) throws SQLException {
-        log.debug("Executing Update: " + sql);
-        return embedded.executeUpdate(sql);
+    public long executeLargeUpdate(String sql) throws SQLException {
+        logStatement(Operation.UPDATE, sql);
+        long start = ExecutionTimer.start(conn);
+        Object result = ExecutionTimer.FAILED_RESULT;
+        try {
+            long count = embedded.executeLargeUpdate(sql);
+            result = ExecutionTimer.updateCount(count);
+            return count;
+        }
+        finally {
+            stopTimer(start, sql, result);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
     public void addBatch(String sql) throws SQLException {
-        log.debug("Adding '" + sql + "' to the batch");
         embedded.addBatch(sql);
+        if (batchSql == null) {
+            batchSql = sql;
+        }
+        if (ExecutionTimer.isCapturing(conn)) {
+            timer().batchAdded(sql);
+        }
+        if (AsyncLog.isDebugEnabled(log)) {
+            if (batch == null) {
+                batch = new BatchBuffer(
+                        LogConnection.configOf(conn).getBatchMaxRows());
+            }
+            batch.addRow(sql);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
-    public void setCursorName(String name) throws SQLException {
-        embedded.setCursorName(name);
+    public boolean execute(String sql) throws SQLException {
+        lastSql = sql;
+        logStatement(Operation.EXECUTE, sql);
+        long start = ExecutionTimer.start(conn);
+        Object result = ExecutionTimer.FAILED_RESULT;
+        try {
+            boolean b = embedded.execute(sql);
+            result = Boolean.valueOf(b);
+            return b;
+        }
+        finally {
+            stopTimer(start, sql, result);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
-    public boolean execute(String sql) throws SQLException {
-        log.debug("Executing: " + sql);
-        return embedded.execute(sql);
+    public int executeUpdate(String sql, int autoGeneratedKeys)
+        throws SQLException {
+        logStatement(Operation.UPDATE, sql);
+        long start = ExecutionTimer.start(conn);
+        int count = ExecutionTimer.FAILED;
+        try {
+            count = embedded.executeUpdate(sql, autoGeneratedKeys);
+            return count;
+        }
+        finally {
+            stopTimer(start, sql, count);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
-    public int executeUpdate(String sql, int autoGeneratedKeys)
+    public long executeLargeUpdate(String sql, int autoGeneratedKeys)
         throws SQLException {
-        log.debug("Executing Update: " + sql);
-        return embedded.executeUpdate(sql, autoGeneratedKeys);
+        logStatement(Operation.UPDATE, sql);
+        long start = ExecutionTimer.start(conn);
+        Object result = ExecutionTimer.FAILED_RESULT;
+        try {
+            long count = embedded.executeLargeUpdate(sql, autoGeneratedKeys);
+            result = ExecutionTimer.updateCount(count);
+            return count;
+        }
+        finally {
+            stopTimer(start, sql, result);
+        }
     }
 
     /**
@@ -239,8 +350,18 @@ public class LogStatement implements Statement {
      */
     public boolean execute(String sql, int autoGeneratedKeys)
         throws SQLException {
-        log.debug("Executing: " + sql);
-        return embedded.execute(sql, autoGeneratedKeys);
+        lastSql = sql;
+        logStatement(Operation.EXECUTE, sql);
+        long start = ExecutionTimer.start(conn);
+        Object result = ExecutionTimer.FAILED_RESULT;
+        try {
+            boolean b = embedded.execute(sql, autoGeneratedKeys);
+            result = Boolean.valueOf(b);
+            return b;
+        }
+        finally {
+            stopTimer(start, sql, result);
+        }
     }
 
     /**
@@ -248,53 +369,101 @@ public class LogStatement implements Statement {
      */
     public int executeUpdate(String sql, int[] columnIndexes)
         throws SQLException {
-        log.debug("Executing Update: " + sql);
-        return embedded.executeUpdate(sql, columnIndexes);
+        logStatement(Operation.UPDATE, sql);
+        long start = ExecutionTimer.start(conn);
+        int count = ExecutionTimer.FAILED;
+        try {
+            count = embedded.executeUpdate(sql, columnIndexes);
+            return count;
+        }
+        finally {
+            stopTimer(start, sql, count);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
-    public boolean execute(String sql, int[] columnIndexes) throws SQLException {
-        log.debug("Executing: " + sql);
-        return embedded.execute(sql, columnIndexes);
+    public long executeLargeUpdate(String sql, int[] columnIndexes)
+        throws SQLException {
+        logStatement(Operation.UPDATE, sql);
+        long start = ExecutionTimer.start(conn);
+        Object result = ExecutionTimer.FAILED_RESULT;
+        try {
+            long count = embedded.executeLargeUpdate(sql, columnIndexes);
+            result = ExecutionTimer.updateCount(count);
+            return count;
+        }
+        finally {
+            stopTimer(start, sql, result);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
-    public Connection getConnection() throws SQLException {
-        return conn;
+    public boolean execute(String sql, int[] columnIndexes) throws SQLException {
+        lastSql = sql;
+        logStatement(Operation.EXECUTE, sql);
+        long start = ExecutionTimer.start(conn);
+        Object result = ExecutionTimer.FAILED_RESULT;
+        try {
+            boolean b = embedded.execute(sql, columnIndexes);
+            result = Boolean.valueOf(b);
+            return b;
+        }
+        finally {
+            stopTimer(start, sql, result);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
-    public ResultSet getGeneratedKeys() throws SQLException {
-        return embedded.getGeneratedKeys();
+    public Connection getConnection() throws SQLException {
+        return conn;
     }
 
     /**
      * {@inheritDoc}
      */
     public ResultSet getResultSet() throws SQLException {
-        return embedded.getResultSet();
+        return wrap(embedded.getResultSet(), lastSql);
     }
 
     /**
      * {@inheritDoc}
      */
-    public SQLWarning getWarnings() throws SQLException {
-        return embedded.getWarnings();
+    public int executeUpdate(String sql, String[] columnNames)
+        throws SQLException {
+        logStatement(Operation.UPDATE, sql);
+        long start = ExecutionTimer.start(conn);
+        int count = ExecutionTimer.FAILED;
+        try {
+            count = embedded.executeUpdate(sql, columnNames);
+            return count;
+        }
+        finally {
+            stopTimer(start, sql, count);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
-    public int executeUpdate(String sql, String[] columnNames)
+    public long executeLargeUpdate(String sql, String[] columnNames)
         throws SQLException {
-        log.debug("Executing Update: " + sql);
-        return embedded.executeUpdate(sql, columnNames);
+        logStatement(Operation.UPDATE, sql);
+        long start = ExecutionTimer.start(conn);
+        Object result = ExecutionTimer.FAILED_RESULT;
+        try {
+            long count = embedded.executeLargeUpdate(sql, columnNames);
+            result = ExecutionTimer.updateCount(count);
+            return count;
+        }
+        finally {
+            stopTimer(start, sql, result);
+        }
     }
 
     /**
@@ -302,64 +471,34 @@ public class LogStatement implements Statement {
      */
     public boolean execute(String sql, String[] columnNames)
         throws SQLException {
-        log.debug("Executing: " + sql);
-        return embedded.execute(sql, columnNames);
+        lastSql = sql;
+        logStatement(Operation.EXECUTE, sql);
+        long start = ExecutionTimer.start(conn);
+        Object result = ExecutionTimer.FAILED_RESULT;
+        try {
+            boolean b = embedded.execute(sql, columnNames);
+            result = Boolean.valueOf(b);
+            return b;
+        }
+        finally {
+            stopTimer(start, sql, result);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
     public ResultSet executeQuery(String sql) throws SQLException {
-        log.debug("Executing Query: " + sql);
-        return embedded.executeQuery(sql);
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public <T> T unwrap(Class<T> iface) throws SQLException {
-        return embedded.unwrap(iface);
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public boolean isWrapperFor(Class<?> iface) throws SQLException {
-        return embedded.isWrapperFor(iface);
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public boolean isClosed() throws SQLException {
-        return embedded.isClosed();
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public void setPoolable(boolean poolable) throws SQLException {
-        embedded.setPoolable(poolable);
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public boolean isPoolable() throws SQLException {
-        return embedded.isPoolable();
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public void closeOnCompletion() throws SQLException {
-        embedded.closeOnCompletion();
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    public boolean isCloseOnCompletion() throws SQLException {
-        return embedded.isCloseOnCompletion();
+        logStatement(Operation.QUERY, sql);
+        long start = ExecutionTimer.start(conn);
+        Object result = ExecutionTimer.FAILED_RESULT;
+        try {
+            ResultSet rs = wrap(embedded.executeQuery(sql), sql);
+            result = rs;
+            return rs;
+        }
+        finally {
+            stopTimer(start, sql, result);
+        }
     }
 }
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver;
+
+import net.rkbloom.logdriver.async.AsyncLog;
+import net.rkbloom.logdriver.stats.DriverStats;
+
+import org.apache.log4j.Logger;
+
+/**
+ * NPlusOneDetector looks for the N+1 query pattern on one connection: a
+ * statement that runs once per row of the query before it, typically an ORM
+ * loading a lazy association.  It watches for runs of executions of the
+ * same SQL fingerprint, so the child query is caught whether it is a
+ * PreparedStatement with new bind values or a Statement with new
+ * literals; running the very same query again counts too.  A run ends when
+ * a different statement executes, a batch executes, or the transaction
+ * ends.  As soon as a run reaches <code>logdriver.nplusone.threshold</code>
+ * executions it is written, once, as a WARN record to the
+ * <code>net.rkbloom.logdriver.nplusone</code> logger with the statement
+ * that preceded it, so a run that never ends is still reported.
+ * <p>
+ * Like the connection itself, a detector is meant to be used by one thread
+ * at a time.
+ * @version $Rev$
+ */
+final class NPlusOneDetector {
+
+    /** Name of the logger that N+1 runs are written to. */
+    static final String NPLUSONE_LOGGER = "net.rkbloom.logdriver.nplusone";
+
+    private static Logger log = Logger.getLogger(NPLUSONE_LOGGER);
+
+    private final long connection;
+    private String runFingerprint;
+    private String runSql;
+    private int runCount;
+    private long runNanos;
+    private String parentSql;
+    private boolean reported;
+
+    /**
+     * @param connId the number of the connection being watched.
+     */
+    NPlusOneDetector(long connId) {
+        connection = connId;
+    }
+
+    /**
+     * Records an execution.
+     * @param fingerprint the fingerprint of the SQL.
+     * @param sql the SQL.
+     * @param nanos how long it took.
+     * @param repeats how long a run must be to be reported.
+     */
+    void executed(String fingerprint, String sql, long nanos, int repeats) {
+        if (fingerprint.equals(runFingerprint)) {
+            runCount++;
+            runNanos += nanos;
+        }
+        else {
+            String previous = runSql;
+            boundary();
+            parentSql = previous;
+            runFingerprint = fingerprint;
+            runSql = sql;
+            runCount = 1;
+            runNanos = nanos;
+        }
+        if (!reported && repeats > 0 && runCount >= repeats) {
+            reported = true;
+            DriverStats.nPlusOneDetected();
+            AsyncLog.warn(log, describe());
+        }
+    }
+
+    /**
+     * Ends the current run.  Called when a batch executes, the transaction
+     * ends or the connection closes.
+     */
+    void boundary() {
+        reported = false;
+        runFingerprint = null;
+        runSql = null;
+        runCount = 0;
+        runNanos = 0;
+        parentSql = null;
+    }
+
+    private String describe() {
+        StringBuilder buf = new StringBuilder("N+1 on connection #");
+        buf.append(connection).append(": '").append(runSql)
+           .append("' executed ").append(runCount)
+           .append(" times in a row, taking ")
+           .append(runNanos / 1000000L).append('.');
+        long micros = (runNanos / 1000L) % 1000L;
+        if (micros < 100) {
+            buf.append('0');
+        }
+        if (micros < 10) {
+            buf.append('0');
+        }
+        buf.append(micros).append(" ms");
+        if (parentSql != null) {
+            buf.append(", after '").append(parentSql).append('\'');
+        }
+        return buf.toString();
+    }
+}
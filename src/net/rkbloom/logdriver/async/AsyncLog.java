@@ -0,0 +1,340 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.async;
+
+import net.rkbloom.logdriver.config.Configuration;
+import net.rkbloom.logdriver.config.DriverConfig;
+import net.rkbloom.logdriver.config.DriverConfig.QueuePolicy;
+import net.rkbloom.logdriver.sink.Log4jSink;
+import net.rkbloom.logdriver.sink.Severity;
+import net.rkbloom.logdriver.sink.SinkRecord;
+import net.rkbloom.logdriver.sink.SinkRouter;
+
+import org.apache.log4j.Logger;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * AsyncLog writes the driver's statement, transaction and connection
+ * records.  The logger a record is logged to only names its category;
+ * the record goes to the sinks of {@link SinkRouter}, which are just
+ * log4j unless <code>logdriver.sinks</code> is set.  Normally the sinks
+ * are called straight away.  With <code>logdriver.async.enabled</code>
+ * on, the record is put in a {@link RingBuffer} instead, and a background
+ * thread takes the records off in batches and hands them to the sinks,
+ * so the thread that executed the statement never waits for a disk or
+ * for the locks log4j takes around its appenders.  The records keep the
+ * time and the thread they were logged on; with log4j they lose their
+ * location information, and the NDC and MDC of the thread that logged
+ * them.
+ * <p>
+ * When the buffer is full, <code>logdriver.async.policy</code> decides
+ * what happens: <code>drop</code> drops the record, <code>block</code>
+ * waits for room and <code>sample</code> keeps one record in
+ * <code>logdriver.async.sampleRate</code> once the buffer is half full,
+ * and drops the rest when it is full.  Dropped records are counted and
+ * reported, at most once a second, as a WARN to the
+ * <code>net.rkbloom.logdriver.async</code> logger.  So are records the
+ * background thread failed to write: whatever a sink throws, Errors
+ * included, is counted and the thread goes on with the next record.
+ * <p>
+ * The buffer is created the first time a record is logged
+ * asynchronously, so <code>logdriver.async.bufferSize</code> can't be
+ * changed after that.  Records still in the buffer when the JVM exits
+ * are written by a shutdown hook.
+ * @version $Rev$
+ */
+public final class AsyncLog {
+
+    /** Name of the logger that dropped records are reported to. */
+    public static final String ASYNC_LOGGER = "net.rkbloom.logdriver.async";
+
+    private static final int BATCH = 256;
+    private static final long MAX_IDLE_NANOS =
+        TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long REPORT_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static Logger log = Logger.getLogger(ASYNC_LOGGER);
+
+    private static volatile Drainer drainer;
+    private static final LongAdder dropped = new LongAdder();
+    private static final LongAdder failed = new LongAdder();
+    private static final AtomicLong sampled = new AtomicLong();
+
+    private AsyncLog() {
+    }
+
+    /**
+     * Logs a record at DEBUG.
+     * @param logger the logger to write it to.
+     * @param message the message object, which must not change after
+     * this call.
+     */
+    public static void debug(Logger logger, Object message) {
+        log(logger, Severity.DEBUG, message);
+    }
+
+    /**
+     * Logs a record at WARN.
+     * @param logger the logger to write it to.
+     * @param message the message object, which must not change after
+     * this call.
+     */
+    public static void warn(Logger logger, Object message) {
+        log(logger, Severity.WARN, message);
+    }
+
+    /**
+     * @param logger the logger a record would be written to.
+     * @return true if any sink wants DEBUG records of that logger.
+     */
+    public static boolean isDebugEnabled(Logger logger) {
+        return isEnabled(logger, Severity.DEBUG);
+    }
+
+    /**
+     * @param logger the logger a record would be written to.
+     * @param severity the severity of the record.
+     * @return true if any sink wants the record.
+     */
+    public static boolean isEnabled(Logger logger, Severity severity) {
+        return isEnabled(SinkRouter.forConfig(Configuration.get()), logger,
+                         severity);
+    }
+
+    /**
+     * Logs a record, on the background thread if asynchronous logging is
+     * on.
+     * @param logger the logger to write it to.
+     * @param severity the severity of the record.
+     * @param message the message object, which must not change after
+     * this call.
+     */
+    public static void log(Logger logger, Severity severity, Object message) {
+        DriverConfig cfg = Configuration.get();
+        SinkRouter sinks = SinkRouter.forConfig(cfg);
+        if (!isEnabled(sinks, logger, severity)) {
+            return;
+        }
+        String category = logger.getName();
+        long time = System.currentTimeMillis();
+        String thread = Thread.currentThread().getName();
+        Drainer d = (cfg.isAsyncEnabled() ? drainer(cfg) : null);
+        // a sink that logs through the driver writes synchronously, or it
+        // could wait on itself
+        if (d == null || Thread.currentThread() == d) {
+            sinks.write(new SinkRecord(time, thread, category, severity,
+                                       message, false));
+            return;
+        }
+        RingBuffer ring = d.ring;
+        QueuePolicy policy = cfg.getAsyncPolicy();
+        if (policy == QueuePolicy.SAMPLE
+            && ring.size() > ring.capacity() / 2
+            && sampled.getAndIncrement() % cfg.getAsyncSampleRate() != 0) {
+            dropped.increment();
+            return;
+        }
+        if (ring.offer(category, severity, message, time, thread)) {
+            return;
+        }
+        if (policy != QueuePolicy.BLOCK) {
+            dropped.increment();
+            return;
+        }
+        while (!ring.offer(category, severity, message, time, thread)) {
+            if (!d.isAlive()) {
+                sinks.write(new SinkRecord(time, thread, category, severity,
+                                           message, false));
+                return;
+            }
+            LockSupport.parkNanos(10000L);
+        }
+    }
+
+    /**
+     * @return the records dropped because the buffer was full.
+     */
+    public static long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return the records the background thread failed to write because
+     * a sink threw.
+     */
+    public static long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * @return the records waiting to be written.
+     */
+    public static int getQueued() {
+        Drainer d = drainer;
+        return (d != null ? d.ring.size() : 0);
+    }
+
+    // with only log4j, its logger answers without a lookup by name
+    private static boolean isEnabled(SinkRouter sinks, Logger logger,
+                                     Severity severity) {
+        if (sinks.isLog4jOnly()) {
+            return logger.isEnabledFor(Log4jSink.levelOf(severity));
+        }
+        return sinks.isEnabled(logger.getName(), severity);
+    }
+
+    private static Drainer drainer(DriverConfig cfg) {
+        Drainer d = drainer;
+        if (d == null) {
+            synchronized (AsyncLog.class) {
+                d = drainer;
+                if (d == null) {
+                    d = new Drainer(new RingBuffer(cfg.getAsyncBufferSize()));
+                    d.start();
+                    Runtime.getRuntime().addShutdownHook(new Thread(
+                            new Flusher(d), "logdriver-async-flush"));
+                    drainer = d;
+                }
+            }
+        }
+        return d;
+    }
+
+    /**
+     * The background thread.  It takes the records off in batches, backing
+     * off while the buffer is empty.
+     */
+    private static final class Drainer extends Thread {
+
+        private final RingBuffer ring;
+        private final SinkRecord[] batch = new SinkRecord[BATCH];
+        private volatile boolean closing;
+        private long reported;
+        private long reportedFailed;
+        private volatile Throwable lastFailure;
+        private long lastReport = System.nanoTime();
+
+        Drainer(RingBuffer r) {
+            super("logdriver-async");
+            setDaemon(true);
+            ring = r;
+        }
+
+        public void run() {
+            long idle = 0;
+            while (true) {
+                int n = drain();
+                if (n > 0) {
+                    idle = 0;
+                    continue;
+                }
+                report();
+                if (closing) {
+                    return;
+                }
+                idle = Math.min(Math.max(idle * 2, 50000L), MAX_IDLE_NANOS);
+                LockSupport.parkNanos(idle);
+            }
+        }
+
+        private int drain() {
+            int n = ring.drain(batch, BATCH);
+            if (n == 0) {
+                return 0;
+            }
+            SinkRouter sinks = SinkRouter.forConfig(Configuration.get());
+            for (int i = 0; i < n; i++) {
+                try {
+                    sinks.write(batch[i]);
+                }
+                catch (Throwable t) {
+                    // if this thread died the buffer would fill up and
+                    // every record after it would be dropped or block
+                    failed(t);
+                }
+                batch[i] = null;
+            }
+            try {
+                sinks.flush();
+            }
+            catch (Throwable t) {
+                failed(t);
+            }
+            return n;
+        }
+
+        private void failed(Throwable t) {
+            failed.increment();
+            lastFailure = t;
+        }
+
+        private void report() {
+            long now = System.nanoTime();
+            if (now - lastReport < REPORT_NANOS && !closing) {
+                return;
+            }
+            long total = dropped.sum();
+            if (total > reported) {
+                log.warn("Dropped " + (total - reported) + " log records"
+                         + " to keep up, the buffer holds "
+                         + ring.capacity());
+                reported = total;
+            }
+            long failures = failed.sum();
+            if (failures > reportedFailed) {
+                try {
+                    log.warn("Failed to write " + (failures - reportedFailed)
+                             + " log records", lastFailure);
+                }
+                catch (Throwable t) {
+                    // the sink that failed may be log4j itself
+                }
+                reportedFailed = failures;
+            }
+            lastReport = now;
+        }
+
+        void close() {
+            closing = true;
+            LockSupport.unpark(this);
+        }
+    }
+
+    /**
+     * Writes what is left in the buffer when the JVM exits.
+     */
+    private static final class Flusher implements Runnable {
+
+        private final Drainer drainer;
+
+        Flusher(Drainer d) {
+            drainer = d;
+        }
+
+        public void run() {
+            drainer.close();
+            try {
+                drainer.join(TimeUnit.SECONDS.toMillis(5));
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.async;
+
+import net.rkbloom.logdriver.sink.Severity;
+import net.rkbloom.logdriver.sink.SinkRecord;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * RingBuffer is a fixed-size queue of log records with many producers and
+ * a single consumer.  Every slot is allocated up front, as parallel arrays
+ * of the fields of a record, so publishing a record allocates nothing.
+ * A producer claims the next sequence number with a compare-and-set,
+ * fills in the slot and then marks the slot with the sequence number; the
+ * consumer takes the slots in order for as long as they are marked, and
+ * only then moves the tail forward to let producers reuse them.  No
+ * locks are taken on either side.
+ * @version $Rev$
+ */
+final class RingBuffer {
+
+    private final int capacity;
+    private final int mask;
+    private final String[] categories;
+    private final Severity[] severities;
+    private final Object[] messages;
+    private final long[] times;
+    private final String[] threads;
+    // the sequence number last written to each slot
+    private final AtomicLongArray published;
+    // the next sequence number to claim
+    private final AtomicLong head = new AtomicLong();
+    // the next sequence number to consume; only the consumer writes it
+    private volatile long tail;
+
+    /**
+     * @param size the least number of records the buffer can hold; it is
+     * rounded up to a power of two.
+     */
+    RingBuffer(int size) {
+        int n = Integer.highestOneBit(Math.max(size, 2) - 1) << 1;
+        capacity = n;
+        mask = n - 1;
+        categories = new String[n];
+        severities = new Severity[n];
+        messages = new Object[n];
+        times = new long[n];
+        threads = new String[n];
+        published = new AtomicLongArray(n);
+        for (int i = 0; i < n; i++) {
+            published.set(i, -1);
+        }
+    }
+
+    /**
+     * Adds a record unless the buffer is full.
+     * @param category the name of the logger it was logged to.
+     * @param severity its severity.
+     * @param message the message object.
+     * @param time when it was logged, in milliseconds.
+     * @param thread the name of the thread that logged it.
+     * @return false if the buffer was full.
+     */
+    boolean offer(String category, Severity severity, Object message,
+                  long time, String thread) {
+        long seq;
+        do {
+            seq = head.get();
+            if (seq - tail >= capacity) {
+                return false;
+            }
+        } while (!head.compareAndSet(seq, seq + 1));
+        int i = (int) seq & mask;
+        categories[i] = category;
+        severities[i] = severity;
+        messages[i] = message;
+        times[i] = time;
+        threads[i] = thread;
+        // the slot is only read once this store is seen
+        published.lazySet(i, seq);
+        return true;
+    }
+
+    /**
+     * Takes up to <code>max</code> records off the buffer, in order, and
+     * frees their slots.  Only one thread may drain a buffer.
+     * @param batch where to put the records.
+     * @param max the most records to take.
+     * @return the number of records taken.
+     */
+    int drain(SinkRecord[] batch, int max) {
+        long t = tail;
+        int n = 0;
+        while (n < max) {
+            int i = (int) t & mask;
+            if (published.get(i) != t) {
+                break;
+            }
+            batch[n++] = new SinkRecord(times[i], threads[i], categories[i],
+                                        severities[i], messages[i], true);
+            categories[i] = null;
+            messages[i] = null;
+            threads[i] = null;
+            t++;
+        }
+        tail = t;
+        return n;
+    }
+
+    /**
+     * @return the records waiting to be drained.  The answer may be out of
+     * date by the time it is returned.
+     */
+    int size() {
+        return (int) Math.max(head.get() - tail, 0L);
+    }
+
+    /**
+     * @return how many records the buffer holds.
+     */
+    int capacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,360 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.capture;
+
+import net.rkbloom.logdriver.capture.CaptureReader.Bind;
+import net.rkbloom.logdriver.capture.CaptureReader.Kind;
+import net.rkbloom.logdriver.capture.CaptureReader.Record;
+
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * CaptureDecoder turns a capture file back into text, one line per
+ * record in the style of the driver's log records, or into JSON, one
+ * object per line:
+ * <pre>
+ * java -cp logdriver.jar net.rkbloom.logdriver.capture.CaptureDecoder \
+ *     [-json] capture.bin
+ * </pre>
+ * In the text, <code>#3.17</code> is statement 17 of connection 3.
+ * @version $Rev$
+ */
+public final class CaptureDecoder {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final boolean json;
+    private final SimpleDateFormat dates;
+    private final StringBuilder buf = new StringBuilder(256);
+
+    /**
+     * @param asJson true for JSON, false for text.
+     */
+    public CaptureDecoder(boolean asJson) {
+        json = asJson;
+        dates = new SimpleDateFormat(json ? "yyyy-MM-dd'T'HH:mm:ss.SSSZ"
+                                          : "yyyy-MM-dd HH:mm:ss.SSS");
+    }
+
+    /**
+     * Decodes a whole capture.
+     * @param reader the capture.
+     * @param out where to write it.
+     * @return the number of records.
+     * @throws IOException if the capture can't be read or the output
+     * can't be written.
+     */
+    public long decode(CaptureReader reader, Writer out) throws IOException {
+        long n = 0;
+        for (Record e = reader.next(); e != null; e = reader.next()) {
+            buf.setLength(0);
+            if (json) {
+                appendJson(e);
+            }
+            else {
+                appendText(e);
+            }
+            buf.append('\n');
+            out.append(buf);
+            n++;
+        }
+        out.flush();
+        return n;
+    }
+
+    private void appendText(Record e) {
+        buf.append(dates.format(new Date(e.getTimeMicros() / 1000)))
+           .append(" #").append(e.getConnection());
+        if (e.getStatement() != 0) {
+            buf.append('.').append(e.getStatement());
+        }
+        if (e.getThreadName() != null) {
+            buf.append(" [").append(e.getThreadName()).append(']');
+        }
+        buf.append(' ');
+        switch (e.getKind()) {
+            case EXECUTE:
+                buf.append(e.getType().getLabel()).append(' ');
+                appendMillis(e.getElapsedNanos());
+                buf.append(" ms: '").append(e.getSql()).append('\'');
+                appendBinds(e);
+                appendResult(e);
+                break;
+            case PREPARE:
+                buf.append("prepare ").append(e.getType().getLabel())
+                   .append(": '").append(e.getSql()).append('\'');
+                break;
+            case BATCH_ADD:
+                buf.append("addBatch");
+                if (e.getSql() != null) {
+                    buf.append(": '").append(e.getSql()).append('\'');
+                }
+                appendBinds(e);
+                break;
+            case AUTO_COMMIT:
+            case READ_ONLY:
+                buf.append(label(e.getKind())).append(' ')
+                   .append(e.getValue() != 0);
+                break;
+            case ISOLATION:
+                buf.append(label(e.getKind())).append(' ')
+                   .append(e.getValue());
+                break;
+            default:
+                buf.append(label(e.getKind()));
+                break;
+        }
+    }
+
+    private void appendBinds(Record e) {
+        if (e.getBinds().isEmpty()) {
+            return;
+        }
+        buf.append(" {");
+        boolean first = true;
+        for (Bind b : e.getBinds()) {
+            if (!first) {
+                buf.append(", ");
+            }
+            first = false;
+            if (b.getName() != null) {
+                buf.append(b.getName());
+            }
+            else {
+                buf.append(b.getIndex());
+            }
+            buf.append('=');
+            Object v = b.getValue();
+            if (v instanceof byte[]) {
+                appendHex((byte[]) v);
+            }
+            else {
+                buf.append(v);
+            }
+        }
+        buf.append('}');
+    }
+
+    private void appendResult(Record e) {
+        if (e.isFailed()) {
+            buf.append(" failed");
+        }
+        else if (e.isResultSet()) {
+            buf.append(" result set");
+        }
+        else if (e.isBatch()) {
+            buf.append(" batch of ").append(e.getUpdateCounts().length);
+        }
+        else if (e.getUpdateCounts() != null) {
+            buf.append(" update count ").append(e.getUpdateCounts()[0]);
+        }
+    }
+
+    // commit, autoCommit, statementClose, ...
+    private static String label(Kind k) {
+        StringBuilder b = new StringBuilder();
+        boolean upper = false;
+        for (char c : k.name().toCharArray()) {
+            if (c == '_') {
+                upper = true;
+            }
+            else {
+                b.append(upper ? c : Character.toLowerCase(c));
+                upper = false;
+            }
+        }
+        return b.toString();
+    }
+
+    private void appendJson(Record e) {
+        buf.append("{\"time\":\"")
+           .append(dates.format(new Date(e.getTimeMicros() / 1000)))
+           .append("\",\"kind\":\"").append(label(e.getKind()))
+           .append("\",\"connection\":").append(e.getConnection());
+        if (e.getThreadName() != null) {
+            buf.append(",\"thread\":");
+            appendJsonString(e.getThreadName());
+        }
+        if (e.getStatement() != 0) {
+            buf.append(",\"statement\":").append(e.getStatement());
+        }
+        if (e.getType() != null) {
+            buf.append(",\"type\":\"").append(e.getType().getLabel())
+               .append('"');
+        }
+        if (e.getSql() != null) {
+            buf.append(",\"sql\":");
+            appendJsonString(e.getSql());
+        }
+        switch (e.getKind()) {
+            case AUTO_COMMIT:
+            case READ_ONLY:
+                buf.append(",\"value\":").append(e.getValue() != 0);
+                break;
+            case ISOLATION:
+                buf.append(",\"value\":").append(e.getValue());
+                break;
+            case EXECUTE:
+                buf.append(",\"elapsedNanos\":").append(e.getElapsedNanos());
+                break;
+            default:
+                break;
+        }
+        if (!e.getBinds().isEmpty()) {
+            buf.append(",\"binds\":{");
+            boolean first = true;
+            for (Bind b : e.getBinds()) {
+                if (!first) {
+                    buf.append(',');
+                }
+                first = false;
+                appendJsonString(b.getName() != null
+                                 ? b.getName() : String.valueOf(b.getIndex()));
+                buf.append(':');
+                appendJsonValue(b.getValue());
+            }
+            buf.append('}');
+        }
+        if (e.isFailed()) {
+            buf.append(",\"failed\":true");
+        }
+        else if (e.isResultSet()) {
+            buf.append(",\"resultSet\":true");
+        }
+        else if (e.isBatch()) {
+            buf.append(",\"updateCounts\":[");
+            int[] counts = e.getUpdateCounts();
+            for (int i = 0; i < counts.length; i++) {
+                if (i > 0) {
+                    buf.append(',');
+                }
+                buf.append(counts[i]);
+            }
+            buf.append(']');
+        }
+        else if (e.getUpdateCounts() != null) {
+            buf.append(",\"updateCount\":").append(e.getUpdateCounts()[0]);
+        }
+        buf.append('}');
+    }
+
+    private void appendJsonValue(Object v) {
+        if (v == null || v instanceof Boolean || v instanceof Long
+            || v instanceof BigDecimal) {
+            buf.append(v);
+        }
+        else if ((v instanceof Double && isFinite(((Double) v).doubleValue()))
+                 || (v instanceof Float
+                     && isFinite(((Float) v).doubleValue()))) {
+            buf.append(v);
+        }
+        else if (v instanceof byte[]) {
+            buf.append('"');
+            appendHex((byte[]) v);
+            buf.append('"');
+        }
+        else {
+            appendJsonString(v.toString());
+        }
+    }
+
+    private static boolean isFinite(double d) {
+        return !Double.isNaN(d) && !Double.isInfinite(d);
+    }
+
+    private void appendJsonString(String s) {
+        buf.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': buf.append("\\\""); break;
+                case '\\': buf.append("\\\\"); break;
+                case '\n': buf.append("\\n"); break;
+                case '\r': buf.append("\\r"); break;
+                case '\t': buf.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        buf.append("\\u00").append(HEX[c >> 4])
+                           .append(HEX[c & 0xF]);
+                    }
+                    else {
+                        buf.append(c);
+                    }
+            }
+        }
+        buf.append('"');
+    }
+
+    private void appendHex(byte[] bytes) {
+        buf.append("0x");
+        for (byte b : bytes) {
+            buf.append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+        }
+    }
+
+    private void appendMillis(long nanos) {
+        long micros = nanos / 1000;
+        buf.append(micros / 1000).append('.');
+        long frac = micros % 1000;
+        if (frac < 100) {
+            buf.append('0');
+        }
+        if (frac < 10) {
+            buf.append('0');
+        }
+        buf.append(frac);
+    }
+
+    /**
+     * @param args <code>[-json] file</code>
+     * @throws IOException if the file can't be read.
+     */
+    public static void main(String[] args) throws IOException {
+        boolean asJson = false;
+        String file = null;
+        for (String a : args) {
+            if (a.equals("-json")) {
+                asJson = true;
+            }
+            else {
+                file = a;
+            }
+        }
+        if (file == null) {
+            System.err.println("usage: CaptureDecoder [-json] file");
+            System.exit(2);
+        }
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out,
+                StandardCharsets.UTF_8), 64 * 1024);
+        CaptureReader reader = new CaptureReader(new FileInputStream(file));
+        try {
+            new CaptureDecoder(asJson).decode(reader, out);
+            if (reader.isTruncated()) {
+                System.err.println(file + ": the last record is incomplete");
+            }
+        }
+        finally {
+            reader.close();
+        }
+    }
+}
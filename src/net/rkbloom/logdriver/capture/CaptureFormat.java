@@ -0,0 +1,252 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.capture;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * CaptureFormat describes the binary capture file and holds the encoding
+ * helpers shared by {@link CaptureWriter} and {@link CaptureDecoder}.
+ * <p>
+ * A file is a sequence of segments, one for each time the driver opened
+ * it.  A segment starts with the four bytes <code>LDCP</code>, a version
+ * byte and the wall-clock time it was started, as an eight byte count of
+ * milliseconds.  Records follow, each starting with a tag byte.  Two
+ * kinds of record are dictionary entries, written once per segment before
+ * the first record that uses them:
+ * <dl>
+ * <dt>{@link #SQL}</dt>
+ * <dd>an id and the SQL it stands for.</dd>
+ * <dt>{@link #THREAD}</dt>
+ * <dd>a thread id and the name of the thread.</dd>
+ * </dl>
+ * Every other record starts with the time, as the difference in
+ * microseconds from the time of the record before it, the connection
+ * number and the thread id.  What follows depends on the record:
+ * <dl>
+ * <dt>{@link #OPEN}, {@link #CLOSE}, {@link #COMMIT},
+ * {@link #ROLLBACK}</dt>
+ * <dd>nothing.</dd>
+ * <dt>{@link #SETTING}</dt>
+ * <dd>which setting of the connection was changed, and its new value.</dd>
+ * <dt>{@link #PREPARE}</dt>
+ * <dd>the statement number, the kind of statement and the SQL.</dd>
+ * <dt>{@link #BATCH_ROW}, {@link #BATCH_SQL}</dt>
+ * <dd>the statement number, and the bind parameters of a row added to a
+ * batch, or the SQL added to a batch of a plain statement.</dd>
+ * <dt>{@link #BATCH_CLEAR}, {@link #STATEMENT_CLOSE}</dt>
+ * <dd>the statement number.</dd>
+ * <dt>{@link #EXECUTE}</dt>
+ * <dd>the statement number; the kind of statement; the SQL; the bind
+ * parameters; the elapsed time in nanoseconds; and the result.  The time
+ * of an execution is the time it started.</dd>
+ * </dl>
+ * Version 1 files only have SQL and EXECUTE records, and their EXECUTE
+ * records have neither a thread nor a statement number.
+ * <p>
+ * SQL is written as its id, or 0 followed by the SQL itself.  Counts,
+ * ids and lengths are unsigned varints (seven bits a byte, low bits
+ * first); signed numbers are zig-zag encoded first.  Strings are a length
+ * and UTF-8.  The bind parameters are a count followed by, for each, its
+ * index (0 for a named parameter, followed by the name) and a type-tagged
+ * value.
+ * @version $Rev$
+ */
+public final class CaptureFormat {
+
+    /** The first bytes of every segment. */
+    static final byte[] MAGIC = {'L', 'D', 'C', 'P'};
+    /** The version of the format written. */
+    static final int VERSION = 2;
+
+    /** A SQL dictionary entry. */
+    static final int SQL = 1;
+    /** An execution. */
+    static final int EXECUTE = 2;
+    /** A thread dictionary entry. */
+    static final int THREAD = 3;
+    /** A connection was opened. */
+    static final int OPEN = 4;
+    /** A connection was closed. */
+    static final int CLOSE = 5;
+    /** A connection committed. */
+    static final int COMMIT = 6;
+    /** A connection rolled back. */
+    static final int ROLLBACK = 7;
+    /** A setting of a connection was changed. */
+    static final int SETTING = 8;
+    /** A statement was prepared. */
+    static final int PREPARE = 9;
+    /** A row of bind parameters was added to a batch. */
+    static final int BATCH_ROW = 10;
+    /** SQL was added to the batch of a plain statement. */
+    static final int BATCH_SQL = 11;
+    /** A batch was cleared. */
+    static final int BATCH_CLEAR = 12;
+    /** A statement was closed. */
+    static final int STATEMENT_CLOSE = 13;
+
+    // connection settings
+    static final int S_AUTO_COMMIT = 1;
+    static final int S_ISOLATION = 2;
+    static final int S_READ_ONLY = 3;
+
+    // value tags
+    static final int V_NULL = 0;
+    static final int V_FALSE = 1;
+    static final int V_TRUE = 2;
+    static final int V_LONG = 3;
+    static final int V_FLOAT = 4;
+    static final int V_DOUBLE = 5;
+    static final int V_STRING = 6;
+    static final int V_DECIMAL = 7;
+    static final int V_BYTES = 8;
+    static final int V_DATE = 9;
+    static final int V_TIME = 10;
+    static final int V_TIMESTAMP = 11;
+    /** Anything else, written as its toString(). */
+    static final int V_OTHER = 12;
+
+    // result tags
+    static final int R_FAILED = 0;
+    static final int R_COUNT = 1;
+    static final int R_RESULT_SET = 2;
+    static final int R_NONE = 3;
+    static final int R_BATCH = 4;
+
+    private CaptureFormat() {
+    }
+
+    static void putVarint(ByteBuffer b, long v) {
+        while ((v & ~0x7FL) != 0) {
+            b.put((byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        b.put((byte) v);
+    }
+
+    static void putSigned(ByteBuffer b, long v) {
+        putVarint(b, (v << 1) ^ (v >> 63));
+    }
+
+    /**
+     * Writes a string as its UTF-8 length and bytes, without creating a
+     * byte array for it.
+     */
+    static void putString(ByteBuffer b, String s) {
+        int len = s.length();
+        int bytes = 0;
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            }
+            else if (c < 0x800) {
+                bytes += 2;
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < len
+                     && Character.isLowSurrogate(s.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            }
+            else {
+                bytes += 3;
+            }
+        }
+        putVarint(b, bytes);
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                b.put((byte) c);
+            }
+            else if (c < 0x800) {
+                b.put((byte) (0xC0 | (c >> 6)));
+                b.put((byte) (0x80 | (c & 0x3F)));
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < len
+                     && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                b.put((byte) (0xF0 | (cp >> 18)));
+                b.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                b.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                b.put((byte) (0x80 | (cp & 0x3F)));
+            }
+            else {
+                // a lone surrogate is written as is, like CESU-8
+                b.put((byte) (0xE0 | (c >> 12)));
+                b.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                b.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    static int readByte(InputStream in) throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException();
+        }
+        return b;
+    }
+
+    static long readVarint(InputStream in) throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte(in);
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return v;
+            }
+        }
+        throw new IOException("Bad varint");
+    }
+
+    static long readSigned(InputStream in) throws IOException {
+        long v = readVarint(in);
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    static byte[] readBytes(InputStream in) throws IOException {
+        long len = readVarint(in);
+        if (len > Integer.MAX_VALUE) {
+            throw new IOException("Bad length " + len);
+        }
+        byte[] b = new byte[(int) len];
+        int off = 0;
+        while (off < b.length) {
+            int n = in.read(b, off, b.length - off);
+            if (n < 0) {
+                throw new EOFException();
+            }
+            off += n;
+        }
+        return b;
+    }
+
+    static String readString(InputStream in) throws IOException {
+        return new String(readBytes(in), StandardCharsets.UTF_8);
+    }
+
+    static long readFixedLong(InputStream in) throws IOException {
+        long v = 0;
+        for (int i = 0; i < 8; i++) {
+            v = (v << 8) | readByte(in);
+        }
+        return v;
+    }
+}
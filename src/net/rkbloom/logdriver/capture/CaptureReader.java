@@ -0,0 +1,527 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.capture;
+
+import net.rkbloom.logdriver.event.StatementEvent.Type;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CaptureReader reads the records of a capture file written by
+ * {@link CaptureWriter}, one segment after another.  A record cut short
+ * at the end of the file, as happens if the JVM died while writing it, is
+ * treated as the end of the file.
+ * @version $Rev$
+ */
+public class CaptureReader implements Closeable {
+
+    private final InputStream in;
+    private final Map<Long, String> sql = new HashMap<Long, String>();
+    private final Map<Long, String> threads = new HashMap<Long, String>();
+    private int version;
+    private int segment;
+    private long micros;
+    private boolean truncated;
+
+    /**
+     * @param input the capture file.
+     */
+    public CaptureReader(InputStream input) {
+        in = (input instanceof BufferedInputStream)
+            ? input : new BufferedInputStream(input, 64 * 1024);
+    }
+
+    /**
+     * Reads the next record.
+     * @return the record, or null at the end of the file.
+     * @throws IOException if the file can't be read or isn't a capture
+     * file.
+     */
+    public Record next() throws IOException {
+        try {
+            while (true) {
+                int tag = in.read();
+                if (tag < 0) {
+                    return null;
+                }
+                switch (tag) {
+                    case 'L':
+                        readHeader();
+                        break;
+                    case CaptureFormat.SQL:
+                        long id = CaptureFormat.readVarint(in);
+                        sql.put(Long.valueOf(id), CaptureFormat.readString(in));
+                        break;
+                    case CaptureFormat.THREAD:
+                        long thread = CaptureFormat.readVarint(in);
+                        threads.put(Long.valueOf(thread),
+                                    CaptureFormat.readString(in));
+                        break;
+                    default:
+                        return readRecord(tag);
+                }
+            }
+        }
+        catch (EOFException e) {
+            truncated = true;
+            return null;
+        }
+    }
+
+    /**
+     * @return the number of the segment the last record was in, counting
+     * from 1.  Connection numbers start again in each segment.
+     */
+    public int getSegment() {
+        return segment;
+    }
+
+    /**
+     * @return true if the file ended in the middle of a record.
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void close() throws IOException {
+        in.close();
+    }
+
+    // the 'L' of the magic has been read
+    private void readHeader() throws IOException {
+        for (int i = 1; i < CaptureFormat.MAGIC.length; i++) {
+            if (CaptureFormat.readByte(in) != CaptureFormat.MAGIC[i]) {
+                throw new IOException("Not a capture file");
+            }
+        }
+        version = CaptureFormat.readByte(in);
+        if (version < 1 || version > CaptureFormat.VERSION) {
+            throw new IOException("Unknown capture version " + version);
+        }
+        micros = CaptureFormat.readFixedLong(in) * 1000;
+        sql.clear();
+        threads.clear();
+        segment++;
+    }
+
+    private Record readRecord(int tag) throws IOException {
+        Kind kind = kindOf(tag);
+        if (version == 0 || (version == 1 && kind != Kind.EXECUTE)) {
+            throw new IOException("Unknown record " + tag);
+        }
+        Record r = new Record(kind);
+        micros += CaptureFormat.readSigned(in);
+        r.micros = micros;
+        r.connection = CaptureFormat.readVarint(in);
+        if (version >= 2) {
+            r.thread = CaptureFormat.readVarint(in);
+            r.threadName = threads.get(Long.valueOf(r.thread));
+        }
+        switch (tag) {
+            case CaptureFormat.EXECUTE:
+                if (version >= 2) {
+                    r.statement = CaptureFormat.readVarint(in);
+                }
+                r.type = readType();
+                r.sql = readSql();
+                r.binds = readBinds();
+                r.elapsed = CaptureFormat.readVarint(in);
+                readResult(r);
+                break;
+            case CaptureFormat.PREPARE:
+                r.statement = CaptureFormat.readVarint(in);
+                r.type = readType();
+                r.sql = readSql();
+                break;
+            case CaptureFormat.BATCH_ROW:
+                r.statement = CaptureFormat.readVarint(in);
+                r.binds = readBinds();
+                break;
+            case CaptureFormat.BATCH_SQL:
+                r.statement = CaptureFormat.readVarint(in);
+                r.sql = readSql();
+                break;
+            case CaptureFormat.BATCH_CLEAR:
+            case CaptureFormat.STATEMENT_CLOSE:
+                r.statement = CaptureFormat.readVarint(in);
+                break;
+            case CaptureFormat.SETTING:
+                int setting = CaptureFormat.readByte(in);
+                r.kind = settingOf(setting);
+                r.value = CaptureFormat.readSigned(in);
+                break;
+            default:
+                break;
+        }
+        return r;
+    }
+
+    private static Kind kindOf(int tag) throws IOException {
+        switch (tag) {
+            case CaptureFormat.EXECUTE: return Kind.EXECUTE;
+            case CaptureFormat.OPEN: return Kind.OPEN;
+            case CaptureFormat.CLOSE: return Kind.CLOSE;
+            case CaptureFormat.COMMIT: return Kind.COMMIT;
+            case CaptureFormat.ROLLBACK: return Kind.ROLLBACK;
+            case CaptureFormat.SETTING: return Kind.AUTO_COMMIT;
+            case CaptureFormat.PREPARE: return Kind.PREPARE;
+            case CaptureFormat.BATCH_ROW: return Kind.BATCH_ADD;
+            case CaptureFormat.BATCH_SQL: return Kind.BATCH_ADD;
+            case CaptureFormat.BATCH_CLEAR: return Kind.BATCH_CLEAR;
+            case CaptureFormat.STATEMENT_CLOSE: return Kind.STATEMENT_CLOSE;
+            default: throw new IOException("Unknown record " + tag);
+        }
+    }
+
+    private static Kind settingOf(int setting) throws IOException {
+        switch (setting) {
+            case CaptureFormat.S_AUTO_COMMIT: return Kind.AUTO_COMMIT;
+            case CaptureFormat.S_ISOLATION: return Kind.ISOLATION;
+            case CaptureFormat.S_READ_ONLY: return Kind.READ_ONLY;
+            default: throw new IOException("Unknown setting " + setting);
+        }
+    }
+
+    private Type readType() throws IOException {
+        int type = CaptureFormat.readByte(in);
+        if (type >= Type.values().length) {
+            throw new IOException("Unknown statement type " + type);
+        }
+        return Type.values()[type];
+    }
+
+    private String readSql() throws IOException {
+        long id = CaptureFormat.readVarint(in);
+        if (id == 0) {
+            return CaptureFormat.readString(in);
+        }
+        String s = sql.get(Long.valueOf(id));
+        if (s == null) {
+            throw new IOException("Unknown SQL id " + id);
+        }
+        return s;
+    }
+
+    private List<Bind> readBinds() throws IOException {
+        long count = CaptureFormat.readVarint(in);
+        if (count == 0) {
+            return Collections.<Bind>emptyList();
+        }
+        List<Bind> binds = new ArrayList<Bind>((int) Math.min(count, 1024));
+        for (long i = 0; i < count; i++) {
+            int index = (int) CaptureFormat.readVarint(in);
+            String name = (index == 0 ? CaptureFormat.readString(in) : null);
+            binds.add(new Bind(index, name, readValue()));
+        }
+        return binds;
+    }
+
+    private void readResult(Record r) throws IOException {
+        r.result = CaptureFormat.readByte(in);
+        if (r.result == CaptureFormat.R_COUNT) {
+            r.counts = new int[] {(int) CaptureFormat.readSigned(in)};
+        }
+        else if (r.result == CaptureFormat.R_BATCH) {
+            int n = (int) CaptureFormat.readVarint(in);
+            r.counts = new int[n];
+            for (int i = 0; i < n; i++) {
+                r.counts[i] = (int) CaptureFormat.readSigned(in);
+            }
+        }
+    }
+
+    private Object readValue() throws IOException {
+        int tag = CaptureFormat.readByte(in);
+        switch (tag) {
+            case CaptureFormat.V_NULL: return null;
+            case CaptureFormat.V_FALSE: return Boolean.FALSE;
+            case CaptureFormat.V_TRUE: return Boolean.TRUE;
+            case CaptureFormat.V_LONG:
+                return Long.valueOf(CaptureFormat.readSigned(in));
+            case CaptureFormat.V_FLOAT:
+                return Float.valueOf(Float.intBitsToFloat(
+                        (int) readFixed(4)));
+            case CaptureFormat.V_DOUBLE:
+                return Double.valueOf(Double.longBitsToDouble(readFixed(8)));
+            case CaptureFormat.V_STRING:
+                return CaptureFormat.readString(in);
+            case CaptureFormat.V_DECIMAL:
+                return new BigDecimal(CaptureFormat.readString(in));
+            case CaptureFormat.V_BYTES:
+                return CaptureFormat.readBytes(in);
+            case CaptureFormat.V_DATE:
+                return new Date(CaptureFormat.readSigned(in));
+            case CaptureFormat.V_TIME:
+                return new Time(CaptureFormat.readSigned(in));
+            case CaptureFormat.V_TIMESTAMP:
+                Timestamp t = new Timestamp(CaptureFormat.readSigned(in));
+                t.setNanos((int) CaptureFormat.readVarint(in));
+                return t;
+            case CaptureFormat.V_OTHER:
+                return new Other(CaptureFormat.readString(in));
+            default:
+                throw new IOException("Unknown value type " + tag);
+        }
+    }
+
+    private long readFixed(int bytes) throws IOException {
+        long v = 0;
+        for (int i = 0; i < bytes; i++) {
+            v = (v << 8) | CaptureFormat.readByte(in);
+        }
+        return v;
+    }
+
+    /**
+     * What a record describes.
+     */
+    public enum Kind {
+        /** A connection was opened. */
+        OPEN,
+        /** A connection was closed. */
+        CLOSE,
+        /** A connection committed. */
+        COMMIT,
+        /** A connection rolled back its transaction. */
+        ROLLBACK,
+        /** Auto-commit was changed; the value is 1 for on. */
+        AUTO_COMMIT,
+        /** The isolation level was changed; the value is the level. */
+        ISOLATION,
+        /** Read-only mode was changed; the value is 1 for on. */
+        READ_ONLY,
+        /** A statement was prepared. */
+        PREPARE,
+        /**
+         * A row was added to a batch: bind parameters, or for a plain
+         * statement, SQL.
+         */
+        BATCH_ADD,
+        /** A batch was cleared. */
+        BATCH_CLEAR,
+        /** A statement was closed. */
+        STATEMENT_CLOSE,
+        /** A statement was executed. */
+        EXECUTE
+    }
+
+    /**
+     * One record read from the file.  What is set depends on its kind.
+     */
+    public static final class Record {
+
+        private Kind kind;
+        private long micros;
+        private long connection;
+        private long thread;
+        private String threadName;
+        private long statement;
+        private Type type;
+        private String sql;
+        private List<Bind> binds = Collections.<Bind>emptyList();
+        private long value;
+        private long elapsed;
+        private int result = CaptureFormat.R_NONE;
+        private int[] counts;
+
+        Record(Kind k) {
+            kind = k;
+        }
+
+        /**
+         * @return what the record describes.
+         */
+        public Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * @return when it happened, in microseconds since the epoch; for
+         * an execution, when it started.
+         */
+        public long getTimeMicros() {
+            return micros;
+        }
+
+        /**
+         * @return the connection number.
+         */
+        public long getConnection() {
+            return connection;
+        }
+
+        /**
+         * @return the id of the thread, 0 in a version 1 file.
+         */
+        public long getThread() {
+            return thread;
+        }
+
+        /**
+         * @return the name of the thread, or null if it isn't known.
+         */
+        public String getThreadName() {
+            return threadName;
+        }
+
+        /**
+         * @return the statement number, 0 for a connection record or in a
+         * version 1 file.
+         */
+        public long getStatement() {
+            return statement;
+        }
+
+        /**
+         * @return the new value of a setting.
+         */
+        public long getValue() {
+            return value;
+        }
+
+        /**
+         * @return the kind of statement.
+         */
+        public Type getType() {
+            return type;
+        }
+
+        /**
+         * @return the SQL, or null if the record has none.
+         */
+        public String getSql() {
+            return sql;
+        }
+
+        /**
+         * @return the bind parameters, in index order and then the named
+         * ones.
+         */
+        public List<Bind> getBinds() {
+            return binds;
+        }
+
+        /**
+         * @return how long it took, in nanoseconds.
+         */
+        public long getElapsedNanos() {
+            return elapsed;
+        }
+
+        /**
+         * @return true if it threw.
+         */
+        public boolean isFailed() {
+            return result == CaptureFormat.R_FAILED;
+        }
+
+        /**
+         * @return true if it returned a result set.
+         */
+        public boolean isResultSet() {
+            return result == CaptureFormat.R_RESULT_SET;
+        }
+
+        /**
+         * @return the update count, or the counts of a batch; null if there
+         * were none.
+         */
+        public int[] getUpdateCounts() {
+            return counts;
+        }
+
+        /**
+         * @return true if it was a batch.
+         */
+        public boolean isBatch() {
+            return result == CaptureFormat.R_BATCH;
+        }
+    }
+
+    /**
+     * One bind parameter of an execution or of a row of a batch.
+     */
+    public static final class Bind {
+
+        private final int index;
+        private final String name;
+        private final Object value;
+
+        Bind(int i, String n, Object v) {
+            index = i;
+            name = n;
+            value = v;
+        }
+
+        /**
+         * @return the one-based index, or 0 for a named parameter.
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * @return the name of a named parameter, otherwise null.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the value: null, a Boolean, Long, Float, Double, String,
+         * BigDecimal, byte[], java.sql.Date, Time or Timestamp, or an
+         * {@link Other}.
+         */
+        public Object getValue() {
+            return value;
+        }
+    }
+
+    /**
+     * A value that was captured as its toString(), such as a stream or a
+     * LOB.
+     */
+    public static final class Other {
+
+        private final String text;
+
+        Other(String t) {
+            text = t;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public String toString() {
+            return text;
+        }
+    }
+}
@@ -0,0 +1,634 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.capture;
+
+import net.rkbloom.logdriver.capture.CaptureReader.Bind;
+import net.rkbloom.logdriver.capture.CaptureReader.Kind;
+import net.rkbloom.logdriver.capture.CaptureReader.Other;
+import net.rkbloom.logdriver.capture.CaptureReader.Record;
+import net.rkbloom.logdriver.event.StatementEvent.Type;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * CaptureReplayer runs a captured workload against another database:
+ * <pre>
+ * java -cp logdriver.jar:driver.jar \
+ *     net.rkbloom.logdriver.capture.CaptureReplayer \
+ *     [-speed factor | -fast] [-user name] [-password secret] \
+ *     [-driver class] capture.bin jdbc:url
+ * </pre>
+ * Each captured connection gets a connection and a thread of its own, and
+ * its records are replayed in the order they were captured, so the
+ * connections run side by side as they did in the application.  By default
+ * every record is replayed at the time it happened, relative to the start
+ * of the capture; <code>-speed 4</code> replays four times as fast and
+ * <code>-fast</code> doesn't wait at all.  The gap between two captures
+ * in the same file is skipped.
+ * <p>
+ * Statements are prepared, bound, batched, executed, committed and closed
+ * as they were captured, and every result set is read to the end.  Some
+ * things can't be replayed: a statement prepared before the capture
+ * started is prepared when it is first executed, a row added to its
+ * batch before that is skipped, streams and LOBs are bound as their
+ * description, and the OUT parameters of stored procedures aren't
+ * registered.  Failures are counted, the first few are printed, and the
+ * replay goes on.
+ * @version $Rev$
+ */
+public final class CaptureReplayer {
+
+    // how far ahead of time records are queued, when pacing
+    private static final long LOOKAHEAD_NANOS = TimeUnit.SECONDS.toNanos(1);
+    // how many records may wait when replaying as fast as possible
+    private static final int MAX_PENDING = 10000;
+    private static final int MAX_REPORTED = 20;
+
+    private final String url;
+    private final Properties info;
+    private final double speed;
+
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong done = new AtomicLong();
+    private final AtomicLong executions = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong expectedFailures = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong capturedNanos = new AtomicLong();
+    private final AtomicLong replayedNanos = new AtomicLong();
+    private final AtomicLong rows = new AtomicLong();
+    private final AtomicInteger reported = new AtomicInteger();
+    private long connections;
+    private long records;
+    private long spanMicros;
+    private long startNanos;
+    private long firstMicros = Long.MIN_VALUE;
+
+    /**
+     * @param target the JDBC URL to replay against.
+     * @param props the user, password and any other connection
+     * properties.
+     * @param factor how many times as fast as the capture to replay, or 0
+     * to replay as fast as possible.
+     */
+    public CaptureReplayer(String target, Properties props, double factor) {
+        url = target;
+        info = props;
+        speed = factor;
+    }
+
+    /**
+     * Replays a whole capture and waits for it to finish.
+     * @param reader the capture.
+     * @throws IOException if the capture can't be read.
+     * @throws InterruptedException if the replay was interrupted.
+     */
+    public void replay(CaptureReader reader)
+        throws IOException, InterruptedException {
+        Map<String, Session> sessions = new HashMap<String, Session>();
+        List<Session> started = new ArrayList<Session>();
+        startNanos = System.nanoTime();
+        int segment = 0;
+        long lastMicros = 0;
+        long gapMicros = 0;
+        for (Record r = reader.next(); r != null; r = reader.next()) {
+            if (firstMicros == Long.MIN_VALUE) {
+                firstMicros = r.getTimeMicros();
+            }
+            else if (reader.getSegment() != segment) {
+                // connections of an earlier capture are gone
+                for (Session s : sessions.values()) {
+                    s.finish();
+                }
+                sessions.clear();
+                gapMicros += r.getTimeMicros() - lastMicros;
+            }
+            segment = reader.getSegment();
+            lastMicros = r.getTimeMicros();
+            records++;
+            long due = dueNanos(r.getTimeMicros() - gapMicros);
+            spanMicros = r.getTimeMicros() - gapMicros - firstMicros;
+            String key = segment + "#" + r.getConnection();
+            Session s = sessions.get(key);
+            if (s == null) {
+                s = new Session(r.getConnection());
+                sessions.put(key, s);
+                started.add(s);
+                s.start();
+                connections++;
+                if (started.size() > 1000) {
+                    prune(started);
+                }
+            }
+            throttle(due);
+            pending.incrementAndGet();
+            s.queue.put(new Pacing(r, due));
+            if (r.getKind() == Kind.CLOSE) {
+                sessions.remove(key);
+            }
+        }
+        for (Session s : sessions.values()) {
+            s.finish();
+        }
+        for (Session s : started) {
+            s.join();
+        }
+    }
+
+    private long dueNanos(long micros) {
+        if (speed <= 0) {
+            return startNanos;
+        }
+        return startNanos + (long) ((micros - firstMicros) * 1000 / speed);
+    }
+
+    // Keeps the queues short: records are queued a little ahead of time,
+    // or when replaying as fast as possible, while the connections keep up.
+    // A connection waiting for a lock held by another that has nothing
+    // queued would wait forever, so the reader never waits for long.
+    private void throttle(long due) throws InterruptedException {
+        if (speed > 0) {
+            waitUntil(due - LOOKAHEAD_NANOS);
+            return;
+        }
+        while (pending.get() > MAX_PENDING) {
+            long before = done.get();
+            Thread.sleep(50);
+            if (done.get() == before) {
+                return;
+            }
+        }
+    }
+
+    private static void waitUntil(long nanos) {
+        long d;
+        while ((d = nanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(d);
+        }
+    }
+
+    private static void prune(List<Session> started) {
+        for (Iterator<Session> i = started.iterator(); i.hasNext();) {
+            if (!i.next().isAlive()) {
+                i.remove();
+            }
+        }
+    }
+
+    /**
+     * @return how many connections were replayed.
+     */
+    public long getConnections() {
+        return connections;
+    }
+
+    /**
+     * @return how many records were replayed.
+     */
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     * @return how many executions were replayed.
+     */
+    public long getExecutions() {
+        return executions.get();
+    }
+
+    /**
+     * @return how many records failed that hadn't failed in the capture.
+     */
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * @return how many executions failed that had failed in the capture
+     * too.
+     */
+    public long getExpectedFailures() {
+        return expectedFailures.get();
+    }
+
+    /**
+     * @return how many records couldn't be replayed at all.
+     */
+    public long getSkipped() {
+        return skipped.get();
+    }
+
+    /**
+     * Describes the replay.
+     * @return a few lines of text.
+     */
+    public String summary() {
+        long wall = System.nanoTime() - startNanos;
+        return "Replayed " + records + " records on " + connections
+            + " connections in " + seconds(wall) + " s (captured over "
+            + seconds(spanMicros * 1000) + " s)\n"
+            + "  executions " + executions + ", rows read " + rows
+            + ", failed " + failures + ", failed as in the capture "
+            + expectedFailures + ", skipped " + skipped + "\n"
+            + "  time in executions: captured "
+            + seconds(capturedNanos.get()) + " s, replayed "
+            + seconds(replayedNanos.get()) + " s";
+    }
+
+    private static String seconds(long nanos) {
+        return String.valueOf(Math.round(nanos / 1e6) / 1000.0);
+    }
+
+    private void failed(Record r, SQLException e) {
+        failures.incrementAndGet();
+        if (reported.incrementAndGet() <= MAX_REPORTED) {
+            System.err.println("#" + r.getConnection()
+                               + (r.getStatement() != 0
+                                  ? "." + r.getStatement() : "")
+                               + " " + r.getKind()
+                               + (r.getSql() != null
+                                  ? " '" + r.getSql() + "'" : "")
+                               + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * A record and when to replay it.
+     */
+    private static final class Pacing {
+
+        final Record record;
+        final long due;
+
+        Pacing(Record r, long d) {
+            record = r;
+            due = d;
+        }
+    }
+
+    /**
+     * One captured connection, replayed on a thread of its own.
+     */
+    private final class Session extends Thread {
+
+        final BlockingQueue<Pacing> queue = new LinkedBlockingQueue<Pacing>();
+        private Connection conn;
+        private boolean opened;
+        // by statement number, or by SQL for a version 1 capture
+        private final Map<Object, Statement> statements =
+            new HashMap<Object, Statement>();
+        private final Map<Statement, String> prepared =
+            new HashMap<Statement, String>();
+
+        Session(long connection) {
+            super("replay-" + connection);
+        }
+
+        // closes the connection once the records queued so far are done
+        void finish() throws InterruptedException {
+            pending.incrementAndGet();
+            queue.put(new Pacing(null, 0));
+        }
+
+        public void run() {
+            try {
+                while (true) {
+                    Pacing p = queue.take();
+                    try {
+                        if (p.record == null) {
+                            close();
+                            return;
+                        }
+                        if (speed > 0) {
+                            waitUntil(p.due);
+                        }
+                        replay(p.record);
+                        if (p.record.getKind() == Kind.CLOSE) {
+                            return;
+                        }
+                    }
+                    finally {
+                        pending.decrementAndGet();
+                        done.incrementAndGet();
+                    }
+                }
+            }
+            catch (InterruptedException e) {
+                close();
+            }
+        }
+
+        private void replay(Record r) {
+            if (r.getKind() == Kind.CLOSE) {
+                close();
+                return;
+            }
+            if (!open(r)) {
+                skipped.incrementAndGet();
+                return;
+            }
+            try {
+                switch (r.getKind()) {
+                    case COMMIT:
+                        conn.commit();
+                        break;
+                    case ROLLBACK:
+                        conn.rollback();
+                        break;
+                    case AUTO_COMMIT:
+                        conn.setAutoCommit(r.getValue() != 0);
+                        break;
+                    case ISOLATION:
+                        conn.setTransactionIsolation((int) r.getValue());
+                        break;
+                    case READ_ONLY:
+                        conn.setReadOnly(r.getValue() != 0);
+                        break;
+                    case PREPARE:
+                        prepare(r, r.getStatement());
+                        break;
+                    case BATCH_ADD:
+                        addBatch(r);
+                        break;
+                    case BATCH_CLEAR:
+                        Statement st = statements.get(key(r));
+                        if (st != null) {
+                            st.clearBatch();
+                        }
+                        break;
+                    case STATEMENT_CLOSE:
+                        closeStatement(statements.remove(key(r)));
+                        break;
+                    case EXECUTE:
+                        execute(r);
+                        break;
+                    default:
+                        break;
+                }
+            }
+            catch (SQLException e) {
+                failed(r, e);
+            }
+        }
+
+        // A connection opened before the capture started is opened when
+        // its first record is replayed.
+        private boolean open(Record r) {
+            if (!opened) {
+                opened = true;
+                try {
+                    conn = DriverManager.getConnection(url, info);
+                }
+                catch (SQLException e) {
+                    failed(r, e);
+                }
+            }
+            return conn != null;
+        }
+
+        private Object key(Record r) {
+            return (r.getStatement() != 0)
+                ? (Object) Long.valueOf(r.getStatement()) : r.getSql();
+        }
+
+        private Statement prepare(Record r, Object key) throws SQLException {
+            closeStatement(statements.remove(key));
+            Statement st;
+            if (r.getType() == Type.STATEMENT) {
+                st = conn.createStatement();
+            }
+            else if (r.getType() == Type.CALLABLE) {
+                st = conn.prepareCall(r.getSql());
+            }
+            else {
+                st = conn.prepareStatement(r.getSql());
+            }
+            statements.put(key, st);
+            if (st instanceof PreparedStatement) {
+                prepared.put(st, r.getSql());
+            }
+            return st;
+        }
+
+        private Statement statement(Record r) throws SQLException {
+            Object key = key(r);
+            Statement st = statements.get(key);
+            return (st != null ? st : prepare(r, key));
+        }
+
+        private void addBatch(Record r) throws SQLException {
+            if (r.getSql() != null) {
+                Statement st = statements.get(key(r));
+                if (st == null) {
+                    st = conn.createStatement();
+                    statements.put(key(r), st);
+                }
+                st.addBatch(r.getSql());
+                return;
+            }
+            Statement st = statements.get(key(r));
+            if (!(st instanceof PreparedStatement)) {
+                skipped.incrementAndGet();
+                return;
+            }
+            bind((PreparedStatement) st, r.getBinds());
+            ((PreparedStatement) st).addBatch();
+        }
+
+        private void execute(Record r) throws SQLException {
+            executions.incrementAndGet();
+            capturedNanos.addAndGet(r.getElapsedNanos());
+            Statement st = statement(r);
+            String sql = prepared.get(st);
+            long start = System.nanoTime();
+            try {
+                if (r.isBatch()) {
+                    st.executeBatch();
+                }
+                else if (sql == null || !sql.equals(r.getSql())) {
+                    // a Statement, or the execute(String) of a prepared one
+                    consume(st, st.execute(r.getSql()));
+                }
+                else {
+                    PreparedStatement ps = (PreparedStatement) st;
+                    bind(ps, r.getBinds());
+                    consume(ps, ps.execute());
+                }
+            }
+            catch (SQLException e) {
+                if (r.isFailed()) {
+                    expectedFailures.incrementAndGet();
+                    return;
+                }
+                throw e;
+            }
+            finally {
+                replayedNanos.addAndGet(System.nanoTime() - start);
+            }
+        }
+
+        private void bind(PreparedStatement ps, List<Bind> binds)
+            throws SQLException {
+            ps.clearParameters();
+            for (Bind b : binds) {
+                Object v = b.getValue();
+                if (v instanceof Other) {
+                    v = v.toString();
+                }
+                if (b.getName() != null) {
+                    CallableStatement cs = (CallableStatement) ps;
+                    if (v == null) {
+                        cs.setNull(b.getName(), Types.NULL);
+                    }
+                    else {
+                        cs.setObject(b.getName(), v);
+                    }
+                }
+                else if (v == null) {
+                    ps.setNull(b.getIndex(), Types.NULL);
+                }
+                else {
+                    ps.setObject(b.getIndex(), v);
+                }
+            }
+        }
+
+        private void consume(Statement st, boolean isResultSet)
+            throws SQLException {
+            boolean rs = isResultSet;
+            while (true) {
+                if (rs) {
+                    ResultSet results = st.getResultSet();
+                    try {
+                        while (results.next()) {
+                            rows.incrementAndGet();
+                        }
+                    }
+                    finally {
+                        results.close();
+                    }
+                }
+                else if (st.getUpdateCount() == -1) {
+                    return;
+                }
+                rs = st.getMoreResults();
+            }
+        }
+
+        private void closeStatement(Statement st) {
+            if (st == null) {
+                return;
+            }
+            prepared.remove(st);
+            try {
+                st.close();
+            }
+            catch (SQLException e) {
+                // nothing more to do with it
+            }
+        }
+
+        private void close() {
+            for (Statement st : statements.values()) {
+                closeStatement(st);
+            }
+            statements.clear();
+            if (conn != null) {
+                try {
+                    conn.close();
+                }
+                catch (SQLException e) {
+                    // the replay of this connection is over anyway
+                }
+                conn = null;
+            }
+        }
+    }
+
+    /**
+     * @param args <code>[-speed factor | -fast] [-user name]
+     * [-password secret] [-driver class] file url</code>
+     * @throws Exception if the capture can't be read or the driver can't
+     * be loaded.
+     */
+    public static void main(String[] args) throws Exception {
+        double factor = 1;
+        Properties props = new Properties();
+        List<String> rest = new ArrayList<String>();
+        for (int i = 0; i < args.length; i++) {
+            String a = args[i];
+            if (a.equals("-fast")) {
+                factor = 0;
+            }
+            else if (a.equals("-speed") && i + 1 < args.length) {
+                factor = Double.parseDouble(args[++i]);
+            }
+            else if (a.equals("-user") && i + 1 < args.length) {
+                props.setProperty("user", args[++i]);
+            }
+            else if (a.equals("-password") && i + 1 < args.length) {
+                props.setProperty("password", args[++i]);
+            }
+            else if (a.equals("-driver") && i + 1 < args.length) {
+                Class.forName(args[++i]);
+            }
+            else {
+                rest.add(a);
+            }
+        }
+        if (rest.size() != 2 || factor < 0) {
+            System.err.println("usage: CaptureReplayer [-speed factor | -fast]"
+                               + " [-user name] [-password secret]"
+                               + " [-driver class] file url");
+            System.exit(2);
+        }
+        CaptureReplayer replayer =
+            new CaptureReplayer(rest.get(1), props, factor);
+        CaptureReader reader =
+            new CaptureReader(new FileInputStream(rest.get(0)));
+        try {
+            replayer.replay(reader);
+            if (reader.isTruncated()) {
+                System.err.println(rest.get(0)
+                                   + ": the last record is incomplete");
+            }
+        }
+        finally {
+            reader.close();
+        }
+        System.out.println(replayer.summary());
+    }
+}
@@ -0,0 +1,700 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.capture;
+
+import net.rkbloom.logdriver.event.StatementEvent.Type;
+import net.rkbloom.logdriver.util.BindParams;
+
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * CaptureWriter appends the workload of the application, its connections,
+ * transactions, statements and executions, to a binary capture file (see
+ * {@link CaptureFormat}) when <code>logdriver.capture.file</code> is set.
+ * Records are encoded straight into a reused direct buffer, with no
+ * intermediate Strings, and the buffer is written to the file when it is
+ * three quarters full, once a second and when the JVM exits.  Writes from
+ * all connections go through one lock, which is only held while a record
+ * is encoded.  If the file can't be written, capture stops and the error
+ * is logged once.
+ * @version $Rev$
+ */
+public final class CaptureWriter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int FLUSH_AT = BUFFER_SIZE / 4 * 3;
+    // SQL beyond this many distinct strings is written inline each time
+    private static final int MAX_SQL_IDS = 65536;
+    // threads beyond this many are written without their names
+    private static final int MAX_THREAD_IDS = 65536;
+
+    private static Logger log = Logger.getLogger(CaptureWriter.class);
+
+    private static volatile CaptureWriter current;
+    private static Thread flusher;
+
+    private final String path;
+    private final FileChannel channel;
+    private final ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final Map<String, Integer> sqlIds = new HashMap<String, Integer>();
+    private final Set<Long> threadIds = new HashSet<Long>();
+    private final Pending pending = new Pending();
+    private final Encoder encoder = new Encoder();
+    // the System.nanoTime() the next time delta is taken from
+    private long lastNanos;
+    private boolean closed;
+
+    private CaptureWriter(String p) throws IOException {
+        path = p;
+        channel = FileChannel.open(Paths.get(p), StandardOpenOption.CREATE,
+                                   StandardOpenOption.WRITE,
+                                   StandardOpenOption.APPEND);
+        buf.put(CaptureFormat.MAGIC);
+        buf.put((byte) CaptureFormat.VERSION);
+        buf.putLong(System.currentTimeMillis());
+        lastNanos = System.nanoTime();
+    }
+
+    // a writer for a file that couldn't be opened, so that the error is
+    // only logged once
+    private CaptureWriter(String p, boolean failed) {
+        path = p;
+        channel = null;
+        closed = failed;
+    }
+
+    /**
+     * Returns the writer for the given file, closing the writer of any
+     * other file.
+     * @param path the capture file.
+     * @return the writer, or null if the file couldn't be opened.
+     */
+    public static CaptureWriter forFile(String path) {
+        CaptureWriter w = current;
+        if (w != null && w.path.equals(path)) {
+            return w.closed ? null : w;
+        }
+        return open(path);
+    }
+
+    private static synchronized CaptureWriter open(String path) {
+        CaptureWriter w = current;
+        if (w != null) {
+            if (w.path.equals(path)) {
+                return w.closed ? null : w;
+            }
+            w.close();
+        }
+        try {
+            w = new CaptureWriter(path);
+            log.info("Capturing the workload to " + path);
+        }
+        catch (IOException e) {
+            log.error("Couldn't open capture file " + path, e);
+            w = new CaptureWriter(path, true);
+        }
+        current = w;
+        if (flusher == null) {
+            flusher = new Flusher();
+            flusher.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+                public void run() {
+                    CaptureWriter c = current;
+                    if (c != null) {
+                        c.close();
+                    }
+                }
+            }, "logdriver-capture-close"));
+        }
+        return w.closed ? null : w;
+    }
+
+    /**
+     * Appends an execution.
+     * @param connection the connection number.
+     * @param statement the statement number.
+     * @param type the kind of statement.
+     * @param sql the SQL that was executed.
+     * @param binds the bind parameters, or null.
+     * @param start the System.nanoTime() the execution started at.
+     * @param elapsed how long it took, in nanoseconds.
+     * @param result what it returned, an Integer, int[], Boolean or
+     * ResultSet; ignored if it failed.
+     * @param failed true if it threw.
+     */
+    public synchronized void execution(long connection, long statement,
+                                       Type type, String sql,
+                                       BindParams binds, long start,
+                                       long elapsed, Object result,
+                                       boolean failed) {
+        Pending r = begin(CaptureFormat.EXECUTE, connection, start);
+        r.statement = statement;
+        r.type = type;
+        r.sql = sql;
+        r.binds = binds;
+        r.elapsed = elapsed;
+        r.result = result;
+        r.failed = failed;
+        append(r);
+    }
+
+    /**
+     * Appends the opening of a connection.
+     * @param connection the connection number.
+     */
+    public synchronized void opened(long connection) {
+        append(begin(CaptureFormat.OPEN, connection, System.nanoTime()));
+    }
+
+    /**
+     * Appends the closing of a connection.
+     * @param connection the connection number.
+     */
+    public synchronized void closed(long connection) {
+        append(begin(CaptureFormat.CLOSE, connection, System.nanoTime()));
+    }
+
+    /**
+     * Appends a commit.
+     * @param connection the connection number.
+     */
+    public synchronized void committed(long connection) {
+        append(begin(CaptureFormat.COMMIT, connection, System.nanoTime()));
+    }
+
+    /**
+     * Appends a rollback of a whole transaction.
+     * @param connection the connection number.
+     */
+    public synchronized void rolledBack(long connection) {
+        append(begin(CaptureFormat.ROLLBACK, connection, System.nanoTime()));
+    }
+
+    /**
+     * Appends a change of auto-commit.
+     * @param connection the connection number.
+     * @param on the new value.
+     */
+    public void autoCommitSet(long connection, boolean on) {
+        setting(connection, CaptureFormat.S_AUTO_COMMIT, on ? 1 : 0);
+    }
+
+    /**
+     * Appends a change of the transaction isolation level.
+     * @param connection the connection number.
+     * @param level the new level, one of the Connection constants.
+     */
+    public void isolationSet(long connection, int level) {
+        setting(connection, CaptureFormat.S_ISOLATION, level);
+    }
+
+    /**
+     * Appends a change of read-only mode.
+     * @param connection the connection number.
+     * @param on the new value.
+     */
+    public void readOnlySet(long connection, boolean on) {
+        setting(connection, CaptureFormat.S_READ_ONLY, on ? 1 : 0);
+    }
+
+    private synchronized void setting(long connection, int which,
+                                      long value) {
+        Pending r = begin(CaptureFormat.SETTING, connection,
+                          System.nanoTime());
+        r.setting = which;
+        r.value = value;
+        append(r);
+    }
+
+    /**
+     * Appends the preparing of a statement.
+     * @param connection the connection number.
+     * @param statement the statement number.
+     * @param type the kind of statement.
+     * @param sql the SQL it was prepared with.
+     */
+    public synchronized void prepared(long connection, long statement,
+                                      Type type, String sql) {
+        Pending r = begin(CaptureFormat.PREPARE, connection,
+                          System.nanoTime());
+        r.statement = statement;
+        r.type = type;
+        r.sql = sql;
+        append(r);
+    }
+
+    /**
+     * Appends a row added to the batch of a prepared statement.
+     * @param connection the connection number.
+     * @param statement the statement number.
+     * @param binds the bind parameters of the row, or null.
+     */
+    public synchronized void batchAdded(long connection, long statement,
+                                        BindParams binds) {
+        Pending r = begin(CaptureFormat.BATCH_ROW, connection,
+                          System.nanoTime());
+        r.statement = statement;
+        r.binds = binds;
+        append(r);
+    }
+
+    /**
+     * Appends SQL added to the batch of a statement.
+     * @param connection the connection number.
+     * @param statement the statement number.
+     * @param sql the SQL.
+     */
+    public synchronized void batchAdded(long connection, long statement,
+                                        String sql) {
+        Pending r = begin(CaptureFormat.BATCH_SQL, connection,
+                          System.nanoTime());
+        r.statement = statement;
+        r.sql = sql;
+        append(r);
+    }
+
+    /**
+     * Appends the clearing of a batch.
+     * @param connection the connection number.
+     * @param statement the statement number.
+     */
+    public synchronized void batchCleared(long connection, long statement) {
+        Pending r = begin(CaptureFormat.BATCH_CLEAR, connection,
+                          System.nanoTime());
+        r.statement = statement;
+        append(r);
+    }
+
+    /**
+     * Appends the closing of a statement.
+     * @param connection the connection number.
+     * @param statement the statement number.
+     */
+    public synchronized void statementClosed(long connection,
+                                             long statement) {
+        Pending r = begin(CaptureFormat.STATEMENT_CLOSE, connection,
+                          System.nanoTime());
+        r.statement = statement;
+        append(r);
+    }
+
+    private Pending begin(int tag, long connection, long time) {
+        Pending r = pending;
+        r.tag = tag;
+        r.connection = connection;
+        r.time = time;
+        r.thread = Thread.currentThread();
+        return r;
+    }
+
+    private void append(Pending r) {
+        try {
+            if (!closed) {
+                appendRecord(r);
+            }
+        }
+        finally {
+            r.clear();
+        }
+    }
+
+    private void appendRecord(Pending r) {
+        int mark = buf.position();
+        try {
+            encode(buf, r);
+        }
+        catch (BufferOverflowException e) {
+            buf.position(mark);
+            if (!flush()) {
+                return;
+            }
+            // a record bigger than the buffer gets a buffer of its own
+            int size = BUFFER_SIZE * 2;
+            ByteBuffer b = buf;
+            while (true) {
+                try {
+                    encode(b, r);
+                    break;
+                }
+                catch (BufferOverflowException again) {
+                    if (b == buf) {
+                        buf.clear();
+                    }
+                    b = ByteBuffer.allocate(size);
+                    size *= 2;
+                }
+            }
+            if (b != buf) {
+                b.flip();
+                write(b);
+                return;
+            }
+        }
+        if (buf.position() >= FLUSH_AT) {
+            flush();
+        }
+    }
+
+    // Encodes one record.  Nothing is remembered until the record fits,
+    // so a record that overflows can be encoded again.
+    private void encode(ByteBuffer b, Pending r) {
+        Long thread = Long.valueOf(r.thread.getId());
+        boolean newThread = !threadIds.contains(thread)
+            && threadIds.size() < MAX_THREAD_IDS;
+        if (newThread) {
+            b.put((byte) CaptureFormat.THREAD);
+            CaptureFormat.putVarint(b, thread.longValue());
+            CaptureFormat.putString(b, r.thread.getName());
+        }
+        Integer id = null;
+        int newId = 0;
+        if (r.sql != null) {
+            id = sqlIds.get(r.sql);
+            if (id == null && sqlIds.size() < MAX_SQL_IDS) {
+                newId = sqlIds.size() + 1;
+                b.put((byte) CaptureFormat.SQL);
+                CaptureFormat.putVarint(b, newId);
+                CaptureFormat.putString(b, r.sql);
+            }
+        }
+        long delta = (r.time - lastNanos) / 1000;
+        b.put((byte) r.tag);
+        CaptureFormat.putSigned(b, delta);
+        CaptureFormat.putVarint(b, r.connection);
+        CaptureFormat.putVarint(b, thread.longValue());
+        switch (r.tag) {
+            case CaptureFormat.EXECUTE:
+                CaptureFormat.putVarint(b, r.statement);
+                b.put((byte) r.type.ordinal());
+                putSql(b, r.sql, id, newId);
+                putBinds(b, r.binds);
+                CaptureFormat.putVarint(b, Math.max(r.elapsed, 0L));
+                putResult(b, r.result, r.failed);
+                break;
+            case CaptureFormat.PREPARE:
+                CaptureFormat.putVarint(b, r.statement);
+                b.put((byte) r.type.ordinal());
+                putSql(b, r.sql, id, newId);
+                break;
+            case CaptureFormat.BATCH_ROW:
+                CaptureFormat.putVarint(b, r.statement);
+                putBinds(b, r.binds);
+                break;
+            case CaptureFormat.BATCH_SQL:
+                CaptureFormat.putVarint(b, r.statement);
+                putSql(b, r.sql, id, newId);
+                break;
+            case CaptureFormat.BATCH_CLEAR:
+            case CaptureFormat.STATEMENT_CLOSE:
+                CaptureFormat.putVarint(b, r.statement);
+                break;
+            case CaptureFormat.SETTING:
+                b.put((byte) r.setting);
+                CaptureFormat.putSigned(b, r.value);
+                break;
+            default:
+                break;
+        }
+        if (newId != 0) {
+            sqlIds.put(r.sql, Integer.valueOf(newId));
+        }
+        if (newThread) {
+            threadIds.add(thread);
+        }
+        lastNanos += delta * 1000;
+    }
+
+    private static void putSql(ByteBuffer b, String sql, Integer id,
+                               int newId) {
+        if (id != null) {
+            CaptureFormat.putVarint(b, id.intValue());
+        }
+        else if (newId != 0) {
+            CaptureFormat.putVarint(b, newId);
+        }
+        else {
+            CaptureFormat.putVarint(b, 0);
+            CaptureFormat.putString(b, sql);
+        }
+    }
+
+    private void putBinds(ByteBuffer b, BindParams binds) {
+        if (binds == null) {
+            CaptureFormat.putVarint(b, 0);
+        }
+        else {
+            CaptureFormat.putVarint(b, binds.getCount());
+            encoder.out = b;
+            binds.accept(encoder);
+            encoder.out = null;
+        }
+    }
+
+    private static void putResult(ByteBuffer b, Object result,
+                                  boolean failed) {
+        if (failed) {
+            b.put((byte) CaptureFormat.R_FAILED);
+        }
+        else if (result instanceof Integer) {
+            b.put((byte) CaptureFormat.R_COUNT);
+            CaptureFormat.putSigned(b, ((Integer) result).intValue());
+        }
+        else if (result instanceof int[]) {
+            int[] counts = (int[]) result;
+            b.put((byte) CaptureFormat.R_BATCH);
+            CaptureFormat.putVarint(b, counts.length);
+            for (int c : counts) {
+                CaptureFormat.putSigned(b, c);
+            }
+        }
+        else if (result instanceof ResultSet || Boolean.TRUE.equals(result)) {
+            b.put((byte) CaptureFormat.R_RESULT_SET);
+        }
+        else {
+            b.put((byte) CaptureFormat.R_NONE);
+        }
+    }
+
+    /**
+     * Writes the buffer to the file.
+     * @return false if the file couldn't be written, and capture has
+     * stopped.
+     */
+    private synchronized boolean flush() {
+        if (closed) {
+            return false;
+        }
+        if (buf.position() == 0) {
+            return true;
+        }
+        buf.flip();
+        boolean ok = write(buf);
+        buf.clear();
+        return ok;
+    }
+
+    private boolean write(ByteBuffer b) {
+        try {
+            while (b.hasRemaining()) {
+                channel.write(b);
+            }
+            return true;
+        }
+        catch (IOException e) {
+            log.error("Couldn't write capture file " + path
+                      + ", capture has stopped", e);
+            closeChannel();
+            return false;
+        }
+    }
+
+    /**
+     * Writes what is buffered and closes the file.
+     */
+    synchronized void close() {
+        if (!closed) {
+            flush();
+            closeChannel();
+        }
+    }
+
+    private void closeChannel() {
+        closed = true;
+        try {
+            channel.close();
+        }
+        catch (IOException e) {
+            log.warn("Couldn't close capture file " + path, e);
+        }
+    }
+
+    /**
+     * The record being appended.  There is only one, since records are
+     * appended under the lock.
+     */
+    private static final class Pending {
+
+        int tag;
+        long connection;
+        long time;
+        Thread thread;
+        long statement;
+        Type type;
+        String sql;
+        BindParams binds;
+        long elapsed;
+        Object result;
+        boolean failed;
+        int setting;
+        long value;
+
+        // drops the references, so the writer doesn't keep them alive
+        void clear() {
+            thread = null;
+            sql = null;
+            binds = null;
+            result = null;
+        }
+    }
+
+    /**
+     * Writes the bind parameters as type-tagged values.
+     */
+    private static final class Encoder implements BindParams.Visitor {
+
+        ByteBuffer out;
+
+        public void visitNull(int i) {
+            CaptureFormat.putVarint(out, i);
+            out.put((byte) CaptureFormat.V_NULL);
+        }
+
+        public void visitBoolean(int i, boolean x) {
+            CaptureFormat.putVarint(out, i);
+            out.put((byte) (x ? CaptureFormat.V_TRUE : CaptureFormat.V_FALSE));
+        }
+
+        public void visitLong(int i, long x) {
+            CaptureFormat.putVarint(out, i);
+            putLong(x);
+        }
+
+        public void visitFloat(int i, float x) {
+            CaptureFormat.putVarint(out, i);
+            out.put((byte) CaptureFormat.V_FLOAT);
+            out.putFloat(x);
+        }
+
+        public void visitDouble(int i, double x) {
+            CaptureFormat.putVarint(out, i);
+            out.put((byte) CaptureFormat.V_DOUBLE);
+            out.putDouble(x);
+        }
+
+        public void visitObject(int i, Object x) {
+            CaptureFormat.putVarint(out, i);
+            putObject(x);
+        }
+
+        public void visitNamed(String name, Object x) {
+            CaptureFormat.putVarint(out, 0);
+            CaptureFormat.putString(out, name);
+            putObject(x);
+        }
+
+        private void putLong(long x) {
+            out.put((byte) CaptureFormat.V_LONG);
+            CaptureFormat.putSigned(out, x);
+        }
+
+        private void putObject(Object x) {
+            if (x == null) {
+                out.put((byte) CaptureFormat.V_NULL);
+            }
+            else if (x instanceof String) {
+                out.put((byte) CaptureFormat.V_STRING);
+                CaptureFormat.putString(out, (String) x);
+            }
+            else if (x instanceof Integer || x instanceof Long
+                     || x instanceof Short || x instanceof Byte) {
+                putLong(((Number) x).longValue());
+            }
+            else if (x instanceof Boolean) {
+                out.put((byte) (((Boolean) x).booleanValue()
+                                ? CaptureFormat.V_TRUE
+                                : CaptureFormat.V_FALSE));
+            }
+            else if (x instanceof Double) {
+                out.put((byte) CaptureFormat.V_DOUBLE);
+                out.putDouble(((Double) x).doubleValue());
+            }
+            else if (x instanceof Float) {
+                out.put((byte) CaptureFormat.V_FLOAT);
+                out.putFloat(((Float) x).floatValue());
+            }
+            else if (x instanceof BigDecimal) {
+                out.put((byte) CaptureFormat.V_DECIMAL);
+                CaptureFormat.putString(out, x.toString());
+            }
+            else if (x instanceof byte[]) {
+                byte[] bytes = (byte[]) x;
+                out.put((byte) CaptureFormat.V_BYTES);
+                CaptureFormat.putVarint(out, bytes.length);
+                out.put(bytes);
+            }
+            else if (x instanceof Timestamp) {
+                Timestamp t = (Timestamp) x;
+                out.put((byte) CaptureFormat.V_TIMESTAMP);
+                CaptureFormat.putSigned(out, t.getTime());
+                CaptureFormat.putVarint(out, t.getNanos());
+            }
+            else if (x instanceof Time) {
+                out.put((byte) CaptureFormat.V_TIME);
+                CaptureFormat.putSigned(out, ((Time) x).getTime());
+            }
+            else if (x instanceof Date) {
+                out.put((byte) CaptureFormat.V_DATE);
+                CaptureFormat.putSigned(out, ((Date) x).getTime());
+            }
+            else {
+                out.put((byte) CaptureFormat.V_OTHER);
+                CaptureFormat.putString(out, String.valueOf(x));
+            }
+        }
+    }
+
+    /**
+     * Writes the buffer of the current writer once a second, so that a
+     * quiet application doesn't leave its last executions in memory.
+     */
+    private static final class Flusher extends Thread {
+
+        Flusher() {
+            super("logdriver-capture");
+            setDaemon(true);
+        }
+
+        public void run() {
+            while (true) {
+                try {
+                    Thread.sleep(1000);
+                }
+                catch (InterruptedException e) {
+                    return;
+                }
+                CaptureWriter w = current;
+                if (w != null) {
+                    w.flush();
+                }
+            }
+        }
+    }
+}
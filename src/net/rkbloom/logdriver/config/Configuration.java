@@ -0,0 +1,211 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.config;
+
+import net.rkbloom.logdriver.metrics.MetricsServer;
+import net.rkbloom.logdriver.stats.FingerprintRegistry;
+import net.rkbloom.logdriver.util.SqlTemplateCache;
+
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Configuration holds the current {@link DriverConfig} snapshot.  The
+ * settings are resolved once, in increasing order of precedence, from:
+ * <ol>
+ * <li>a <code>logdriver.properties</code> resource on the classpath,</li>
+ * <li>the file named by the <code>logdriver.config</code> system
+ * property,</li>
+ * <li>system properties starting with <code>logdriver.</code> (and the
+ * old <code>replace.bindParams</code>),</li>
+ * <li>settings changed at runtime through {@link #update(String, String)}.
+ * </li>
+ * </ol>
+ * If <code>logdriver.config.reloadInterval</code> is set to a number of
+ * seconds, the file is checked that often and the snapshot is rebuilt when
+ * it changes.
+ * @version $Rev$
+ */
+public final class Configuration {
+
+    /** System property naming the configuration file. */
+    public static final String CONFIG_FILE = "logdriver.config";
+    /** How often, in seconds, to check the configuration file. */
+    public static final String RELOAD_INTERVAL =
+        "logdriver.config.reloadInterval";
+
+    private static final String RESOURCE = "logdriver.properties";
+
+    private static Logger log = Logger.getLogger(Configuration.class);
+
+    private static volatile DriverConfig current;
+    private static final Properties runtime = new Properties();
+
+    static {
+        set(load());
+        long interval = DriverConfig.getLong(System.getProperties(),
+                                             RELOAD_INTERVAL, 0);
+        String file = System.getProperty(CONFIG_FILE);
+        if (interval > 0 && file != null) {
+            new Watcher(new File(file), interval * 1000).start();
+        }
+    }
+
+    private Configuration() {
+    }
+
+    /**
+     * @return the current snapshot.
+     */
+    public static DriverConfig get() {
+        return current;
+    }
+
+    /**
+     * Replaces the current snapshot.
+     * @param config the new snapshot.
+     */
+    public static synchronized void set(DriverConfig config) {
+        current = config;
+        SqlTemplateCache.setMaxSize(config.getTemplateCacheSize());
+        // every fingerprint kept has a latency histogram, so both caps
+        // limit the same set
+        FingerprintRegistry.setMaxFingerprints(
+            Math.min(config.getStatsMaxFingerprints(),
+                     config.getStatsMaxStatements()));
+        MetricsServer.configure(config.getMetricsAddress(),
+                                config.getMetricsPort());
+        log.debug("Using configuration: " + config);
+    }
+
+    /**
+     * Rebuilds the snapshot from all of its sources.
+     * @return the new snapshot.
+     */
+    public static synchronized DriverConfig reload() {
+        DriverConfig config = load();
+        set(config);
+        return config;
+    }
+
+    /**
+     * Changes a single setting at runtime.  The change survives a
+     * {@link #reload()}.
+     * @param key the key, with or without the <code>logdriver.</code>
+     * prefix.
+     * @param value the new value, or null to remove the runtime setting.
+     * @return the new snapshot.
+     */
+    public static synchronized DriverConfig update(String key, String value) {
+        String k = (key.startsWith(DriverConfig.PREFIX) ||
+                    key.equals(DriverConfig.LEGACY_REPLACE_BIND))
+                   ? key : DriverConfig.PREFIX + key;
+        if (value == null) {
+            runtime.remove(k);
+        }
+        else {
+            runtime.setProperty(k, value);
+        }
+        return reload();
+    }
+
+    private static DriverConfig load() {
+        Properties p = new Properties();
+
+        ClassLoader cl = Configuration.class.getClassLoader();
+        InputStream in = (cl == null ? null : cl.getResourceAsStream(RESOURCE));
+        if (in != null) {
+            read(p, in, RESOURCE);
+        }
+
+        String file = System.getProperty(CONFIG_FILE);
+        if (file != null) {
+            try {
+                read(p, new FileInputStream(file), file);
+            }
+            catch (IOException e) {
+                log.warn("Couldn't read configuration file " + file, e);
+            }
+        }
+
+        Properties sys = System.getProperties();
+        for (String key : sys.stringPropertyNames()) {
+            if (key.startsWith(DriverConfig.PREFIX) ||
+                key.equals(DriverConfig.LEGACY_REPLACE_BIND)) {
+                p.setProperty(key, sys.getProperty(key));
+            }
+        }
+
+        p.putAll(runtime);
+        return DriverConfig.fromProperties(p);
+    }
+
+    private static void read(Properties p, InputStream in, String name) {
+        try {
+            p.load(in);
+        }
+        catch (IOException e) {
+            log.warn("Couldn't read configuration from " + name, e);
+        }
+        finally {
+            try {
+                in.close();
+            }
+            catch (IOException e) {
+                // nothing to do
+            }
+        }
+    }
+
+    /**
+     * Watcher polls the configuration file and reloads the configuration
+     * when the file changes.
+     */
+    private static class Watcher extends Thread {
+        private final File file;
+        private final long interval;
+        private long lastModified;
+
+        Watcher(File f, long millis) {
+            super("logdriver-config-watcher");
+            setDaemon(true);
+            file = f;
+            interval = millis;
+            lastModified = f.lastModified();
+        }
+
+        public void run() {
+            while (true) {
+                try {
+                    Thread.sleep(interval);
+                }
+                catch (InterruptedException e) {
+                    return;
+                }
+                long modified = file.lastModified();
+                if (modified != lastModified) {
+                    lastModified = modified;
+                    log.info("Reloading configuration from " + file);
+                    reload();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,527 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.config;
+
+import org.apache.log4j.Logger;
+
+import java.util.Properties;
+
+/**
+ * DriverConfig is an immutable snapshot of the driver settings.  Every
+ * setting is parsed once, when the snapshot is built, so reading one on the
+ * execute path is just a field access.  The current snapshot is held by
+ * {@link Configuration}; a connection opened with URL parameters gets its own
+ * snapshot layered on top of it.
+ * @version $Rev$
+ */
+public final class DriverConfig {
+
+    /** Prefix of every driver setting. */
+    public static final String PREFIX = "logdriver.";
+
+    /** How bind parameters are shown: <code>params</code> or <code>inline</code>. */
+    public static final String RENDER_MODE = PREFIX + "renderMode";
+    /** The pre-1.0 switch for inline bind parameters. */
+    public static final String LEGACY_REPLACE_BIND = "replace.bindParams";
+    /** Maximum number of parsed SQL templates to keep. */
+    public static final String TEMPLATE_CACHE_SIZE = PREFIX + "templateCache.size";
+    /** How many rows of a batch to keep for the executeBatch record. */
+    public static final String BATCH_MAX_ROWS = PREFIX + "batch.maxRows";
+    /** How many leading bytes or characters of a stream parameter to log. */
+    public static final String STREAM_PREFIX = PREFIX + "stream.prefix";
+    /** Whether executions are timed into latency histograms. */
+    public static final String STATS_ENABLED = PREFIX + "stats.enabled";
+    /** How many SQL fingerprints get a latency histogram of their own. */
+    public static final String STATS_MAX_STATEMENTS =
+        PREFIX + "stats.maxStatements";
+    /** How many SQL fingerprints to keep statistics for. */
+    public static final String STATS_MAX_FINGERPRINTS =
+        PREFIX + "stats.maxFingerprints";
+    /** The port of the Prometheus scrape endpoint; off unless set. */
+    public static final String METRICS_PORT = PREFIX + "metrics.port";
+    /** The address the scrape endpoint listens on. */
+    public static final String METRICS_ADDRESS = PREFIX + "metrics.address";
+    /** Milliseconds a transaction may last before it is logged as slow. */
+    public static final String TX_THRESHOLD = PREFIX + "tx.threshold";
+    /** How many executions of one statement in a row are reported as N+1. */
+    public static final String NPLUSONE_THRESHOLD =
+        PREFIX + "nplusone.threshold";
+    /** Whether connections that are never closed are reported. */
+    public static final String LEAK_ENABLED = PREFIX + "leak.enabled";
+    /** How many milliseconds a connection may be open before it is reported. */
+    public static final String LEAK_THRESHOLD = PREFIX + "leak.threshold";
+    /** Every how many connections the opening stack is recorded. */
+    public static final String LEAK_STACK_SAMPLING =
+        PREFIX + "leak.stackSampling";
+    /** Log one in this many executions of each statement. */
+    public static final String SAMPLE_RATE = PREFIX + "sample.rate";
+    /** The most statement records to log a second; no limit unless set. */
+    public static final String SAMPLE_MAX_PER_SECOND =
+        PREFIX + "sample.maxPerSecond";
+    /** The most records of any one statement to log a second. */
+    public static final String SAMPLE_MAX_PER_STATEMENT =
+        PREFIX + "sample.maxPerSecondPerStatement";
+    /** The binary file to capture every execution to; off unless set. */
+    public static final String CAPTURE_FILE = PREFIX + "capture.file";
+    /** Whether statement records are handed to a background thread. */
+    public static final String ASYNC_ENABLED = PREFIX + "async.enabled";
+    /** How many records the background thread may fall behind by. */
+    public static final String ASYNC_BUFFER_SIZE = PREFIX + "async.bufferSize";
+    /** What to do with a record when the buffer is full. */
+    public static final String ASYNC_POLICY = PREFIX + "async.policy";
+    /** One in how many records to keep when the buffer is filling up. */
+    public static final String ASYNC_SAMPLE_RATE = PREFIX + "async.sampleRate";
+    /** The names of the sinks records are written to. */
+    public static final String SINKS = PREFIX + "sinks";
+    /** Prefix of the settings of each sink. */
+    public static final String SINK_PREFIX = PREFIX + "sink.";
+
+    private static Logger log = Logger.getLogger(DriverConfig.class);
+
+    /**
+     * How bind parameters are shown in a statement log record.
+     */
+    public enum RenderMode {
+        /** The SQL with its '?'s, followed by the list of parameters. */
+        PARAMS,
+        /** The SQL with each '?' replaced by its parameter. */
+        INLINE
+    }
+
+    /**
+     * What happens to a record that is logged asynchronously while the
+     * buffer is full.
+     */
+    public enum QueuePolicy {
+        /** The record is dropped and counted. */
+        DROP,
+        /** The caller waits until there is room. */
+        BLOCK,
+        /**
+         * Once the buffer is half full only a sample of the records is
+         * kept, and when it is full the rest are dropped.
+         */
+        SAMPLE
+    }
+
+    private final Properties props;
+    private final DriverConfig base;
+    private final RenderMode renderMode;
+    private final int templateCacheSize;
+    private final int batchMaxRows;
+    private final int streamPrefix;
+    private final boolean statsEnabled;
+    private final int statsMaxStatements;
+    private final int statsMaxFingerprints;
+    private final int metricsPort;
+    private final String metricsAddress;
+    private final long txThreshold;
+    private final int nPlusOneThreshold;
+    private final boolean leakEnabled;
+    private final long leakThreshold;
+    private final int leakStackSampling;
+    private final int sampleRate;
+    private final long sampleMaxPerSecond;
+    private final long sampleMaxPerStatement;
+    private final boolean asyncEnabled;
+    private final int asyncBufferSize;
+    private final QueuePolicy asyncPolicy;
+    private final int asyncSampleRate;
+    private final String captureFile;
+    private final Properties sinkSettings;
+    private final SlowQueryConfig slowQueries;
+
+    private DriverConfig(Properties p, DriverConfig b) {
+        props = p;
+        base = b;
+        String legacy = p.getProperty(LEGACY_REPLACE_BIND, "0");
+        RenderMode legacyMode =
+            (legacy.equals("1") || legacy.equals("true"))
+            ? RenderMode.INLINE : RenderMode.PARAMS;
+        renderMode = getEnum(p, RENDER_MODE, RenderMode.class, legacyMode);
+        templateCacheSize = getInt(p, TEMPLATE_CACHE_SIZE, 1024);
+        batchMaxRows = getInt(p, BATCH_MAX_ROWS, 10);
+        streamPrefix = getInt(p, STREAM_PREFIX, 0);
+        statsEnabled = getBoolean(p, STATS_ENABLED, false);
+        statsMaxStatements = getInt(p, STATS_MAX_STATEMENTS, 1000);
+        statsMaxFingerprints = getInt(p, STATS_MAX_FINGERPRINTS, 1000);
+        metricsPort = getInt(p, METRICS_PORT, -1);
+        metricsAddress = p.getProperty(METRICS_ADDRESS, "127.0.0.1").trim();
+        txThreshold = getLong(p, TX_THRESHOLD, -1);
+        nPlusOneThreshold = getInt(p, NPLUSONE_THRESHOLD, -1);
+        leakThreshold = getLong(p, LEAK_THRESHOLD, -1);
+        leakEnabled = getBoolean(p, LEAK_ENABLED, false) || leakThreshold >= 0;
+        leakStackSampling = getInt(p, LEAK_STACK_SAMPLING, 1);
+        sampleRate = Math.max(getInt(p, SAMPLE_RATE, 1), 1);
+        sampleMaxPerSecond = getLong(p, SAMPLE_MAX_PER_SECOND, -1);
+        sampleMaxPerStatement = getLong(p, SAMPLE_MAX_PER_STATEMENT, -1);
+        asyncEnabled = getBoolean(p, ASYNC_ENABLED, false);
+        asyncBufferSize = getInt(p, ASYNC_BUFFER_SIZE, 8192);
+        asyncPolicy = getEnum(p, ASYNC_POLICY, QueuePolicy.class,
+                              QueuePolicy.DROP);
+        asyncSampleRate = Math.max(getInt(p, ASYNC_SAMPLE_RATE, 10), 1);
+        String capture = p.getProperty(CAPTURE_FILE, "").trim();
+        captureFile = (capture.length() > 0 ? capture : null);
+        sinkSettings = new Properties();
+        for (String key : p.stringPropertyNames()) {
+            if (key.equals(SINKS) || key.startsWith(SINK_PREFIX)) {
+                sinkSettings.setProperty(key, p.getProperty(key));
+            }
+        }
+        slowQueries = SlowQueryConfig.fromProperties(p);
+    }
+
+    /**
+     * Builds a snapshot from the given settings.
+     * @param p the settings, copied by this call.
+     * @return the new snapshot.
+     */
+    public static DriverConfig fromProperties(Properties p) {
+        Properties copy = new Properties();
+        copy.putAll(p);
+        return new DriverConfig(copy, null);
+    }
+
+    /**
+     * Builds a snapshot with some of the settings of this one replaced.
+     * Keys may be given with or without the <code>logdriver.</code> prefix.
+     * @param overrides the settings to replace.
+     * @return the new snapshot.
+     */
+    public DriverConfig withOverrides(Properties overrides) {
+        Properties copy = new Properties();
+        copy.putAll(props);
+        for (String key : overrides.stringPropertyNames()) {
+            copy.setProperty(qualify(key), overrides.getProperty(key));
+        }
+        return new DriverConfig(copy, this);
+    }
+
+    /**
+     * Parses the options part of a driver URL, for example the
+     * <code>renderMode=inline;templateCache.size=64</code> in
+     * <code>jdbc:log;renderMode=inline;templateCache.size=64:...</code>.
+     * @param options the options, separated by ';'.
+     * @return the options as properties.
+     */
+    public static Properties parseUrlOptions(String options) {
+        Properties p = new Properties();
+        for (String option : options.split(";")) {
+            int eq = option.indexOf('=');
+            if (eq > 0) {
+                p.setProperty(qualify(option.substring(0, eq).trim()),
+                              option.substring(eq + 1).trim());
+            }
+        }
+        return p;
+    }
+
+    /**
+     * @return the snapshot this one was layered on, or null.
+     */
+    public DriverConfig getBase() {
+        return base;
+    }
+
+    /**
+     * Returns a raw setting.
+     * @param key the full key, including the prefix.
+     * @return the value, or null if it isn't set.
+     */
+    public String getProperty(String key) {
+        return props.getProperty(key);
+    }
+
+    /**
+     * @return a copy of all of the settings in this snapshot.
+     */
+    public Properties toProperties() {
+        Properties copy = new Properties();
+        copy.putAll(props);
+        return copy;
+    }
+
+    /**
+     * @return how bind parameters are shown.
+     */
+    public RenderMode getRenderMode() {
+        return renderMode;
+    }
+
+    /**
+     * @return the maximum number of parsed SQL templates to keep.
+     */
+    public int getTemplateCacheSize() {
+        return templateCacheSize;
+    }
+
+    /**
+     * @return how many rows of a batch to keep for the executeBatch record.
+     */
+    public int getBatchMaxRows() {
+        return batchMaxRows;
+    }
+
+    /**
+     * @return how many leading bytes or characters of a stream parameter
+     * to log, 0 for none.
+     */
+    public int getStreamPrefix() {
+        return streamPrefix;
+    }
+
+    /**
+     * @return true if executions are timed into latency histograms.
+     */
+    public boolean isStatsEnabled() {
+        return statsEnabled;
+    }
+
+    /**
+     * @return how many SQL fingerprints get a latency histogram of their
+     * own.  Every fingerprint kept has one, so this also caps
+     * {@link #getStatsMaxFingerprints()}.
+     */
+    public int getStatsMaxStatements() {
+        return statsMaxStatements;
+    }
+
+    /**
+     * @return how many SQL fingerprints to keep statistics for.
+     */
+    public int getStatsMaxFingerprints() {
+        return statsMaxFingerprints;
+    }
+
+    /**
+     * @return the port of the scrape endpoint, or -1 if it is off.
+     */
+    public int getMetricsPort() {
+        return metricsPort;
+    }
+
+    /**
+     * @return the address the scrape endpoint listens on.
+     */
+    public String getMetricsAddress() {
+        return metricsAddress;
+    }
+
+    /**
+     * @return how many milliseconds a transaction may last before it is
+     * logged as slow, or -1 for no limit.
+     */
+    public long getTransactionThreshold() {
+        return txThreshold;
+    }
+
+    /**
+     * @return how many executions of one statement in a row are reported
+     * as N+1 queries, or -1 if N+1 detection is off.
+     */
+    public int getNPlusOneThreshold() {
+        return nPlusOneThreshold;
+    }
+
+    /**
+     * @return true if connections are tracked until they are closed.
+     */
+    public boolean isLeakDetectionEnabled() {
+        return leakEnabled;
+    }
+
+    /**
+     * @return how long, in milliseconds, a connection may be open before it
+     * is reported, or -1 if only unclosed connections are reported.
+     */
+    public long getLeakThreshold() {
+        return leakThreshold;
+    }
+
+    /**
+     * @return every how many connections the opening stack is recorded, 0
+     * for never.
+     */
+    public int getLeakStackSampling() {
+        return leakStackSampling;
+    }
+
+    /**
+     * @return log one in this many executions of each statement; 1 logs
+     * them all.
+     */
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * @return the most statement records to log a second, or -1 for no
+     * limit.
+     */
+    public long getSampleMaxPerSecond() {
+        return sampleMaxPerSecond;
+    }
+
+    /**
+     * @return the most records of one SQL fingerprint to log a second, or
+     * -1 for no limit.
+     */
+    public long getSampleMaxPerStatement() {
+        return sampleMaxPerStatement;
+    }
+
+    /**
+     * @return true if only some executions get a statement record.
+     */
+    public boolean isSamplingEnabled() {
+        return sampleRate > 1 || sampleMaxPerSecond >= 0
+            || sampleMaxPerStatement >= 0;
+    }
+
+    /**
+     * @return true if statement records are written by a background
+     * thread.
+     */
+    public boolean isAsyncEnabled() {
+        return asyncEnabled;
+    }
+
+    /**
+     * @return how many records the background thread may fall behind by.
+     */
+    public int getAsyncBufferSize() {
+        return asyncBufferSize;
+    }
+
+    /**
+     * @return what happens to a record when the buffer is full.
+     */
+    public QueuePolicy getAsyncPolicy() {
+        return asyncPolicy;
+    }
+
+    /**
+     * @return one in how many records to keep when the buffer is more than
+     * half full and the policy is {@link QueuePolicy#SAMPLE}.
+     */
+    public int getAsyncSampleRate() {
+        return asyncSampleRate;
+    }
+
+    /**
+     * @return the slow-query thresholds, or null if the slow-query log is
+     * off.
+     */
+    public SlowQueryConfig getSlowQueries() {
+        return slowQueries;
+    }
+
+    /**
+     * @return the file every execution is captured to, or null.
+     */
+    public String getCaptureFile() {
+        return captureFile;
+    }
+
+    /**
+     * @return a copy of the <code>logdriver.sinks</code> and
+     * <code>logdriver.sink.*</code> settings.
+     */
+    public Properties getSinkSettings() {
+        Properties copy = new Properties();
+        copy.putAll(sinkSettings);
+        return copy;
+    }
+
+    /**
+     * @return true if anything needs executions to be timed.  Transactions
+     * are tracked whenever executions are timed.
+     */
+    public boolean isTimingEnabled() {
+        return statsEnabled || slowQueries != null || txThreshold >= 0
+            || nPlusOneThreshold > 0 || captureFile != null;
+    }
+
+    /**
+     * @return true if the bind parameters of every execution are needed,
+     * whether or not the execution is logged.
+     */
+    public boolean isBindCaptureNeeded() {
+        return slowQueries != null || captureFile != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String toString() {
+        return "DriverConfig" + props;
+    }
+
+    private static String qualify(String key) {
+        if (key.startsWith(PREFIX) || key.equals(LEGACY_REPLACE_BIND)) {
+            return key;
+        }
+        return PREFIX + key;
+    }
+
+    static int getInt(Properties p, String key, int def) {
+        return (int) getLong(p, key, def);
+    }
+
+    static long getLong(Properties p, String key, long def) {
+        String v = p.getProperty(key);
+        if (v == null) {
+            return def;
+        }
+        try {
+            return Long.parseLong(v.trim());
+        }
+        catch (NumberFormatException e) {
+            log.warn("Ignoring bad value for " + key + ": " + v);
+            return def;
+        }
+    }
+
+    static boolean getBoolean(Properties p, String key, boolean def) {
+        String v = p.getProperty(key);
+        if (v == null) {
+            return def;
+        }
+        v = v.trim();
+        if (v.equals("1") || v.equalsIgnoreCase("true")) {
+            return true;
+        }
+        if (v.equals("0") || v.equalsIgnoreCase("false")) {
+            return false;
+        }
+        log.warn("Ignoring bad value for " + key + ": " + v);
+        return def;
+    }
+
+    static <E extends Enum<E>> E getEnum(Properties p, String key,
+                                         Class<E> type, E def) {
+        String v = p.getProperty(key);
+        if (v == null) {
+            return def;
+        }
+        try {
+            return Enum.valueOf(type, v.trim().toUpperCase());
+        }
+        catch (IllegalArgumentException e) {
+            log.warn("Ignoring bad value for " + key + ": " + v);
+            return def;
+        }
+    }
+}
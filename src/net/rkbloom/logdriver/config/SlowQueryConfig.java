@@ -0,0 +1,159 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.config;
+
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * SlowQueryConfig holds the thresholds of the slow-query log.  There is an
+ * optional global threshold, <code>logdriver.slow.threshold</code>, and any
+ * number of named ones that only apply to SQL matching a pattern:
+ * <pre>
+ *   logdriver.slow.threshold=500
+ *   logdriver.slow.pattern.orders=(?i)from\\s+orders
+ *   logdriver.slow.threshold.orders=50
+ * </pre>
+ * Thresholds are in milliseconds.  Named patterns are tried in name order
+ * and the first match wins; SQL that matches none gets the global threshold.
+ * An execution faster than every threshold is dismissed without looking at
+ * its SQL.
+ * @version $Rev$
+ */
+public final class SlowQueryConfig {
+
+    /** The global threshold, in milliseconds. */
+    public static final String THRESHOLD = DriverConfig.PREFIX + "slow.threshold";
+    /** Prefix of the per-pattern regular expressions. */
+    public static final String PATTERN = DriverConfig.PREFIX + "slow.pattern.";
+    /** How many caller frames to log with a slow execution. */
+    public static final String STACK_DEPTH = DriverConfig.PREFIX + "slow.stackDepth";
+
+    private static final long NANOS_PER_MS = 1000000L;
+    private static Logger log = Logger.getLogger(SlowQueryConfig.class);
+
+    private final long globalNanos;
+    private final Pattern[] patterns;
+    private final long[] patternNanos;
+    private final long minNanos;
+    private final int stackDepth;
+
+    private SlowQueryConfig(long global, Pattern[] p, long[] pn, int depth) {
+        globalNanos = global;
+        patterns = p;
+        patternNanos = pn;
+        stackDepth = depth;
+        long min = (global >= 0 ? global : Long.MAX_VALUE);
+        for (long n : pn) {
+            min = Math.min(min, n);
+        }
+        minNanos = min;
+    }
+
+    /**
+     * Reads the slow-query settings.
+     * @param p the driver settings.
+     * @return the settings, or null if no threshold is configured.
+     */
+    static SlowQueryConfig fromProperties(Properties p) {
+        long global = DriverConfig.getLong(p, THRESHOLD, -1);
+        Map<String, String> named = new TreeMap<String, String>();
+        for (String key : p.stringPropertyNames()) {
+            if (key.startsWith(PATTERN)) {
+                named.put(key.substring(PATTERN.length()), p.getProperty(key));
+            }
+        }
+        List<Pattern> pats = new ArrayList<Pattern>();
+        List<Long> nanos = new ArrayList<Long>();
+        for (Map.Entry<String, String> e : named.entrySet()) {
+            String key = THRESHOLD + "." + e.getKey();
+            long ms = DriverConfig.getLong(p, key, -1);
+            if (ms < 0) {
+                log.warn("Ignoring " + PATTERN + e.getKey() + ", " + key
+                         + " is not set");
+                continue;
+            }
+            try {
+                pats.add(Pattern.compile(e.getValue()));
+                nanos.add(Long.valueOf(ms * NANOS_PER_MS));
+            }
+            catch (PatternSyntaxException ex) {
+                log.warn("Ignoring bad value for " + PATTERN + e.getKey()
+                         + ": " + ex.getMessage());
+            }
+        }
+        if (global < 0 && pats.isEmpty()) {
+            return null;
+        }
+        long[] pn = new long[nanos.size()];
+        for (int i = 0; i < pn.length; i++) {
+            pn[i] = nanos.get(i).longValue();
+        }
+        return new SlowQueryConfig(global < 0 ? -1 : global * NANOS_PER_MS,
+                                   pats.toArray(new Pattern[pats.size()]), pn,
+                                   DriverConfig.getInt(p, STACK_DEPTH, 10));
+    }
+
+    /**
+     * Returns the threshold that applies to the given SQL.
+     * @param sql the SQL.
+     * @return the threshold in nanoseconds, or -1 if none applies.
+     */
+    public long getThresholdNanos(String sql) {
+        if (sql != null) {
+            for (int i = 0; i < patterns.length; i++) {
+                if (patterns[i].matcher(sql).find()) {
+                    return patternNanos[i];
+                }
+            }
+        }
+        return globalNanos;
+    }
+
+    /**
+     * @param sql the SQL that was executed.
+     * @param nanos how long it took.
+     * @return true if the execution should go to the slow-query log.
+     */
+    public boolean isSlow(String sql, long nanos) {
+        if (nanos < minNanos) {
+            return false;
+        }
+        long t = getThresholdNanos(sql);
+        return t >= 0 && nanos >= t;
+    }
+
+    /**
+     * @return the threshold for SQL that matches no pattern, in
+     * milliseconds, or -1 if there is none.
+     */
+    public long getThresholdMillis() {
+        return globalNanos < 0 ? -1 : globalNanos / NANOS_PER_MS;
+    }
+
+    /**
+     * @return how many caller frames to log with a slow execution.
+     */
+    public int getStackDepth() {
+        return stackDepth;
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.event;
+
+import net.rkbloom.logdriver.event.StatementEvent.Type;
+import net.rkbloom.logdriver.util.BatchBuffer;
+
+import java.sql.Statement;
+
+/**
+ * BatchEvent summarizes one executeBatch call: how many rows were sent, how
+ * long the round trip took, what the driver said about each row and a
+ * sample of the rows themselves.  It replaces the record per addBatch that
+ * earlier versions logged.
+ * @version $Rev$
+ */
+public class BatchEvent {
+
+    // buckets of the update count distribution
+    private static final int FAILED = 0;
+    private static final int NO_INFO = 1;
+    private static final int ZERO = 2;
+    private static final int ONE = 3;
+    private static final int MANY = 4;
+
+    private final Type type;
+    private final String sql;
+    private final BatchBuffer rows;
+    private final int rowCount;
+    private final long elapsedNanos;
+    private final int[] distribution;
+    private final long rowsAffected;
+
+    /**
+     * Creates a new event.
+     * @param t the kind of statement.
+     * @param s the SQL of a PreparedStatement, or null for a Statement.
+     * @param r the rows that were added, owned by this event.
+     * @param nanos how long executeBatch took.
+     * @param counts the update counts returned by the driver, or null if
+     * it failed without returning any.
+     */
+    public BatchEvent(Type t, String s, BatchBuffer r, long nanos,
+                      int[] counts) {
+        type = t;
+        sql = s;
+        rows = r;
+        elapsedNanos = nanos;
+        distribution = new int[MANY + 1];
+        long affected = 0;
+        if (counts != null) {
+            for (int count : counts) {
+                if (count == Statement.EXECUTE_FAILED) {
+                    distribution[FAILED]++;
+                }
+                else if (count == Statement.SUCCESS_NO_INFO) {
+                    distribution[NO_INFO]++;
+                }
+                else {
+                    distribution[count == 0 ? ZERO : count == 1 ? ONE : MANY]++;
+                    affected += count;
+                }
+            }
+        }
+        rowsAffected = affected;
+        // the driver knows better than we do if capture was off for a while
+        rowCount = (counts != null ? counts.length : r.getRowCount());
+    }
+
+    /**
+     * @return the number of rows in the batch.
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return how long executeBatch took, in nanoseconds.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return the sum of the update counts the driver reported.
+     */
+    public long getRowsAffected() {
+        return rowsAffected;
+    }
+
+    /**
+     * @return the SQL of a PreparedStatement batch, or null.
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String toString() {
+        StringBuilder buf = new StringBuilder(256);
+        buf.append("executing ").append(type.getLabel()).append(" batch");
+        if (sql != null) {
+            buf.append(": '").append(sql).append('\'');
+        }
+        double millis = elapsedNanos / 1000000.0;
+        buf.append(" rows: ").append(rowCount)
+           .append(" elapsed: ").append(String.format("%.3f", millis))
+           .append(" ms");
+        if (elapsedNanos > 0) {
+            buf.append(" (").append(rowCount * 1000000000L / elapsedNanos)
+               .append(" rows/s)");
+        }
+        buf.append(" update counts: {");
+        appendBucket(buf, "1", distribution[ONE]);
+        appendBucket(buf, "0", distribution[ZERO]);
+        appendBucket(buf, ">1", distribution[MANY]);
+        appendBucket(buf, "SUCCESS_NO_INFO", distribution[NO_INFO]);
+        appendBucket(buf, "EXECUTE_FAILED", distribution[FAILED]);
+        buf.append("} rows affected: ").append(rowsAffected);
+
+        int sampled = rows.getStoredRowCount();
+        if (sampled > 0) {
+            buf.append(" sample: [");
+            for (int i = 0; i < sampled; i++) {
+                if (i > 0) {
+                    buf.append(", ");
+                }
+                rows.appendRow(buf, i);
+            }
+            buf.append("] (").append(sampled).append(" of ")
+               .append(rows.getRowCount()).append(" rows)");
+        }
+        return buf.toString();
+    }
+
+    private static void appendBucket(StringBuilder buf, String name, int n) {
+        if (n == 0) {
+            return;
+        }
+        if (buf.charAt(buf.length() - 1) != '{') {
+            buf.append(", ");
+        }
+        buf.append(name).append('=').append(n);
+    }
+}
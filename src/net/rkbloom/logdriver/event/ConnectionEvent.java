@@ -0,0 +1,149 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.event;
+
+import java.sql.Connection;
+
+/**
+ * ConnectionEvent describes something that happened to a connection.  Like
+ * {@link StatementEvent} it is only rendered when an appender writes it.
+ * @version $Rev$
+ */
+public class ConnectionEvent {
+
+    /**
+     * What happened to the connection.
+     */
+    public enum Action {
+        OPEN("Opening connection: "),
+        CLOSE("Closing connection: "),
+        COMMIT("Committing connection: "),
+        ROLLBACK("Rolling back connection: ");
+
+        private final String prefix;
+
+        private Action(String p) {
+            prefix = p;
+        }
+    }
+
+    private final Action action;
+    private final Connection connection;
+    private final long id;
+    private final long openNanos;
+    private final long executions;
+    private final long timed;
+    private final long timedNanos;
+
+    /**
+     * Creates a new event.
+     * @param a what happened.
+     * @param c the embedded connection.
+     */
+    public ConnectionEvent(Action a, Connection c) {
+        this(a, c, -1, -1, 0, 0, 0);
+    }
+
+    /**
+     * Creates the event for a connection being closed, with a summary of
+     * its life.
+     * @param c the embedded connection.
+     * @param connId the number of the connection.
+     * @param open how long the connection was open, in nanoseconds.
+     * @param execs the statements executed on it.
+     * @param timedExecs how many of those were timed.
+     * @param nanos the time the timed executions took.
+     */
+    public ConnectionEvent(Connection c, long connId, long open, long execs,
+                           long timedExecs, long nanos) {
+        this(Action.CLOSE, c, connId, open, execs, timedExecs, nanos);
+    }
+
+    private ConnectionEvent(Action a, Connection c, long connId, long open,
+                            long execs, long timedExecs, long nanos) {
+        action = a;
+        connection = c;
+        id = connId;
+        openNanos = open;
+        executions = execs;
+        timed = timedExecs;
+        timedNanos = nanos;
+    }
+
+    /**
+     * @return what happened to the connection.
+     */
+    public Action getAction() {
+        return action;
+    }
+
+    /**
+     * @return the embedded connection.
+     */
+    public Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * @return how long the connection was open in nanoseconds, or -1 if
+     * this event has no summary.
+     */
+    public long getOpenNanos() {
+        return openNanos;
+    }
+
+    /**
+     * @return the statements executed on the connection.
+     */
+    public long getExecutions() {
+        return executions;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String toString() {
+        if (openNanos < 0) {
+            return action.prefix + connection;
+        }
+        StringBuilder buf = new StringBuilder(action.prefix);
+        buf.append(connection).append(" (#").append(id).append(" after ");
+        appendMillis(buf, openNanos);
+        buf.append(": ").append(executions).append(" statements");
+        if (timed > 0) {
+            if (timed < executions) {
+                buf.append(", ").append(timed).append(" of them timed");
+            }
+            buf.append(" in ");
+            appendMillis(buf, timedNanos);
+        }
+        buf.append(')');
+        return buf.toString();
+    }
+
+    // shared with TransactionEvent and ResultSetEvent
+    static void appendMillis(StringBuilder buf, long nanos) {
+        long micros = nanos / 1000;
+        buf.append(micros / 1000).append('.');
+        long frac = micros % 1000;
+        if (frac < 100) {
+            buf.append('0');
+        }
+        if (frac < 10) {
+            buf.append('0');
+        }
+        buf.append(frac).append(" ms");
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.event;
+
+/**
+ * ResultSetEvent describes a result set that has been closed: how many rows
+ * the application read from it, roughly how many bytes were in the columns
+ * it read, and how long the result set was open.
+ * @version $Rev$
+ */
+public class ResultSetEvent {
+
+    private final long connection;
+    private final String sql;
+    private final long rows;
+    private final long bytes;
+    private final long openNanos;
+
+    /**
+     * Creates a new event.
+     * @param conn the number of the connection.
+     * @param s the SQL of the query.
+     * @param r the rows read with next().
+     * @param b the estimated bytes read.
+     * @param open how long the result set was open, in nanoseconds.
+     */
+    public ResultSetEvent(long conn, String s, long r, long b, long open) {
+        connection = conn;
+        sql = s;
+        rows = r;
+        bytes = b;
+        openNanos = open;
+    }
+
+    /**
+     * @return the rows read with next().
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * @return the estimated bytes read.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Renders the event, for example:
+     * <pre>
+     * closing result set on connection #3: 1000 rows, about 52311 bytes,
+     * open 12.345 ms: 'select * from orders where id &gt; ?'
+     * </pre>
+     * @return the event as a String.
+     */
+    public String toString() {
+        StringBuilder buf = new StringBuilder("closing result set on ");
+        buf.append("connection #").append(connection).append(": ")
+           .append(rows).append(" rows, about ").append(bytes)
+           .append(" bytes, open ");
+        ConnectionEvent.appendMillis(buf, openNanos);
+        buf.append(": '").append(sql).append('\'');
+        return buf.toString();
+    }
+}
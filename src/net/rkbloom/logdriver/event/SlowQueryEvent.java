@@ -0,0 +1,142 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.event;
+
+import net.rkbloom.logdriver.event.StatementEvent.Type;
+import net.rkbloom.logdriver.util.BindParams;
+
+import java.sql.ResultSet;
+
+/**
+ * SlowQueryEvent is the record written to the slow-query log for an
+ * execution that took longer than its threshold.  Unlike the DEBUG
+ * statement record it is written after the execution, so it carries the
+ * elapsed time and the outcome as well as the SQL, the bind parameters and
+ * where in the application the statement was executed from.
+ * @version $Rev$
+ */
+public class SlowQueryEvent {
+
+    private final long connectionId;
+    private final Type type;
+    private final String sql;
+    private final BindParams binds;
+    private final long elapsedNanos;
+    private final long thresholdNanos;
+    private final boolean failed;
+    private final Object result;
+    private final StackTraceElement[] caller;
+
+    /**
+     * Creates a new event.
+     * @param conn the number of the connection, -1 if unknown.
+     * @param t the kind of statement.
+     * @param s the SQL that was executed.
+     * @param b a copy of the bind parameters, null for a Statement.
+     * @param nanos how long the execution took.
+     * @param threshold the threshold it exceeded.
+     * @param f true if the execution threw.
+     * @param r what the execution returned: an Integer update count, the
+     * int[] of a batch, a ResultSet or the Boolean from execute().
+     * @param stack the application frames that led to the execution.
+     */
+    public SlowQueryEvent(long conn, Type t, String s, BindParams b,
+                          long nanos, long threshold, boolean f, Object r,
+                          StackTraceElement[] stack) {
+        connectionId = conn;
+        type = t;
+        sql = s;
+        binds = b;
+        elapsedNanos = nanos;
+        thresholdNanos = threshold;
+        failed = f;
+        result = r;
+        caller = stack;
+    }
+
+    /**
+     * @return the SQL that was executed.
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * @return how long the execution took, in nanoseconds.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Renders the event, for example
+     * <pre>
+     * slow PreparedStatement on connection #3: 812.004 ms (threshold 500 ms)
+     * 'update t set a = ? where b = ?' with bind parameters: {1=x, 2=7}
+     * update count: 1
+     *     at com.example.Dao.save(Dao.java:42)
+     * </pre>
+     * @return the event as a String.
+     */
+    public String toString() {
+        StringBuilder buf = new StringBuilder(256);
+        buf.append("slow ").append(type.getLabel());
+        if (connectionId >= 0) {
+            buf.append(" on connection #").append(connectionId);
+        }
+        buf.append(": ").append(String.format("%.3f", elapsedNanos / 1000000.0))
+           .append(" ms (threshold ").append(thresholdNanos / 1000000L)
+           .append(" ms) '").append(sql).append('\'');
+        if (binds != null) {
+            buf.append(" with bind parameters: ");
+            binds.appendTo(buf);
+        }
+        buf.append(' ');
+        appendOutcome(buf);
+        if (caller != null) {
+            for (StackTraceElement e : caller) {
+                buf.append("\n    at ").append(e);
+            }
+        }
+        return buf.toString();
+    }
+
+    private void appendOutcome(StringBuilder buf) {
+        if (failed) {
+            buf.append("failed");
+        }
+        else if (result instanceof Integer) {
+            buf.append("update count: ").append(result);
+        }
+        else if (result instanceof int[]) {
+            int[] counts = (int[]) result;
+            long rows = 0;
+            for (int c : counts) {
+                if (c > 0) {
+                    rows += c;
+                }
+            }
+            buf.append("batch of ").append(counts.length)
+               .append(", rows affected: ").append(rows);
+        }
+        else if (result instanceof ResultSet
+                 || Boolean.TRUE.equals(result)) {
+            buf.append("returned a result set");
+        }
+        else {
+            buf.append("returned an update count");
+        }
+    }
+}
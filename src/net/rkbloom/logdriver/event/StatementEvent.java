@@ -0,0 +1,183 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.event;
+
+import net.rkbloom.logdriver.util.BindParams;
+import net.rkbloom.logdriver.util.SqlTemplate;
+
+import java.util.Map;
+
+/**
+ * StatementEvent describes the execution of a Statement, PreparedStatement
+ * or CallableStatement.  It is handed to the logger as the message object,
+ * so the SQL and bind parameters are only turned into text when an appender
+ * actually renders the record.
+ * @version $Rev$
+ */
+public class StatementEvent {
+
+    /**
+     * The kind of statement that was executed.
+     */
+    public enum Type {
+        STATEMENT("Statement"),
+        PREPARED("PreparedStatement"),
+        CALLABLE("CallableStatement");
+
+        private final String label;
+
+        private Type(String l) {
+            label = l;
+        }
+
+        /**
+         * @return the JDBC interface name used in the log record.
+         */
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    /**
+     * The operation being performed on the statement.
+     */
+    public enum Operation {
+        EXECUTE("Executing: "),
+        QUERY("Executing Query: "),
+        UPDATE("Executing Update: "),
+        ADD_BATCH("Adding ");
+
+        private final String prefix;
+
+        private Operation(String p) {
+            prefix = p;
+        }
+    }
+
+    private final Type type;
+    private final Operation operation;
+    private final String sql;
+    private final SqlTemplate template;
+    private final BindParams binds;
+    private final Map<Object, Object> outParams;
+    private final boolean inline;
+
+    /**
+     * Creates an event for a plain Statement.
+     * @param op the operation.
+     * @param s the SQL being executed.
+     */
+    public StatementEvent(Operation op, String s) {
+        type = Type.STATEMENT;
+        operation = op;
+        sql = s;
+        template = null;
+        binds = null;
+        outParams = null;
+        inline = false;
+    }
+
+    /**
+     * Creates an event for a PreparedStatement or CallableStatement.
+     * @param t the kind of statement.
+     * @param op the operation.
+     * @param tmpl the parsed SQL being executed.
+     * @param b a copy of the bind parameters, owned by this event, or null
+     * if they were not captured.
+     * @param out the registered out parameters, or null.
+     * @param inlineBinds whether to substitute the binds into the SQL.
+     */
+    public StatementEvent(Type t, Operation op, SqlTemplate tmpl, BindParams b,
+                          Map<Object, Object> out, boolean inlineBinds) {
+        type = t;
+        operation = op;
+        sql = tmpl.getSql();
+        template = tmpl;
+        binds = b;
+        outParams = out;
+        inline = inlineBinds;
+    }
+
+    /**
+     * @return the kind of statement.
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return the operation.
+     */
+    public Operation getOperation() {
+        return operation;
+    }
+
+    /**
+     * @return the SQL being executed.
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * @return the parsed SQL, or null for a plain Statement.
+     */
+    public SqlTemplate getTemplate() {
+        return template;
+    }
+
+    /**
+     * @return the bind parameters, or null for a plain Statement or if they
+     * were not captured.
+     */
+    public BindParams getBindParams() {
+        return binds;
+    }
+
+    /**
+     * Renders the event in the same format the driver has always logged.
+     * @return the rendered record.
+     */
+    public String toString() {
+        StringBuilder buf = new StringBuilder(128);
+        if (type == Type.STATEMENT) {
+            buf.append(operation.prefix);
+            if (operation == Operation.ADD_BATCH) {
+                buf.append('\'').append(sql).append("' to the batch");
+            }
+            else {
+                buf.append(sql);
+            }
+            return buf.toString();
+        }
+
+        buf.append("executing ").append(type.getLabel()).append(": ");
+        if (inline) {
+            template.render(buf, binds, "NULL");
+            return buf.toString();
+        }
+        if (binds == null) {
+            // an execution whose binds were not captured
+            buf.append('\'').append(sql).append('\'');
+            return buf.toString();
+        }
+        buf.append('\'').append(sql).append("' with bind parameters: ");
+        binds.appendTo(buf);
+        if (outParams != null) {
+            buf.append(" out parameters: ").append(outParams);
+        }
+        return buf.toString();
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.event;
+
+/**
+ * TransactionEvent describes a transaction that has ended, from the first
+ * statement executed outside of auto-commit to the commit or rollback.  The
+ * span is split into the time spent in the database (statements, savepoints
+ * and the commit itself) and the time the application held the
+ * transaction open between calls, which is what keeps locks held for
+ * other sessions.
+ * @version $Rev$
+ */
+public class TransactionEvent {
+
+    /**
+     * How the transaction ended.
+     */
+    public enum Outcome {
+        COMMIT("committed"),
+        ROLLBACK("rolled back"),
+        CLOSE("left open when the connection was closed");
+
+        private final String text;
+
+        private Outcome(String t) {
+            text = t;
+        }
+    }
+
+    private final long connection;
+    private final Outcome outcome;
+    private final long spanNanos;
+    private final long databaseNanos;
+    private final long endNanos;
+    private final long statements;
+    private final int savepoints;
+    private final int savepointRollbacks;
+
+    /**
+     * Creates a new event.
+     * @param conn the number of the connection.
+     * @param o how the transaction ended.
+     * @param span the time from the start of the first statement to the end
+     * of the commit or rollback.
+     * @param database the part of the span spent in the database.
+     * @param end how long the commit or rollback took.
+     * @param stmts the statements executed in the transaction.
+     * @param sp the savepoints set.
+     * @param spRollbacks the rollbacks to a savepoint.
+     */
+    public TransactionEvent(long conn, Outcome o, long span, long database,
+                            long end, long stmts, int sp, int spRollbacks) {
+        connection = conn;
+        outcome = o;
+        spanNanos = span;
+        databaseNanos = database;
+        endNanos = end;
+        statements = stmts;
+        savepoints = sp;
+        savepointRollbacks = spRollbacks;
+    }
+
+    /**
+     * @return how the transaction ended.
+     */
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * @return the length of the transaction in nanoseconds.
+     */
+    public long getSpanNanos() {
+        return spanNanos;
+    }
+
+    /**
+     * @return the part of the span spent in the database, in nanoseconds.
+     */
+    public long getDatabaseNanos() {
+        return databaseNanos;
+    }
+
+    /**
+     * @return the part of the span the application held the transaction
+     * open between calls, in nanoseconds.
+     */
+    public long getApplicationNanos() {
+        return Math.max(spanNanos - databaseNanos, 0L);
+    }
+
+    /**
+     * @return the statements executed in the transaction.
+     */
+    public long getStatements() {
+        return statements;
+    }
+
+    /**
+     * Renders the event, for example:
+     * <pre>
+     * transaction on connection #3 committed after 1204.310 ms: 5
+     * statements; 12.345 ms in the database, 1191.965 ms in the
+     * application, commit took 1.204 ms
+     * </pre>
+     * @return the event as a String.
+     */
+    public String toString() {
+        StringBuilder buf = new StringBuilder("transaction on connection #");
+        buf.append(connection).append(' ').append(outcome.text)
+           .append(" after ");
+        ConnectionEvent.appendMillis(buf, spanNanos);
+        buf.append(": ").append(statements).append(" statements");
+        if (savepoints > 0 || savepointRollbacks > 0) {
+            buf.append(", ").append(savepoints).append(" savepoints, ")
+               .append(savepointRollbacks)
+               .append(" rollbacks to a savepoint");
+        }
+        buf.append("; ");
+        ConnectionEvent.appendMillis(buf, databaseNanos);
+        buf.append(" in the database, ");
+        ConnectionEvent.appendMillis(buf, getApplicationNanos());
+        buf.append(" in the application");
+        if (outcome != Outcome.CLOSE) {
+            buf.append(", ")
+               .append(outcome == Outcome.COMMIT ? "commit" : "rollback")
+               .append(" took ");
+            ConnectionEvent.appendMillis(buf, endNanos);
+        }
+        return buf.toString();
+    }
+}
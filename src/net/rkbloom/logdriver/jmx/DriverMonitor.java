@@ -0,0 +1,294 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.jmx;
+
+import net.rkbloom.logdriver.async.AsyncLog;
+import net.rkbloom.logdriver.config.Configuration;
+import net.rkbloom.logdriver.config.DriverConfig;
+import net.rkbloom.logdriver.config.SlowQueryConfig;
+import net.rkbloom.logdriver.stats.DriverStats;
+import net.rkbloom.logdriver.stats.FingerprintRegistry;
+import net.rkbloom.logdriver.stats.FingerprintStats;
+import net.rkbloom.logdriver.stats.LatencyHistogram;
+import net.rkbloom.logdriver.stats.LatencyRegistry;
+
+import org.apache.log4j.Logger;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * DriverMonitor exposes the driver statistics and a few runtime switches
+ * over JMX.  There is one per JVM (or rather per copy of the driver classes),
+ * registered with the platform MBean server by {@link #register()} the first
+ * time a LogDriver or LogDataSource is created.
+ * @version $Rev$
+ */
+public class DriverMonitor implements DriverMonitorMBean {
+
+    /** The name the monitor is registered under. */
+    public static final String OBJECT_NAME =
+        "net.rkbloom.logdriver:type=DriverMonitor";
+
+    private static final int TOP = 20;
+    private static Logger log = Logger.getLogger(DriverMonitor.class);
+    private static boolean registered;
+
+    /**
+     * Registers the monitor with the platform MBean server, unless that has
+     * already been done.  Failures are logged, never thrown: the driver
+     * works without JMX.
+     */
+    public static synchronized void register() {
+        if (registered) {
+            return;
+        }
+        registered = true;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new DriverMonitor(), name);
+            }
+        }
+        catch (JMException e) {
+            log.warn("Couldn't register " + OBJECT_NAME, e);
+        }
+        catch (SecurityException e) {
+            log.warn("Couldn't register " + OBJECT_NAME, e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getOpenConnections() {
+        return DriverStats.getOpenConnections();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getConnectionsOpened() {
+        return DriverStats.getConnectionsOpened();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getConnectionsClosed() {
+        return DriverStats.getConnectionsClosed();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getInFlightStatements() {
+        return DriverStats.getInFlightStatements();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getExecutions() {
+        return DriverStats.getExecutions();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getErrors() {
+        return DriverStats.getErrors();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double getExecutionsPerSecond() {
+        return DriverStats.getExecutionsPerSecond();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getCommits() {
+        return DriverStats.getCommits();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getRollbacks() {
+        return DriverStats.getRollbacks();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getNPlusOneRuns() {
+        return DriverStats.getNPlusOneRuns();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getDroppedLogRecords() {
+        return AsyncLog.getDropped();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getFailedLogRecords() {
+        return AsyncLog.getFailed();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getQueuedLogRecords() {
+        return AsyncLog.getQueued();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getTransactionTimes() {
+        return DriverStats.getTransactionTimes().snapshot().toString();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getCommitTimes() {
+        return DriverStats.getCommitTimes().snapshot().toString();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getFingerprintCount() {
+        return FingerprintRegistry.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String[] getTopFingerprints() {
+        return topFingerprints(TOP);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isStatsEnabled() {
+        return Configuration.get().isStatsEnabled();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setStatsEnabled(boolean enabled) {
+        setProperty(DriverConfig.STATS_ENABLED, String.valueOf(enabled));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getRenderMode() {
+        return Configuration.get().getRenderMode().name();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setRenderMode(String mode) {
+        setProperty(DriverConfig.RENDER_MODE, mode);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getSlowThresholdMillis() {
+        SlowQueryConfig slow = Configuration.get().getSlowQueries();
+        return slow == null ? -1 : slow.getThresholdMillis();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setSlowThresholdMillis(long millis) {
+        setProperty(SlowQueryConfig.THRESHOLD, String.valueOf(millis));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getConfiguration() {
+        return Configuration.get().toString();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String[] topFingerprints(int n) {
+        List<FingerprintStats.Snapshot> top = FingerprintRegistry.top(n);
+        Map<String, LatencyHistogram.Snapshot> latency =
+            LatencyRegistry.snapshot();
+        String[] lines = new String[top.size()];
+        for (int i = 0; i < lines.length; i++) {
+            FingerprintStats.Snapshot s = top.get(i);
+            StringBuilder buf = new StringBuilder(s.toString());
+            LatencyHistogram.Snapshot h = latency.get(s.getFingerprint());
+            if (h != null) {
+                buf.append(" p50=").append(h.getP50() / 1000)
+                   .append(" p90=").append(h.getP90() / 1000)
+                   .append(" p99=").append(h.getP99() / 1000)
+                   .append(" p999=").append(h.getP999() / 1000);
+            }
+            lines[i] = buf.toString();
+        }
+        return lines;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setProperty(String key, String value) {
+        log.info("Setting " + key + " to " + value + " over JMX");
+        Configuration.update(key, value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void reloadConfiguration() {
+        Configuration.reload();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void resetStatistics() {
+        DriverStats.reset();
+        LatencyRegistry.reset();
+        FingerprintRegistry.reset();
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.jmx;
+
+/**
+ * Management interface of the driver, registered as
+ * <code>net.rkbloom.logdriver:type=DriverMonitor</code>.  The execution
+ * figures are only collected while <code>StatsEnabled</code> is true (or
+ * the slow-query log is on); the connection counts are always kept.
+ * @version $Rev$
+ */
+public interface DriverMonitorMBean {
+
+    /**
+     * @return the connections that are open right now.
+     */
+    long getOpenConnections();
+
+    /**
+     * @return the connections opened since the driver was loaded.
+     */
+    long getConnectionsOpened();
+
+    /**
+     * @return the connections closed since the driver was loaded.
+     */
+    long getConnectionsClosed();
+
+    /**
+     * @return the statements executing right now.
+     */
+    long getInFlightStatements();
+
+    /**
+     * @return the executions since the statistics were last reset.
+     */
+    long getExecutions();
+
+    /**
+     * @return the failed executions since the statistics were last reset.
+     */
+    long getErrors();
+
+    /**
+     * @return executions per second over the last ten seconds.
+     */
+    double getExecutionsPerSecond();
+
+    /**
+     * @return the commits since the statistics were last reset.
+     */
+    long getCommits();
+
+    /**
+     * @return the rollbacks since the statistics were last reset.
+     */
+    long getRollbacks();
+
+    /**
+     * @return the runs of N+1 queries since the statistics were last
+     * reset.
+     */
+    long getNPlusOneRuns();
+
+    /**
+     * @return the log records dropped because the asynchronous buffer was
+     * full.
+     */
+    long getDroppedLogRecords();
+
+    /**
+     * @return the log records the background thread couldn't write
+     * because a sink threw.
+     */
+    long getFailedLogRecords();
+
+    /**
+     * @return the log records waiting for the background thread.
+     */
+    int getQueuedLogRecords();
+
+    /**
+     * @return count, percentiles and maximum of the transaction
+     * lengths, in microseconds.
+     */
+    String getTransactionTimes();
+
+    /**
+     * @return count, percentiles and maximum of the commit times, in
+     * microseconds.
+     */
+    String getCommitTimes();
+
+    /**
+     * @return the number of SQL fingerprints with statistics.
+     */
+    int getFingerprintCount();
+
+    /**
+     * @return a summary of the twenty fingerprints with the most total
+     * time.
+     */
+    String[] getTopFingerprints();
+
+    /**
+     * @return true if executions are timed into the statistics.
+     */
+    boolean isStatsEnabled();
+
+    /**
+     * @param enabled true to time executions into the statistics.
+     */
+    void setStatsEnabled(boolean enabled);
+
+    /**
+     * @return <code>PARAMS</code> or <code>INLINE</code>.
+     */
+    String getRenderMode();
+
+    /**
+     * @param mode <code>params</code> or <code>inline</code>.
+     */
+    void setRenderMode(String mode);
+
+    /**
+     * @return the global slow-query threshold in milliseconds, -1 if none.
+     */
+    long getSlowThresholdMillis();
+
+    /**
+     * @param millis the new global slow-query threshold, -1 for none.
+     */
+    void setSlowThresholdMillis(long millis);
+
+    /**
+     * @return the current driver settings.
+     */
+    String getConfiguration();
+
+    /**
+     * Summarizes the fingerprints with the most total time.
+     * @param n how many to return.
+     * @return one line per fingerprint, times in microseconds.
+     */
+    String[] topFingerprints(int n);
+
+    /**
+     * Changes one driver setting at runtime.
+     * @param key the key, with or without the <code>logdriver.</code>
+     * prefix.
+     * @param value the new value, or null to drop the runtime setting.
+     */
+    void setProperty(String key, String value);
+
+    /**
+     * Re-reads the driver settings from all of their sources.
+     */
+    void reloadConfiguration();
+
+    /**
+     * Zeroes the execution counters, histograms and fingerprint statistics.
+     */
+    void resetStatistics();
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+
+/**
+ * MetricsServer serves the driver statistics to Prometheus at
+ * <code>/metrics</code>, using the HTTP server that comes with the JDK.  It
+ * is off unless <code>logdriver.metrics.port</code> is set, and listens on
+ * the loopback address unless <code>logdriver.metrics.address</code> says
+ * otherwise.  The server runs on a single daemon thread, so it never keeps
+ * the JVM alive and scrapes are rendered one at a time.
+ * <p>
+ * {@link net.rkbloom.logdriver.config.Configuration} calls
+ * {@link #configure(String, int)} whenever the settings change, which
+ * starts, moves or stops the server.
+ * @version $Rev$
+ */
+public final class MetricsServer {
+
+    /** The path the metrics are served at. */
+    public static final String PATH = "/metrics";
+
+    private static Logger log = Logger.getLogger(MetricsServer.class);
+
+    private static HttpServer server;
+    private static String address;
+    private static int port = -1;
+
+    private MetricsServer() {
+    }
+
+    /**
+     * Makes sure the server is listening where the settings say.  Nothing
+     * happens if it already is; a server that fails to start is logged
+     * and not retried until the address or port changes.
+     * @param addr the address to listen on.
+     * @param p the port, 0 for any free port, or a negative number to stop
+     * the server.
+     */
+    public static synchronized void configure(String addr, int p) {
+        if (p == port && addr.equals(address)) {
+            return;
+        }
+        stop();
+        address = addr;
+        port = p;
+        if (p < 0) {
+            return;
+        }
+        try {
+            final HttpServer s =
+                HttpServer.create(new InetSocketAddress(addr, p), 0);
+            s.createContext(PATH, new Handler());
+            // the dispatcher thread takes its daemon flag from the thread
+            // that starts it
+            Thread starter = new Thread("logdriver-metrics-starter") {
+                public void run() {
+                    s.start();
+                }
+            };
+            starter.setDaemon(true);
+            starter.start();
+            starter.join();
+            server = s;
+            log.info("Serving metrics at http://" + addr + ":" + getPort()
+                     + PATH);
+        }
+        catch (IOException e) {
+            log.warn("Couldn't serve metrics on " + addr + ":" + p, e);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stops the server, if it is running.
+     */
+    public static synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+        port = -1;
+        address = null;
+    }
+
+    /**
+     * @return the port the server is listening on, or -1 if it isn't
+     * running.
+     */
+    public static synchronized int getPort() {
+        return (server == null ? -1 : server.getAddress().getPort());
+    }
+
+    /**
+     * Handler answers a scrape.
+     */
+    private static class Handler implements HttpHandler {
+        private final PrometheusWriter writer = new PrometheusWriter();
+
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                String method = exchange.getRequestMethod();
+                if (!method.equals("GET") && !method.equals("HEAD")) {
+                    exchange.sendResponseHeaders(405, -1);
+                    return;
+                }
+                exchange.getResponseHeaders().set("Content-Type",
+                        PrometheusWriter.CONTENT_TYPE);
+                if (method.equals("HEAD")) {
+                    exchange.sendResponseHeaders(200, -1);
+                    return;
+                }
+                // a length of 0 means chunked, so the page is sent as it is
+                // rendered
+                exchange.sendResponseHeaders(200, 0);
+                Writer out = new OutputStreamWriter(
+                        exchange.getResponseBody(), "UTF-8");
+                writer.write(out);
+            }
+            finally {
+                exchange.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.metrics;
+
+import net.rkbloom.logdriver.async.AsyncLog;
+import net.rkbloom.logdriver.stats.DriverStats;
+import net.rkbloom.logdriver.stats.LatencyHistogram;
+import net.rkbloom.logdriver.stats.LatencyRegistry;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+
+/**
+ * PrometheusWriter renders the driver statistics in the Prometheus text
+ * exposition format (version 0.0.4).  A scrape of a JVM with thousands of
+ * fingerprints should not show up in its GC logs, so the histograms are
+ * read in place rather than snapshotted, every line is built in one reused
+ * buffer, and the buffer is written out whenever it fills up instead of
+ * the whole page being built first.  Numbers are appended as digits; the
+ * only per-scrape garbage is the map iterator and its entries.
+ * <p>
+ * One instance renders one scrape at a time; {@link #write(Writer)} is
+ * synchronized.
+ * @version $Rev$
+ */
+public final class PrometheusWriter {
+
+    /** The Content-Type of the rendered page. */
+    public static final String CONTENT_TYPE =
+        "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final String DURATION =
+        "logdriver_statement_duration_seconds";
+    private static final String TRANSACTION =
+        "logdriver_transaction_duration_seconds";
+    private static final String COMMIT = "logdriver_commit_duration_seconds";
+    private static final long NANOS_PER_SECOND = 1000000000L;
+    private static final int FLUSH_AT = 8192;
+
+    // bucket bounds of the latency histograms, from 100us to 10s
+    private static final long[] LATENCY_BOUNDS = {
+        100000L, 250000L, 500000L,
+        1000000L, 2500000L, 5000000L,
+        10000000L, 25000000L, 50000000L,
+        100000000L, 250000000L, 500000000L,
+        1000000000L, 2500000000L, 5000000000L, 10000000000L
+    };
+    private static final String[] LATENCY_LABELS =
+        new String[LATENCY_BOUNDS.length];
+
+    static {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < LATENCY_BOUNDS.length; i++) {
+            b.setLength(0);
+            appendSeconds(b, LATENCY_BOUNDS[i]);
+            // 0.000100000 reads better as 0.0001
+            int end = b.length();
+            while (b.charAt(end - 1) == '0') {
+                end--;
+            }
+            if (b.charAt(end - 1) == '.') {
+                end--;
+            }
+            LATENCY_LABELS[i] = b.substring(0, end);
+        }
+    }
+
+    private final StringBuilder buf = new StringBuilder(FLUSH_AT * 2);
+    private final char[] chunk = new char[FLUSH_AT];
+    private final long[] cumulative = new long[LATENCY_BOUNDS.length + 1];
+
+    /**
+     * Renders every metric to the given writer.  The writer is flushed but
+     * not closed.
+     * @param out where to write the page.
+     * @throws IOException if the writer fails.
+     */
+    public synchronized void write(Writer out) throws IOException {
+        buf.setLength(0);
+        counter("logdriver_connections_opened_total",
+                "Connections opened since the driver was loaded.",
+                DriverStats.getConnectionsOpened());
+        counter("logdriver_connections_closed_total",
+                "Connections closed since the driver was loaded.",
+                DriverStats.getConnectionsClosed());
+        gauge("logdriver_connections_open", "Connections open now.",
+              DriverStats.getOpenConnections());
+        gauge("logdriver_statements_in_flight", "Statements executing now.",
+              DriverStats.getInFlightStatements());
+        counter("logdriver_executions_total", "Timed statement executions.",
+                DriverStats.getExecutions());
+        counter("logdriver_execution_errors_total",
+                "Timed statement executions that failed.",
+                DriverStats.getErrors());
+        counter("logdriver_commits_total", "Transactions committed.",
+                DriverStats.getCommits());
+        counter("logdriver_rollbacks_total", "Transactions rolled back.",
+                DriverStats.getRollbacks());
+        counter("logdriver_nplusone_runs_total",
+                "Runs of one statement executed once per row of another.",
+                DriverStats.getNPlusOneRuns());
+        counter("logdriver_log_records_dropped_total",
+                "Log records dropped because the async buffer was full.",
+                AsyncLog.getDropped());
+        counter("logdriver_log_records_failed_total",
+                "Log records the async thread failed to write.",
+                AsyncLog.getFailed());
+        gauge("logdriver_log_records_queued",
+              "Log records waiting to be written.", AsyncLog.getQueued());
+        writeBatchSizes();
+        header(TRANSACTION, "histogram",
+               "Time from the first statement of a transaction to its end.");
+        writeLatency(TRANSACTION, null, DriverStats.getTransactionTimes());
+        header(COMMIT, "histogram", "Time taken by commits.");
+        writeLatency(COMMIT, null, DriverStats.getCommitTimes());
+        header("logdriver_transaction_database_seconds_total", "counter",
+               "Time transactions spent in the database.");
+        buf.append("logdriver_transaction_database_seconds_total ");
+        appendSeconds(buf, DriverStats.getTransactionDatabaseNanos());
+        buf.append('\n');
+        header("logdriver_transaction_application_seconds_total", "counter",
+               "Time transactions were held open between database calls.");
+        buf.append("logdriver_transaction_application_seconds_total ");
+        appendSeconds(buf, DriverStats.getTransactionApplicationNanos());
+        buf.append('\n');
+        flush(out, FLUSH_AT);
+
+        header(DURATION, "histogram",
+               "Statement execution time by SQL fingerprint.");
+        for (Map.Entry<String, LatencyHistogram> e
+                 : LatencyRegistry.histograms().entrySet()) {
+            writeLatency(DURATION, e.getKey(), e.getValue());
+            flush(out, FLUSH_AT);
+        }
+        writeLatency(DURATION, LatencyRegistry.OTHER,
+                     LatencyRegistry.overflow());
+        flush(out, 0);
+        out.flush();
+    }
+
+    private void writeBatchSizes() {
+        String name = "logdriver_batch_size";
+        header(name, "histogram", "Rows per executed batch.");
+        long seen = 0;
+        int buckets = DriverStats.getBatchSizeBuckets();
+        for (int i = 0; i < buckets; i++) {
+            seen += DriverStats.getBatchSizeCount(i);
+            buf.append(name).append("_bucket{le=\"");
+            if (i < buckets - 1) {
+                buf.append(DriverStats.getBatchSizeBound(i));
+            }
+            else {
+                buf.append("+Inf");
+            }
+            buf.append("\"} ").append(seen).append('\n');
+        }
+        buf.append(name).append("_sum ")
+           .append(DriverStats.getBatchRows()).append('\n');
+        buf.append(name).append("_count ").append(seen).append('\n');
+    }
+
+    // a histogram without a fingerprint is written even when it is empty
+    private void writeLatency(String name, String fingerprint,
+                              LatencyHistogram h) {
+        h.cumulativeCounts(LATENCY_BOUNDS, cumulative);
+        long count = cumulative[cumulative.length - 1];
+        if (count == 0 && fingerprint != null) {
+            return;
+        }
+        for (int i = 0; i < cumulative.length; i++) {
+            buf.append(name).append("_bucket{");
+            appendFingerprint(fingerprint, true);
+            buf.append("le=\"")
+               .append(i < LATENCY_LABELS.length ? LATENCY_LABELS[i] : "+Inf")
+               .append("\"} ").append(cumulative[i]).append('\n');
+        }
+        buf.append(name).append("_sum");
+        appendFingerprint(fingerprint, false);
+        buf.append(' ');
+        appendSeconds(buf, h.getTotalNanos());
+        buf.append('\n');
+        buf.append(name).append("_count");
+        appendFingerprint(fingerprint, false);
+        buf.append(' ').append(count).append('\n');
+    }
+
+    // the fingerprint label, inside the braces of a bucket or on its own
+    private void appendFingerprint(String fingerprint, boolean more) {
+        if (fingerprint == null) {
+            return;
+        }
+        buf.append(more ? "fingerprint=\"" : "{fingerprint=\"");
+        appendLabel(fingerprint);
+        buf.append(more ? "\"," : "\"}");
+    }
+
+    private void counter(String name, String help, long value) {
+        header(name, "counter", help);
+        buf.append(name).append(' ').append(value).append('\n');
+    }
+
+    private void gauge(String name, String help, long value) {
+        header(name, "gauge", help);
+        buf.append(name).append(' ').append(value).append('\n');
+    }
+
+    private void header(String name, String type, String help) {
+        buf.append("# HELP ").append(name).append(' ').append(help)
+           .append('\n');
+        buf.append("# TYPE ").append(name).append(' ').append(type)
+           .append('\n');
+    }
+
+    private void appendLabel(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            switch (ch) {
+                case '\\': buf.append("\\\\"); break;
+                case '"': buf.append("\\\""); break;
+                case '\n': buf.append("\\n"); break;
+                default: buf.append(ch); break;
+            }
+        }
+    }
+
+    // nanoseconds as seconds with all nine decimals, without a double
+    private static void appendSeconds(StringBuilder b, long nanos) {
+        b.append(nanos / NANOS_PER_SECOND).append('.');
+        long frac = nanos % NANOS_PER_SECOND;
+        for (long d = NANOS_PER_SECOND / 10; d > frac && d > 1; d /= 10) {
+            b.append('0');
+        }
+        b.append(frac);
+    }
+
+    // writes the buffer out once it holds at least the given number of chars
+    private void flush(Writer out, int atLeast) throws IOException {
+        int len = buf.length();
+        if (len == 0 || len < atLeast) {
+            return;
+        }
+        for (int off = 0; off < len; off += chunk.length) {
+            int n = Math.min(chunk.length, len - off);
+            buf.getChars(off, off + n, chunk, 0);
+            out.write(chunk, 0, n);
+        }
+        buf.setLength(0);
+    }
+}
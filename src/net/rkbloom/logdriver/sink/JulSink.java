@@ -0,0 +1,121 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.sink;
+
+import java.time.Instant;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * JulSink writes records to the <code>java.util.logging</code> logger of
+ * their category, for applications that don't use log4j.  DEBUG maps to
+ * FINE, WARN to WARNING and ERROR to SEVERE.  The record carries its time
+ * and logger name; the source class is the category, so that the handlers
+ * don't walk the stack looking for it.
+ * @version $Rev$
+ */
+public final class JulSink implements LogSink {
+
+    /** The type of this sink. */
+    public static final String TYPE = "jul";
+
+    // java.util.logging only keeps weak references to its loggers, so a
+    // level set on one that nobody holds on to could be lost
+    private final ConcurrentMap<String, Logger> loggers =
+        new ConcurrentHashMap<String, Logger>();
+
+    /**
+     * @param severity a severity.
+     * @return the java.util.logging level it maps to.
+     */
+    public static Level levelOf(Severity severity) {
+        switch (severity) {
+        case DEBUG:
+            return Level.FINE;
+        case INFO:
+            return Level.INFO;
+        case WARN:
+            return Level.WARNING;
+        default:
+            return Level.SEVERE;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isEnabled(String category, Severity severity) {
+        return logger(category).isLoggable(levelOf(severity));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void write(SinkRecord r) {
+        Logger logger = logger(r.getCategory());
+        LogRecord rec = new LogRecord(levelOf(r.getSeverity()), r.getText());
+        rec.setInstant(Instant.ofEpochMilli(r.getTime()));
+        rec.setLoggerName(r.getCategory());
+        rec.setSourceClassName(r.getCategory());
+        rec.setSourceMethodName(null);
+        logger.log(rec);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void flush() {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void close() {
+    }
+
+    private Logger logger(String category) {
+        Logger l = loggers.get(category);
+        if (l == null) {
+            l = Logger.getLogger(category);
+            loggers.putIfAbsent(category, l);
+        }
+        return l;
+    }
+
+    /**
+     * Creates the java.util.logging sink.  It has no settings; levels and
+     * handlers are configured in java.util.logging as usual.
+     */
+    public static final class Provider implements LogSinkProvider {
+
+        /**
+         * {@inheritDoc}
+         */
+        public String getType() {
+            return TYPE;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public LogSink create(String name, Properties settings) {
+            return new JulSink();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.sink;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Log4jSink writes records to the log4j logger of their category, which is
+ * what the driver has always done and still does unless
+ * <code>logdriver.sinks</code> says otherwise.  A record written on the
+ * thread that logged it keeps its location information; one written on
+ * the background thread keeps the name of the thread that logged it but
+ * loses its location, NDC and MDC.
+ * @version $Rev$
+ */
+public final class Log4jSink implements LogSink {
+
+    /** The type of this sink. */
+    public static final String TYPE = "log4j";
+
+    // log4j takes the frame after the last one of this class as the
+    // location of the record, that is the driver class that logged it
+    private static final String FQCN = "net.rkbloom.logdriver.async.AsyncLog";
+
+    private final ConcurrentMap<String, Logger> loggers =
+        new ConcurrentHashMap<String, Logger>();
+
+    /**
+     * @param severity a severity.
+     * @return the log4j level it maps to.
+     */
+    public static Level levelOf(Severity severity) {
+        switch (severity) {
+        case DEBUG:
+            return Level.DEBUG;
+        case INFO:
+            return Level.INFO;
+        case WARN:
+            return Level.WARN;
+        default:
+            return Level.ERROR;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isEnabled(String category, Severity severity) {
+        return logger(category).isEnabledFor(levelOf(severity));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void write(SinkRecord r) {
+        Logger logger = logger(r.getCategory());
+        Level level = levelOf(r.getSeverity());
+        if (r.isAsynchronous()) {
+            logger.callAppenders(new DeferredEvent(logger, level, r));
+        }
+        else {
+            logger.log(FQCN, level, r.getMessage(), null);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void flush() {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void close() {
+    }
+
+    // Logger.getLogger() locks the whole hierarchy
+    private Logger logger(String category) {
+        Logger l = loggers.get(category);
+        if (l == null) {
+            l = Logger.getLogger(category);
+            loggers.putIfAbsent(category, l);
+        }
+        return l;
+    }
+
+    /**
+     * A log4j event built on the background thread from a record that was
+     * logged on another thread.  It keeps the name of the thread that
+     * logged it, which log4j would otherwise take from the thread that
+     * creates the event.
+     */
+    private static final class DeferredEvent extends LoggingEvent {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String thread;
+
+        DeferredEvent(Logger logger, Level level, SinkRecord r) {
+            super(FQCN, logger, r.getTime(), level, r.getMessage(), null);
+            thread = r.getThread();
+        }
+
+        public String getThreadName() {
+            return thread;
+        }
+    }
+
+    /**
+     * Creates the log4j sink.  It has no settings.
+     */
+    public static final class Provider implements LogSinkProvider {
+
+        /**
+         * {@inheritDoc}
+         */
+        public String getType() {
+            return TYPE;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public LogSink create(String name, Properties settings) {
+            return new Log4jSink();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.sink;
+
+/**
+ * LogSink is where the driver's statement, connection and transaction
+ * records are written.  Sinks are created by a {@link LogSinkProvider}
+ * and may be called by many threads at once.
+ * @version $Rev$
+ */
+public interface LogSink {
+
+    /**
+     * Tells whether a record would be written.  It is called on the
+     * execute path before the record is even built, so it must be cheap.
+     * @param category the name of the logger, for example
+     * <code>net.rkbloom.logdriver.LogStatement</code>.
+     * @param severity the severity of the record.
+     * @return true if the sink wants the record.
+     */
+    boolean isEnabled(String category, Severity severity);
+
+    /**
+     * Writes a record.  Only records the sink said it wants are written.
+     * @param record the record.
+     */
+    void write(SinkRecord record);
+
+    /**
+     * Pushes out whatever has been buffered.  It is called after each
+     * batch of records written on the background thread.
+     */
+    void flush();
+
+    /**
+     * Releases the sink.  It is called when the sinks are reconfigured;
+     * records written after that may be dropped.
+     */
+    void close();
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.sink;
+
+import java.util.Properties;
+
+/**
+ * LogSinkProvider creates the sinks of one type.  Providers are found
+ * with {@link java.util.ServiceLoader}: a jar that adds a sink lists its
+ * provider in
+ * <code>META-INF/services/net.rkbloom.logdriver.sink.LogSinkProvider</code>.
+ * The driver ships providers of type <code>log4j</code>, <code>jul</code>
+ * and <code>file</code>.
+ * @version $Rev$
+ */
+public interface LogSinkProvider {
+
+    /**
+     * @return the type the provider creates, as used in
+     * <code>logdriver.sink.&lt;name&gt;.type</code>.
+     */
+    String getType();
+
+    /**
+     * Creates a sink.
+     * @param name the name the sink was given in
+     * <code>logdriver.sinks</code>.
+     * @param settings the <code>logdriver.sink.&lt;name&gt;.*</code>
+     * settings, with that prefix taken off.
+     * @return the sink.
+     * @throws IllegalArgumentException if the settings are wrong.
+     */
+    LogSink create(String name, Properties settings);
+}
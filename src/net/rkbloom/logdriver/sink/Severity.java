@@ -0,0 +1,40 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.sink;
+
+/**
+ * Severity is the level of a record handed to a {@link LogSink}.  Each sink
+ * maps it onto the levels of its own backend.
+ * @version $Rev$
+ */
+public enum Severity {
+    /** Statement, result set, connection and transaction records. */
+    DEBUG,
+    /** Informational records. */
+    INFO,
+    /** Slow executions, slow transactions and N+1 runs. */
+    WARN,
+    /** Failures of the driver itself. */
+    ERROR;
+
+    /**
+     * @param s a severity, in any case.
+     * @return the severity.
+     * @throws IllegalArgumentException if there is no such severity.
+     */
+    public static Severity parse(String s) {
+        return valueOf(s.trim().toUpperCase());
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.sink;
+
+/**
+ * SinkRecord is one record on its way to the sinks: a statement,
+ * connection or transaction event, or a message, with the logger it was
+ * logged to and the time and thread it was logged on.
+ * @version $Rev$
+ */
+public final class SinkRecord {
+
+    private final long time;
+    private final String thread;
+    private final String category;
+    private final Severity severity;
+    private final Object message;
+    private final boolean asynchronous;
+    private String text;
+
+    /**
+     * @param millis when the record was logged.
+     * @param threadName the name of the thread that logged it.
+     * @param logger the name of the logger it was logged to.
+     * @param s its severity.
+     * @param msg the event or message; it must not change once logged.
+     * @param async true if it is written on a background thread.
+     */
+    public SinkRecord(long millis, String threadName, String logger,
+                      Severity s, Object msg, boolean async) {
+        time = millis;
+        thread = threadName;
+        category = logger;
+        severity = s;
+        message = msg;
+        asynchronous = async;
+    }
+
+    /**
+     * @return when the record was logged, in milliseconds.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * @return the name of the thread that logged the record.
+     */
+    public String getThread() {
+        return thread;
+    }
+
+    /**
+     * @return the name of the logger the record was logged to, for example
+     * <code>net.rkbloom.logdriver.slow</code>.
+     */
+    public String getCategory() {
+        return category;
+    }
+
+    /**
+     * @return the severity of the record.
+     */
+    public Severity getSeverity() {
+        return severity;
+    }
+
+    /**
+     * @return the event or message object, one of the classes of
+     * {@link net.rkbloom.logdriver.event} or a String.
+     */
+    public Object getMessage() {
+        return message;
+    }
+
+    /**
+     * Renders the message.  The text is built once and shared by every
+     * sink the record goes to.
+     * @return the message as text.
+     */
+    public String getText() {
+        String t = text;
+        if (t == null) {
+            t = String.valueOf(message);
+            text = t;
+        }
+        return t;
+    }
+
+    /**
+     * @return true if the record is being written on a background thread,
+     * rather than on the thread that logged it.
+     */
+    public boolean isAsynchronous() {
+        return asynchronous;
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.sink;
+
+import net.rkbloom.logdriver.config.DriverConfig;
+
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * SinkRouter hands each record to the sinks named in
+ * <code>logdriver.sinks</code>, a comma separated list of names.  Each
+ * name has its own settings:
+ * <pre>
+ *   logdriver.sinks=main,slow
+ *   logdriver.sink.main.type=jul
+ *   logdriver.sink.slow.type=file
+ *   logdriver.sink.slow.file=/var/log/app/slow.log
+ *   logdriver.sink.slow.level=warn
+ *   logdriver.sink.slow.loggers=net.rkbloom.logdriver.slow
+ * </pre>
+ * <code>type</code> picks the {@link LogSinkProvider}, and defaults to
+ * the name, so <code>logdriver.sinks=jul</code> is enough on its own.
+ * <code>level</code> and <code>loggers</code> filter the records a sink
+ * gets: the least severity, and the loggers, with their children, whose
+ * records it takes.  The other settings go to the provider.  Without
+ * <code>logdriver.sinks</code> every record goes to log4j, as it always
+ * has.
+ * <p>
+ * The sinks are global; URL options don't change them.  When the
+ * settings change, new sinks are created and the old ones closed.
+ * @version $Rev$
+ */
+public final class SinkRouter {
+
+    private static Logger log = Logger.getLogger(SinkRouter.class);
+
+    private static volatile DriverConfig seen;
+    private static volatile SinkRouter current;
+    private static Map<String, LogSinkProvider> providers;
+
+    private final Properties settings;
+    private final Route[] routes;
+    private final boolean log4jOnly;
+
+    private SinkRouter(Properties s, Route[] r) {
+        settings = s;
+        routes = r;
+        log4jOnly = r.length == 1 && r[0].sink instanceof Log4jSink
+            && r[0].isUnfiltered();
+    }
+
+    /**
+     * Returns the sinks for the given settings, creating them if the sink
+     * settings have changed since the last call.
+     * @param cfg the current driver settings.
+     * @return the sinks.
+     */
+    public static SinkRouter forConfig(DriverConfig cfg) {
+        // current is written before seen, so this is the router for cfg
+        // or a later one
+        DriverConfig s = seen;
+        SinkRouter r = current;
+        if (s == cfg && r != null) {
+            return r;
+        }
+        return configure(cfg);
+    }
+
+    private static synchronized SinkRouter configure(DriverConfig cfg) {
+        SinkRouter r = current;
+        Properties s = cfg.getSinkSettings();
+        if (r == null || !r.settings.equals(s)) {
+            SinkRouter old = r;
+            r = create(s);
+            current = r;
+            if (old != null) {
+                old.close();
+            }
+        }
+        seen = cfg;
+        return r;
+    }
+
+    /**
+     * @return true if the only sink is an unfiltered log4j sink, in which
+     * case the caller can ask its log4j logger directly.
+     */
+    public boolean isLog4jOnly() {
+        return log4jOnly;
+    }
+
+    /**
+     * @param category the name of the logger.
+     * @param severity the severity of the record.
+     * @return true if any sink wants the record.
+     */
+    public boolean isEnabled(String category, Severity severity) {
+        for (Route r : routes) {
+            if (r.isEnabled(category, severity)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes a record to every sink that wants it.  A sink that fails is
+     * reported once and doesn't keep the record from the others.
+     * @param record the record.
+     */
+    public void write(SinkRecord record) {
+        String category = record.getCategory();
+        Severity severity = record.getSeverity();
+        for (Route r : routes) {
+            if (r.isEnabled(category, severity)) {
+                try {
+                    r.sink.write(record);
+                }
+                catch (RuntimeException e) {
+                    r.failed(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Flushes every sink.
+     */
+    public void flush() {
+        for (Route r : routes) {
+            try {
+                r.sink.flush();
+            }
+            catch (RuntimeException e) {
+                r.failed(e);
+            }
+        }
+    }
+
+    private void close() {
+        for (Route r : routes) {
+            try {
+                r.sink.close();
+            }
+            catch (RuntimeException e) {
+                r.failed(e);
+            }
+        }
+    }
+
+    private static SinkRouter create(Properties s) {
+        String names = s.getProperty(DriverConfig.SINKS, Log4jSink.TYPE);
+        List<Route> routes = new ArrayList<Route>();
+        List<String> taken = new ArrayList<String>();
+        for (String name : names.split(",")) {
+            name = name.trim();
+            if (name.length() == 0 || taken.contains(name)) {
+                continue;
+            }
+            taken.add(name);
+            Route r = createRoute(name, s);
+            if (r != null) {
+                routes.add(r);
+            }
+        }
+        if (routes.isEmpty()) {
+            log.warn("No sink could be created from " + DriverConfig.SINKS
+                     + "=" + names + ", logging to log4j");
+            routes.add(new Route(Log4jSink.TYPE, new Log4jSink(),
+                                 Severity.DEBUG, null));
+        }
+        return new SinkRouter(s, routes.toArray(new Route[routes.size()]));
+    }
+
+    private static Route createRoute(String name, Properties s) {
+        String prefix = DriverConfig.SINK_PREFIX + name + ".";
+        Properties own = new Properties();
+        for (String key : s.stringPropertyNames()) {
+            if (key.startsWith(prefix)) {
+                own.setProperty(key.substring(prefix.length()),
+                                s.getProperty(key).trim());
+            }
+        }
+        String type = own.getProperty("type", name);
+        LogSinkProvider p = providers().get(type);
+        if (p == null) {
+            log.warn("Ignoring sink " + name + ", there is no sink of type "
+                     + type);
+            return null;
+        }
+        Severity level = Severity.DEBUG;
+        String v = own.getProperty("level");
+        if (v != null) {
+            try {
+                level = Severity.parse(v);
+            }
+            catch (IllegalArgumentException e) {
+                log.warn("Ignoring bad value for " + prefix + "level: " + v);
+            }
+        }
+        String[] loggers = null;
+        v = own.getProperty("loggers", "");
+        if (v.length() > 0) {
+            loggers = v.split("\\s*,\\s*");
+        }
+        try {
+            return new Route(name, p.create(name, own), level, loggers);
+        }
+        catch (RuntimeException e) {
+            log.warn("Ignoring sink " + name + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // the providers are looked up once, with the class loader of the driver
+    private static synchronized Map<String, LogSinkProvider> providers() {
+        if (providers == null) {
+            Map<String, LogSinkProvider> m =
+                new HashMap<String, LogSinkProvider>();
+            try {
+                for (LogSinkProvider p : ServiceLoader.load(
+                         LogSinkProvider.class,
+                         SinkRouter.class.getClassLoader())) {
+                    if (!m.containsKey(p.getType())) {
+                        m.put(p.getType(), p);
+                    }
+                }
+            }
+            catch (ServiceConfigurationError e) {
+                log.warn("Couldn't load the sink providers", e);
+            }
+            providers = m;
+        }
+        return providers;
+    }
+
+    /**
+     * A sink with its filters.
+     */
+    private static final class Route {
+
+        private final String name;
+        private final LogSink sink;
+        private final Severity level;
+        private final String[] loggers;
+        private volatile boolean reported;
+
+        Route(String n, LogSink s, Severity l, String[] lg) {
+            name = n;
+            sink = s;
+            level = l;
+            loggers = lg;
+        }
+
+        boolean isUnfiltered() {
+            return level == Severity.DEBUG && loggers == null;
+        }
+
+        boolean isEnabled(String category, Severity severity) {
+            return severity.compareTo(level) >= 0 && takes(category)
+                && sink.isEnabled(category, severity);
+        }
+
+        private boolean takes(String category) {
+            if (loggers == null) {
+                return true;
+            }
+            for (String l : loggers) {
+                if (category.startsWith(l)
+                    && (category.length() == l.length()
+                        || category.charAt(l.length()) == '.')) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void failed(RuntimeException e) {
+            if (!reported) {
+                reported = true;
+                log.error("Sink " + name + " failed, later failures are"
+                          + " not reported", e);
+            }
+        }
+    }
+}
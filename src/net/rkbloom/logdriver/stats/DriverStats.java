@@ -0,0 +1,298 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.stats;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * DriverStats holds the driver-wide counters: connections opened and
+ * closed, commits and rollbacks, statements in flight, executions,
+ * failures, batch sizes, transaction and commit times and the current rate
+ * of executions.  Connections, commits and rollbacks are always counted.
+ * Executions, batches and transaction times are recorded while executions
+ * are being timed, that is while the statistics or the
+ * slow-query log are on, so that the passthrough path stays free of
+ * shared writes.
+ * @version $Rev$
+ */
+public final class DriverStats {
+
+    private static final LongAdder opened = new LongAdder();
+    private static final LongAdder closed = new LongAdder();
+    private static final LongAdder inFlight = new LongAdder();
+    private static final LongAdder executions = new LongAdder();
+    private static final LongAdder errors = new LongAdder();
+    private static final RateMeter rate = new RateMeter(10);
+    private static final LongAdder commits = new LongAdder();
+    private static final LongAdder rollbacks = new LongAdder();
+    private static final LongAdder nPlusOne = new LongAdder();
+
+    // upper bounds of the batch size buckets; one more bucket for the rest
+    private static final int[] BATCH_BOUNDS =
+        {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000};
+    private static final AtomicLongArray batches =
+        new AtomicLongArray(BATCH_BOUNDS.length + 1);
+    private static final LongAdder batchRows = new LongAdder();
+
+    private static final LatencyHistogram transactions =
+        new LatencyHistogram();
+    private static final LatencyHistogram commitTimes =
+        new LatencyHistogram();
+    private static final LongAdder txDatabaseNanos = new LongAdder();
+    private static final LongAdder txApplicationNanos = new LongAdder();
+
+    private DriverStats() {
+    }
+
+    /**
+     * Counts a newly opened connection.
+     */
+    public static void connectionOpened() {
+        opened.increment();
+    }
+
+    /**
+     * Counts a closed connection.
+     */
+    public static void connectionClosed() {
+        closed.increment();
+    }
+
+    /**
+     * Counts a commit.
+     */
+    public static void committed() {
+        commits.increment();
+    }
+
+    /**
+     * Counts a rollback of a whole transaction.
+     */
+    public static void rolledBack() {
+        rollbacks.increment();
+    }
+
+    /**
+     * Counts a run of N+1 queries.
+     */
+    public static void nPlusOneDetected() {
+        nPlusOne.increment();
+    }
+
+    /**
+     * Counts a statement that has started executing.
+     */
+    public static void executionStarted() {
+        inFlight.increment();
+    }
+
+    /**
+     * Counts a statement that has finished executing.
+     * @param nanos the System.nanoTime() it finished at.
+     * @param failed true if it threw.
+     */
+    public static void executionFinished(long nanos, boolean failed) {
+        inFlight.decrement();
+        executions.increment();
+        if (failed) {
+            errors.increment();
+        }
+        rate.mark(nanos);
+    }
+
+    /**
+     * Counts an executed batch.
+     * @param rows the number of rows (or statements) in the batch.
+     */
+    public static void batchExecuted(int rows) {
+        int i = 0;
+        while (i < BATCH_BOUNDS.length && rows > BATCH_BOUNDS[i]) {
+            i++;
+        }
+        batches.incrementAndGet(i);
+        batchRows.add(rows);
+    }
+
+    /**
+     * Records a transaction that has ended.
+     * @param span its length in nanoseconds.
+     * @param database the part of the span spent in the database.
+     * @param commit how long the commit took, or -1 if it didn't commit.
+     */
+    public static void transactionEnded(long span, long database,
+                                        long commit) {
+        transactions.record(span);
+        txDatabaseNanos.add(database);
+        txApplicationNanos.add(Math.max(span - database, 0L));
+        if (commit >= 0) {
+            commitTimes.record(commit);
+        }
+    }
+
+    /**
+     * @return the connections opened since the driver was loaded.
+     */
+    public static long getConnectionsOpened() {
+        return opened.sum();
+    }
+
+    /**
+     * @return the connections closed since the driver was loaded.
+     */
+    public static long getConnectionsClosed() {
+        return closed.sum();
+    }
+
+    /**
+     * @return the connections that are open right now.
+     */
+    public static long getOpenConnections() {
+        return opened.sum() - closed.sum();
+    }
+
+    /**
+     * @return the statements executing right now.
+     */
+    public static long getInFlightStatements() {
+        return inFlight.sum();
+    }
+
+    /**
+     * @return the executions since the last reset.
+     */
+    public static long getExecutions() {
+        return executions.sum();
+    }
+
+    /**
+     * @return the failed executions since the last reset.
+     */
+    public static long getErrors() {
+        return errors.sum();
+    }
+
+    /**
+     * @return executions per second over the last ten seconds.
+     */
+    public static double getExecutionsPerSecond() {
+        return rate.getRate();
+    }
+
+    /**
+     * @return the commits since the last reset.
+     */
+    public static long getCommits() {
+        return commits.sum();
+    }
+
+    /**
+     * @return the rollbacks since the last reset.
+     */
+    public static long getRollbacks() {
+        return rollbacks.sum();
+    }
+
+    /**
+     * @return the runs of N+1 queries since the last reset.
+     */
+    public static long getNPlusOneRuns() {
+        return nPlusOne.sum();
+    }
+
+    /**
+     * @return the number of batch size buckets, the last of which holds
+     * every batch above the highest bound.
+     */
+    public static int getBatchSizeBuckets() {
+        return batches.length();
+    }
+
+    /**
+     * @param bucket the bucket, below {@link #getBatchSizeBuckets()}.
+     * @return the largest batch the bucket holds, or Integer.MAX_VALUE for
+     * the last bucket.
+     */
+    public static int getBatchSizeBound(int bucket) {
+        return bucket < BATCH_BOUNDS.length
+            ? BATCH_BOUNDS[bucket] : Integer.MAX_VALUE;
+    }
+
+    /**
+     * @param bucket the bucket, below {@link #getBatchSizeBuckets()}.
+     * @return the batches in that bucket since the last reset.
+     */
+    public static long getBatchSizeCount(int bucket) {
+        return batches.get(bucket);
+    }
+
+    /**
+     * @return the rows in all of the batches since the last reset.
+     */
+    public static long getBatchRows() {
+        return batchRows.sum();
+    }
+
+    /**
+     * @return the live histogram of transaction lengths.
+     */
+    public static LatencyHistogram getTransactionTimes() {
+        return transactions;
+    }
+
+    /**
+     * @return the live histogram of commit times.
+     */
+    public static LatencyHistogram getCommitTimes() {
+        return commitTimes;
+    }
+
+    /**
+     * @return the time transactions spent in the database, in nanoseconds.
+     */
+    public static long getTransactionDatabaseNanos() {
+        return txDatabaseNanos.sum();
+    }
+
+    /**
+     * @return the time transactions were held open by the application
+     * between calls, in nanoseconds.
+     */
+    public static long getTransactionApplicationNanos() {
+        return txApplicationNanos.sum();
+    }
+
+    /**
+     * Zeroes the execution, transaction and batch counters.  The connection
+     * and in-flight counts describe the present rather than history, so
+     * they are kept.
+     */
+    public static void reset() {
+        executions.reset();
+        errors.reset();
+        rate.reset();
+        commits.reset();
+        rollbacks.reset();
+        nPlusOne.reset();
+        for (int i = 0; i < batches.length(); i++) {
+            batches.set(i, 0);
+        }
+        batchRows.reset();
+        transactions.reset();
+        commitTimes.reset();
+        txDatabaseNanos.reset();
+        txApplicationNanos.reset();
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.stats;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * FingerprintRegistry holds the {@link FingerprintStats} of every SQL
+ * fingerprint, see {@link net.rkbloom.logdriver.util.SqlFingerprint}.  The
+ * number of fingerprints is capped.  When a new one arrives and the
+ * registry is full, the least frequently executed tenth is evicted in one
+ * go, which keeps the cost of eviction low and means that a stream of
+ * one-off statements evicts itself rather than the statements that matter.
+ * The latency histogram of an evicted fingerprint is added to the overflow
+ * histogram of the {@link LatencyRegistry}.
+ * @version $Rev$
+ */
+public final class FingerprintRegistry {
+
+    private static final int DEFAULT_MAX = 1000;
+
+    private static volatile int maxFingerprints = DEFAULT_MAX;
+    private static final ConcurrentMap<String, FingerprintStats> stats =
+        new ConcurrentHashMap<String, FingerprintStats>();
+    private static final Object evictLock = new Object();
+
+    private static final Comparator<FingerprintStats.Snapshot> BY_TOTAL =
+        new Comparator<FingerprintStats.Snapshot>() {
+            public int compare(FingerprintStats.Snapshot a,
+                               FingerprintStats.Snapshot b) {
+                return Long.compare(b.getTotalNanos(), a.getTotalNanos());
+            }
+        };
+
+    private FingerprintRegistry() {
+    }
+
+    /**
+     * Returns the statistics for a fingerprint, creating them if needed.
+     * Callers look the statistics up for every execution rather than
+     * keeping them, so that nothing is recorded into evicted statistics.
+     * @param fingerprint the fingerprint.
+     * @return the statistics, never null.
+     */
+    public static FingerprintStats get(String fingerprint) {
+        FingerprintStats s = stats.get(fingerprint);
+        if (s != null) {
+            return s;
+        }
+        if (stats.size() >= maxFingerprints) {
+            evict();
+        }
+        s = new FingerprintStats(fingerprint);
+        FingerprintStats prev = stats.putIfAbsent(fingerprint, s);
+        return (prev == null ? s : prev);
+    }
+
+    /**
+     * Sets the most fingerprints to keep.
+     * @param max the new cap, at least 1.
+     */
+    public static void setMaxFingerprints(int max) {
+        maxFingerprints = Math.max(max, 1);
+        if (stats.size() > maxFingerprints) {
+            evict();
+        }
+    }
+
+    /**
+     * @return the number of fingerprints held.
+     */
+    public static int size() {
+        return stats.size();
+    }
+
+    /**
+     * Takes a snapshot of the fingerprints with the most total time.
+     * @param n how many to return.
+     * @return the snapshots, the most expensive first.
+     */
+    public static List<FingerprintStats.Snapshot> top(int n) {
+        List<FingerprintStats.Snapshot> all = snapshot();
+        Collections.sort(all, BY_TOTAL);
+        return new ArrayList<FingerprintStats.Snapshot>(
+            all.subList(0, Math.min(Math.max(n, 0), all.size())));
+    }
+
+    /**
+     * @return a snapshot of every fingerprint, in no particular order.
+     */
+    public static List<FingerprintStats.Snapshot> snapshot() {
+        List<FingerprintStats.Snapshot> all =
+            new ArrayList<FingerprintStats.Snapshot>(stats.size());
+        for (FingerprintStats s : stats.values()) {
+            all.add(s.snapshot());
+        }
+        return all;
+    }
+
+    /**
+     * Zeroes the statistics of every fingerprint.
+     */
+    public static void reset() {
+        for (FingerprintStats s : stats.values()) {
+            s.reset();
+        }
+    }
+
+    /**
+     * @return the live statistics, in no particular order.
+     */
+    static Collection<FingerprintStats> all() {
+        return stats.values();
+    }
+
+    /**
+     * Forgets every fingerprint.
+     */
+    static void clear() {
+        stats.clear();
+    }
+
+    private static void evict() {
+        synchronized (evictLock) {
+            int max = maxFingerprints;
+            int size = stats.size();
+            if (size < max) {
+                // somebody else made room while we waited
+                return;
+            }
+            List<Map.Entry<String, FingerprintStats>> entries =
+                new ArrayList<Map.Entry<String, FingerprintStats>>(
+                    stats.entrySet());
+            final long[] counts = new long[entries.size()];
+            Integer[] order = new Integer[entries.size()];
+            for (int i = 0; i < order.length; i++) {
+                counts[i] = entries.get(i).getValue().getExecutions();
+                order[i] = Integer.valueOf(i);
+            }
+            // counts are read once, since they keep moving while we sort
+            Arrays.sort(order, new Comparator<Integer>() {
+                public int compare(Integer a, Integer b) {
+                    return Long.compare(counts[a.intValue()],
+                                        counts[b.intValue()]);
+                }
+            });
+            int drop = Math.max(size - max + 1, max / 10);
+            for (int i = 0; i < drop && i < order.length; i++) {
+                Map.Entry<String, FingerprintStats> e =
+                    entries.get(order[i].intValue());
+                if (stats.remove(e.getKey(), e.getValue())) {
+                    LatencyRegistry.evicted(e.getValue().getLatency());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.stats;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * FingerprintStats accumulates the executions of one SQL fingerprint: how
+ * many there were, how many failed, their total, shortest and longest time,
+ * the rows they affected and the rows and bytes they fetched.  The counters
+ * are striped (<code>LongAdder</code>), so threads on different cores
+ * recording the same statement don't contend on one cache line.  The
+ * minimum and maximum are only written when they change.  Every
+ * execution also goes into the fingerprint's {@link LatencyHistogram}, which
+ * lives and is evicted with these statistics.
+ * @version $Rev$
+ */
+public final class FingerprintStats {
+
+    private final String fingerprint;
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAdder rowsAffected = new LongAdder();
+    private final LongAdder rowsFetched = new LongAdder();
+    private final LongAdder bytesFetched = new LongAdder();
+    private final AtomicLong minNanos = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    FingerprintStats(String fp) {
+        fingerprint = fp;
+    }
+
+    /**
+     * @return the fingerprint these statistics are for.
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Records one execution.
+     * @param nanos how long it took.
+     * @param failed true if it threw.
+     * @param affected the rows it inserted, updated or deleted.
+     */
+    public void record(long nanos, boolean failed, long affected) {
+        executions.increment();
+        latency.record(nanos);
+        if (failed) {
+            errors.increment();
+        }
+        totalNanos.add(nanos);
+        if (affected > 0) {
+            rowsAffected.add(affected);
+        }
+        long m = minNanos.get();
+        while (nanos < m && !minNanos.compareAndSet(m, nanos)) {
+            m = minNanos.get();
+        }
+        m = maxNanos.get();
+        while (nanos > m && !maxNanos.compareAndSet(m, nanos)) {
+            m = maxNanos.get();
+        }
+    }
+
+    /**
+     * Records what was read from a result set of this statement.
+     * @param rows the number of rows.
+     * @param bytes an estimate of the bytes in the columns that were read.
+     */
+    public void recordFetched(long rows, long bytes) {
+        rowsFetched.add(rows);
+        bytesFetched.add(bytes);
+    }
+
+    /**
+     * @return the number of executions, which is also how the registry
+     * decides what to evict.
+     */
+    public long getExecutions() {
+        return executions.sum();
+    }
+
+    /**
+     * @return the histogram of the execution times.
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * @return a copy of the current values.
+     */
+    public Snapshot snapshot() {
+        long n = executions.sum();
+        long min = minNanos.get();
+        return new Snapshot(fingerprint, n, errors.sum(), totalNanos.sum(),
+                            (min == Long.MAX_VALUE ? 0 : min), maxNanos.get(),
+                            rowsAffected.sum(), rowsFetched.sum(),
+                            bytesFetched.sum());
+    }
+
+    void reset() {
+        executions.reset();
+        errors.reset();
+        totalNanos.reset();
+        rowsAffected.reset();
+        rowsFetched.reset();
+        bytesFetched.reset();
+        minNanos.set(Long.MAX_VALUE);
+        maxNanos.set(0);
+        latency.reset();
+    }
+
+    /**
+     * Snapshot is an immutable copy of the statistics of one fingerprint.
+     */
+    public static final class Snapshot {
+
+        private final String fingerprint;
+        private final long executions;
+        private final long errors;
+        private final long totalNanos;
+        private final long minNanos;
+        private final long maxNanos;
+        private final long rowsAffected;
+        private final long rowsFetched;
+        private final long bytesFetched;
+
+        Snapshot(String fp, long n, long err, long total, long min, long max,
+                 long affected, long fetched, long bytes) {
+            fingerprint = fp;
+            executions = n;
+            errors = err;
+            totalNanos = total;
+            minNanos = min;
+            maxNanos = max;
+            rowsAffected = affected;
+            rowsFetched = fetched;
+            bytesFetched = bytes;
+        }
+
+        /**
+         * @return the fingerprint.
+         */
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        /**
+         * @return the number of executions.
+         */
+        public long getExecutions() {
+            return executions;
+        }
+
+        /**
+         * @return the number of executions that threw.
+         */
+        public long getErrors() {
+            return errors;
+        }
+
+        /**
+         * @return the total time of all executions, in nanoseconds.
+         */
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        /**
+         * @return the mean time of an execution, in nanoseconds.
+         */
+        public long getMeanNanos() {
+            return (executions == 0 ? 0 : totalNanos / executions);
+        }
+
+        /**
+         * @return the shortest execution, in nanoseconds.
+         */
+        public long getMinNanos() {
+            return minNanos;
+        }
+
+        /**
+         * @return the longest execution, in nanoseconds.
+         */
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        /**
+         * @return the rows inserted, updated or deleted.
+         */
+        public long getRowsAffected() {
+            return rowsAffected;
+        }
+
+        /**
+         * @return the rows read from result sets.
+         */
+        public long getRowsFetched() {
+            return rowsFetched;
+        }
+
+        /**
+         * @return an estimate of the bytes read from result sets.
+         */
+        public long getBytesFetched() {
+            return bytesFetched;
+        }
+
+        /**
+         * Renders the snapshot with times in microseconds.
+         * @return the snapshot as a String.
+         */
+        public String toString() {
+            return fingerprint + ": executions=" + executions
+                + " errors=" + errors
+                + " total=" + totalNanos / 1000
+                + " mean=" + getMeanNanos() / 1000
+                + " min=" + minNanos / 1000
+                + " max=" + maxNanos / 1000 + " (us)"
+                + " rowsAffected=" + rowsAffected
+                + " rowsFetched=" + rowsFetched
+                + " bytesFetched=" + bytesFetched;
+        }
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.stats;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * LatencyHistogram records execution times in nanoseconds.  Like an HDR
+ * histogram it uses log-linear buckets: values below 64ns get a bucket each,
+ * and every power of two above that is split into 32 buckets, so a recorded
+ * value is off by at most 1/32 (about 3%).  Values up to 2^40ns (about 18
+ * minutes) are told apart; anything longer lands in the last bucket, though
+ * the maximum is still exact.
+ * <p>
+ * Memory is fixed at construction and recording is lock-free: one atomic
+ * increment for the bucket, one add for the total, and a compare-and-set
+ * only when a new maximum is seen.  Readers take a {@link Snapshot},
+ * which can be merged with the snapshots of other histograms.
+ * @version $Rev$
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int LINEAR = SUB_COUNT << 1;
+    private static final int MAX_BITS = 40;
+    private static final long MAX_TRACKED = (1L << MAX_BITS) - 1;
+
+    /** The number of buckets in every histogram. */
+    static final int BUCKETS = indexOf(MAX_TRACKED) + 1;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records one execution.
+     * @param nanos the elapsed time; negative values are recorded as 0.
+     */
+    public void record(long nanos) {
+        long v = Math.max(nanos, 0L);
+        buckets.incrementAndGet(indexOf(Math.min(v, MAX_TRACKED)));
+        total.addAndGet(v);
+        long m = max.get();
+        while (v > m && !max.compareAndSet(m, v)) {
+            m = max.get();
+        }
+    }
+
+    /**
+     * @return the number of recorded executions.
+     */
+    public long getCount() {
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            n += buckets.get(i);
+        }
+        return n;
+    }
+
+    /**
+     * @return the sum of the recorded times in nanoseconds.
+     */
+    public long getTotalNanos() {
+        return total.get();
+    }
+
+    /**
+     * Counts the executions at or below each of a set of fixed bounds, for
+     * exporters whose histograms have their own buckets.  A bucket of this
+     * histogram is counted against the first bound that is not below its
+     * highest value, so the counts err on the slow side by at most the 3%
+     * width of a bucket.  Nothing is allocated.
+     * @param bounds the upper bounds in nanoseconds, ascending.
+     * @param cumulative filled with the count at or below each bound; it
+     * must be one longer than <code>bounds</code>, and the last element
+     * gets the count of every execution.
+     */
+    public void cumulativeCounts(long[] bounds, long[] cumulative) {
+        Arrays.fill(cumulative, 0L);
+        int b = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            long c = buckets.get(i);
+            if (c == 0) {
+                continue;
+            }
+            long high = highestValueAt(i);
+            while (b < bounds.length && bounds[b] < high) {
+                b++;
+            }
+            cumulative[b] += c;
+        }
+        for (int i = 1; i < cumulative.length; i++) {
+            cumulative[i] += cumulative[i - 1];
+        }
+    }
+
+    /**
+     * Copies the current counts.  Recording may continue while the copy is
+     * taken, so the total can include an execution or two that the
+     * percentiles don't; the count is always taken from the buckets.
+     * @return a snapshot of this histogram.
+     */
+    public Snapshot snapshot() {
+        long[] c = new long[BUCKETS];
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            c[i] = buckets.get(i);
+            n += c[i];
+        }
+        return new Snapshot(c, n, total.get(), max.get());
+    }
+
+    /**
+     * Forgets every recorded execution.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        total.set(0);
+        max.set(0);
+    }
+
+    /**
+     * Adds the executions in a snapshot of another histogram.
+     * @param s the snapshot.
+     */
+    void add(Snapshot s) {
+        for (int i = 0; i < BUCKETS; i++) {
+            if (s.counts[i] != 0) {
+                buckets.addAndGet(i, s.counts[i]);
+            }
+        }
+        total.addAndGet(s.total);
+        long m = max.get();
+        while (s.max > m && !max.compareAndSet(m, s.max)) {
+            m = max.get();
+        }
+    }
+
+    static int indexOf(long v) {
+        if (v < LINEAR) {
+            return (int) v;
+        }
+        // keep the top SUB_BITS + 1 bits; the shift says which power of two
+        int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS;
+        return (shift << SUB_BITS) + (int) (v >>> shift);
+    }
+
+    static long highestValueAt(int index) {
+        if (index < LINEAR) {
+            return index;
+        }
+        int shift = (index >> SUB_BITS) - 1;
+        long sub = index - ((long) shift << SUB_BITS);
+        return ((sub + 1) << shift) - 1;
+    }
+
+    /**
+     * Snapshot is an immutable copy of a histogram.
+     */
+    public static final class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long total;
+        private final long max;
+
+        Snapshot(long[] c, long n, long t, long m) {
+            counts = c;
+            count = n;
+            total = t;
+            max = m;
+        }
+
+        /**
+         * @return an empty snapshot, the identity for {@link #merge}.
+         */
+        public static Snapshot empty() {
+            return new Snapshot(new long[BUCKETS], 0, 0, 0);
+        }
+
+        /**
+         * Adds two snapshots together, for example to combine the
+         * histograms of several statements.
+         * @param other the snapshot to add.
+         * @return a new snapshot holding both.
+         */
+        public Snapshot merge(Snapshot other) {
+            long[] c = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                c[i] = counts[i] + other.counts[i];
+            }
+            return new Snapshot(c, count + other.count, total + other.total,
+                                Math.max(max, other.max));
+        }
+
+        /**
+         * @return the number of recorded executions.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return the sum of the recorded times in nanoseconds.
+         */
+        public long getTotalNanos() {
+            return total;
+        }
+
+        /**
+         * @return the mean time in nanoseconds, 0 if nothing was recorded.
+         */
+        public long getMeanNanos() {
+            return (count == 0 ? 0 : total / count);
+        }
+
+        /**
+         * @return the longest recorded time in nanoseconds.
+         */
+        public long getMaxNanos() {
+            return max;
+        }
+
+        /**
+         * Returns the time that the given fraction of executions did not
+         * exceed.  The value is the top of the bucket it falls in, so it
+         * errs on the high side by at most about 3%.
+         * @param percentile from 0 to 100.
+         * @return the time in nanoseconds, 0 if nothing was recorded.
+         */
+        public long getPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            double p = Math.min(Math.max(percentile, 0.0), 100.0);
+            long rank = Math.max(1L, (long) Math.ceil(p / 100.0 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    // the last bucket also holds everything too long to track
+                    return (i == counts.length - 1)
+                        ? max : Math.min(highestValueAt(i), max);
+                }
+            }
+            return max;
+        }
+
+        /**
+         * @return the median in nanoseconds.
+         */
+        public long getP50() {
+            return getPercentile(50.0);
+        }
+
+        /**
+         * @return the 90th percentile in nanoseconds.
+         */
+        public long getP90() {
+            return getPercentile(90.0);
+        }
+
+        /**
+         * @return the 99th percentile in nanoseconds.
+         */
+        public long getP99() {
+            return getPercentile(99.0);
+        }
+
+        /**
+         * @return the 99.9th percentile in nanoseconds.
+         */
+        public long getP999() {
+            return getPercentile(99.9);
+        }
+
+        /**
+         * Renders the snapshot in microseconds, for example
+         * <code>count=10 p50=120 p90=180 p99=250 p999=250 max=251 (us)</code>.
+         * @return the snapshot as a String.
+         */
+        public String toString() {
+            return "count=" + count
+                + " p50=" + getP50() / 1000
+                + " p90=" + getP90() / 1000
+                + " p99=" + getP99() / 1000
+                + " p999=" + getP999() / 1000
+                + " max=" + max / 1000 + " (us)";
+        }
+    }
+}
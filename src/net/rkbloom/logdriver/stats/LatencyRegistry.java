@@ -0,0 +1,139 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.stats;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LatencyRegistry gives the {@link LatencyHistogram} of each SQL
+ * fingerprint (see {@link net.rkbloom.logdriver.util.SqlFingerprint}) that
+ * has been executed while timing was on.  The histograms belong to the
+ * {@link FingerprintStats} in the {@link FingerprintRegistry}, so they are
+ * capped and evicted together with them and a statement that turns hot
+ * after a flood of one-off SQL still gets a histogram of its own.  The
+ * executions of evicted fingerprints are added to a shared overflow
+ * histogram, so the total stays complete whatever the application does
+ * with its SQL.
+ * @version $Rev$
+ */
+public final class LatencyRegistry {
+
+    /** The key of the overflow histogram in {@link #snapshot()}. */
+    public static final String OTHER = "<other>";
+
+    private static final LatencyHistogram other = new LatencyHistogram();
+
+    private LatencyRegistry() {
+    }
+
+    /**
+     * Returns the histogram for the given fingerprint, creating its
+     * statistics if needed.  Like the statistics, the histogram is looked
+     * up for every execution rather than kept, since it is evicted with
+     * them.
+     * @param sql the SQL fingerprint.
+     * @return the histogram, never null.
+     */
+    public static LatencyHistogram get(String sql) {
+        if (sql == null) {
+            return other;
+        }
+        return FingerprintRegistry.get(sql).getLatency();
+    }
+
+    /**
+     * Records one execution.
+     * @param sql the SQL fingerprint.
+     * @param nanos the elapsed time.
+     */
+    public static void record(String sql, long nanos) {
+        get(sql).record(nanos);
+    }
+
+    /**
+     * Takes a snapshot of every histogram that has recorded something.
+     * @return the snapshots keyed by fingerprint, with the overflow
+     * histogram, if it has been used, under {@link #OTHER}.
+     */
+    public static Map<String, LatencyHistogram.Snapshot> snapshot() {
+        Map<String, LatencyHistogram.Snapshot> m =
+            new LinkedHashMap<String, LatencyHistogram.Snapshot>();
+        for (FingerprintStats f : FingerprintRegistry.all()) {
+            LatencyHistogram.Snapshot s = f.getLatency().snapshot();
+            if (s.getCount() > 0) {
+                m.put(f.getFingerprint(), s);
+            }
+        }
+        LatencyHistogram.Snapshot s = other.snapshot();
+        if (s.getCount() > 0) {
+            m.put(OTHER, s);
+        }
+        return m;
+    }
+
+    /**
+     * Returns the live histograms, for exporters that read them one at a
+     * time instead of copying them all first.
+     * @return the histograms keyed by fingerprint; the overflow histogram
+     * is not included.
+     * @see #overflow()
+     */
+    public static Map<String, LatencyHistogram> histograms() {
+        Map<String, LatencyHistogram> m =
+            new LinkedHashMap<String, LatencyHistogram>();
+        for (FingerprintStats f : FingerprintRegistry.all()) {
+            m.put(f.getFingerprint(), f.getLatency());
+        }
+        return m;
+    }
+
+    /**
+     * @return the histogram that holds the executions of evicted
+     * fingerprints.
+     */
+    public static LatencyHistogram overflow() {
+        return other;
+    }
+
+    /**
+     * @return every histogram merged into one.
+     */
+    public static LatencyHistogram.Snapshot total() {
+        LatencyHistogram.Snapshot t = other.snapshot();
+        for (FingerprintStats f : FingerprintRegistry.all()) {
+            t = t.merge(f.getLatency().snapshot());
+        }
+        return t;
+    }
+
+    /**
+     * Zeroes every histogram.
+     */
+    public static void reset() {
+        for (FingerprintStats f : FingerprintRegistry.all()) {
+            f.getLatency().reset();
+        }
+        other.reset();
+    }
+
+    /**
+     * Keeps the executions of a fingerprint that is being evicted.
+     * @param h its histogram.
+     */
+    static void evicted(LatencyHistogram h) {
+        other.add(h.snapshot());
+    }
+}
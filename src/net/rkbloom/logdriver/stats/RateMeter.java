@@ -0,0 +1,84 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.stats;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * RateMeter counts events per second over a short sliding window.  It keeps
+ * one counter per second in a small ring; a slot that is reused for a new
+ * second is zeroed first.  Two threads that both find a stale slot at the
+ * same moment may lose a handful of events between them, which is fine for
+ * a rate that is only ever looked at by a person.
+ * @version $Rev$
+ */
+public final class RateMeter {
+
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
+    private final int window;
+    private final AtomicLongArray counts;
+    private final AtomicLongArray seconds;
+
+    /**
+     * @param windowSeconds how many whole seconds to average over.
+     */
+    public RateMeter(int windowSeconds) {
+        window = Math.max(windowSeconds, 1);
+        // one spare slot for the second that is still running
+        counts = new AtomicLongArray(window + 1);
+        seconds = new AtomicLongArray(window + 1);
+    }
+
+    /**
+     * Counts one event.
+     * @param nanos the current System.nanoTime().
+     */
+    public void mark(long nanos) {
+        long sec = nanos / NANOS_PER_SECOND;
+        int slot = (int) Math.floorMod(sec, (long) counts.length());
+        long seen = seconds.get(slot);
+        if (seen != sec && seconds.compareAndSet(slot, seen, sec)) {
+            counts.set(slot, 0);
+        }
+        counts.incrementAndGet(slot);
+    }
+
+    /**
+     * @return the mean number of events per second over the last whole
+     * seconds of the window.
+     */
+    public double getRate() {
+        long now = System.nanoTime() / NANOS_PER_SECOND;
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            long sec = seconds.get(i);
+            if (sec < now && sec >= now - window) {
+                total += counts.get(i);
+            }
+        }
+        return (double) total / window;
+    }
+
+    /**
+     * Forgets every event.
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+            seconds.set(i, 0);
+        }
+    }
+}
@@ -0,0 +1,442 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.stub;
+
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.CallableStatement;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.NClob;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLClientInfoException;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.sql.Struct;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executor;
+
+
+/**
+ * StubConnection is a Connection whose statements do nothing but return
+ * what its {@link StubSettings} say.  It remembers its own settings, such
+ * as auto-commit, so that code reading them back sees what it set.  See
+ * {@link StubDriver}.
+ * @version $Rev$
+ */
+public class StubConnection implements Connection {
+
+    private final StubSettings settings;
+    private boolean autoCommit = true;
+    private boolean readOnly;
+    private int isolation = TRANSACTION_READ_COMMITTED;
+    private boolean closed;
+
+    StubConnection(StubSettings s) {
+        settings = s;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void abort(Executor executor) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void clearWarnings() throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void close() throws SQLException {
+        closed = true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void commit() throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Array createArrayOf(String name, Object[] elements) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Blob createBlob() throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Clob createClob() throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public NClob createNClob() throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public SQLXML createSQLXML() throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Statement createStatement() throws SQLException {
+        return new StubStatement(this, settings, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Statement createStatement(int resultSetType,
+                                     int resultSetConcurrency)
+        throws SQLException {
+        return new StubStatement(this, settings, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Statement createStatement(int resultSetType,
+                                     int resultSetConcurrency,
+                                     int resultSetHoldability)
+        throws SQLException {
+        return new StubStatement(this, settings, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Struct createStruct(String name, Object[] attributes) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean getAutoCommit() throws SQLException {
+        return autoCommit;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getCatalog() throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Properties getClientInfo() throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getClientInfo(String name) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getHoldability() throws SQLException {
+        return ResultSet.HOLD_CURSORS_OVER_COMMIT;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public DatabaseMetaData getMetaData() throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getNetworkTimeout() throws SQLException {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getSchema() throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getTransactionIsolation() throws SQLException {
+        return isolation;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Map<String, Class<?>> getTypeMap() throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public SQLWarning getWarnings() throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isClosed() throws SQLException {
+        return closed;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isReadOnly() throws SQLException {
+        return readOnly;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isValid(int timeout) throws SQLException {
+        return !closed;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String nativeSQL(String sql) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public CallableStatement prepareCall(String sql) throws SQLException {
+        return new StubStatement(this, settings, sql);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public CallableStatement prepareCall(String sql, int resultSetType,
+                                         int resultSetConcurrency)
+        throws SQLException {
+        return new StubStatement(this, settings, sql);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public CallableStatement prepareCall(String sql, int resultSetType,
+                                         int resultSetConcurrency,
+                                         int resultSetHoldability)
+        throws SQLException {
+        return new StubStatement(this, settings, sql);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public PreparedStatement prepareStatement(String sql) throws SQLException {
+        return new StubStatement(this, settings, sql);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public PreparedStatement prepareStatement(String sql, int[] columnIndexes)
+        throws SQLException {
+        return new StubStatement(this, settings, sql);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public PreparedStatement prepareStatement(String sql, String[] columnNames)
+        throws SQLException {
+        return new StubStatement(this, settings, sql);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys)
+        throws SQLException {
+        return new StubStatement(this, settings, sql);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public PreparedStatement prepareStatement(String sql, int resultSetType,
+                                              int resultSetConcurrency)
+        throws SQLException {
+        return new StubStatement(this, settings, sql);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public PreparedStatement prepareStatement(String sql, int resultSetType,
+                                              int resultSetConcurrency,
+                                              int resultSetHoldability)
+        throws SQLException {
+        return new StubStatement(this, settings, sql);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void releaseSavepoint(Savepoint savepoint) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void rollback() throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void rollback(Savepoint savepoint) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setAutoCommit(boolean autoCommit) throws SQLException {
+        this.autoCommit = autoCommit;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setCatalog(String name) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setClientInfo(Properties clientInfo)
+        throws SQLClientInfoException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setClientInfo(String name, String x)
+        throws SQLClientInfoException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setHoldability(int i) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setNetworkTimeout(Executor executor, int x)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setReadOnly(boolean readOnly) throws SQLException {
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Savepoint setSavepoint() throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Savepoint setSavepoint(String name) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setSchema(String name) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setTransactionIsolation(int level) throws SQLException {
+        isolation = level;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setTypeMap(Map<String, Class<?>> map) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return null;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.stub;
+
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Properties;
+
+/**
+ * StubDriver is a JDBC driver without a database behind it, for measuring
+ * what LogDriver costs and for testing it without a server.  It accepts
+ * <code>jdbc:stub:</code> URLs; wrapped by LogDriver, the URL is
+ * <code>jdbc:log:net.rkbloom.logdriver.stub.StubDriver:stub:</code>.
+ * Queries return canned result sets, whose rows, column types and latency
+ * are set in the URL (see {@link StubSettings}), and updates and batches
+ * return at once, so what is measured through it is the cost of the
+ * driver alone.
+ * @version $Rev$
+ */
+public class StubDriver implements Driver {
+
+    /** The URL of the raw driver. */
+    public static final String URL = "jdbc:stub:";
+    /** The URL of the raw driver wrapped by LogDriver. */
+    public static final String LOG_URL =
+        "jdbc:log:" + StubDriver.class.getName() + ":stub:";
+
+    static {
+        try {
+            DriverManager.registerDriver(new StubDriver());
+        }
+        catch (SQLException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean acceptsURL(String url) throws SQLException {
+        return url.startsWith(URL);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Connection connect(String url, Properties info) throws SQLException {
+        if (!acceptsURL(url)) {
+            return null;
+        }
+        return new StubConnection(
+            new StubSettings(url.substring(URL.length()), info));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getMajorVersion() {
+        return 1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getMinorVersion() {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public DriverPropertyInfo[] getPropertyInfo(String url, Properties info)
+        throws SQLException {
+        return new DriverPropertyInfo[0];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean jdbcCompliant() {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public java.util.logging.Logger getParentLogger()
+        throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+}
@@ -0,0 +1,1448 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.stub;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Date;
+import java.sql.NClob;
+import java.sql.Ref;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.RowId;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Calendar;
+import java.util.Map;
+
+/**
+ * StubResultSet is a forward-only ResultSet of the rows and columns that
+ * its {@link StubSettings} describe.  Every row holds the same made-up
+ * values: numbers are the row number, character columns hold
+ * {@link #VALUE}, and dates, times and byte arrays are the same instances
+ * on every row, so that reading a row allocates next to nothing.  Updates
+ * are ignored.
+ * @version $Rev$
+ */
+public class StubResultSet implements ResultSet {
+
+    /** What every character column holds. */
+    public static final String VALUE = "value";
+
+    private static final Date DATE = Date.valueOf("2005-01-01");
+    private static final Time TIME = Time.valueOf("12:00:00");
+    private static final Timestamp TIMESTAMP =
+        Timestamp.valueOf("2005-01-01 12:00:00");
+    private static final byte[] BYTES = {1, 2, 3, 4};
+
+    private final Statement stmt;
+    private final StubSettings settings;
+    private final int rows;
+    private int row;
+    private boolean closed;
+
+    StubResultSet(Statement s, StubSettings set) {
+        stmt = s;
+        settings = set;
+        rows = set.getRows();
+    }
+
+    // the type of a column of the current row
+    private int at(int column) throws SQLException {
+        if (row < 1 || row > rows) {
+            throw new SQLException("Not on a row");
+        }
+        return settings.getType(column);
+    }
+
+    private Object object(int type) {
+        switch (type) {
+            case Types.BIGINT:
+                return Long.valueOf(row);
+            case Types.INTEGER:
+            case Types.SMALLINT:
+            case Types.TINYINT:
+                return Integer.valueOf(row);
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                return BigDecimal.valueOf(row);
+            case Types.DOUBLE:
+            case Types.FLOAT:
+                return Double.valueOf(row);
+            case Types.REAL:
+                return Float.valueOf(row);
+            case Types.BIT:
+            case Types.BOOLEAN:
+                return Boolean.valueOf((row & 1) == 1);
+            case Types.DATE:
+                return DATE;
+            case Types.TIME:
+                return TIME;
+            case Types.TIMESTAMP:
+                return TIMESTAMP;
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+                return BYTES;
+            default:
+                return VALUE;
+        }
+    }
+
+    private String text(int type) {
+        Object v = object(type);
+        return (v instanceof byte[] ? VALUE : v.toString());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean absolute(int row) throws SQLException {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void afterLast() throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void beforeFirst() throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void cancelRowUpdates() throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void clearWarnings() throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void close() throws SQLException {
+        closed = true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void deleteRow() throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int findColumn(String columnLabel) throws SQLException {
+        return settings.findColumn(columnLabel);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean first() throws SQLException {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Array getArray(String columnLabel) throws SQLException {
+        return getArray(findColumn(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Array getArray(int columnIndex) throws SQLException {
+        at(columnIndex);
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public InputStream getAsciiStream(String columnLabel) throws SQLException {
+        return getAsciiStream(findColumn(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public InputStream getAsciiStream(int columnIndex) throws SQLException {
+        at(columnIndex);
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Deprecated
+    public BigDecimal getBigDecimal(String columnLabel, int scale)
+        throws SQLException {
+        return getBigDecimal(findColumn(columnLabel), scale);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public BigDecimal getBigDecimal(String columnLabel) throws SQLException {
+        return getBigDecimal(findColumn(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Deprecated
+    public BigDecimal getBigDecimal(int columnIndex, int scale)
+        throws SQLException {
+        at(columnIndex);
+        return BigDecimal.valueOf(row).setScale(scale);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public BigDecimal getBigDecimal(int columnIndex) throws SQLException {
+        at(columnIndex);
+        return BigDecimal.valueOf(row);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public InputStream getBinaryStream(String columnLabel) throws SQLException {
+        return getBinaryStream(findColumn(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public InputStream getBinaryStream(int columnIndex) throws SQLException {
+        at(columnIndex);
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Blob getBlob(String columnLabel) throws SQLException {
+        return getBlob(findColumn(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Blob getBlob(int columnIndex) throws SQLException {
+        at(columnIndex);
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean getBoolean(String columnLabel) throws SQLException {
+        return getBoolean(findColumn(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean getBoolean(int columnIndex) throws SQLException {
+        at(columnIndex);
+        return (row & 1) == 1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public byte getByte(String columnLabel) throws SQLException {
+        return getByte(findColumn(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public byte getByte(int columnIndex) throws SQLException {
+        at(columnIndex);
+        return (byte) row;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public byte[] getBytes(String columnLabel) throws SQLException {
+        return getBytes(findColumn(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public byte[] getBytes(int columnIndex) throws SQLException {
+        at(columnIndex);
+        return BYTES;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Reader getCharacterStream(String columnLabel) throws SQLException {
+        return getCharacterStream(findColumn(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Reader getCharacterStream(int columnIndex) throws SQLException {
+        at(columnIndex);
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Clob getClob(String columnLabel) throws SQLException {
+        return getClob(findColumn(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Clob getClob(int columnIndex) throws SQLException {
+        at(columnIndex);
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getConcurrency() throws SQLException {
+        return CONCUR_READ_ONLY;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getCursorName() throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Date getDate(String columnLabel, Calendar cal) throws SQLException {
+        return getDate(findColumn(columnLabel), cal);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Date getDate(String columnLabel) throws SQLException {
+        return getDate(findColumn(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Date getDate(int columnIndex, Calendar cal) throws SQLException {
+        at(columnIndex);
+        return DATE;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Date getDate(int columnIndex) throws SQLException {
+        at(columnIndex);
+        return DATE;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double getDouble(String columnLabel) throws SQLException {
+        return getDouble(findColumn(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double getDouble(int columnIndex) throws SQLException {
+        at(columnIndex);
+        return row;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getFetchDirection() throws SQLException {
+        return FETCH_FORWARD;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getFetchSize() throws SQLException {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public float getFloat(String columnLabel) throws SQLException {
+        return getFloat(findColumn(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public float getFloat(int columnIndex) throws SQLException {
+        at(columnIndex);
+        return row;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getHoldability() throws SQLException {
+        return CLOSE_CURSORS_AT_COMMIT;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getInt(String columnLabel) throws SQLException {
+        return getInt(findColumn(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getInt(int columnIndex) throws SQLException {
+        at(columnIndex);
+        return row;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getLong(String columnLabel) throws SQLException {
+        return getLong(findColumn(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getLong(int columnIndex) throws SQLException {
+        at(columnIndex);
+        return row;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public ResultSetMetaData getMetaData() throws SQLException {
+        return settings.getMetaData();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Reader getNCharacterStream(String columnLabel) throws SQLException {
+        return getNCharacterStream(findColumn(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Reader getNCharacterStream(int columnIndex) throws SQLException {
+        at(columnIndex);
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public NClob getNClob(String columnLabel) throws SQLException {
+        return getNClob(findColumn(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public NClob getNClob(int columnIndex) throws SQLException {
+        at(columnIndex);
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getNString(String columnLabel) throws SQLException {
+        return getNString(findColumn(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getNString(int columnIndex) throws SQLException {
+        return text(at(columnIndex));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public <T> T getObject(String columnLabel, Class<T> type)
+        throws SQLException {
+        return getObject(findColumn(columnLabel), type);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Object getObject(String columnLabel, Map<String, Class<?>> map)
+        throws SQLException {
+        return getObject(findColumn(columnLabel), map);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Object getObject(String columnLabel) throws SQLException {
+        return getObject(findColumn(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public <T> T getObject(int columnIndex, Class<T> type) throws SQLException {
+        return type.cast(getObject(columnIndex));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Object getObject(int columnIndex, Map<String, Class<?>> map)
+        throws SQLException {
+        return getObject(columnIndex);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Object getObject(int columnIndex) throws SQLException {
+        return object(at(columnIndex));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Ref getRef(String columnLabel) throws SQLException {
+        return getRef(findColumn(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Ref getRef(int columnIndex) throws SQLException {
+        at(columnIndex);
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getRow() throws SQLException {
+        return (row <= rows ? row : 0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public RowId getRowId(String columnLabel) throws SQLException {
+        return getRowId(findColumn(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public RowId getRowId(int columnIndex) throws SQLException {
+        at(columnIndex);
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public SQLXML getSQLXML(String columnLabel) throws SQLException {
+        return getSQLXML(findColumn(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public SQLXML getSQLXML(int columnIndex) throws SQLException {
+        at(columnIndex);
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public short getShort(String columnLabel) throws SQLException {
+        return getShort(findColumn(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public short getShort(int columnIndex) throws SQLException {
+        at(columnIndex);
+        return (short) row;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Statement getStatement() throws SQLException {
+        return stmt;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getString(String columnLabel) throws SQLException {
+        return getString(findColumn(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getString(int columnIndex) throws SQLException {
+        return text(at(columnIndex));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Time getTime(String columnLabel, Calendar cal) throws SQLException {
+        return getTime(findColumn(columnLabel), cal);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Time getTime(String columnLabel) throws SQLException {
+        return getTime(findColumn(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Time getTime(int columnIndex, Calendar cal) throws SQLException {
+        at(columnIndex);
+        return TIME;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Time getTime(int columnIndex) throws SQLException {
+        at(columnIndex);
+        return TIME;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Timestamp getTimestamp(String columnLabel, Calendar cal)
+        throws SQLException {
+        return getTimestamp(findColumn(columnLabel), cal);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Timestamp getTimestamp(String columnLabel) throws SQLException {
+        return getTimestamp(findColumn(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Timestamp getTimestamp(int columnIndex, Calendar cal)
+        throws SQLException {
+        at(columnIndex);
+        return TIMESTAMP;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Timestamp getTimestamp(int columnIndex) throws SQLException {
+        at(columnIndex);
+        return TIMESTAMP;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getType() throws SQLException {
+        return TYPE_FORWARD_ONLY;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public URL getURL(String columnLabel) throws SQLException {
+        return getURL(findColumn(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public URL getURL(int columnIndex) throws SQLException {
+        at(columnIndex);
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Deprecated
+    public InputStream getUnicodeStream(String columnLabel)
+        throws SQLException {
+        return getUnicodeStream(findColumn(columnLabel));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Deprecated
+    public InputStream getUnicodeStream(int columnIndex) throws SQLException {
+        at(columnIndex);
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public SQLWarning getWarnings() throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void insertRow() throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isAfterLast() throws SQLException {
+        return row > rows && rows > 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isBeforeFirst() throws SQLException {
+        return row == 0 && rows > 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isClosed() throws SQLException {
+        return closed;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isFirst() throws SQLException {
+        return row == 1 && rows > 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isLast() throws SQLException {
+        return row == rows && rows > 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean last() throws SQLException {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void moveToCurrentRow() throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void moveToInsertRow() throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean next() throws SQLException {
+        if (row < rows) {
+            row++;
+            return true;
+        }
+        row = rows + 1;
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean previous() throws SQLException {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void refreshRow() throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean relative(int rows) throws SQLException {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean rowDeleted() throws SQLException {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean rowInserted() throws SQLException {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean rowUpdated() throws SQLException {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setFetchDirection(int direction) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setFetchSize(int rows) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateArray(String columnLabel, Array x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateArray(int columnIndex, Array x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateAsciiStream(String columnLabel, InputStream x, int length)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateAsciiStream(String columnLabel, InputStream x,
+                                  long length)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateAsciiStream(String columnLabel, InputStream x)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateAsciiStream(int columnIndex, InputStream x, int length)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateAsciiStream(int columnIndex, InputStream x, long length)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateAsciiStream(int columnIndex, InputStream x)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateBigDecimal(String columnLabel, BigDecimal x)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateBigDecimal(int columnIndex, BigDecimal x)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateBinaryStream(String columnLabel, InputStream x,
+                                   int length)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateBinaryStream(String columnLabel, InputStream x,
+                                   long length)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateBinaryStream(String columnLabel, InputStream x)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateBinaryStream(int columnIndex, InputStream x, int length)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateBinaryStream(int columnIndex, InputStream x, long length)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateBinaryStream(int columnIndex, InputStream x)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateBlob(String columnLabel, InputStream x, long length)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateBlob(String columnLabel, InputStream x)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateBlob(String columnLabel, Blob x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateBlob(int columnIndex, InputStream x, long length)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateBlob(int columnIndex, InputStream x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateBlob(int columnIndex, Blob x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateBoolean(String columnLabel, boolean x)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateBoolean(int columnIndex, boolean x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateByte(String columnLabel, byte x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateByte(int columnIndex, byte x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateBytes(String columnLabel, byte[] x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateBytes(int columnIndex, byte[] x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateCharacterStream(String columnLabel, Reader x, int length)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateCharacterStream(String columnLabel, Reader x, long length)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateCharacterStream(String columnLabel, Reader x)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateCharacterStream(int columnIndex, Reader x, int length)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateCharacterStream(int columnIndex, Reader x, long length)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateCharacterStream(int columnIndex, Reader x)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateClob(String columnLabel, Reader x, long length)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateClob(String columnLabel, Reader x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateClob(String columnLabel, Clob x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateClob(int columnIndex, Reader x, long length)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateClob(int columnIndex, Reader x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateClob(int columnIndex, Clob x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateDate(String columnLabel, Date x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateDate(int columnIndex, Date x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateDouble(String columnLabel, double x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateDouble(int columnIndex, double x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateFloat(String columnLabel, float x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateFloat(int columnIndex, float x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateInt(String columnLabel, int x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateInt(int columnIndex, int x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateLong(String columnLabel, long x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateLong(int columnIndex, long x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateNCharacterStream(String columnLabel, Reader x,
+                                       long length)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateNCharacterStream(String columnLabel, Reader x)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateNCharacterStream(int columnIndex, Reader x, long length)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateNCharacterStream(int columnIndex, Reader x)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateNClob(String columnLabel, Reader x, long length)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateNClob(String columnLabel, Reader x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateNClob(String columnLabel, NClob x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateNClob(int columnIndex, Reader x, long length)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateNClob(int columnIndex, Reader x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateNClob(int columnIndex, NClob x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateNString(String columnLabel, String x)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateNString(int columnIndex, String x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateNull(String columnLabel) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateNull(int columnIndex) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateObject(String columnLabel, Object x, int scaleOrLength)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateObject(String columnLabel, Object x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateObject(int columnIndex, Object x, int scaleOrLength)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateObject(int columnIndex, Object x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateRef(String columnLabel, Ref x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateRef(int columnIndex, Ref x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateRow() throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateRowId(String columnLabel, RowId x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateRowId(int columnIndex, RowId x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateSQLXML(String columnLabel, SQLXML x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateSQLXML(int columnIndex, SQLXML x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateShort(String columnLabel, short x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateShort(int columnIndex, short x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateString(String columnLabel, String x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateString(int columnIndex, String x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateTime(String columnLabel, Time x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateTime(int columnIndex, Time x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateTimestamp(String columnLabel, Timestamp x)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateTimestamp(int columnIndex, Timestamp x)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean wasNull() throws SQLException {
+        return false;
+    }
+}
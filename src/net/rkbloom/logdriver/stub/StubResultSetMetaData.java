@@ -0,0 +1,192 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.stub;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+/**
+ * StubResultSetMetaData describes the columns of a {@link StubResultSet}.
+ * @version $Rev$
+ */
+public class StubResultSetMetaData implements ResultSetMetaData {
+
+    private final StubSettings settings;
+
+    StubResultSetMetaData(StubSettings s) {
+        settings = s;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getCatalogName(int column) throws SQLException {
+        return "";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getColumnClassName(int column) throws SQLException {
+        return settings.getClassName(column);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getColumnCount() throws SQLException {
+        return settings.getColumnCount();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getColumnDisplaySize(int column) throws SQLException {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getColumnLabel(int column) throws SQLException {
+        return settings.getName(column);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getColumnName(int column) throws SQLException {
+        return settings.getName(column);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getColumnType(int column) throws SQLException {
+        return settings.getType(column);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getColumnTypeName(int column) throws SQLException {
+        return settings.getTypeName(column);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getPrecision(int column) throws SQLException {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getScale(int column) throws SQLException {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getSchemaName(int column) throws SQLException {
+        return "";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getTableName(int column) throws SQLException {
+        return "";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isAutoIncrement(int column) throws SQLException {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isCaseSensitive(int column) throws SQLException {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isCurrency(int column) throws SQLException {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isDefinitelyWritable(int column) throws SQLException {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int isNullable(int column) throws SQLException {
+        return columnNullableUnknown;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isReadOnly(int column) throws SQLException {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isSearchable(int column) throws SQLException {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isSigned(int column) throws SQLException {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isWritable(int column) throws SQLException {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return null;
+    }
+}
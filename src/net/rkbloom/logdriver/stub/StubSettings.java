@@ -0,0 +1,246 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.stub;
+
+import org.apache.log4j.Logger;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Properties;
+
+/**
+ * StubSettings say what the connections of a {@link StubDriver} return:
+ * how many rows a query has, the types of its columns and how long it
+ * takes.  They are given after <code>jdbc:stub:</code> in the URL, as
+ * <code>name=value</code> pairs separated by ';', or as connection
+ * properties with a <code>stub.</code> prefix; the URL wins.
+ * <pre>
+ * jdbc:stub:rows=100;columns=bigint,varchar,timestamp;latencyMicros=250
+ * </pre>
+ * Column types are the names of the constants in java.sql.Types, in any
+ * case, and the columns are named C1, C2 and so on.  The defaults are ten
+ * rows of a BIGINT and a VARCHAR, returned at once.
+ * @version $Rev$
+ */
+public final class StubSettings {
+
+    /** How many rows each query returns. */
+    public static final String ROWS = "rows";
+    /** The java.sql.Types of the columns, separated by commas. */
+    public static final String COLUMNS = "columns";
+    /** How long each query takes, in microseconds. */
+    public static final String LATENCY_MICROS = "latencyMicros";
+    /** The prefix of the settings among the connection properties. */
+    public static final String PROPERTY_PREFIX = "stub.";
+
+    private static Logger log = Logger.getLogger(StubSettings.class);
+
+    private final int rows;
+    private final int[] types;
+    private final String[] typeNames;
+    private final long latencyNanos;
+    private final StubResultSetMetaData metaData;
+
+    /**
+     * @param settings the part of the URL after <code>jdbc:stub:</code>.
+     * @param info the connection properties, may be null.
+     */
+    StubSettings(String settings, Properties info) {
+        Properties p = new Properties();
+        if (info != null) {
+            for (String key : info.stringPropertyNames()) {
+                if (key.startsWith(PROPERTY_PREFIX)) {
+                    p.setProperty(key.substring(PROPERTY_PREFIX.length()),
+                                  info.getProperty(key));
+                }
+            }
+        }
+        for (String option : settings.split(";")) {
+            int eq = option.indexOf('=');
+            if (eq > 0) {
+                p.setProperty(option.substring(0, eq).trim(),
+                              option.substring(eq + 1).trim());
+            }
+        }
+        rows = (int) Math.max(getLong(p, ROWS, 10), 0);
+        latencyNanos = Math.max(getLong(p, LATENCY_MICROS, 0), 0) * 1000;
+        String[] names = p.getProperty(COLUMNS, "bigint,varchar").split(",");
+        types = new int[names.length];
+        typeNames = new String[names.length];
+        for (int i = 0; i < names.length; i++) {
+            typeNames[i] = names[i].trim().toUpperCase();
+            types[i] = typeOf(typeNames[i]);
+        }
+        metaData = new StubResultSetMetaData(this);
+    }
+
+    private static long getLong(Properties p, String key, long def) {
+        String v = p.getProperty(key);
+        if (v == null) {
+            return def;
+        }
+        try {
+            return Long.parseLong(v);
+        }
+        catch (NumberFormatException e) {
+            log.warn("Ignoring bad value for " + key + ": " + v);
+            return def;
+        }
+    }
+
+    private static int typeOf(String name) {
+        try {
+            Field f = Types.class.getField(name);
+            if (Modifier.isStatic(f.getModifiers())
+                && f.getType() == int.class) {
+                return f.getInt(null);
+            }
+        }
+        catch (NoSuchFieldException e) {
+            // falls through to the warning
+        }
+        catch (IllegalAccessException e) {
+            // falls through to the warning
+        }
+        log.warn("Unknown column type " + name + ", using VARCHAR");
+        return Types.VARCHAR;
+    }
+
+    /**
+     * @return how many rows each query returns.
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * @return how long each query takes, in nanoseconds.
+     */
+    public long getLatencyNanos() {
+        return latencyNanos;
+    }
+
+    /**
+     * @return how many columns each query returns.
+     */
+    public int getColumnCount() {
+        return types.length;
+    }
+
+    /**
+     * @param column the column, from 1.
+     * @return its java.sql.Types.
+     * @throws SQLException if there is no such column.
+     */
+    public int getType(int column) throws SQLException {
+        check(column);
+        return types[column - 1];
+    }
+
+    /**
+     * @param column the column, from 1.
+     * @return the name of its type, as given.
+     * @throws SQLException if there is no such column.
+     */
+    public String getTypeName(int column) throws SQLException {
+        check(column);
+        return typeNames[column - 1];
+    }
+
+    /**
+     * @param column the column, from 1.
+     * @return its name.
+     * @throws SQLException if there is no such column.
+     */
+    public String getName(int column) throws SQLException {
+        check(column);
+        return "C" + column;
+    }
+
+    /**
+     * @param column the column, from 1.
+     * @return the class of what getObject() returns for it.
+     * @throws SQLException if there is no such column.
+     */
+    public String getClassName(int column) throws SQLException {
+        switch (getType(column)) {
+            case Types.BIGINT:
+                return Long.class.getName();
+            case Types.INTEGER:
+            case Types.SMALLINT:
+            case Types.TINYINT:
+                return Integer.class.getName();
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                return BigDecimal.class.getName();
+            case Types.DOUBLE:
+            case Types.FLOAT:
+                return Double.class.getName();
+            case Types.REAL:
+                return Float.class.getName();
+            case Types.BIT:
+            case Types.BOOLEAN:
+                return Boolean.class.getName();
+            case Types.DATE:
+                return java.sql.Date.class.getName();
+            case Types.TIME:
+                return java.sql.Time.class.getName();
+            case Types.TIMESTAMP:
+                return java.sql.Timestamp.class.getName();
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+                return byte[].class.getName();
+            default:
+                return String.class.getName();
+        }
+    }
+
+    /**
+     * @param label a column name, in any case.
+     * @return its number, from 1.
+     * @throws SQLException if there is no such column.
+     */
+    public int findColumn(String label) throws SQLException {
+        if (label.length() > 1
+            && (label.charAt(0) == 'C' || label.charAt(0) == 'c')) {
+            try {
+                int column = Integer.parseInt(label.substring(1));
+                check(column);
+                return column;
+            }
+            catch (NumberFormatException e) {
+                // falls through to the exception
+            }
+        }
+        throw new SQLException("No column named " + label);
+    }
+
+    /**
+     * @return the metadata of every result set, shared between them.
+     */
+    public StubResultSetMetaData getMetaData() {
+        return metaData;
+    }
+
+    private void check(int column) throws SQLException {
+        if (column < 1 || column > types.length) {
+            throw new SQLException("No column " + column);
+        }
+    }
+}
@@ -0,0 +1,1680 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.stub;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.NClob;
+import java.sql.ParameterMetaData;
+import java.sql.Ref;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.RowId;
+import java.sql.SQLException;
+import java.sql.SQLType;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+
+
+/**
+ * StubStatement is a CallableStatement that does nothing and returns right
+ * away, so that a benchmark only measures the cost of the code around it.
+ * SQL that starts with SELECT or WITH is a query and returns a
+ * {@link StubResultSet} after the latency in the {@link StubSettings};
+ * anything else updates one row.  A batch updates one row per statement
+ * in it.  Bind parameters are ignored.
+ * @version $Rev$
+ */
+public class StubStatement implements CallableStatement {
+
+    private final Connection conn;
+    private final StubSettings settings;
+    private final String sql;
+    private ResultSet results;
+    private int updateCount = -1;
+    private int batch;
+    private boolean closed;
+
+    StubStatement(Connection c, StubSettings s, String prepared) {
+        conn = c;
+        settings = s;
+        sql = prepared;
+    }
+
+    private boolean run(String executed) throws SQLException {
+        if (isQuery(executed)) {
+            query();
+            return true;
+        }
+        update();
+        return false;
+    }
+
+    private ResultSet query() throws SQLException {
+        long latency = settings.getLatencyNanos();
+        if (latency > 0) {
+            long end = System.nanoTime() + latency;
+            long left;
+            while ((left = end - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(left);
+            }
+        }
+        updateCount = -1;
+        results = new StubResultSet(this, settings);
+        return results;
+    }
+
+    private int update() {
+        results = null;
+        updateCount = 1;
+        return 1;
+    }
+
+    private static boolean isQuery(String s) {
+        if (s == null) {
+            return false;
+        }
+        int i = 0;
+        while (i < s.length()
+               && (Character.isWhitespace(s.charAt(i)) || s.charAt(i) == '(')) {
+            i++;
+        }
+        return s.regionMatches(true, i, "select", 0, 6)
+            || s.regionMatches(true, i, "with", 0, 4);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void addBatch() throws SQLException {
+        batch++;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void addBatch(String sql) throws SQLException {
+        batch++;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void cancel() throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void clearBatch() throws SQLException {
+        batch = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void clearParameters() throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void clearWarnings() throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void close() throws SQLException {
+        closed = true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void closeOnCompletion() throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean execute() throws SQLException {
+        return run(sql);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean execute(String sql) throws SQLException {
+        return run(sql);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean execute(String sql, int[] columnIndexes)
+        throws SQLException {
+        return run(sql);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean execute(String sql, String[] columnNames)
+        throws SQLException {
+        return run(sql);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean execute(String sql, int autoGeneratedKeys)
+        throws SQLException {
+        return run(sql);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int[] executeBatch() throws SQLException {
+        int[] counts = new int[batch];
+        Arrays.fill(counts, 1);
+        batch = 0;
+        return counts;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long[] executeLargeBatch() throws SQLException {
+        long[] counts = new long[batch];
+        Arrays.fill(counts, 1);
+        batch = 0;
+        return counts;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public ResultSet executeQuery() throws SQLException {
+        return query();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public ResultSet executeQuery(String sql) throws SQLException {
+        return query();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int executeUpdate() throws SQLException {
+        return update();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int executeUpdate(String sql) throws SQLException {
+        return update();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int executeUpdate(String sql, int[] columnIndexes)
+        throws SQLException {
+        return update();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int executeUpdate(String sql, String[] columnNames)
+        throws SQLException {
+        return update();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int executeUpdate(String sql, int autoGeneratedKeys)
+        throws SQLException {
+        return update();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long executeLargeUpdate() throws SQLException {
+        return update();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long executeLargeUpdate(String sql) throws SQLException {
+        return update();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long executeLargeUpdate(String sql, int[] columnIndexes)
+        throws SQLException {
+        return update();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long executeLargeUpdate(String sql, String[] columnNames)
+        throws SQLException {
+        return update();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long executeLargeUpdate(String sql, int autoGeneratedKeys)
+        throws SQLException {
+        return update();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Array getArray(String name) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Array getArray(int i) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public BigDecimal getBigDecimal(String name) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public BigDecimal getBigDecimal(int i) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @deprecated
+     */
+    @Deprecated
+    public BigDecimal getBigDecimal(int i, int scale) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Blob getBlob(String name) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Blob getBlob(int i) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean getBoolean(String name) throws SQLException {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean getBoolean(int i) throws SQLException {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public byte getByte(String name) throws SQLException {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public byte getByte(int i) throws SQLException {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public byte[] getBytes(String name) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public byte[] getBytes(int i) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Reader getCharacterStream(String name) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Reader getCharacterStream(int i) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Clob getClob(String name) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Clob getClob(int i) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Connection getConnection() throws SQLException {
+        return conn;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Date getDate(String name) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Date getDate(int i) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Date getDate(String name, Calendar cal) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Date getDate(int i, Calendar cal) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double getDouble(String name) throws SQLException {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double getDouble(int i) throws SQLException {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getFetchDirection() throws SQLException {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getFetchSize() throws SQLException {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public float getFloat(String name) throws SQLException {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public float getFloat(int i) throws SQLException {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public ResultSet getGeneratedKeys() throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getInt(String name) throws SQLException {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getInt(int i) throws SQLException {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getLong(String name) throws SQLException {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getLong(int i) throws SQLException {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getMaxFieldSize() throws SQLException {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getMaxRows() throws SQLException {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getLargeMaxRows() throws SQLException {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public ResultSetMetaData getMetaData() throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean getMoreResults() throws SQLException {
+        results = null;
+        updateCount = -1;
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean getMoreResults(int i) throws SQLException {
+        results = null;
+        updateCount = -1;
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Reader getNCharacterStream(String name) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Reader getNCharacterStream(int i) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public NClob getNClob(String name) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public NClob getNClob(int i) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getNString(String name) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getNString(int i) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Object getObject(String name) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Object getObject(int i) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public <T> T getObject(String name, Class<T> type) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Object getObject(String name, Map<String, Class<?>> map)
+        throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public <T> T getObject(int i, Class<T> type) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Object getObject(int i, Map<String, Class<?>> map)
+        throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public ParameterMetaData getParameterMetaData() throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getQueryTimeout() throws SQLException {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Ref getRef(String name) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Ref getRef(int i) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public ResultSet getResultSet() throws SQLException {
+        return results;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getResultSetConcurrency() throws SQLException {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getResultSetHoldability() throws SQLException {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getResultSetType() throws SQLException {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public RowId getRowId(String name) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public RowId getRowId(int i) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public SQLXML getSQLXML(String name) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public SQLXML getSQLXML(int i) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public short getShort(String name) throws SQLException {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public short getShort(int i) throws SQLException {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getString(String name) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getString(int i) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Time getTime(String name) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Time getTime(int i) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Time getTime(String name, Calendar cal) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Time getTime(int i, Calendar cal) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Timestamp getTimestamp(String name) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Timestamp getTimestamp(int i) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Timestamp getTimestamp(String name, Calendar cal)
+        throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Timestamp getTimestamp(int i, Calendar cal) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public URL getURL(String name) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public URL getURL(int i) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getUpdateCount() throws SQLException {
+        return updateCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getLargeUpdateCount() throws SQLException {
+        return updateCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public SQLWarning getWarnings() throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isCloseOnCompletion() throws SQLException {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isClosed() throws SQLException {
+        return closed;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isPoolable() throws SQLException {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void registerOutParameter(String name, int sqlType)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void registerOutParameter(int i, int sqlType) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void registerOutParameter(int i, SQLType sqlType)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void registerOutParameter(int i, SQLType sqlType, int scale)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void registerOutParameter(int i, SQLType sqlType,
+            String typeName) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void registerOutParameter(String name, SQLType sqlType)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void registerOutParameter(String name, SQLType sqlType, int scale)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void registerOutParameter(String name, SQLType sqlType,
+            String typeName) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void registerOutParameter(String name, int sqlType, String typeName)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void registerOutParameter(String name, int sqlType, int scale)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void registerOutParameter(int i, int sqlType, String typeName)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void registerOutParameter(int i, int sqlType, int scale)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setArray(int i, Array x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setAsciiStream(String name, InputStream input)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setAsciiStream(int i, InputStream input) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setAsciiStream(String name, InputStream input, int length)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setAsciiStream(String name, InputStream input, long length)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setAsciiStream(int i, InputStream input, int length)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setAsciiStream(int i, InputStream input, long length)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setBigDecimal(String name, BigDecimal x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setBigDecimal(int i, BigDecimal x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setBinaryStream(String name, InputStream input)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setBinaryStream(int i, InputStream input) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setBinaryStream(String name, InputStream input, int length)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setBinaryStream(String name, InputStream input, long length)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setBinaryStream(int i, InputStream input, int length)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setBinaryStream(int i, InputStream input, long length)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setBlob(String name, InputStream input) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setBlob(String name, Blob x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setBlob(int i, InputStream input) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setBlob(int i, Blob x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setBlob(String name, InputStream input, long length)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setBlob(int i, InputStream input, long length)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setBoolean(String name, boolean x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setBoolean(int i, boolean x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setByte(String name, byte x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setByte(int i, byte x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setBytes(String name, byte[] x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setBytes(int i, byte[] x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setCharacterStream(String name, Reader reader)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setCharacterStream(int i, Reader reader) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setCharacterStream(String name, Reader reader, int length)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setCharacterStream(String name, Reader reader, long length)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setCharacterStream(int i, Reader reader, int length)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setCharacterStream(int i, Reader reader, long length)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setClob(String name, Reader reader) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setClob(String name, Clob x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setClob(int i, Reader reader) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setClob(int i, Clob x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setClob(String name, Reader reader, long length)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setClob(int i, Reader reader, long length) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setCursorName(String name) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setDate(String name, Date x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setDate(int i, Date x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setDate(String name, Date x, Calendar cal) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setDate(int i, Date x, Calendar cal) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setDouble(String name, double x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setDouble(int i, double x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setEscapeProcessing(boolean escapeProcessing)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setFetchDirection(int i) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setFetchSize(int i) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setFloat(String name, float x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setFloat(int i, float x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setInt(String name, int x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setInt(int i, int x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setLong(String name, long x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setLong(int i, long x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setMaxFieldSize(int i) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setMaxRows(int i) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setLargeMaxRows(long max) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setNCharacterStream(String name, Reader reader)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setNCharacterStream(int i, Reader reader) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setNCharacterStream(String name, Reader reader, long length)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setNCharacterStream(int i, Reader reader, long length)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setNClob(String name, Reader reader) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setNClob(String name, NClob x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setNClob(int i, Reader reader) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setNClob(int i, NClob x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setNClob(String name, Reader reader, long length)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setNClob(int i, Reader reader, long length)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setNString(String name, String x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setNString(int i, String x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setNull(String name, int sqlType) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setNull(int i, int sqlType) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setNull(String name, int sqlType, String typeName)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setNull(int i, int sqlType, String typeName)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setObject(String name, Object x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setObject(int i, Object x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setObject(String name, Object x, int targetSqlType)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setObject(int i, Object x, int targetSqlType)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setObject(String name, Object x, int targetSqlType, int scale)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setObject(int i, Object x, int targetSqlType, int scale)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setObject(String name, Object x, SQLType targetSqlType)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setObject(int i, Object x, SQLType targetSqlType)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setObject(String name, Object x, SQLType targetSqlType,
+            int scaleOrLength) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setObject(int i, Object x, SQLType targetSqlType,
+            int scaleOrLength) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setPoolable(boolean poolable) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setQueryTimeout(int i) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setRef(int i, Ref x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setRowId(String name, RowId x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setRowId(int i, RowId x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setSQLXML(String name, SQLXML x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setSQLXML(int i, SQLXML x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setShort(String name, short x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setShort(int i, short x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setString(String name, String x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setString(int i, String x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setTime(String name, Time x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setTime(int i, Time x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setTime(String name, Time x, Calendar cal) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setTime(int i, Time x, Calendar cal) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setTimestamp(String name, Timestamp x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setTimestamp(int i, Timestamp x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setTimestamp(String name, Timestamp x, Calendar cal)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setTimestamp(int i, Timestamp x, Calendar cal)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setURL(String name, URL x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setURL(int i, URL x) throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     * @deprecated
+     */
+    @Deprecated
+    public void setUnicodeStream(int i, InputStream input, int length)
+        throws SQLException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean wasNull() throws SQLException {
+        return false;
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.util;
+
+import java.util.Arrays;
+
+/**
+ * BatchBuffer records the rows of a JDBC batch for the summary that is
+ * logged by executeBatch.  Every row is counted, but only the first
+ * <code>maxRows</code> are kept.  The kept rows are stored column by column
+ * in the same typed form as {@link BindParams}, so a row costs a few array
+ * stores and no boxing.  A buffer for a plain Statement batch keeps the SQL
+ * of each row instead.
+ * @version $Rev$
+ */
+public final class BatchBuffer {
+
+    private final int columns;
+    private final int maxRows;
+    private int rows;
+    private int stored;
+
+    // [column][row]; column 0 is unused, like BindParams slot 0
+    private byte[][] kinds;
+    private long[][] prims;
+    private Object[][] refs;
+    private String[] sqls;
+
+    /**
+     * Creates a buffer for PreparedStatement rows.
+     * @param cols the number of bind parameters per row.
+     * @param max the most rows to keep.
+     */
+    public BatchBuffer(int cols, int max) {
+        columns = cols;
+        maxRows = Math.max(max, 0);
+        kinds = new byte[cols + 1][];
+        prims = new long[cols + 1][];
+        refs = new Object[cols + 1][];
+    }
+
+    /**
+     * Creates a buffer for Statement rows.
+     * @param max the most rows to keep.
+     */
+    public BatchBuffer(int max) {
+        this(0, max);
+    }
+
+    /**
+     * Adds a row of bind parameters.
+     * @param binds the parameters of the row; they are copied.
+     */
+    public void addRow(BindParams binds) {
+        if (stored < maxRows) {
+            ensureCapacity(stored + 1);
+            int last = Math.min(columns, binds.getHighestIndex());
+            for (int c = 1; c <= last; c++) {
+                byte kind = binds.kind(c);
+                kinds[c][stored] = kind;
+                prims[c][stored] = binds.prim(c);
+                Object ref = binds.ref(c);
+                if (ref != null) {
+                    if (refs[c] == null) {
+                        refs[c] = new Object[kinds[c].length];
+                    }
+                    refs[c][stored] = ref;
+                }
+            }
+            stored++;
+        }
+        rows++;
+    }
+
+    /**
+     * Adds a row of SQL, for a Statement batch.
+     * @param sql the SQL of the row.
+     */
+    public void addRow(String sql) {
+        if (stored < maxRows) {
+            if (sqls == null) {
+                sqls = new String[Math.min(maxRows, 16)];
+            }
+            else if (stored == sqls.length) {
+                sqls = Arrays.copyOf(sqls, Math.min(maxRows, stored * 2));
+            }
+            sqls[stored++] = sql;
+        }
+        rows++;
+    }
+
+    /**
+     * @return the number of rows added, kept or not.
+     */
+    public int getRowCount() {
+        return rows;
+    }
+
+    /**
+     * @return the number of rows kept.
+     */
+    public int getStoredRowCount() {
+        return stored;
+    }
+
+    /**
+     * Appends a kept row to the buffer, as <code>{1=foo, 2=42}</code> for
+     * bind parameters or <code>'insert ...'</code> for SQL.
+     * @param buf the buffer to append to.
+     * @param row the row, less than {@link #getStoredRowCount()}.
+     */
+    public void appendRow(StringBuilder buf, int row) {
+        if (sqls != null) {
+            buf.append('\'').append(sqls[row]).append('\'');
+            return;
+        }
+        buf.append('{');
+        boolean first = true;
+        for (int c = 1; c <= columns; c++) {
+            if (kinds[c] == null || kinds[c][row] == BindParams.UNSET) {
+                continue;
+            }
+            if (!first) {
+                buf.append(", ");
+            }
+            first = false;
+            buf.append(c).append('=');
+            BindParams.appendValue(buf, kinds[c][row], prims[c][row],
+                                   refs[c] == null ? null : refs[c][row],
+                                   "null");
+        }
+        buf.append('}');
+    }
+
+    /**
+     * Forgets every row.  The column arrays are kept for reuse.
+     */
+    public void clear() {
+        for (int c = 1; c <= columns; c++) {
+            if (kinds[c] != null) {
+                Arrays.fill(kinds[c], 0, stored, BindParams.UNSET);
+            }
+            if (refs[c] != null) {
+                Arrays.fill(refs[c], 0, stored, null);
+            }
+        }
+        if (sqls != null) {
+            Arrays.fill(sqls, 0, stored, null);
+        }
+        rows = 0;
+        stored = 0;
+    }
+
+    private void ensureCapacity(int size) {
+        for (int c = 1; c <= columns; c++) {
+            if (kinds[c] == null) {
+                int len = Math.min(maxRows, 16);
+                kinds[c] = new byte[len];
+                prims[c] = new long[len];
+            }
+            else if (kinds[c].length < size) {
+                int len = Math.min(maxRows, Math.max(size, kinds[c].length * 2));
+                kinds[c] = Arrays.copyOf(kinds[c], len);
+                prims[c] = Arrays.copyOf(prims[c], len);
+                if (refs[c] != null) {
+                    refs[c] = Arrays.copyOf(refs[c], len);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,427 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.util;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * BindParams holds the bind parameters of a statement in per-slot typed
+ * arrays.  Primitive values are kept in a <code>long[]</code> so that setting
+ * them never allocates; they are only boxed or turned into Strings when the
+ * parameters are rendered for a log record.  The slots are sized from the
+ * number of '?'s in the SQL and are reused across executions, just like the
+ * parameters of the underlying PreparedStatement.
+ * @version $Rev$
+ */
+public final class BindParams {
+
+    static final byte UNSET = 0;
+    private static final byte NULL = 1;
+    private static final byte BOOLEAN = 2;
+    private static final byte BYTE = 3;
+    private static final byte SHORT = 4;
+    private static final byte INT = 5;
+    private static final byte LONG = 6;
+    private static final byte FLOAT = 7;
+    private static final byte DOUBLE = 8;
+    private static final byte OBJECT = 9;
+
+    // slot 0 is unused, JDBC parameters are one-based.
+    private byte[] kinds;
+    private long[] prims;
+    private Object[] refs;
+    private int highest;
+    private Map<String, Object> named;
+
+    /**
+     * Creates a store with room for the given number of parameters.  The
+     * store grows if a higher index is ever set.
+     * @param size the number of parameters in the statement.
+     */
+    public BindParams(int size) {
+        int slots = Math.max(size, 0) + 1;
+        kinds = new byte[slots];
+        prims = new long[slots];
+        refs = new Object[slots];
+    }
+
+    /**
+     * Records a SQL NULL.
+     * @param i the one-based parameter index.
+     */
+    public void setNull(int i) {
+        if (slot(i)) {
+            kinds[i] = NULL;
+            refs[i] = null;
+        }
+    }
+
+    /**
+     * Records a boolean value.
+     * @param i the one-based parameter index.
+     * @param x the value.
+     */
+    public void setBoolean(int i, boolean x) {
+        setPrimitive(i, BOOLEAN, x ? 1L : 0L);
+    }
+
+    /**
+     * Records a byte value.
+     * @param i the one-based parameter index.
+     * @param x the value.
+     */
+    public void setByte(int i, byte x) {
+        setPrimitive(i, BYTE, x);
+    }
+
+    /**
+     * Records a short value.
+     * @param i the one-based parameter index.
+     * @param x the value.
+     */
+    public void setShort(int i, short x) {
+        setPrimitive(i, SHORT, x);
+    }
+
+    /**
+     * Records an int value.
+     * @param i the one-based parameter index.
+     * @param x the value.
+     */
+    public void setInt(int i, int x) {
+        setPrimitive(i, INT, x);
+    }
+
+    /**
+     * Records a long value.
+     * @param i the one-based parameter index.
+     * @param x the value.
+     */
+    public void setLong(int i, long x) {
+        setPrimitive(i, LONG, x);
+    }
+
+    /**
+     * Records a float value.
+     * @param i the one-based parameter index.
+     * @param x the value.
+     */
+    public void setFloat(int i, float x) {
+        setPrimitive(i, FLOAT, Float.floatToRawIntBits(x));
+    }
+
+    /**
+     * Records a double value.
+     * @param i the one-based parameter index.
+     * @param x the value.
+     */
+    public void setDouble(int i, double x) {
+        setPrimitive(i, DOUBLE, Double.doubleToRawLongBits(x));
+    }
+
+    /**
+     * Records an object value.  A null object is recorded as SQL NULL.
+     * @param i the one-based parameter index.
+     * @param x the value.
+     */
+    public void setObject(int i, Object x) {
+        if (slot(i)) {
+            kinds[i] = (x == null ? NULL : OBJECT);
+            refs[i] = x;
+        }
+    }
+
+    /**
+     * Records a named parameter, as used by CallableStatement.
+     * @param name the parameter name.
+     * @param x the value, may be null.
+     */
+    public void setObject(String name, Object x) {
+        if (named == null) {
+            named = new TreeMap<String, Object>();
+        }
+        named.put(name, x);
+    }
+
+    /**
+     * Copies the recorded values, so that a log record can be rendered later
+     * even if the statement has been given new parameters in the meantime.
+     * Primitives are copied as-is, nothing is boxed.
+     * @return a copy of this store.
+     */
+    public BindParams copy() {
+        BindParams c = new BindParams(highest);
+        System.arraycopy(kinds, 0, c.kinds, 0, highest + 1);
+        System.arraycopy(prims, 0, c.prims, 0, highest + 1);
+        System.arraycopy(refs, 0, c.refs, 0, highest + 1);
+        c.highest = highest;
+        if (named != null && !named.isEmpty()) {
+            c.named = new TreeMap<String, Object>(named);
+        }
+        return c;
+    }
+
+    /**
+     * Forgets all of the recorded values.  The slots are kept for reuse.
+     */
+    public void clear() {
+        if (highest > 0) {
+            Arrays.fill(kinds, 0, highest + 1, UNSET);
+            Arrays.fill(refs, 0, highest + 1, null);
+            highest = 0;
+        }
+        if (named != null) {
+            named.clear();
+        }
+    }
+
+    /**
+     * @return the highest parameter index that has been set.
+     */
+    public int getHighestIndex() {
+        return highest;
+    }
+
+    /**
+     * @param i the one-based parameter index.
+     * @return true if a value (including NULL) was set for the index.
+     */
+    public boolean isSet(int i) {
+        return i > 0 && i <= highest && kinds[i] != UNSET;
+    }
+
+    /**
+     * Returns the value of a parameter, boxing it if it is a primitive.
+     * Only intended for rendering.
+     * @param i the one-based parameter index.
+     * @return the value, or null if it is NULL or was never set.
+     */
+    public Object get(int i) {
+        if (!isSet(i)) {
+            return null;
+        }
+        long v = prims[i];
+        switch (kinds[i]) {
+            case BOOLEAN: return Boolean.valueOf(v != 0);
+            case BYTE: return Byte.valueOf((byte) v);
+            case SHORT: return Short.valueOf((short) v);
+            case INT: return Integer.valueOf((int) v);
+            case LONG: return Long.valueOf(v);
+            case FLOAT: return Float.valueOf(Float.intBitsToFloat((int) v));
+            case DOUBLE: return Double.valueOf(Double.longBitsToDouble(v));
+            default: return refs[i];
+        }
+    }
+
+    /**
+     * Appends the value of a parameter to the buffer without boxing
+     * primitives.
+     * @param buf the buffer to append to.
+     * @param i the one-based parameter index.
+     * @param nullText what to append for a NULL value.
+     */
+    public void appendValue(StringBuilder buf, int i, String nullText) {
+        appendValue(buf, kinds[i], prims[i], refs[i], nullText);
+    }
+
+    // shared with BatchBuffer, which stores the same three values per cell.
+    static void appendValue(StringBuilder buf, byte kind, long v, Object ref,
+                            String nullText) {
+        switch (kind) {
+            case BOOLEAN: buf.append(v != 0); break;
+            case BYTE:
+            case SHORT:
+            case INT:
+            case LONG: buf.append(v); break;
+            case FLOAT: buf.append(Float.intBitsToFloat((int) v)); break;
+            case DOUBLE: buf.append(Double.longBitsToDouble(v)); break;
+            case OBJECT: buf.append(ref); break;
+            default: buf.append(nullText); break;
+        }
+    }
+
+    /**
+     * Renders the parameters the way a sorted Map would, for example
+     * <code>{1=foo, 2=42}</code>.
+     * @return the parameters as a String.
+     */
+    public String toString() {
+        StringBuilder buf = new StringBuilder();
+        appendTo(buf);
+        return buf.toString();
+    }
+
+    /**
+     * Appends the parameters to the buffer in the same format as
+     * {@link #toString()}.
+     * @param buf the buffer to append to.
+     */
+    public void appendTo(StringBuilder buf) {
+        buf.append('{');
+        boolean first = true;
+        for (int i = 1; i <= highest; i++) {
+            if (kinds[i] == UNSET) {
+                continue;
+            }
+            if (!first) {
+                buf.append(", ");
+            }
+            first = false;
+            buf.append(i).append('=');
+            appendValue(buf, i, "null");
+        }
+        if (named != null) {
+            for (Map.Entry<String, Object> e : named.entrySet()) {
+                if (!first) {
+                    buf.append(", ");
+                }
+                first = false;
+                buf.append(e.getKey()).append('=').append(e.getValue());
+            }
+        }
+        buf.append('}');
+    }
+
+    /**
+     * Hands every parameter that is set to the visitor, in index order and
+     * then the named ones, without boxing primitives.
+     * @param v the visitor.
+     */
+    public void accept(Visitor v) {
+        for (int i = 1; i <= highest; i++) {
+            long p = prims[i];
+            switch (kinds[i]) {
+                case UNSET: break;
+                case NULL: v.visitNull(i); break;
+                case BOOLEAN: v.visitBoolean(i, p != 0); break;
+                case BYTE:
+                case SHORT:
+                case INT:
+                case LONG: v.visitLong(i, p); break;
+                case FLOAT:
+                    v.visitFloat(i, Float.intBitsToFloat((int) p));
+                    break;
+                case DOUBLE:
+                    v.visitDouble(i, Double.longBitsToDouble(p));
+                    break;
+                default: v.visitObject(i, refs[i]); break;
+            }
+        }
+        if (named != null) {
+            for (Map.Entry<String, Object> e : named.entrySet()) {
+                v.visitNamed(e.getKey(), e.getValue());
+            }
+        }
+    }
+
+    /**
+     * @return the number of parameters that are set.
+     */
+    public int getCount() {
+        int n = 0;
+        for (int i = 1; i <= highest; i++) {
+            if (kinds[i] != UNSET) {
+                n++;
+            }
+        }
+        return n + (named != null ? named.size() : 0);
+    }
+
+    /**
+     * Receives the parameters from {@link BindParams#accept(Visitor)}.
+     * Indexes are one-based; byte, short, int and long values all arrive
+     * as longs.
+     */
+    public interface Visitor {
+        /**
+         * @param i the parameter index.
+         */
+        void visitNull(int i);
+
+        /**
+         * @param i the parameter index.
+         * @param x the value.
+         */
+        void visitBoolean(int i, boolean x);
+
+        /**
+         * @param i the parameter index.
+         * @param x the value.
+         */
+        void visitLong(int i, long x);
+
+        /**
+         * @param i the parameter index.
+         * @param x the value.
+         */
+        void visitFloat(int i, float x);
+
+        /**
+         * @param i the parameter index.
+         * @param x the value.
+         */
+        void visitDouble(int i, double x);
+
+        /**
+         * @param i the parameter index.
+         * @param x the value, never null.
+         */
+        void visitObject(int i, Object x);
+
+        /**
+         * @param name the name of a CallableStatement parameter.
+         * @param x the value, or null.
+         */
+        void visitNamed(String name, Object x);
+    }
+
+    byte kind(int i) {
+        return kinds[i];
+    }
+
+    long prim(int i) {
+        return prims[i];
+    }
+
+    Object ref(int i) {
+        return refs[i];
+    }
+
+    private void setPrimitive(int i, byte kind, long bits) {
+        if (slot(i)) {
+            kinds[i] = kind;
+            prims[i] = bits;
+            refs[i] = null;
+        }
+    }
+
+    private boolean slot(int i) {
+        if (i < 1) {
+            return false;
+        }
+        if (i >= kinds.length) {
+            int len = Math.max(i + 1, kinds.length * 2);
+            kinds = Arrays.copyOf(kinds, len);
+            prims = Arrays.copyOf(prims, len);
+            refs = Arrays.copyOf(refs, len);
+        }
+        if (i > highest) {
+            highest = i;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * CountingInputStream hands the bytes of a stream parameter to the driver
+ * unchanged while recording the transfer in a {@link StreamStats}.  Nothing
+ * beyond the configured prefix is buffered.  Mark and reset are not
+ * supported, so that every byte is counted once.
+ * @version $Rev$
+ */
+public final class CountingInputStream extends InputStream {
+
+    private final InputStream in;
+    private final StreamStats stats;
+
+    /**
+     * @param s the stream given to the setter.
+     * @param st where to record the transfer.
+     */
+    public CountingInputStream(InputStream s, StreamStats st) {
+        in = s;
+        stats = st;
+    }
+
+    /**
+     * @return the statistics for this stream.
+     */
+    public StreamStats getStats() {
+        return stats;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int read() throws IOException {
+        stats.start();
+        int b = in.read();
+        if (b < 0) {
+            stats.finish(true);
+        }
+        else {
+            stats.count(b);
+        }
+        return b;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int read(byte[] b, int off, int len) throws IOException {
+        stats.start();
+        int n = in.read(b, off, len);
+        if (n > 0) {
+            stats.count(b, off, n);
+        }
+        stats.finish(n < 0);
+        return n;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long skip(long n) throws IOException {
+        return in.skip(n);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int available() throws IOException {
+        return in.available();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void close() throws IOException {
+        in.close();
+    }
+}
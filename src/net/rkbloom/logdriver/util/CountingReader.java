@@ -0,0 +1,101 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.util;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * CountingReader is the character counterpart of
+ * {@link CountingInputStream}.
+ * @version $Rev$
+ */
+public final class CountingReader extends Reader {
+
+    private final Reader in;
+    private final StreamStats stats;
+
+    /**
+     * @param r the reader given to the setter.
+     * @param st where to record the transfer.
+     */
+    public CountingReader(Reader r, StreamStats st) {
+        in = r;
+        stats = st;
+    }
+
+    /**
+     * @return the statistics for this reader.
+     */
+    public StreamStats getStats() {
+        return stats;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int read() throws IOException {
+        stats.start();
+        int c = in.read();
+        if (c < 0) {
+            stats.finish(true);
+        }
+        else {
+            stats.countChar(c);
+        }
+        return c;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        stats.start();
+        int n = in.read(cbuf, off, len);
+        if (n > 0) {
+            stats.count(cbuf, off, n);
+        }
+        stats.finish(n < 0);
+        return n;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long skip(long n) throws IOException {
+        return in.skip(n);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean ready() throws IOException {
+        return in.ready();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void close() throws IOException {
+        in.close();
+    }
+}
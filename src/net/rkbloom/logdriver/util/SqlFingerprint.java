@@ -0,0 +1,216 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.util;
+
+/**
+ * SqlFingerprint reduces a SQL string to the shape of the statement, so that
+ * executions that differ only in their values are counted together.  String
+ * and numeric literals and positional parameters become '?', a list of
+ * nothing but '?'s becomes <code>(?+)</code>, comments are dropped,
+ * whitespace is collapsed, operators are spaced the same way and
+ * everything outside quoted identifiers is lower-cased.  For example
+ * <pre>
+ *   SELECT * FROM orders  WHERE id IN (1, 2, 3) AND name = 'x' -- find
+ * </pre>
+ * becomes
+ * <pre>
+ *   select * from orders where id in (?+) and name = ?
+ * </pre>
+ * The lexing follows {@link SqlTemplate}, so quotes, comments and
+ * dollar-quoted strings are recognized in the same way.
+ * @version $Rev$
+ */
+public final class SqlFingerprint {
+
+    private static final String OPERATORS = "=<>!+-*/%|&^~:";
+
+    private SqlFingerprint() {
+    }
+
+    /**
+     * Computes the fingerprint of a SQL string.
+     * @param sql the SQL, may be null.
+     * @return the fingerprint, or null if the SQL was null.
+     */
+    public static String of(String sql) {
+        if (sql == null) {
+            return null;
+        }
+        int len = sql.length();
+        StringBuilder out = new StringBuilder(len);
+        boolean space = false;
+        int i = 0;
+        while (i < len) {
+            char ch = sql.charAt(i);
+            if (Character.isWhitespace(ch)) {
+                space = true;
+                i++;
+                continue;
+            }
+            if (ch == '-' && i + 1 < len && sql.charAt(i + 1) == '-') {
+                int eol = sql.indexOf('\n', i);
+                i = (eol < 0 ? len : eol + 1);
+                space = true;
+                continue;
+            }
+            if (ch == '/' && i + 1 < len && sql.charAt(i + 1) == '*') {
+                i = SqlTemplate.skipBlockComment(sql, i);
+                space = true;
+                continue;
+            }
+            if (space && out.length() > 0 && ch != ',' && ch != ')'
+                && out.charAt(out.length() - 1) != '(') {
+                out.append(' ');
+            }
+            space = false;
+            switch (ch) {
+                case '\'':
+                    i = SqlTemplate.skipQuoted(sql, i, ch);
+                    literal(out);
+                    break;
+                case '"':
+                case '`':
+                    int end = SqlTemplate.skipQuoted(sql, i, ch);
+                    out.append(sql, i, end);
+                    i = end;
+                    break;
+                case '$':
+                    end = SqlTemplate.skipDollarQuoted(sql, i);
+                    if (end > i + 1) {
+                        literal(out);
+                        i = end;
+                    }
+                    else if (i + 1 < len && Character.isDigit(sql.charAt(i + 1))
+                             && !identifierBefore(out)) {
+                        // PostgreSQL positional parameter
+                        i = skipDigits(sql, i + 1);
+                        literal(out);
+                    }
+                    else {
+                        out.append(ch);
+                        i++;
+                    }
+                    break;
+                case ',':
+                    out.append(ch);
+                    space = true;
+                    i++;
+                    break;
+                default:
+                    if ("nNeEbBxX".indexOf(ch) >= 0 && i + 1 < len
+                        && sql.charAt(i + 1) == '\'' && !identifierBefore(out)) {
+                        // N'..', E'..', B'..' and X'..' are literals too
+                        i++;
+                    }
+                    else if (Character.isDigit(ch) && !identifierBefore(out)) {
+                        i = skipNumber(sql, i);
+                        literal(out);
+                    }
+                    else if (OPERATORS.indexOf(ch) >= 0) {
+                        // one operator, spaced, however it was written
+                        end = i + 1;
+                        while (end < len
+                               && OPERATORS.indexOf(sql.charAt(end)) >= 0) {
+                            end++;
+                        }
+                        char last = (out.length() > 0
+                                     ? out.charAt(out.length() - 1) : '(');
+                        if (last != '(' && last != '.' && last != ' ') {
+                            out.append(' ');
+                        }
+                        out.append(sql, i, end);
+                        i = end;
+                        space = true;
+                    }
+                    else if (ch == ')') {
+                        i++;
+                        closeList(out);
+                    }
+                    else {
+                        out.append(Character.toLowerCase(ch));
+                        i++;
+                    }
+                    break;
+            }
+        }
+        return out.toString();
+    }
+
+    private static void literal(StringBuilder out) {
+        out.append('?');
+    }
+
+    // Turns a trailing "(?, ?, ?" into "(?+)" when the ')' arrives, so that
+    // IN lists of any length share a fingerprint.
+    private static void closeList(StringBuilder out) {
+        int i = out.length() - 1;
+        int marks = 0;
+        while (i >= 0) {
+            char c = out.charAt(i);
+            if (c == '?') {
+                marks++;
+            }
+            else if (c == '(') {
+                break;
+            }
+            else if (c != ',' && c != ' ') {
+                marks = -1;
+                break;
+            }
+            i--;
+        }
+        if (marks > 0 && i >= 0) {
+            out.setLength(i);
+            out.append("(?+)");
+        }
+        else {
+            out.append(')');
+        }
+    }
+
+    private static boolean identifierBefore(StringBuilder out) {
+        if (out.length() == 0) {
+            return false;
+        }
+        char c = out.charAt(out.length() - 1);
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+    private static int skipDigits(String sql, int i) {
+        while (i < sql.length() && Character.isDigit(sql.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    // digits, a decimal point, an exponent with its sign, or a hex literal
+    private static int skipNumber(String sql, int i) {
+        int len = sql.length();
+        while (i < len) {
+            char c = sql.charAt(i);
+            if ((c == 'e' || c == 'E') && i + 1 < len
+                && (sql.charAt(i + 1) == '+' || sql.charAt(i + 1) == '-')) {
+                i += 2;
+            }
+            else if (Character.isLetterOrDigit(c) || c == '.') {
+                i++;
+            }
+            else {
+                break;
+            }
+        }
+        return i;
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SqlTemplate is a SQL string that has been split into the literal chunks
+ * that surround its bind placeholders.  It is immutable, so a single
+ * instance is shared by every statement that prepares the same SQL; see
+ * {@link SqlTemplateCache}.  The {@link SqlFingerprint} of the SQL is
+ * kept with it, so that it is computed once rather than once per statement.
+ * <p>
+ * Only a '?' that the database would treat as a placeholder starts a new
+ * chunk.  A '?' inside a string literal, quoted identifier, comment or
+ * PostgreSQL dollar-quoted string is left alone, as are the PostgreSQL
+ * <code>??</code> escape and the <code>?|</code> and <code>?&amp;</code>
+ * operators.  <code>?||</code> is a placeholder followed by concatenation.
+ * @version $Rev$
+ */
+public final class SqlTemplate {
+
+    private final String sql;
+    private final String[] chunks;
+    // computed on first use; a race only computes it twice
+    private volatile String fingerprint;
+
+    private SqlTemplate(String s, String[] c) {
+        sql = s;
+        chunks = c;
+    }
+
+    /**
+     * Parses the given SQL.  Most callers want
+     * {@link SqlTemplateCache#get(String)} instead.
+     * @param sql the SQL to parse, may be null.
+     * @return the template.
+     */
+    public static SqlTemplate parse(String sql) {
+        if (sql == null) {
+            return new SqlTemplate(null, new String[] {"null"});
+        }
+        List<String> parts = new ArrayList<String>();
+        int len = sql.length();
+        int chunkStart = 0;
+        int i = 0;
+        while (i < len) {
+            char ch = sql.charAt(i);
+            switch (ch) {
+                case '\'':
+                case '"':
+                case '`':
+                    i = skipQuoted(sql, i, ch);
+                    break;
+                case '-':
+                    if (i + 1 < len && sql.charAt(i + 1) == '-') {
+                        int eol = sql.indexOf('\n', i);
+                        i = (eol < 0 ? len : eol + 1);
+                    }
+                    else {
+                        i++;
+                    }
+                    break;
+                case '/':
+                    i = (i + 1 < len && sql.charAt(i + 1) == '*')
+                        ? skipBlockComment(sql, i) : i + 1;
+                    break;
+                case '$':
+                    i = skipDollarQuoted(sql, i);
+                    break;
+                case '?':
+                    char next = (i + 1 < len ? sql.charAt(i + 1) : ' ');
+                    if (next == '?') {
+                        // PostgreSQL's escape for a literal '?'
+                        i += 2;
+                    }
+                    else if ((next == '|' || next == '&')
+                             && (i + 2 >= len || sql.charAt(i + 2) != next)) {
+                        // PostgreSQL jsonb operators; ?|| and ?&& are a
+                        // placeholder before the || or && operator
+                        i += 2;
+                    }
+                    else {
+                        parts.add(sql.substring(chunkStart, i));
+                        i++;
+                        chunkStart = i;
+                    }
+                    break;
+                default:
+                    i++;
+                    break;
+            }
+        }
+        parts.add(sql.substring(chunkStart));
+        return new SqlTemplate(sql, parts.toArray(new String[parts.size()]));
+    }
+
+    /**
+     * @return the SQL this template was parsed from.
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * @return the fingerprint of the SQL, see {@link SqlFingerprint}.
+     */
+    public String getFingerprint() {
+        String fp = fingerprint;
+        if (fp == null && sql != null) {
+            fp = SqlFingerprint.of(sql);
+            fingerprint = fp;
+        }
+        return fp;
+    }
+
+    /**
+     * @return the number of bind placeholders in the SQL.
+     */
+    public int getParameterCount() {
+        return chunks.length - 1;
+    }
+
+    /**
+     * Returns one of the literal chunks.  Chunk <code>n</code> is the text
+     * between placeholder <code>n</code> and <code>n + 1</code>; chunk 0 is
+     * the text before the first placeholder.
+     * @param n the chunk number, from 0 to {@link #getParameterCount()}.
+     * @return the chunk.
+     */
+    public String getChunk(int n) {
+        return chunks[n];
+    }
+
+    /**
+     * Appends the SQL to the buffer with each placeholder replaced by its
+     * bind value.  Placeholders that have no value are left as '?'.
+     * @param buf the buffer to render into.
+     * @param binds the bind parameters, may be null.
+     * @param nullText what to render for a NULL value.
+     */
+    public void render(StringBuilder buf, BindParams binds, String nullText) {
+        buf.append(chunks[0]);
+        for (int i = 1; i < chunks.length; i++) {
+            if (binds != null && binds.isSet(i)) {
+                binds.appendValue(buf, i, nullText);
+            }
+            else {
+                buf.append('?');
+            }
+            buf.append(chunks[i]);
+        }
+    }
+
+    /**
+     * @return the SQL this template was parsed from.
+     */
+    public String toString() {
+        return sql;
+    }
+
+    static int skipQuoted(String sql, int start, char quote) {
+        int i = start + 1;
+        int len = sql.length();
+        while (i < len) {
+            if (sql.charAt(i) == quote) {
+                // a doubled quote is an escaped quote
+                if (i + 1 < len && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return len;
+    }
+
+    static int skipBlockComment(String sql, int start) {
+        // PostgreSQL allows block comments to nest
+        int depth = 1;
+        int i = start + 2;
+        int len = sql.length();
+        while (i < len && depth > 0) {
+            char ch = sql.charAt(i);
+            if (ch == '*' && i + 1 < len && sql.charAt(i + 1) == '/') {
+                depth--;
+                i += 2;
+            }
+            else if (ch == '/' && i + 1 < len && sql.charAt(i + 1) == '*') {
+                depth++;
+                i += 2;
+            }
+            else {
+                i++;
+            }
+        }
+        return i;
+    }
+
+    static int skipDollarQuoted(String sql, int start) {
+        // $tag$ ... $tag$, where the tag may be empty.  A '$' that is part
+        // of an identifier or a positional parameter ($1) is not a quote.
+        if (start > 0 && Character.isJavaIdentifierPart(sql.charAt(start - 1))) {
+            return start + 1;
+        }
+        int len = sql.length();
+        int i = start + 1;
+        if (i < len && Character.isDigit(sql.charAt(i))) {
+            return start + 1;
+        }
+        while (i < len && sql.charAt(i) != '$') {
+            char ch = sql.charAt(i);
+            if (!Character.isLetterOrDigit(ch) && ch != '_') {
+                return start + 1;
+            }
+            i++;
+        }
+        if (i >= len) {
+            return start + 1;
+        }
+        String tag = sql.substring(start, i + 1);
+        int end = sql.indexOf(tag, i + 1);
+        return (end < 0 ? len : end + tag.length());
+    }
+}
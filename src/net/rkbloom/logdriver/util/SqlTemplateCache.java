@@ -0,0 +1,98 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.util;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * SqlTemplateCache holds the parsed {@link SqlTemplate} for each distinct SQL
+ * string, so that the SQL is only parsed once no matter how many connections
+ * prepare it.  The cache is bounded; once it is full an arbitrary entry is
+ * dropped to make room, which is good enough for the usual case of an
+ * application with a fixed set of statements.
+ * @version $Rev$
+ */
+public final class SqlTemplateCache {
+
+    private static final int DEFAULT_SIZE = 1024;
+
+    private static volatile int maxSize = DEFAULT_SIZE;
+    private static final ConcurrentMap<String, SqlTemplate> templates =
+        new ConcurrentHashMap<String, SqlTemplate>(DEFAULT_SIZE);
+
+    private SqlTemplateCache() {
+    }
+
+    /**
+     * Returns the template for the given SQL, parsing it if this is the
+     * first time it has been seen.
+     * @param sql the SQL.
+     * @return the template, never null.
+     */
+    public static SqlTemplate get(String sql) {
+        if (sql == null) {
+            return SqlTemplate.parse(null);
+        }
+        SqlTemplate t = templates.get(sql);
+        if (t != null) {
+            return t;
+        }
+        t = SqlTemplate.parse(sql);
+        if (maxSize <= 0) {
+            return t;
+        }
+        if (templates.size() >= maxSize) {
+            Iterator<String> it = templates.keySet().iterator();
+            if (it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+        SqlTemplate prev = templates.putIfAbsent(sql, t);
+        return (prev == null ? t : prev);
+    }
+
+    /**
+     * Sets the maximum number of templates to keep.  Zero disables caching.
+     * @param size the new maximum.
+     */
+    public static void setMaxSize(int size) {
+        maxSize = size;
+        while (templates.size() > Math.max(size, 0)) {
+            Iterator<String> it = templates.keySet().iterator();
+            if (!it.hasNext()) {
+                break;
+            }
+            it.next();
+            it.remove();
+        }
+    }
+
+    /**
+     * @return the number of cached templates.
+     */
+    public static int size() {
+        return templates.size();
+    }
+
+    /**
+     * Drops every cached template.
+     */
+    public static void clear() {
+        templates.clear();
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.util;
+
+/**
+ * StreamStats is what gets logged in place of a stream or LOB bind
+ * parameter.  It is filled in by a {@link CountingInputStream} or
+ * {@link CountingReader} while the driver reads the parameter, and records
+ * how much was transferred, how long it took and, optionally, the first few
+ * bytes or characters.  It never refers to the stream itself, so logging a
+ * statement does not keep a large payload reachable.
+ * @version $Rev$
+ */
+public final class StreamStats {
+
+    /** Render the prefix as hex. */
+    public static final int BINARY = 0;
+    /** Render the prefix as ASCII text. */
+    public static final int ASCII = 1;
+    /** The prefix holds characters. */
+    public static final int CHARACTER = 2;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final String label;
+    private final int mode;
+    private final long declared;
+    private long count;
+    private long started;
+    private long finished;
+    private boolean eof;
+    private byte[] bytes;
+    private char[] chars;
+    private int prefixLen;
+
+    /**
+     * @param lbl what the parameter was, for example "blob".
+     * @param m one of {@link #BINARY}, {@link #ASCII} or {@link #CHARACTER}.
+     * @param length the length given to the setter, or -1 if none.
+     * @param prefix how many leading bytes or characters to keep.
+     */
+    public StreamStats(String lbl, int m, long length, int prefix) {
+        label = lbl;
+        mode = m;
+        declared = length;
+        if (prefix > 0) {
+            if (m == CHARACTER) {
+                chars = new char[prefix];
+            }
+            else {
+                bytes = new byte[prefix];
+            }
+        }
+    }
+
+    /**
+     * @return the number of bytes or characters read so far.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return nanoseconds between the first read and the end of the stream
+     * or the last bulk read, 0 if it was never read.
+     */
+    public long getElapsedNanos() {
+        return (started == 0 ? 0 : finished - started);
+    }
+
+    /**
+     * @return true if the driver read the stream to its end.
+     */
+    public boolean isComplete() {
+        return eof;
+    }
+
+    void start() {
+        if (started == 0) {
+            started = System.nanoTime();
+            finished = started;
+        }
+    }
+
+    void finish(boolean end) {
+        finished = System.nanoTime();
+        if (end) {
+            eof = true;
+        }
+    }
+
+    void count(int b) {
+        if (bytes != null && prefixLen < bytes.length) {
+            bytes[prefixLen++] = (byte) b;
+        }
+        count++;
+    }
+
+    void count(byte[] b, int off, int n) {
+        if (bytes != null && prefixLen < bytes.length) {
+            int k = Math.min(n, bytes.length - prefixLen);
+            System.arraycopy(b, off, bytes, prefixLen, k);
+            prefixLen += k;
+        }
+        count += n;
+    }
+
+    void countChar(int c) {
+        if (chars != null && prefixLen < chars.length) {
+            chars[prefixLen++] = (char) c;
+        }
+        count++;
+    }
+
+    void count(char[] c, int off, int n) {
+        if (chars != null && prefixLen < chars.length) {
+            int k = Math.min(n, chars.length - prefixLen);
+            System.arraycopy(c, off, chars, prefixLen, k);
+            prefixLen += k;
+        }
+        count += n;
+    }
+
+    /**
+     * Renders the statistics, for example
+     * <code>&lt;blob: 1048576 bytes in 3.210 ms (311.5 MB/s)&gt;</code>.
+     * @return the statistics as a String.
+     */
+    public String toString() {
+        StringBuilder buf = new StringBuilder(64);
+        buf.append('<').append(label).append(": ");
+        if (started == 0) {
+            buf.append("not read");
+            if (declared >= 0) {
+                buf.append(", length ").append(declared);
+            }
+            return buf.append('>').toString();
+        }
+        buf.append(count).append(mode == CHARACTER ? " chars" : " bytes");
+        if (!eof && declared >= 0 && count < declared) {
+            buf.append(" of ").append(declared);
+        }
+        long nanos = getElapsedNanos();
+        buf.append(" in ").append(nanos / 1000000L).append('.');
+        long micros = (nanos / 1000L) % 1000L;
+        if (micros < 100) {
+            buf.append('0');
+        }
+        if (micros < 10) {
+            buf.append('0');
+        }
+        buf.append(micros).append(" ms");
+        if (nanos > 0) {
+            // bytes per nanosecond is GB/s; scale to MB/s with one decimal
+            long tenthsMb = (long) (count * 1e10 / nanos / (1 << 20));
+            buf.append(" (").append(tenthsMb / 10).append('.')
+               .append(tenthsMb % 10)
+               .append(mode == CHARACTER ? " Mchars/s)" : " MB/s)");
+        }
+        if (prefixLen > 0) {
+            buf.append(" prefix: ");
+            appendPrefix(buf);
+            if (count > prefixLen) {
+                buf.append("...");
+            }
+        }
+        return buf.append('>').toString();
+    }
+
+    private void appendPrefix(StringBuilder buf) {
+        if (mode == CHARACTER) {
+            buf.append('\'').append(chars, 0, prefixLen).append('\'');
+        }
+        else if (mode == ASCII) {
+            buf.append('\'');
+            for (int i = 0; i < prefixLen; i++) {
+                int b = bytes[i] & 0xff;
+                buf.append(b >= 0x20 && b < 0x7f ? (char) b : '.');
+            }
+            buf.append('\'');
+        }
+        else {
+            buf.append("0x");
+            for (int i = 0; i < prefixLen; i++) {
+                buf.append(HEX[(bytes[i] >> 4) & 0xf]).append(HEX[bytes[i] & 0xf]);
+            }
+        }
+    }
+}
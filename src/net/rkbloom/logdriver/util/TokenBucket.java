@@ -0,0 +1,66 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * TokenBucket limits how many times a second something may happen.  The
+ * bucket holds up to one second's worth of tokens and is refilled at the
+ * given rate; each event takes a token, and an event that finds the bucket
+ * empty is refused.  Rather than a count of tokens the bucket keeps the
+ * time at which it will be empty again, so taking a token is a single
+ * compare-and-set and the rate may change from one call to the next.
+ * @version $Rev$
+ */
+public final class TokenBucket {
+
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
+    // the System.nanoTime() by which every token handed out so far has
+    // been paid back; a bucket that is full has it in the past
+    private final AtomicLong paidUntil;
+
+    /**
+     * Creates a full bucket.
+     */
+    public TokenBucket() {
+        paidUntil = new AtomicLong(System.nanoTime() - NANOS_PER_SECOND);
+    }
+
+    /**
+     * Takes a token if there is one.
+     * @param perSecond the rate the bucket refills at, which is also its
+     * size.
+     * @param now the current System.nanoTime().
+     * @return true if a token was taken.
+     */
+    public boolean tryAcquire(long perSecond, long now) {
+        if (perSecond <= 0) {
+            return false;
+        }
+        long interval = Math.max(NANOS_PER_SECOND / perSecond, 1L);
+        while (true) {
+            long paid = paidUntil.get();
+            long from = (paid - now < 0 ? now : paid);
+            if (from - now > NANOS_PER_SECOND - interval) {
+                return false;
+            }
+            if (paidUntil.compareAndSet(paid, from + interval)) {
+                return true;
+            }
+        }
+    }
+}
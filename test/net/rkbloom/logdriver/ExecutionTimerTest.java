@@ -0,0 +1,101 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import net.rkbloom.logdriver.config.Configuration;
+import net.rkbloom.logdriver.stats.FingerprintRegistry;
+import net.rkbloom.logdriver.stats.FingerprintStats;
+import net.rkbloom.logdriver.stub.StubDriver;
+import net.rkbloom.logdriver.util.SqlFingerprint;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Tests what {@link ExecutionTimer} records in the statistics for the
+ * executions of statements run through the stub driver.
+ * @version $Rev$
+ */
+public class ExecutionTimerTest {
+
+    private static final String URL = StubDriver.LOG_URL + "rows=3";
+
+    private Connection conn;
+
+    @Before
+    public void setUp() throws Exception {
+        Configuration.update("stats.enabled", "true");
+        conn = DriverManager.getConnection(URL);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        conn.close();
+        Configuration.update("stats.enabled", null);
+    }
+
+    @Test
+    public void statementExecutionsShareTheirFingerprint() throws Exception {
+        Statement s = conn.createStatement();
+        for (int i = 0; i < 2; i++) {
+            ResultSet rs = s.executeQuery("select a from timer where b = 1");
+            while (rs.next()) {
+            }
+            rs.close();
+        }
+        s.executeQuery("select a from timer where b = 2").close();
+        s.close();
+
+        FingerprintStats.Snapshot st =
+            stats("select a from timer where b = 1");
+        assertEquals(3, st.getExecutions());
+        assertEquals(6, st.getRowsFetched());
+    }
+
+    @Test
+    public void statementBatchesAreKeyedByTheirSql() throws Exception {
+        Statement s = conn.createStatement();
+        for (int i = 0; i < 2; i++) {
+            s.addBatch("insert into timer_batch values (" + i + ")");
+            s.addBatch("insert into timer_batch values (" + i + ")");
+            s.executeBatch();
+        }
+        s.close();
+
+        FingerprintStats.Snapshot st =
+            stats("insert into timer_batch values (7)");
+        assertEquals(2, st.getExecutions());
+    }
+
+    static FingerprintStats.Snapshot stats(String sql) {
+        String fp = SqlFingerprint.of(sql);
+        for (FingerprintStats.Snapshot s : FingerprintRegistry.snapshot()) {
+            if (s.getFingerprint().equals(fp)) {
+                return s;
+            }
+        }
+        fail("no statistics for " + fp);
+        return null;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import net.rkbloom.logdriver.config.Configuration;
+import net.rkbloom.logdriver.stub.StubDriver;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Tests that {@link LeakDetector} writes its reports through the sinks.
+ * @version $Rev$
+ */
+public class LeakDetectorTest {
+
+    private final List<LogRecord> records = new ArrayList<LogRecord>();
+    private final Handler handler = new Handler() {
+        public void publish(LogRecord r) {
+            synchronized (records) {
+                records.add(r);
+            }
+        }
+        public void flush() {
+        }
+        public void close() {
+        }
+    };
+    private Logger logger = Logger.getLogger(LeakDetector.LEAK_LOGGER);
+
+    @Before
+    public void setUp() {
+        logger.setLevel(Level.FINE);
+        logger.setUseParentHandlers(false);
+        logger.addHandler(handler);
+        Configuration.update("sinks", "leaks");
+        Configuration.update("sink.leaks.type", "jul");
+        Configuration.update("sink.leaks.level", "info");
+        Configuration.update("sink.leaks.loggers", LeakDetector.LEAK_LOGGER);
+        Configuration.update("leak.threshold", "1");
+    }
+
+    @After
+    public void tearDown() {
+        Configuration.update("leak.threshold", null);
+        Configuration.update("sink.leaks.loggers", null);
+        Configuration.update("sink.leaks.level", null);
+        Configuration.update("sink.leaks.type", null);
+        Configuration.update("sinks", null);
+        logger.removeHandler(handler);
+        logger.setUseParentHandlers(true);
+        logger.setLevel(null);
+    }
+
+    @Test
+    public void connectionHeldTooLongGoesToTheSinks() throws Exception {
+        Connection c = DriverManager.getConnection(StubDriver.LOG_URL);
+        LogRecord held = await(1);
+        assertEquals(Level.WARNING, held.getLevel());
+        assertTrue(held.getMessage(),
+                   held.getMessage().contains("has been open longer than"));
+
+        c.close();
+        LogRecord closed = await(2);
+        assertEquals(Level.INFO, closed.getLevel());
+        assertTrue(closed.getMessage(),
+                   closed.getMessage().contains("was closed after"));
+    }
+
+    // the detector scans once a second on its own thread
+    private LogRecord await(int n) throws InterruptedException {
+        long end = System.currentTimeMillis() + 5000L;
+        while (System.currentTimeMillis() < end) {
+            synchronized (records) {
+                if (records.size() >= n) {
+                    return records.get(n - 1);
+                }
+            }
+            Thread.sleep(20L);
+        }
+        synchronized (records) {
+            assertEquals(n, records.size());
+            return records.get(n - 1);
+        }
+    }
+}
@@ -0,0 +1,333 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import net.rkbloom.logdriver.capture.CaptureReader;
+import net.rkbloom.logdriver.capture.CaptureWriter;
+import net.rkbloom.logdriver.config.Configuration;
+import net.rkbloom.logdriver.stub.StubDriver;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Blob;
+import java.sql.CallableStatement;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.NClob;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs statements through LogDriver wrapped around the stub driver and
+ * looks for the records it logs.
+ * @version $Rev$
+ */
+public class LogDriverTest {
+
+    private static final String URL = StubDriver.LOG_URL + "rows=3";
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private RecordingAppender log;
+    private Connection conn;
+
+    @Before
+    public void setUp() throws Exception {
+        log = RecordingAppender.attach("net.rkbloom.logdriver");
+        conn = DriverManager.getConnection(URL);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        conn.close();
+        log.detach();
+    }
+
+    @Test
+    public void acceptsOnlyLoggingUrls() throws Exception {
+        Driver d = DriverManager.getDriver(URL);
+        assertTrue(d instanceof LogDriver);
+        assertTrue(d.acceptsURL(URL));
+        assertFalse(d.acceptsURL(StubDriver.URL));
+        assertNull(d.connect(StubDriver.URL, null));
+    }
+
+    @Test(expected = SQLFeatureNotSupportedException.class)
+    public void parentLoggerIsNotSupported() throws Exception {
+        DriverManager.getDriver(URL).getParentLogger();
+    }
+
+    @Test
+    public void unknownDriverClassFails() {
+        try {
+            DriverManager.getConnection("jdbc:log:no.such.Driver:x:");
+            fail("connected");
+        }
+        catch (SQLException e) {
+            assertTrue(e.getMessage(),
+                       e.getMessage().indexOf("no.such.Driver") >= 0);
+        }
+    }
+
+    @Test
+    public void queryIsLoggedWithItsRows() throws Exception {
+        Statement s = conn.createStatement();
+        ResultSet rs = s.executeQuery("select a from t");
+        int rows = 0;
+        while (rs.next()) {
+            rows++;
+        }
+        rs.close();
+        s.close();
+        assertEquals(3, rows);
+        assertNotNull(log.find("Executing Query: select a from t"));
+        String closed = log.find("closing result set");
+        assertNotNull(log.getMessages().toString(), closed);
+        assertTrue(closed, closed.indexOf("3 rows") >= 0);
+    }
+
+    @Test
+    public void preparedStatementLogsItsBindParameters() throws Exception {
+        PreparedStatement ps =
+            conn.prepareStatement("update t set a = ? where b = ?");
+        ps.setString(1, "x");
+        ps.setInt(2, 5);
+        assertEquals(1, ps.executeUpdate());
+        ps.setNull(1, Types.VARCHAR);
+        ps.setInt(2, 6);
+        ps.executeUpdate();
+        ps.close();
+        assertNotNull(log.getMessages().toString(),
+                      log.find("'update t set a = ? where b = ?' with bind"
+                               + " parameters: {1=x, 2=5}"));
+        assertNotNull(log.find("{1=null, 2=6}"));
+    }
+
+    @Test
+    public void lobParametersAreLogged() throws Exception {
+        PreparedStatement ps =
+            conn.prepareStatement("update t set a = ? where b = ?");
+        ps.setNClob(1, lob(NClob.class, "nclob-1"));
+        ps.setClob(2, lob(Clob.class, "clob-2"));
+        ps.executeUpdate();
+        ps.close();
+        assertNotNull(log.getMessages().toString(),
+                      log.find("{1=nclob-1, 2=clob-2}"));
+
+        CallableStatement cs = conn.prepareCall("{call p(?, ?, ?, ?)}");
+        cs.setNClob(1, lob(NClob.class, "nclob-1"));
+        cs.setNClob("b", lob(NClob.class, "nclob-b"));
+        cs.setClob("c", lob(Clob.class, "clob-c"));
+        cs.setBlob("d", lob(Blob.class, "blob-d"));
+        cs.execute();
+        cs.close();
+        assertNotNull(log.getMessages().toString(),
+                      log.find("{1=nclob-1, b=nclob-b, c=clob-c, d=blob-d}"));
+    }
+
+    @Test
+    public void urlOptionsApplyToTheirConnections() throws Exception {
+        Connection inline = DriverManager.getConnection(
+            "jdbc:log;renderMode=inline:" + StubDriver.class.getName()
+            + ":stub:");
+        try {
+            PreparedStatement ps =
+                inline.prepareStatement("update t set a = ? where b = ?");
+            ps.setString(1, "x");
+            ps.setInt(2, 5);
+            ps.executeUpdate();
+            ps.close();
+        }
+        finally {
+            inline.close();
+        }
+        assertNotNull(log.getMessages().toString(),
+                      log.find("update t set a = x where b = 5"));
+    }
+
+    @Test
+    public void batchIsLoggedOnce() throws Exception {
+        PreparedStatement ps =
+            conn.prepareStatement("insert into t values (?)");
+        for (int i = 0; i < 4; i++) {
+            ps.setInt(1, i);
+            ps.addBatch();
+        }
+        assertEquals(4, ps.executeBatch().length);
+        ps.close();
+        String batch = log.find("batch: 'insert into t values (?)'");
+        assertNotNull(log.getMessages().toString(), batch);
+        assertTrue(batch, batch.indexOf("rows: 4") >= 0);
+    }
+
+    @Test
+    public void callableStatementLogsItsOutParameters() throws Exception {
+        CallableStatement cs = conn.prepareCall("{call p(?, ?)}");
+        cs.setInt(1, 1);
+        cs.registerOutParameter(2, Types.VARCHAR);
+        cs.execute();
+        cs.close();
+        String call = log.find("'{call p(?, ?)}'");
+        assertNotNull(log.getMessages().toString(), call);
+        assertTrue(call, call.indexOf("{1=1}") >= 0);
+        assertTrue(call, call.indexOf("{2=type: VARCHAR") >= 0);
+    }
+
+    @Test
+    public void transactionsAreLogged() throws Exception {
+        conn.setAutoCommit(false);
+        Statement s = conn.createStatement();
+        s.executeUpdate("delete from t");
+        conn.commit();
+        s.executeUpdate("delete from u");
+        conn.rollback();
+        s.close();
+        assertNotNull(log.find("Committing connection"));
+        assertNotNull(log.find("Rolling back connection"));
+    }
+
+    @Test
+    public void captureSwitchedOnAfterPrepareGetsTheBatchRows()
+        throws Exception {
+
+        // with nothing logged, the statement doesn't record its binds
+        Logger.getLogger("net.rkbloom.logdriver").setLevel(Level.INFO);
+        PreparedStatement ps =
+            conn.prepareStatement("insert into t values (?, ?)");
+        File f = tmp.newFile();
+        Configuration.update("capture.file", f.getPath());
+        try {
+            // binds set before capture notices are lost, as documented
+            ps.setInt(1, 1);
+            ps.setString(2, "a");
+            ps.addBatch();
+            ps.setInt(1, 2);
+            ps.setString(2, "b");
+            ps.addBatch();
+            ps.executeBatch();
+            ps.close();
+        }
+        finally {
+            Configuration.update("capture.file", null);
+        }
+        // opening another file closes this one
+        CaptureWriter.forFile(tmp.newFile().getPath());
+
+        List<CaptureReader.Record> rows =
+            new ArrayList<CaptureReader.Record>();
+        CaptureReader in = new CaptureReader(new FileInputStream(f));
+        try {
+            for (CaptureReader.Record r = in.next(); r != null;
+                 r = in.next()) {
+                if (r.getKind() == CaptureReader.Kind.BATCH_ADD) {
+                    rows.add(r);
+                }
+            }
+        }
+        finally {
+            in.close();
+        }
+        assertEquals(2, rows.size());
+        List<CaptureReader.Bind> binds = rows.get(1).getBinds();
+        assertEquals(2, binds.size());
+        assertEquals(Long.valueOf(2), binds.get(0).getValue());
+        assertEquals("b", binds.get(1).getValue());
+    }
+
+    @Test
+    public void closingSummaryIsLoggedAtInfo() throws Exception {
+        Logger.getLogger("net.rkbloom.logdriver").setLevel(Level.INFO);
+        Connection c = DriverManager.getConnection(URL);
+        c.createStatement().executeQuery("select a from t").close();
+        c.close();
+        assertNull(log.find("select a from t"));
+        assertNotNull(log.find("statements"));
+    }
+
+    @Test
+    public void statementBatchesAreSampled() throws Exception {
+        Configuration.update("sample.rate", "2");
+        try {
+            Statement s = conn.createStatement();
+            for (int i = 0; i < 4; i++) {
+                s.addBatch("insert into sampled_batch values (" + i + ")");
+                s.executeBatch();
+            }
+            s.close();
+        }
+        finally {
+            Configuration.update("sample.rate", null);
+        }
+        int batches = 0;
+        for (String m : log.getMessages()) {
+            if (m.startsWith("executing") && m.indexOf(" batch") > 0) {
+                batches++;
+            }
+        }
+        assertEquals(2, batches);
+    }
+
+    @Test
+    public void nothingIsLoggedAboveDebug() throws Exception {
+        Logger logger = Logger.getLogger("net.rkbloom.logdriver");
+        logger.setLevel(Level.INFO);
+        Statement s = conn.createStatement();
+        s.executeQuery("select a from t").close();
+        s.close();
+        assertNull(log.find("select a from t"));
+    }
+
+    // a LOB that only knows its name
+    private static <T> T lob(Class<T> type, final String name) {
+        return type.cast(Proxy.newProxyInstance(
+            type.getClassLoader(), new Class<?>[] {type},
+            new InvocationHandler() {
+                public Object invoke(Object proxy, Method m, Object[] args) {
+                    if (m.getName().equals("toString")) {
+                        return name;
+                    }
+                    throw new UnsupportedOperationException(m.getName());
+                }
+            }));
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * Tests when {@link NPlusOneDetector} reports a run.
+ * @version $Rev$
+ */
+public class NPlusOneDetectorTest {
+
+    private static final String PARENT = "select id from customers";
+    private static final String CHILD =
+        "select * from orders where customer_id = ?";
+
+    private RecordingAppender log;
+    private NPlusOneDetector d;
+
+    @Before
+    public void setUp() {
+        log = RecordingAppender.attach(NPlusOneDetector.NPLUSONE_LOGGER);
+        d = new NPlusOneDetector(1L);
+    }
+
+    @After
+    public void tearDown() {
+        log.detach();
+    }
+
+    @Test
+    public void reportsAsSoonAsTheThresholdIsReached() {
+        d.executed(PARENT, PARENT, 1000L, 3);
+        run(2);
+        assertEquals(0, log.getMessages().size());
+        run(1);
+        List<String> m = log.getMessages();
+        assertEquals(1, m.size());
+        assertTrue(m.get(0), m.get(0).indexOf("executed 3 times") >= 0);
+        assertTrue(m.get(0), m.get(0).indexOf("after '" + PARENT) >= 0);
+    }
+
+    @Test
+    public void reportsARunOnce() {
+        run(10);
+        d.boundary();
+        assertEquals(1, log.getMessages().size());
+    }
+
+    @Test
+    public void eachRunIsReported() {
+        run(3);
+        d.executed(PARENT, PARENT, 1000L, 3);
+        run(3);
+        d.boundary();
+        run(3);
+        assertEquals(3, log.getMessages().size());
+    }
+
+    @Test
+    public void shortRunsAreNotReported() {
+        run(2);
+        d.boundary();
+        run(2);
+        d.executed(PARENT, PARENT, 1000L, 3);
+        assertEquals(0, log.getMessages().size());
+    }
+
+    private void run(int n) {
+        for (int i = 0; i < n; i++) {
+            d.executed(CHILD, CHILD, 1000L, 3);
+        }
+    }
+}
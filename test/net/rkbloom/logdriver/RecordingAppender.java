@@ -0,0 +1,95 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver;
+
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * RecordingAppender keeps the rendered messages logged to a category, so
+ * that a test can look for the records the driver wrote.
+ * @version $Rev$
+ */
+public class RecordingAppender extends AppenderSkeleton {
+
+    private final List<String> messages = new ArrayList<String>();
+    private Logger logger;
+    private Level saved;
+
+    /**
+     * Records everything logged to the category at DEBUG and above.
+     * @param category the logger to record.
+     * @return the appender, to {@link #detach()} when done.
+     */
+    public static RecordingAppender attach(String category) {
+        RecordingAppender a = new RecordingAppender();
+        a.logger = Logger.getLogger(category);
+        a.saved = a.logger.getLevel();
+        a.logger.setLevel(Level.DEBUG);
+        a.logger.addAppender(a);
+        return a;
+    }
+
+    /**
+     * Stops recording and puts the level of the category back.
+     */
+    public void detach() {
+        logger.removeAppender(this);
+        logger.setLevel(saved);
+    }
+
+    protected synchronized void append(LoggingEvent event) {
+        messages.add(event.getRenderedMessage());
+    }
+
+    /**
+     * @return the messages recorded so far.
+     */
+    public synchronized List<String> getMessages() {
+        return new ArrayList<String>(messages);
+    }
+
+    /**
+     * @param text the text to look for.
+     * @return the first message that contains the text, or null.
+     */
+    public synchronized String find(String text) {
+        for (String m : messages) {
+            if (m != null && m.indexOf(text) >= 0) {
+                return m;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Forgets the messages recorded so far.
+     */
+    public synchronized void clear() {
+        messages.clear();
+    }
+
+    public void close() {
+    }
+
+    public boolean requiresLayout() {
+        return false;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import net.rkbloom.logdriver.stub.StubDriver;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.JDBCType;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+
+/**
+ * Tests that the JDBC 4.2 default methods reach the wrapped statement and
+ * that the large executions are logged like the others.
+ * @version $Rev$
+ */
+public class WrapperDelegationTest {
+
+    private static final String URL =
+        "jdbc:log:" + StubDriver.class.getName() + ":stub:rows=1";
+
+    private RecordingAppender log;
+    private Connection conn;
+
+    @Before
+    public void setUp() throws Exception {
+        log = RecordingAppender.attach("net.rkbloom.logdriver");
+        conn = DriverManager.getConnection(URL);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        conn.close();
+        log.detach();
+    }
+
+    @Test
+    public void statementLargeUpdateIsLogged() throws Exception {
+        Statement s = conn.createStatement();
+        assertEquals(1L, s.executeLargeUpdate("update t set a = 1"));
+        assertEquals(1L, s.executeLargeUpdate("update t set a = 2",
+                                              Statement.NO_GENERATED_KEYS));
+        assertEquals(1L, s.getLargeUpdateCount());
+        assertNotNull(log.find("update t set a = 1"));
+        assertNotNull(log.find("update t set a = 2"));
+        s.close();
+    }
+
+    @Test
+    public void preparedLargeUpdateIsLogged() throws Exception {
+        PreparedStatement ps =
+            conn.prepareStatement("update t set a = ? where id = ?");
+        ps.setObject(1, "x", JDBCType.VARCHAR);
+        ps.setObject(2, Integer.valueOf(7), JDBCType.INTEGER, 0);
+        assertEquals(1L, ps.executeLargeUpdate());
+        assertNotNull(log.getMessages().toString(), log.find("{1=x, 2=7}"));
+        ps.close();
+    }
+
+    @Test
+    public void callableLargeUpdateIsLogged() throws Exception {
+        CallableStatement cs = conn.prepareCall("{call p(?, ?)}");
+        cs.setObject(1, "in", JDBCType.VARCHAR);
+        cs.registerOutParameter(2, JDBCType.INTEGER);
+        assertEquals(1L, cs.executeLargeUpdate());
+        assertNotNull(log.getMessages().toString(), log.find("1=in"));
+        cs.close();
+    }
+
+    @Test
+    public void largeBatchesAreLogged() throws Exception {
+        Statement s = conn.createStatement();
+        s.addBatch("insert into t values (1)");
+        s.addBatch("insert into t values (2)");
+        assertArrayEquals(new long[] {1, 1}, s.executeLargeBatch());
+        assertNotNull(log.find("insert into t values (2)"));
+        s.close();
+
+        PreparedStatement ps =
+            conn.prepareStatement("insert into t values (?)");
+        for (int i = 0; i < 3; i++) {
+            ps.setInt(1, i);
+            ps.addBatch();
+        }
+        assertArrayEquals(new long[] {1, 1, 1}, ps.executeLargeBatch());
+        ps.close();
+    }
+
+    @Test
+    public void otherDefaultMethodsAreDelegated() throws Exception {
+        Statement s = conn.createStatement();
+        assertEquals("'it''s'", s.enquoteLiteral("it's"));
+        s.setLargeMaxRows(10);
+        s.close();
+        conn.beginRequest();
+        conn.endRequest();
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.async;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import net.rkbloom.logdriver.RecordingAppender;
+import net.rkbloom.logdriver.config.Configuration;
+
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests {@link AsyncLog} with the background thread on.  An appender
+ * holds the background thread inside a write, so the buffer fills up
+ * at the pace the test sets.
+ * @version $Rev$
+ */
+public class AsyncLogTest {
+
+    private static final String CATEGORY = "test.async";
+    // the buffer is created once, so every test shares this size
+    private static final int CAPACITY = 16;
+    private static final long WAIT_MILLIS = 5000L;
+
+    private Logger logger = Logger.getLogger(CATEGORY);
+    private GateAppender gate;
+    private RecordingAppender records;
+
+    @BeforeClass
+    public static void enable() {
+        Configuration.update("async.bufferSize", String.valueOf(CAPACITY));
+        Configuration.update("async.enabled", "true");
+    }
+
+    @AfterClass
+    public static void disable() {
+        Configuration.update("async.enabled", null);
+        Configuration.update("async.bufferSize", null);
+        Configuration.update("async.policy", null);
+        Configuration.update("async.sampleRate", null);
+    }
+
+    @Before
+    public void attach() {
+        gate = new GateAppender();
+        logger.addAppender(gate);
+        records = RecordingAppender.attach(CATEGORY);
+    }
+
+    @After
+    public void detach() throws Exception {
+        gate.release();
+        // once this is written the background thread is done with the test
+        AsyncLog.debug(logger, "done");
+        await(records, "done");
+        records.detach();
+        logger.removeAppender(gate);
+        Configuration.update("async.policy", null);
+    }
+
+    @Test
+    public void dropPolicyDropsWhenFull() throws Exception {
+        Configuration.update("async.policy", "drop");
+        hold();
+        long dropped = AsyncLog.getDropped();
+        for (int i = 0; i < CAPACITY; i++) {
+            AsyncLog.debug(logger, "fill-" + i);
+        }
+        assertEquals(CAPACITY, AsyncLog.getQueued());
+        for (int i = 0; i < 5; i++) {
+            AsyncLog.debug(logger, "extra");
+        }
+        assertEquals(dropped + 5, AsyncLog.getDropped());
+
+        gate.release();
+        await(records, "fill-" + (CAPACITY - 1));
+        assertNull(records.find("extra"));
+    }
+
+    @Test
+    public void samplePolicyKeepsOneInRateWhenHalfFull() throws Exception {
+        Configuration.update("async.policy", "sample");
+        Configuration.update("async.sampleRate", "4");
+        hold();
+        long dropped = AsyncLog.getDropped();
+        // up to one past half full nothing is sampled
+        for (int i = 0; i <= CAPACITY / 2; i++) {
+            AsyncLog.debug(logger, "fill-" + i);
+        }
+        assertEquals(dropped, AsyncLog.getDropped());
+        for (int i = 0; i < 8; i++) {
+            AsyncLog.debug(logger, "sampled");
+        }
+        assertEquals(dropped + 6, AsyncLog.getDropped());
+        assertEquals(CAPACITY / 2 + 3, AsyncLog.getQueued());
+    }
+
+    @Test
+    public void blockPolicyWaitsForRoom() throws Exception {
+        Configuration.update("async.policy", "block");
+        hold();
+        long dropped = AsyncLog.getDropped();
+        for (int i = 0; i < CAPACITY; i++) {
+            AsyncLog.debug(logger, "fill-" + i);
+        }
+        Thread producer = new Thread(new Runnable() {
+            public void run() {
+                AsyncLog.debug(logger, "blocked");
+            }
+        });
+        producer.start();
+        producer.join(200L);
+        assertTrue(producer.isAlive());
+
+        gate.release();
+        producer.join(WAIT_MILLIS);
+        assertFalse(producer.isAlive());
+        await(records, "blocked");
+        assertEquals(dropped, AsyncLog.getDropped());
+    }
+
+    @Test
+    public void keepsDrainingAfterASinkThrows() throws Exception {
+        RecordingAppender warnings =
+            RecordingAppender.attach(AsyncLog.ASYNC_LOGGER);
+        try {
+            long failed = AsyncLog.getFailed();
+            AsyncLog.debug(logger, "boom");
+            AsyncLog.debug(logger, "after");
+            await(records, "after");
+            assertEquals(failed + 1, AsyncLog.getFailed());
+            assertNull(records.find("boom"));
+            assertNotNull(await(warnings, "Failed to write 1 log records"));
+        }
+        finally {
+            warnings.detach();
+        }
+    }
+
+    // leaves the background thread stuck writing a record, with the
+    // buffer empty behind it
+    private void hold() throws Exception {
+        gate.shut();
+        AsyncLog.debug(logger, "hold");
+        assertTrue(gate.entered.await(WAIT_MILLIS, TimeUnit.MILLISECONDS));
+        assertEquals(0, AsyncLog.getQueued());
+    }
+
+    private static String await(RecordingAppender a, String text)
+        throws InterruptedException {
+
+        long end = System.currentTimeMillis() + WAIT_MILLIS;
+        String m = a.find(text);
+        while (m == null && System.currentTimeMillis() < end) {
+            Thread.sleep(10L);
+            m = a.find(text);
+        }
+        assertNotNull("never logged: " + text, m);
+        return m;
+    }
+
+    /**
+     * Holds the thread that writes "hold" until {@link #release()} is
+     * called, and throws an Error at "boom".
+     */
+    private static final class GateAppender extends AppenderSkeleton {
+
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private volatile CountDownLatch released = new CountDownLatch(0);
+
+        void shut() {
+            released = new CountDownLatch(1);
+        }
+
+        void release() {
+            released.countDown();
+        }
+
+        protected void append(LoggingEvent event) {
+            String m = event.getRenderedMessage();
+            if ("boom".equals(m)) {
+                throw new Error(m);
+            }
+            if ("hold".equals(m)) {
+                entered.countDown();
+                try {
+                    released.await(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        public void close() {
+        }
+
+        public boolean requiresLayout() {
+            return false;
+        }
+    }
+}
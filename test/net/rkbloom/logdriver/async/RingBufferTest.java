@@ -0,0 +1,153 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.async;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import net.rkbloom.logdriver.sink.Severity;
+import net.rkbloom.logdriver.sink.SinkRecord;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link RingBuffer} on one thread, and with several producers.
+ * @version $Rev$
+ */
+public class RingBufferTest {
+
+    private static boolean offer(RingBuffer r, Object message) {
+        return r.offer("test", Severity.DEBUG, message, 0L, "main");
+    }
+
+    @Test
+    public void capacityIsRoundedUpToAPowerOfTwo() {
+        assertEquals(2, new RingBuffer(0).capacity());
+        assertEquals(2, new RingBuffer(2).capacity());
+        assertEquals(16, new RingBuffer(10).capacity());
+        assertEquals(16, new RingBuffer(16).capacity());
+        assertEquals(32, new RingBuffer(17).capacity());
+    }
+
+    @Test
+    public void drainsInOrder() {
+        RingBuffer r = new RingBuffer(8);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(offer(r, Integer.valueOf(i)));
+        }
+        assertEquals(5, r.size());
+
+        SinkRecord[] batch = new SinkRecord[8];
+        assertEquals(3, r.drain(batch, 3));
+        for (int i = 0; i < 3; i++) {
+            assertEquals(Integer.valueOf(i), batch[i].getMessage());
+        }
+        assertEquals(2, r.drain(batch, 8));
+        assertEquals(Integer.valueOf(3), batch[0].getMessage());
+        assertEquals(Integer.valueOf(4), batch[1].getMessage());
+        assertEquals(0, r.size());
+        assertEquals(0, r.drain(batch, 8));
+    }
+
+    @Test
+    public void keepsTheFieldsOfARecord() {
+        RingBuffer r = new RingBuffer(4);
+        r.offer("cat", Severity.WARN, "msg", 42L, "worker");
+        SinkRecord[] batch = new SinkRecord[4];
+        assertEquals(1, r.drain(batch, 4));
+        assertEquals("cat", batch[0].getCategory());
+        assertEquals(Severity.WARN, batch[0].getSeverity());
+        assertEquals("msg", batch[0].getMessage());
+        assertEquals(42L, batch[0].getTime());
+        assertEquals("worker", batch[0].getThread());
+        assertTrue(batch[0].isAsynchronous());
+    }
+
+    @Test
+    public void refusesWhenFullAndReusesDrainedSlots() {
+        RingBuffer r = new RingBuffer(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(offer(r, Integer.valueOf(i)));
+        }
+        assertFalse(offer(r, "one too many"));
+
+        SinkRecord[] batch = new SinkRecord[4];
+        assertEquals(1, r.drain(batch, 1));
+        assertEquals(Integer.valueOf(0), batch[0].getMessage());
+        assertTrue(offer(r, Integer.valueOf(4)));
+        assertFalse(offer(r, "one too many"));
+
+        assertEquals(4, r.drain(batch, 4));
+        for (int i = 0; i < 4; i++) {
+            assertEquals(Integer.valueOf(i + 1), batch[i].getMessage());
+        }
+    }
+
+    @Test
+    public void wrapsAround() {
+        RingBuffer r = new RingBuffer(4);
+        SinkRecord[] batch = new SinkRecord[4];
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(offer(r, Integer.valueOf(i)));
+            assertTrue(offer(r, Integer.valueOf(-i)));
+            assertEquals(2, r.drain(batch, 4));
+            assertEquals(Integer.valueOf(i), batch[0].getMessage());
+            assertEquals(Integer.valueOf(-i), batch[1].getMessage());
+        }
+    }
+
+    @Test
+    public void manyProducersLoseNothing() throws Exception {
+        final int producers = 4;
+        final int each = 20000;
+        final RingBuffer r = new RingBuffer(64);
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            final int id = p;
+            threads[p] = new Thread(new Runnable() {
+                public void run() {
+                    for (int i = 0; i < each; i++) {
+                        while (!offer(r, new int[] {id, i})) {
+                            Thread.yield();
+                        }
+                    }
+                }
+            });
+            threads[p].start();
+        }
+
+        // each producer's records must come out in the order it put them
+        int[] next = new int[producers];
+        SinkRecord[] batch = new SinkRecord[16];
+        int total = 0;
+        while (total < producers * each) {
+            int n = r.drain(batch, batch.length);
+            for (int i = 0; i < n; i++) {
+                int[] m = (int[]) batch[i].getMessage();
+                assertEquals(next[m[0]]++, m[1]);
+            }
+            total += n;
+            if (n == 0) {
+                Thread.yield();
+            }
+        }
+        for (int p = 0; p < producers; p++) {
+            threads[p].join();
+            assertEquals(each, next[p]);
+        }
+        assertEquals(0, r.size());
+    }
+}
@@ -0,0 +1,323 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.capture;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import net.rkbloom.logdriver.capture.CaptureReader.Bind;
+import net.rkbloom.logdriver.capture.CaptureReader.Kind;
+import net.rkbloom.logdriver.capture.CaptureReader.Record;
+import net.rkbloom.logdriver.event.StatementEvent.Type;
+import net.rkbloom.logdriver.util.BindParams;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes captures with {@link CaptureWriter} and reads them back with
+ * {@link CaptureReader} and {@link CaptureDecoder}.
+ * @version $Rev$
+ */
+public class CaptureRoundTripTest {
+
+    private static final String SQL = "select * from t where a = ?";
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private CaptureWriter writer;
+
+    @After
+    public void close() {
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    @Test
+    public void everyKindOfRecord() throws Exception {
+        File f = open();
+        BindParams row = new BindParams(1);
+        row.setInt(1, 7);
+        long start = System.nanoTime();
+        writer.opened(3);
+        writer.autoCommitSet(3, false);
+        writer.isolationSet(3, Connection.TRANSACTION_SERIALIZABLE);
+        writer.readOnlySet(3, true);
+        writer.prepared(3, 1, Type.PREPARED, SQL);
+        writer.batchAdded(3, 1, row);
+        writer.batchAdded(3, 2, "delete from t");
+        writer.batchCleared(3, 2);
+        writer.execution(3, 1, Type.PREPARED, SQL, row, start, 1500000L,
+                         Boolean.TRUE, false);
+        writer.execution(3, 1, Type.PREPARED, SQL, null, start, 0L,
+                         new int[] {1, 2}, false);
+        writer.execution(3, 2, Type.STATEMENT, "update t set a = 1", null,
+                         start, 0L, Integer.valueOf(5), false);
+        writer.execution(3, 2, Type.STATEMENT, "bad sql", null, start, 0L,
+                         null, true);
+        writer.committed(3);
+        writer.rolledBack(3);
+        writer.statementClosed(3, 1);
+        writer.closed(3);
+
+        List<Record> records = read(f);
+        Kind[] kinds = {
+            Kind.OPEN, Kind.AUTO_COMMIT, Kind.ISOLATION, Kind.READ_ONLY,
+            Kind.PREPARE, Kind.BATCH_ADD, Kind.BATCH_ADD, Kind.BATCH_CLEAR,
+            Kind.EXECUTE, Kind.EXECUTE, Kind.EXECUTE, Kind.EXECUTE,
+            Kind.COMMIT, Kind.ROLLBACK, Kind.STATEMENT_CLOSE, Kind.CLOSE
+        };
+        assertEquals(kinds.length, records.size());
+        for (int i = 0; i < kinds.length; i++) {
+            Record r = records.get(i);
+            assertEquals("record " + i, kinds[i], r.getKind());
+            assertEquals(3, r.getConnection());
+            assertEquals(Thread.currentThread().getName(),
+                         r.getThreadName());
+        }
+        assertEquals(0, records.get(1).getValue());
+        assertEquals(Connection.TRANSACTION_SERIALIZABLE,
+                     records.get(2).getValue());
+        assertEquals(1, records.get(3).getValue());
+
+        Record prepare = records.get(4);
+        assertEquals(1, prepare.getStatement());
+        assertEquals(Type.PREPARED, prepare.getType());
+        assertEquals(SQL, prepare.getSql());
+        assertEquals(Long.valueOf(7), records.get(5).getBinds().get(0)
+                     .getValue());
+        assertEquals("delete from t", records.get(6).getSql());
+        assertEquals(2, records.get(7).getStatement());
+
+        Record query = records.get(8);
+        assertEquals(SQL, query.getSql());
+        assertEquals(1500000L, query.getElapsedNanos());
+        assertTrue(query.isResultSet());
+        assertEquals(1, query.getBinds().size());
+        Record batch = records.get(9);
+        assertTrue(batch.isBatch());
+        assertArrayEquals(new int[] {1, 2}, batch.getUpdateCounts());
+        Record update = records.get(10);
+        assertEquals(Type.STATEMENT, update.getType());
+        assertArrayEquals(new int[] {5}, update.getUpdateCounts());
+        assertFalse(update.isBatch());
+        assertTrue(records.get(11).isFailed());
+
+        long now = System.currentTimeMillis();
+        assertTrue(Math.abs(query.getTimeMicros() / 1000 - now) < 60000L);
+    }
+
+    @Test
+    public void bindValuesKeepTheirTypes() throws Exception {
+        File f = open();
+        Timestamp ts = new Timestamp(1234567890123L);
+        ts.setNanos(123456789);
+        BindParams binds = new BindParams(14);
+        binds.setNull(1);
+        binds.setBoolean(2, true);
+        binds.setBoolean(3, false);
+        binds.setInt(4, -42);
+        binds.setLong(5, Long.MIN_VALUE);
+        binds.setFloat(6, 1.25f);
+        binds.setDouble(7, -1e300);
+        binds.setObject(8, "h\u00e9llo \u2603");
+        binds.setObject(9, new BigDecimal("12345.6789"));
+        binds.setObject(10, new byte[] {0, 1, (byte) 0xff});
+        binds.setObject(11, ts);
+        binds.setObject(12, new Time(3600000L));
+        binds.setObject(13, new Date(86400000L));
+        binds.setObject(14, new StringBuilder("other"));
+        binds.setObject("name", Integer.valueOf(9));
+        writer.execution(1, 1, Type.CALLABLE, "{call p}", binds,
+                         System.nanoTime(), 0L, null, false);
+
+        List<Bind> read = read(f).get(0).getBinds();
+        assertEquals(15, read.size());
+        for (int i = 0; i < 14; i++) {
+            assertEquals(i + 1, read.get(i).getIndex());
+            assertNull(read.get(i).getName());
+        }
+        assertNull(read.get(0).getValue());
+        assertEquals(Boolean.TRUE, read.get(1).getValue());
+        assertEquals(Boolean.FALSE, read.get(2).getValue());
+        assertEquals(Long.valueOf(-42), read.get(3).getValue());
+        assertEquals(Long.valueOf(Long.MIN_VALUE), read.get(4).getValue());
+        assertEquals(Float.valueOf(1.25f), read.get(5).getValue());
+        assertEquals(Double.valueOf(-1e300), read.get(6).getValue());
+        assertEquals("h\u00e9llo \u2603", read.get(7).getValue());
+        assertEquals(new BigDecimal("12345.6789"), read.get(8).getValue());
+        assertArrayEquals(new byte[] {0, 1, (byte) 0xff},
+                          (byte[]) read.get(9).getValue());
+        assertEquals(ts, read.get(10).getValue());
+        assertEquals(new Time(3600000L), read.get(11).getValue());
+        assertEquals(new Date(86400000L), read.get(12).getValue());
+        assertEquals("other", read.get(13).getValue().toString());
+        assertEquals("name", read.get(14).getName());
+        assertEquals(Long.valueOf(9), read.get(14).getValue());
+    }
+
+    @Test
+    public void sqlIsWrittenOncePerSegment() throws Exception {
+        File f = open();
+        for (int i = 0; i < 3; i++) {
+            writer.execution(1, 1, Type.PREPARED, SQL, null,
+                             System.nanoTime(), 0L, null, false);
+        }
+        // another file, then this one again, starts a second segment
+        writer.close();
+        writer = CaptureWriter.forFile(tmp.newFile().getPath());
+        writer.close();
+        writer = CaptureWriter.forFile(f.getPath());
+        writer.execution(1, 1, Type.PREPARED, SQL, null, System.nanoTime(),
+                         0L, null, false);
+        writer.close();
+
+        String bytes = new String(Files.readAllBytes(f.toPath()),
+                                  StandardCharsets.ISO_8859_1);
+        assertEquals(2, count(bytes, SQL));
+
+        CaptureReader in = new CaptureReader(new FileInputStream(f));
+        try {
+            for (int i = 0; i < 3; i++) {
+                assertEquals(SQL, in.next().getSql());
+                assertEquals(1, in.getSegment());
+            }
+            assertEquals(SQL, in.next().getSql());
+            assertEquals(2, in.getSegment());
+            assertNull(in.next());
+            assertFalse(in.isTruncated());
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void aRecordCutShortEndsTheFile() throws Exception {
+        File f = open();
+        writer.opened(1);
+        writer.execution(1, 1, Type.STATEMENT, SQL, null, System.nanoTime(),
+                         0L, null, false);
+        writer.close();
+
+        byte[] all = Files.readAllBytes(f.toPath());
+        CaptureReader in = new CaptureReader(new ByteArrayInputStream(
+                Arrays.copyOf(all, all.length - 1)));
+        assertEquals(Kind.OPEN, in.next().getKind());
+        assertNull(in.next());
+        assertTrue(in.isTruncated());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws Exception {
+        new CaptureReader(new ByteArrayInputStream(
+                "LOG4J".getBytes(StandardCharsets.US_ASCII))).next();
+    }
+
+    @Test
+    public void decodesToTextAndJson() throws Exception {
+        File f = open();
+        BindParams binds = new BindParams(1);
+        binds.setInt(1, 42);
+        writer.prepared(2, 5, Type.PREPARED, SQL);
+        writer.execution(2, 5, Type.PREPARED, SQL, binds, System.nanoTime(),
+                         2000000L, Integer.valueOf(1), false);
+        writer.close();
+
+        String[] lines = decode(f, false);
+        assertEquals(2, lines.length);
+        assertTrue(lines[0], lines[0].endsWith(
+                       "#2.5 [" + Thread.currentThread().getName()
+                       + "] prepare PreparedStatement: '" + SQL + "'"));
+        assertTrue(lines[1], lines[1].endsWith(
+                       "PreparedStatement 2.000 ms: '" + SQL + "' {1=42}"
+                       + " update count 1"));
+
+        lines = decode(f, true);
+        assertEquals(2, lines.length);
+        assertTrue(lines[1], lines[1].startsWith("{\"time\":\""));
+        assertTrue(lines[1], lines[1].contains("\"kind\":\"execute\""));
+        assertTrue(lines[1], lines[1].contains("\"statement\":5"));
+    }
+
+    private File open() throws IOException {
+        File f = tmp.newFile();
+        writer = CaptureWriter.forFile(f.getPath());
+        return f;
+    }
+
+    // closes the writer, so that everything is in the file
+    private List<Record> read(File f) throws IOException {
+        writer.close();
+        List<Record> records = new ArrayList<Record>();
+        CaptureReader in = new CaptureReader(new FileInputStream(f));
+        try {
+            for (Record r = in.next(); r != null; r = in.next()) {
+                records.add(r);
+            }
+        }
+        finally {
+            in.close();
+        }
+        return records;
+    }
+
+    private static String[] decode(File f, boolean json)
+        throws IOException {
+
+        StringWriter out = new StringWriter();
+        CaptureReader in = new CaptureReader(new FileInputStream(f));
+        try {
+            long n = new CaptureDecoder(json).decode(in, out);
+            String[] lines = out.toString().split("\n");
+            assertEquals(n, lines.length);
+            return lines;
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    private static int count(String s, String part) {
+        int n = 0;
+        for (int i = s.indexOf(part); i >= 0; i = s.indexOf(part, i + 1)) {
+            n++;
+        }
+        return n;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.sink;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Tests what {@link JulSink} hands to java.util.logging.
+ * @version $Rev$
+ */
+public class JulSinkTest {
+
+    private static final String CATEGORY = "test.jul";
+
+    private final List<LogRecord> records = new ArrayList<LogRecord>();
+    private final Handler handler = new Handler() {
+        public void publish(LogRecord r) {
+            records.add(r);
+        }
+        public void flush() {
+        }
+        public void close() {
+        }
+    };
+    private Logger logger = Logger.getLogger(CATEGORY);
+
+    @Before
+    public void setUp() {
+        logger.setLevel(Level.FINE);
+        logger.setUseParentHandlers(false);
+        logger.addHandler(handler);
+    }
+
+    @After
+    public void tearDown() {
+        logger.removeHandler(handler);
+        logger.setUseParentHandlers(true);
+        logger.setLevel(null);
+    }
+
+    @Test
+    public void keepsTheTimeAndCategoryOfTheRecord() {
+        new JulSink().write(new SinkRecord(1234567890123L, "worker",
+                                           CATEGORY, Severity.WARN, "text",
+                                           true));
+        assertEquals(1, records.size());
+        LogRecord r = records.get(0);
+        assertEquals(Instant.ofEpochMilli(1234567890123L), r.getInstant());
+        assertEquals(Level.WARNING, r.getLevel());
+        assertEquals("text", r.getMessage());
+        assertEquals(CATEGORY, r.getLoggerName());
+        assertEquals(CATEGORY, r.getSourceClassName());
+    }
+
+    @Test
+    public void asksTheLoggerWhatIsEnabled() {
+        JulSink sink = new JulSink();
+        assertTrue(sink.isEnabled(CATEGORY, Severity.DEBUG));
+        logger.setLevel(Level.INFO);
+        assertFalse(sink.isEnabled(CATEGORY, Severity.DEBUG));
+        assertTrue(sink.isEnabled(CATEGORY, Severity.INFO));
+    }
+}
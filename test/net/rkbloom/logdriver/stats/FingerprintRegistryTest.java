@@ -0,0 +1,143 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import net.rkbloom.logdriver.config.Configuration;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tests how {@link FingerprintRegistry} evicts fingerprints when it is
+ * full.
+ * @version $Rev$
+ */
+public class FingerprintRegistryTest {
+
+    @Before
+    public void empty() {
+        FingerprintRegistry.clear();
+        LatencyRegistry.reset();
+    }
+
+    @After
+    public void restore() {
+        FingerprintRegistry.clear();
+        Configuration.reload();
+    }
+
+    @Test
+    public void evictsTheLeastExecutedWhenFull() {
+        FingerprintRegistry.setMaxFingerprints(10);
+        fill(10);
+        FingerprintRegistry.get("new");
+        assertEquals(10, FingerprintRegistry.size());
+        Set<String> held = held();
+        assertFalse(held.contains("fp-0"));
+        assertTrue(held.contains("fp-1"));
+        assertTrue(held.contains("new"));
+    }
+
+    @Test
+    public void evictsATenthInOneGo() {
+        FingerprintRegistry.setMaxFingerprints(50);
+        fill(50);
+        FingerprintRegistry.get("new");
+        assertEquals(46, FingerprintRegistry.size());
+        Set<String> held = held();
+        for (int i = 0; i < 5; i++) {
+            assertFalse(held.contains("fp-" + i));
+        }
+        assertTrue(held.contains("fp-5"));
+    }
+
+    @Test
+    public void oneOffStatementsEvictEachOther() {
+        FingerprintRegistry.setMaxFingerprints(10);
+        fill(9);
+        for (int i = 0; i < 1000; i++) {
+            FingerprintRegistry.get("once-" + i);
+        }
+        assertTrue(FingerprintRegistry.size() <= 10);
+        Set<String> held = held();
+        for (int i = 1; i < 9; i++) {
+            assertTrue("fp-" + i, held.contains("fp-" + i));
+        }
+    }
+
+    @Test
+    public void loweringTheCapEvicts() {
+        FingerprintRegistry.setMaxFingerprints(20);
+        fill(20);
+        FingerprintRegistry.setMaxFingerprints(5);
+        assertTrue(FingerprintRegistry.size() <= 5);
+        assertTrue(held().contains("fp-19"));
+    }
+
+    @Test
+    public void getReturnsTheSameStatistics() {
+        FingerprintStats s = FingerprintRegistry.get("select ?");
+        s.record(1000L, false, 1L);
+        assertTrue(s == FingerprintRegistry.get("select ?"));
+        List<FingerprintStats.Snapshot> top = FingerprintRegistry.top(5);
+        assertEquals(1, top.size());
+        assertEquals("select ?", top.get(0).getFingerprint());
+        assertEquals(1, top.get(0).getExecutions());
+    }
+
+    @Test
+    public void histogramsAreEvictedWithTheirFingerprint() {
+        FingerprintRegistry.setMaxFingerprints(10);
+        fill(10);
+        for (int i = 0; i < 100; i++) {
+            FingerprintRegistry.get("once-" + i).record(1000L, false, 0L);
+        }
+        LatencyRegistry.record("hot", 2000L);
+        LatencyRegistry.record("hot", 2000L);
+
+        assertEquals(held(), LatencyRegistry.histograms().keySet());
+        assertEquals(2, LatencyRegistry.snapshot().get("hot").getCount());
+        // nothing recorded is lost, evicted times move to <other>
+        assertEquals(45 + 100 + 2, LatencyRegistry.total().getCount());
+        assertTrue(LatencyRegistry.overflow().getCount() > 0);
+    }
+
+    // fingerprint fp-i is executed i times
+    private static void fill(int n) {
+        for (int i = 0; i < n; i++) {
+            FingerprintStats s = FingerprintRegistry.get("fp-" + i);
+            for (int j = 0; j < i; j++) {
+                s.record(1000L, false, 0L);
+            }
+        }
+    }
+
+    private static Set<String> held() {
+        Set<String> names = new HashSet<String>();
+        for (FingerprintStats.Snapshot s : FingerprintRegistry.snapshot()) {
+            names.add(s.getFingerprint());
+        }
+        return names;
+    }
+}
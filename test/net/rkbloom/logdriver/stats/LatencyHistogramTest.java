@@ -0,0 +1,156 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests the bucket indexing of {@link LatencyHistogram} and the figures
+ * its snapshots report.
+ * @version $Rev$
+ */
+public class LatencyHistogramTest {
+
+    private static final long MAX_TRACKED = (1L << 40) - 1;
+
+    @Test
+    public void smallValuesGetABucketEach() {
+        for (int v = 0; v < 64; v++) {
+            assertEquals(v, LatencyHistogram.indexOf(v));
+            assertEquals(v, LatencyHistogram.highestValueAt(v));
+        }
+    }
+
+    @Test
+    public void bucketsAreContiguous() {
+        // the value after the top of a bucket starts the next one
+        for (int i = 0; i < LatencyHistogram.BUCKETS - 1; i++) {
+            long high = LatencyHistogram.highestValueAt(i);
+            assertEquals(i, LatencyHistogram.indexOf(high));
+            assertEquals(i + 1, LatencyHistogram.indexOf(high + 1));
+        }
+        assertEquals(MAX_TRACKED, LatencyHistogram.highestValueAt(
+                         LatencyHistogram.BUCKETS - 1));
+    }
+
+    @Test
+    public void bucketsAreAtMostOneThirtySecondWide() {
+        for (int i = 1; i < LatencyHistogram.BUCKETS; i++) {
+            long low = LatencyHistogram.highestValueAt(i - 1) + 1;
+            long high = LatencyHistogram.highestValueAt(i);
+            assertTrue("bucket " + i, high - low <= low / 32);
+        }
+    }
+
+    @Test
+    public void powersOfTwoStartABucket() {
+        for (int bits = 6; bits < 40; bits++) {
+            long v = 1L << bits;
+            int i = LatencyHistogram.indexOf(v);
+            assertEquals(v - 1, LatencyHistogram.highestValueAt(i - 1));
+        }
+    }
+
+    @Test
+    public void negativeAndHugeValues() {
+        LatencyHistogram h = new LatencyHistogram();
+        h.record(-5);
+        h.record(Long.MAX_VALUE / 2);
+        LatencyHistogram.Snapshot s = h.snapshot();
+        assertEquals(2, s.getCount());
+        assertEquals(0, s.getPercentile(50.0));
+        // too long to track, but the maximum is still exact
+        assertEquals(Long.MAX_VALUE / 2, s.getMaxNanos());
+        assertEquals(Long.MAX_VALUE / 2, s.getPercentile(100.0));
+    }
+
+    @Test
+    public void percentilesErrHighByLessThanABucket() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (long v = 1; v <= 1000; v++) {
+            h.record(v * 1000);
+        }
+        LatencyHistogram.Snapshot s = h.snapshot();
+        assertEquals(1000, s.getCount());
+        assertEquals(500500000L, s.getTotalNanos());
+        assertEquals(500500, s.getMeanNanos());
+        assertEquals(1000000, s.getMaxNanos());
+        assertWithin(500000, s.getP50());
+        assertWithin(900000, s.getP90());
+        assertWithin(990000, s.getP99());
+        assertEquals(1000000, s.getPercentile(100.0));
+    }
+
+    @Test
+    public void emptySnapshot() {
+        LatencyHistogram.Snapshot s = LatencyHistogram.Snapshot.empty();
+        assertEquals(0, s.getCount());
+        assertEquals(0, s.getMeanNanos());
+        assertEquals(0, s.getP99());
+    }
+
+    @Test
+    public void mergeAddsTheCounts() {
+        LatencyHistogram a = new LatencyHistogram();
+        LatencyHistogram b = new LatencyHistogram();
+        a.record(10);
+        a.record(20);
+        b.record(30000);
+        LatencyHistogram.Snapshot s =
+            LatencyHistogram.Snapshot.empty().merge(a.snapshot())
+            .merge(b.snapshot());
+        assertEquals(3, s.getCount());
+        assertEquals(30030, s.getTotalNanos());
+        assertEquals(30000, s.getMaxNanos());
+        assertEquals(20, s.getP50());
+    }
+
+    @Test
+    public void cumulativeCountsUseTheTopOfEachBucket() {
+        LatencyHistogram h = new LatencyHistogram();
+        h.record(50);
+        h.record(100);
+        h.record(1000);
+        h.record(5000000);
+        long[] bounds = {63, 100, 1000};
+        long[] counts = new long[bounds.length + 1];
+        h.cumulativeCounts(bounds, counts);
+        // 100 shares a bucket with 101, so it counts against 1000, and
+        // 1000 shares one with 1007, so it only counts in the total
+        assertEquals(1, counts[0]);
+        assertEquals(1, counts[1]);
+        assertEquals(2, counts[2]);
+        assertEquals(4, counts[3]);
+    }
+
+    @Test
+    public void resetForgetsEverything() {
+        LatencyHistogram h = new LatencyHistogram();
+        h.record(100);
+        h.reset();
+        assertEquals(0, h.getCount());
+        assertEquals(0, h.getTotalNanos());
+        assertEquals(0, h.snapshot().getMaxNanos());
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(actual + " < " + expected, actual >= expected);
+        assertTrue(actual + " > " + expected + " + 1/32",
+                   actual <= expected + expected / 32);
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests how {@link BindParams} stores, copies and renders parameters.
+ * @version $Rev$
+ */
+public class BindParamsTest {
+
+    @Test
+    public void rendersLikeASortedMap() {
+        BindParams p = new BindParams(3);
+        p.setInt(2, 42);
+        p.setObject(1, "foo");
+        p.setNull(3);
+        assertEquals("{1=foo, 2=42, 3=null}", p.toString());
+        assertEquals(3, p.getCount());
+        assertEquals(3, p.getHighestIndex());
+    }
+
+    @Test
+    public void primitivesKeepTheirType() {
+        BindParams p = new BindParams(7);
+        p.setBoolean(1, true);
+        p.setByte(2, (byte) -1);
+        p.setShort(3, (short) 300);
+        p.setInt(4, Integer.MIN_VALUE);
+        p.setLong(5, Long.MAX_VALUE);
+        p.setFloat(6, 1.5f);
+        p.setDouble(7, -0.25d);
+        assertEquals(Boolean.TRUE, p.get(1));
+        assertEquals(Byte.valueOf((byte) -1), p.get(2));
+        assertEquals(Short.valueOf((short) 300), p.get(3));
+        assertEquals(Integer.valueOf(Integer.MIN_VALUE), p.get(4));
+        assertEquals(Long.valueOf(Long.MAX_VALUE), p.get(5));
+        assertEquals(Float.valueOf(1.5f), p.get(6));
+        assertEquals(Double.valueOf(-0.25d), p.get(7));
+        assertEquals("{1=true, 2=-1, 3=300, 4=-2147483648, "
+                     + "5=9223372036854775807, 6=1.5, 7=-0.25}",
+                     p.toString());
+    }
+
+    @Test
+    public void unsetAndNullAreDifferent() {
+        BindParams p = new BindParams(3);
+        p.setObject(1, null);
+        p.setInt(3, 7);
+        assertTrue(p.isSet(1));
+        assertNull(p.get(1));
+        assertFalse(p.isSet(2));
+        assertFalse(p.isSet(0));
+        assertFalse(p.isSet(4));
+        assertEquals("{1=null, 3=7}", p.toString());
+        assertEquals(2, p.getCount());
+    }
+
+    @Test
+    public void growsPastItsSizeAndIgnoresBadIndexes() {
+        BindParams p = new BindParams(1);
+        p.setInt(0, 1);
+        p.setInt(-1, 1);
+        p.setInt(10, 10);
+        assertEquals(10, p.getHighestIndex());
+        assertEquals(Integer.valueOf(10), p.get(10));
+        assertEquals("{10=10}", p.toString());
+    }
+
+    @Test
+    public void settingAgainReplacesTheValue() {
+        BindParams p = new BindParams(1);
+        p.setObject(1, "foo");
+        p.setLong(1, 5L);
+        assertEquals(Long.valueOf(5L), p.get(1));
+        p.setObject(1, "bar");
+        assertEquals("bar", p.get(1));
+    }
+
+    @Test
+    public void copyIsIndependent() {
+        BindParams p = new BindParams(2);
+        p.setInt(1, 1);
+        p.setObject("name", "x");
+        BindParams c = p.copy();
+        p.setInt(1, 2);
+        p.setInt(2, 3);
+        p.setObject("name", "y");
+        assertEquals("{1=1, name=x}", c.toString());
+        assertEquals("{1=2, 2=3, name=y}", p.toString());
+    }
+
+    @Test
+    public void clearForgetsEverything() {
+        BindParams p = new BindParams(2);
+        p.setInt(1, 1);
+        p.setObject(2, "two");
+        p.setObject("name", "x");
+        p.clear();
+        assertEquals("{}", p.toString());
+        assertEquals(0, p.getCount());
+        assertEquals(0, p.getHighestIndex());
+        assertFalse(p.isSet(1));
+        p.setInt(2, 5);
+        assertEquals("{2=5}", p.toString());
+    }
+
+    @Test
+    public void namedParametersComeAfterTheIndexedOnesInOrder() {
+        BindParams p = new BindParams(1);
+        p.setObject("b", "2");
+        p.setObject("a", null);
+        p.setInt(1, 1);
+        assertEquals("{1=1, a=null, b=2}", p.toString());
+    }
+
+    @Test
+    public void visitorSeesEveryParameterUnboxed() {
+        BindParams p = new BindParams(5);
+        p.setNull(1);
+        p.setBoolean(2, false);
+        p.setShort(3, (short) 3);
+        p.setDouble(4, 4.5d);
+        p.setObject(5, "five");
+        p.setObject("name", "n");
+        final StringBuilder seen = new StringBuilder();
+        p.accept(new BindParams.Visitor() {
+            public void visitNull(int i) {
+                seen.append(i).append(":null ");
+            }
+            public void visitBoolean(int i, boolean x) {
+                seen.append(i).append(":boolean=").append(x).append(' ');
+            }
+            public void visitLong(int i, long x) {
+                seen.append(i).append(":long=").append(x).append(' ');
+            }
+            public void visitFloat(int i, float x) {
+                seen.append(i).append(":float=").append(x).append(' ');
+            }
+            public void visitDouble(int i, double x) {
+                seen.append(i).append(":double=").append(x).append(' ');
+            }
+            public void visitObject(int i, Object x) {
+                seen.append(i).append(":object=").append(x).append(' ');
+            }
+            public void visitNamed(String name, Object x) {
+                seen.append(name).append(":named=").append(x);
+            }
+        });
+        assertEquals("1:null 2:boolean=false 3:long=3 4:double=4.5 "
+                     + "5:object=five name:named=n", seen.toString());
+    }
+}
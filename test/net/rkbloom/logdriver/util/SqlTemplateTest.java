@@ -0,0 +1,116 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+/**
+ * Tests the placeholder lexer in {@link SqlTemplate}.
+ * @version $Rev$
+ */
+public class SqlTemplateTest {
+
+    private static int count(String sql) {
+        return SqlTemplate.parse(sql).getParameterCount();
+    }
+
+    private static String render(String sql, Object... values) {
+        BindParams binds = new BindParams(values.length);
+        for (int i = 0; i < values.length; i++) {
+            binds.setObject(i + 1, values[i]);
+        }
+        StringBuilder buf = new StringBuilder();
+        SqlTemplate.parse(sql).render(buf, binds, "NULL");
+        return buf.toString();
+    }
+
+    @Test
+    public void plainPlaceholders() {
+        SqlTemplate t = SqlTemplate.parse("select * from t where a = ? and b = ?");
+        assertEquals(2, t.getParameterCount());
+        assertEquals("select * from t where a = ", t.getChunk(0));
+        assertEquals(" and b = ", t.getChunk(1));
+        assertEquals("", t.getChunk(2));
+    }
+
+    @Test
+    public void noPlaceholders() {
+        assertEquals(0, count("select 1"));
+        assertEquals(0, count(""));
+        assertEquals(0, SqlTemplate.parse(null).getParameterCount());
+    }
+
+    @Test
+    public void quotedQuestionMarksAreNotPlaceholders() {
+        assertEquals(1, count("select '?', \"a?\", `b?` from t where c = ?"));
+        assertEquals(1, count("select 'it''s ?' from t where c = ?"));
+    }
+
+    @Test
+    public void commentsAreSkipped() {
+        assertEquals(1, count("select 1 -- why?\nfrom t where a = ?"));
+        assertEquals(1, count("select /* a? /* nested? */ b? */ 1 where a = ?"));
+        assertEquals(0, count("select 1 -- trailing?"));
+    }
+
+    @Test
+    public void dollarQuotedStringsAreSkipped() {
+        assertEquals(1, count("select $$a?b$$, $tag$?$tag$ where a = ?"));
+        // positional parameters and identifiers are not dollar quotes
+        assertEquals(1, count("select $1, a$b from t where c = ?"));
+    }
+
+    @Test
+    public void postgresOperatorsAreNotPlaceholders() {
+        assertEquals(1, count("select a ?? 'x', a ?| b, a ?& b where c = ?"));
+    }
+
+    @Test
+    public void placeholderBeforeConcatenation() {
+        String sql = "select * from t where name like ?||'%' and id = ?";
+        assertEquals(2, count(sql));
+        assertEquals("select * from t where name like ab||'%' and id = 7",
+                     render(sql, "ab", Integer.valueOf(7)));
+        assertEquals(2, count("select ?||? from t"));
+        assertEquals(2, count("select 1 where ?&&? "));
+        assertEquals(1, count("select ?||"));
+    }
+
+    @Test
+    public void unsetPlaceholdersRenderAsQuestionMarks() {
+        assertEquals("a = 1 and b = ?", render("a = ? and b = ?",
+                                               Integer.valueOf(1)));
+    }
+
+    @Test
+    public void fingerprintIsComputedOnce() {
+        String sql = "SELECT * FROM t WHERE id = ? AND name = 'x'";
+        SqlTemplate t = SqlTemplateCache.get(sql);
+        assertEquals(SqlFingerprint.of(sql), t.getFingerprint());
+        assertSame(t.getFingerprint(), t.getFingerprint());
+        assertSame(t.getFingerprint(),
+                   SqlTemplateCache.get(sql).getFingerprint());
+        assertNull(SqlTemplate.parse(null).getFingerprint());
+    }
+
+    @Test
+    public void unterminatedQuoteSwallowsTheRest() {
+        assertEquals(0, count("select 'unterminated ? where a = ?"));
+    }
+}
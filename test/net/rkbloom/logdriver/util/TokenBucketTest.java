@@ -0,0 +1,106 @@
+/*
+ * Copyright 2005 Ryan Bloom
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.rkbloom.logdriver.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests {@link TokenBucket} with a clock the test controls.
+ * @version $Rev$
+ */
+public class TokenBucketTest {
+
+    private static final long MS = 1000000L;
+
+    private static int drain(TokenBucket b, long perSecond, long now) {
+        int n = 0;
+        while (b.tryAcquire(perSecond, now)) {
+            n++;
+        }
+        return n;
+    }
+
+    @Test
+    public void fullBucketHoldsOneSecondOfTokens() {
+        long now = System.nanoTime();
+        assertEquals(10, drain(new TokenBucket(), 10, now));
+    }
+
+    @Test
+    public void refillsAtTheRate() {
+        TokenBucket b = new TokenBucket();
+        long now = System.nanoTime();
+        drain(b, 10, now);
+        assertFalse(b.tryAcquire(10, now + 50 * MS));
+        assertTrue(b.tryAcquire(10, now + 100 * MS));
+        assertFalse(b.tryAcquire(10, now + 100 * MS));
+        assertEquals(3, drain(b, 10, now + 400 * MS));
+    }
+
+    @Test
+    public void idleTimeDoesNotOverfill() {
+        TokenBucket b = new TokenBucket();
+        long now = System.nanoTime();
+        drain(b, 5, now);
+        assertEquals(5, drain(b, 5, now + 60000 * MS));
+    }
+
+    @Test
+    public void zeroRateRefusesEverything() {
+        TokenBucket b = new TokenBucket();
+        assertFalse(b.tryAcquire(0, System.nanoTime()));
+        assertFalse(b.tryAcquire(-1, System.nanoTime()));
+    }
+
+    @Test
+    public void rateAboveTheClockResolution() {
+        // faster than one token a nanosecond still hands tokens out
+        TokenBucket b = new TokenBucket();
+        long now = System.nanoTime();
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(b.tryAcquire(2000000000L, now));
+        }
+    }
+
+    @Test
+    public void concurrentCallersShareTheTokens() throws Exception {
+        final TokenBucket b = new TokenBucket();
+        final long now = System.nanoTime();
+        final AtomicInteger taken = new AtomicInteger();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread() {
+                public void run() {
+                    for (int i = 0; i < 10000; i++) {
+                        if (b.tryAcquire(1000, now)) {
+                            taken.incrementAndGet();
+                        }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(1000, taken.get());
+    }
+}